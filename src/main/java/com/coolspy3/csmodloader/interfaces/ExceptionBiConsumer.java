@@ -0,0 +1,23 @@
+package com.coolspy3.csmodloader.interfaces;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Represents an implementation of {@link BiConsumer} which throws an optional Exception
+ *
+ * @param <T> the type of the first argument to the operation
+ * @param <U> the type of the second argument to the operation
+ */
+@FunctionalInterface
+public interface ExceptionBiConsumer<T, U>
+{
+    /**
+     * Performs this operation on the given arguments.
+     *
+     * @param t the first input argument
+     * @param u the second input argument
+     *
+     * @throws Exception if an Exception occurs
+     */
+    public void accept(T t, U u) throws Exception;
+}
@@ -0,0 +1,25 @@
+package com.coolspy3.csmodloader.interfaces;
+
+import java.util.function.BiFunction;
+
+/**
+ * Represents an implementation of {@link BiFunction} which throws an optional Exception
+ *
+ * @param <T> the type of the first argument to the function
+ * @param <U> the type of the second argument to the function
+ * @param <R> the type of the result of the function
+ */
+@FunctionalInterface
+public interface ExceptionBiFunction<T, U, R>
+{
+    /**
+     * Applies this function to the given arguments.
+     *
+     * @param t the first function argument
+     * @param u the second function argument
+     * @return the function result
+     *
+     * @throws Exception if an Exception occurs
+     */
+    public R apply(T t, U u) throws Exception;
+}
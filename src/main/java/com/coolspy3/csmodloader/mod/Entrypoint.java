@@ -26,7 +26,8 @@ public interface Entrypoint
      * or more calls to {@code PacketHandler.register}.
      *
      * NOTE: This is called before the connection to the server is setup, so
-     * {@link ConnectionHandler#getLocal()} will return {@code null}.
+     * {@link ConnectionHandler#getLocal()} will return {@code null}. The connection's context is
+     * available through {@link PacketHandler#getConnection()}.
      *
      * @param handler The PacketHandler which will be assigned to this instance of the mod.
      */
@@ -0,0 +1,264 @@
+package com.coolspy3.csmodloader.network;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.coolspy3.csmodloader.interfaces.IOConsumer;
+import com.coolspy3.csmodloader.network.packet.Packet;
+import com.coolspy3.csmodloader.network.packet.PacketParser;
+import com.coolspy3.csmodloader.network.packet.PacketSpec;
+import com.coolspy3.csmodloader.util.Utils;
+
+/**
+ * Describes a single proxied connection between a Minecraft client and server. Unlike
+ * {@link ConnectionHandler#getLocal()} and {@link PacketHandler#getLocal()}, which depend on the
+ * thread on which they are called, a context can be captured by a subscriber and used from any
+ * thread (ex. an executor or an asynchronous pipeline) to reach the connection it belongs to.
+ *
+ * All methods of this class are thread-safe.
+ *
+ * @see PacketHandler#getConnection()
+ */
+public final class ConnectionContext
+{
+
+    private final String serverHost;
+    private final ConnectionHandler serverbound;
+    private final ConnectionHandler clientbound;
+
+    private volatile PacketHandler packetHandler;
+
+    private final AtomicLongArray packetsRead = newCounter();
+    private final AtomicLongArray bytesRead = newCounter();
+    private final AtomicLongArray packetsBlocked = newCounter();
+    private final AtomicLongArray packetsSent = newCounter();
+
+    /**
+     * Creates a new ConnectionContext
+     *
+     * @param serverHost The server's hostname
+     * @param serverbound The ConnectionHandler responsible for serverbound traffic
+     * @param clientbound The ConnectionHandler responsible for clientbound traffic
+     */
+    ConnectionContext(String serverHost, ConnectionHandler serverbound,
+            ConnectionHandler clientbound)
+    {
+        this.serverHost = serverHost;
+        this.serverbound = serverbound;
+        this.clientbound = clientbound;
+    }
+
+    /**
+     * @return The server's hostname
+     */
+    public String getServerHost()
+    {
+        return serverHost;
+    }
+
+    /**
+     * @param direction A direction of traffic
+     *
+     * @return The ConnectionHandler responsible for the provided direction of traffic
+     */
+    public ConnectionHandler getHandler(PacketDirection direction)
+    {
+        return direction == PacketDirection.SERVERBOUND ? serverbound : clientbound;
+    }
+
+    /**
+     * @return The PacketHandler of this connection or {@code null} if the connection has not yet
+     *         entered the play state
+     */
+    public PacketHandler getPacketHandler()
+    {
+        return packetHandler;
+    }
+
+    /**
+     * @return The current state of this connection
+     */
+    public ConnectionHandler.State getState()
+    {
+        return serverbound.getState();
+    }
+
+    /**
+     * @return The compression threshold of this connection or {@code -1} if compression is
+     *         disabled
+     */
+    public int getCompressionThreshold()
+    {
+        return serverbound.getCompressionThreshold();
+    }
+
+    /**
+     * Attempts to send the given packet using its specification. The packet is encoded immediately,
+     * but it is written to the socket asynchronously, so errors which occur while writing it are
+     * not reported to the caller.
+     *
+     * @param packet The packet to send
+     *
+     * @return Whether the packet was encoded and queued to be written. This does not guarantee
+     *         that it will be written.
+     *
+     * @see PacketParser#getPacketSpecification(Packet)
+     * @see PacketParser#getClassId(PacketDirection, Class)
+     */
+    public boolean sendPacket(Packet packet)
+    {
+        return Utils.reporting(() -> {
+            PacketSpec spec = PacketParser.getPacketSpecification(packet);
+            PacketDirection direction = spec.direction();
+
+            int packetId = PacketParser.getClassId(direction, packet.getClass());
+
+            getHandler(direction).write(direction, packetId, os -> PacketParser.write(packet, os),
+                    spec.priority());
+
+            return true;
+
+        }, false);
+    }
+
+    /**
+     * Attempts to send a pre-encoded packet. The packet is written asynchronously.
+     *
+     * @param template The template to send
+     *
+     * @return Whether the packet was queued to be written. This does not guarantee that it will be
+     *         written.
+     */
+    public boolean sendPacket(PacketTemplate template)
+    {
+        return Utils.reporting(() -> {
+            getHandler(template.getDirection()).write(template);
+
+            return true;
+
+        }, false);
+    }
+
+    /**
+     * Attempts to write a packet to this connection
+     *
+     * @param direction The direction in which to send the packet
+     * @param packetId The id of the packet to send
+     * @param writeFunc A function which, when called, will write the packet to the provided
+     *        OutputStream
+     *
+     * @throws IOException If an I/O error occurs
+     *
+     * @see ConnectionHandler#write(PacketDirection, int, IOConsumer)
+     */
+    public void write(PacketDirection direction, int packetId, IOConsumer<OutputStream> writeFunc)
+            throws IOException
+    {
+        getHandler(direction).write(direction, packetId, writeFunc);
+    }
+
+    /**
+     * Attempts to write a packet to this connection
+     *
+     * @param direction The direction in which to send the packet
+     * @param packetData A byte array containing the encoded packet, including its id
+     *
+     * @throws IOException If an I/O error occurs
+     *
+     * @see ConnectionHandler#write(PacketDirection, byte[])
+     */
+    public void write(PacketDirection direction, byte[] packetData) throws IOException
+    {
+        getHandler(direction).write(direction, packetData);
+    }
+
+    /**
+     * @param direction A direction of traffic
+     *
+     * @return The number of packets which have been read in the provided direction
+     */
+    public long getPacketsRead(PacketDirection direction)
+    {
+        return packetsRead.get(direction.ordinal());
+    }
+
+    /**
+     * @param direction A direction of traffic
+     *
+     * @return The number of (possibly compressed) bytes of packet data which have been read in the
+     *         provided direction, excluding length prefixes
+     */
+    public long getBytesRead(PacketDirection direction)
+    {
+        return bytesRead.get(direction.ordinal());
+    }
+
+    /**
+     * @param direction A direction of traffic
+     *
+     * @return The number of packets read in the provided direction which were blocked by a
+     *         subscriber
+     */
+    public long getPacketsBlocked(PacketDirection direction)
+    {
+        return packetsBlocked.get(direction.ordinal());
+    }
+
+    /**
+     * @param direction A direction of traffic
+     *
+     * @return The number of packets which have been sent in the provided direction by mods
+     */
+    public long getPacketsSent(PacketDirection direction)
+    {
+        return packetsSent.get(direction.ordinal());
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ConnectionContext[serverHost=" + serverHost + ", state=" + getState() + "]";
+    }
+
+    /**
+     * Sets the PacketHandler of this connection
+     *
+     * @param packetHandler The PacketHandler
+     */
+    void setPacketHandler(PacketHandler packetHandler)
+    {
+        this.packetHandler = packetHandler;
+    }
+
+    /**
+     * Records that a packet has been read
+     *
+     * @param direction The direction in which the packet was read
+     * @param length The length of the packet's frame
+     * @param blocked Whether the packet was blocked
+     */
+    void recordRead(PacketDirection direction, int length, boolean blocked)
+    {
+        packetsRead.incrementAndGet(direction.ordinal());
+        bytesRead.addAndGet(direction.ordinal(), length);
+
+        if (blocked) packetsBlocked.incrementAndGet(direction.ordinal());
+    }
+
+    /**
+     * Records that a packet has been sent by a mod
+     *
+     * @param direction The direction in which the packet was sent
+     */
+    void recordSent(PacketDirection direction)
+    {
+        packetsSent.incrementAndGet(direction.ordinal());
+    }
+
+    private static AtomicLongArray newCounter()
+    {
+        return new AtomicLongArray(PacketDirection.values().length);
+    }
+
+}
@@ -9,11 +9,15 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 import java.security.KeyFactory;
 import java.security.KeyPair;
 import java.security.PublicKey;
 import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.zip.DataFormatException;
 import java.util.zip.Deflater;
@@ -66,9 +70,10 @@ public class ConnectionHandler implements Runnable
     private final Inflater decompressor;
 
     private final ReentrantLock socketLock;
+    private final OutboundQueue outbound = new OutboundQueue();
 
     // State Variables
-    private int compressionThreshhold;
+    private volatile int compressionThreshhold;
     private boolean blockPacket;
     private State state;
 
@@ -82,6 +87,7 @@ public class ConnectionHandler implements Runnable
     private Cipher decCipher;
 
     private ConnectionHandler other;
+    private ConnectionContext context;
     private PacketHandler packetHandler;
     private boolean hasPacketHandler = false;
 
@@ -143,14 +149,57 @@ public class ConnectionHandler implements Runnable
     }
 
     /**
-     * Sets the compression threshold of this ConnectionHandler. Can be set to -1 to reset
+     * @return The handshaking state of this ConnectionHandler
+     */
+    public State getState()
+    {
+        return state;
+    }
+
+    /**
+     * @return The direction of traffic handled by this ConnectionHandler
+     */
+    public PacketDirection getDirection()
+    {
+        return direction;
+    }
+
+    /**
+     * @return The compression threshold of this ConnectionHandler or -1 if compression is disabled
+     */
+    public int getCompressionThreshold()
+    {
+        return compressionThreshhold;
+    }
+
+    /**
+     * @return The context of the connection to which this ConnectionHandler belongs
+     */
+    public ConnectionContext getContext()
+    {
+        return context;
+    }
+
+    /**
+     * Sets the compression threshold of this ConnectionHandler. Can be set to -1 to reset. Queued
+     * packets which have not been written yet will be compressed according to the new threshold.
      *
      * @param threshold The new threshold
      */
     public void setCompression(int threshold)
     {
         logger.trace("Setting compression threshold to {}...", threshold);
-        this.compressionThreshhold = threshold;
+
+        // Queued packets are framed while the lock is held, so they never see a partial change
+        socketLock.lock();
+        try
+        {
+            this.compressionThreshhold = threshold;
+        }
+        finally
+        {
+            socketLock.unlock();
+        }
     }
 
     /**
@@ -210,6 +259,17 @@ public class ConnectionHandler implements Runnable
         this.other = other;
     }
 
+    /**
+     * Sets the context of the connection to which this ConnectionHandler belongs. This should be
+     * called before this handler's read loop is started.
+     *
+     * @param context The context shared by both ConnectionHandlers of the connection
+     */
+    private void setContext(ConnectionContext context)
+    {
+        this.context = context;
+    }
+
     /**
      * Sets the PacketHandler which will be used to process packets for this ConnectionHandler. This
      * should be called by this handler's read loop.
@@ -231,11 +291,27 @@ public class ConnectionHandler implements Runnable
      * @throws IOException If an I/O error occurs
      */
     public void safeWrite(byte[] data) throws IOException
+    {
+        safeWrite(data, null);
+    }
+
+    /**
+     * Writes the specified data to this ConnectionHandler's OutputStream after prefixing its
+     * length, then runs the provided command before any queued packets are written
+     *
+     * @param data The data to write
+     * @param afterWrite The command to run once the data has been written or {@code null}
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    private void safeWrite(byte[] data, IOCommand afterWrite) throws IOException
     {
         safeWrite(() -> {
             Utils.writeVarInt(data.length, os);
             os.write(data);
             os.flush();
+
+            if (afterWrite != null) afterWrite.run();
         });
     }
 
@@ -253,11 +329,94 @@ public class ConnectionHandler implements Runnable
         try
         {
             writeCommand.run();
+            writeOutbound();
         }
         finally
         {
             socketLock.unlock();
         }
+
+        drainOutbound();
+    }
+
+    /**
+     * Queues packets sent by a mod and writes them if the output is not in use
+     *
+     * @param priority The priority of the packets
+     * @param entry The packets to write contiguously
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    private void enqueue(PacketPriority priority, OutboundQueue.Entry entry) throws IOException
+    {
+        outbound.add(priority, entry);
+
+        drainOutbound();
+    }
+
+    /**
+     * Writes queued frames until the queue is empty or the output is in use. Any thread which
+     * finds the output in use can safely return, since the thread using it will write the queue
+     * before releasing it and check the queue again afterwards.
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    private void drainOutbound() throws IOException
+    {
+        // Threads waiting for the lock will write the queue themselves, so don't barge ahead
+        while (!outbound.isEmpty() && !socketLock.hasQueuedThreads() && socketLock.tryLock())
+        {
+            try
+            {
+                writeOutbound();
+            }
+            finally
+            {
+                socketLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Frames and writes queued packets in order of priority and flushes them. This must only be
+     * called while holding the write lock, which also guards the compressor. Writing stops early if
+     * another thread is waiting for the lock so that forwarded packets are not delayed behind a
+     * long queue.
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    private void writeOutbound() throws IOException
+    {
+        // This is called after every forwarded frame, so avoid allocating when nothing is queued
+        if (outbound.isEmpty()) return;
+
+        ArrayList<OutboundQueue.Entry> written = new ArrayList<>();
+
+        try
+        {
+            OutboundQueue.Entry entry;
+
+            while ((entry = outbound.poll()) != null)
+            {
+                written.add(entry);
+
+                entry.writeTo(os, compressionThreshhold, compressor);
+
+                if (socketLock.hasQueuedThreads()) break;
+            }
+
+            if (written.isEmpty()) return;
+
+            os.flush();
+        }
+        catch (IOException e)
+        {
+            written.forEach(writtenEntry -> writtenEntry.fail(e));
+
+            throw e;
+        }
+
+        written.forEach(OutboundQueue.Entry::complete);
     }
 
     @Override
@@ -316,6 +475,7 @@ public class ConnectionHandler implements Runnable
         {
             Utils.safe(iSocket::close);
             Utils.safe(oSocket::close);
+            outbound.clear(new EOFException("Connection closed"));
             if (packetHandler != null) packetHandler.shutdown();
         }
     }
@@ -335,20 +495,20 @@ public class ConnectionHandler implements Runnable
         }
 
         int length = Utils.readVarInt(is);
-        is.mark(length);
+        byte[] frame = Utils.readNBytes(is, length);
 
         blockPacket = false;
         Runnable command = Utils.DO_NOTHING;
+        IOCommand afterForward = null;
 
-        byte[] packetData;
+        ByteBuffer packetData;
         if (compressionThreshhold == -1)
         {
-            packetData = Utils.readNBytes(is, length);
+            packetData = ByteBuffer.wrap(frame);
 
-            is.reset();
-            is.mark(length);
+            InputStream frameData = new ByteArrayInputStream(frame);
 
-            int packetId = Utils.readVarInt(is);
+            int packetId = Utils.readVarInt(frameData);
 
             if (state != State.PLAY)
             {
@@ -361,11 +521,11 @@ public class ConnectionHandler implements Runnable
 
                         blockPacket = true;
 
-                        int version = Utils.readVarInt(is);
+                        int version = Utils.readVarInt(frameData);
                         @SuppressWarnings("unused")
-                        String name = Utils.readString(is);
-                        byte[] serverPort = Utils.readNBytes(is, 2);
-                        int nextState = Utils.readVarInt(is);
+                        String name = Utils.readString(frameData);
+                        byte[] serverPort = Utils.readNBytes(frameData, 2);
+                        int nextState = Utils.readVarInt(frameData);
 
                         switch (nextState)
                         {
@@ -403,9 +563,9 @@ public class ConnectionHandler implements Runnable
                             {
                                 blockPacket = true;
 
-                                String serverId = Utils.readString(is);
-                                byte[] publicKeyEncoded = Utils.readBytes(is);
-                                byte[] verifyToken = Utils.readBytes(is);
+                                String serverId = Utils.readString(frameData);
+                                byte[] publicKeyEncoded = Utils.readBytes(frameData);
+                                byte[] verifyToken = Utils.readBytes(frameData);
 
                                 PublicKey publicKey = Utils.noFail(() -> keyFactory
                                         .generatePublic(new X509EncodedKeySpec(publicKeyEncoded)));
@@ -443,12 +603,12 @@ public class ConnectionHandler implements Runnable
                                         .getInstance(serverKey.getPrivate().getAlgorithm()));
 
                                 Utils.noFail(() -> cipher.init(2, serverKey.getPrivate()));
-                                byte[] sharedSecretEncrypted = Utils.readBytes(is);
+                                byte[] sharedSecretEncrypted = Utils.readBytes(frameData);
                                 byte[] sharedSecret =
                                         Utils.noFail(() -> cipher.doFinal(sharedSecretEncrypted));
 
                                 Utils.noFail(() -> cipher.init(2, serverKey.getPrivate()));
-                                byte[] verifyTokenEncrypted = Utils.readBytes(is);
+                                byte[] verifyTokenEncrypted = Utils.readBytes(frameData);
                                 byte[] verifyToken =
                                         Utils.noFail(() -> cipher.doFinal(verifyTokenEncrypted));
 
@@ -507,7 +667,7 @@ public class ConnectionHandler implements Runnable
 
                     case 0x02:
                     {
-                        setPacketHandler(new PacketHandler());
+                        setPacketHandler(new PacketHandler(context));
                         other.setPacketHandler(packetHandler);
 
                         command = () -> setState(State.PLAY);
@@ -523,35 +683,36 @@ public class ConnectionHandler implements Runnable
 
             if (packetId == 0x03)
             {
-                int compressionThreshhold = Utils.readVarInt(is);
+                int compressionThreshhold = Utils.readVarInt(frameData);
                 other.setCompression(compressionThreshhold);
 
-                command = () -> {
-                    setCompression(compressionThreshhold);
-                };
+                // Queued packets are framed when they are written, so the threshold must change
+                // before any of them are written after this packet
+                afterForward = () -> setCompression(compressionThreshhold);
             }
         }
         else
         {
-            int uncompressedLength = Utils.readVarInt(is);
-            int dataLength = length - Utils.varIntLen(uncompressedLength);
+            int uncompressedLength = Utils.readVarInt(frame, 0);
+            int headerLength = Utils.varIntLen(frame, 0);
+            int dataLength = length - headerLength;
 
-            if (uncompressedLength == 0) packetData = Utils.readNBytes(is, dataLength);
+            if (uncompressedLength == 0)
+                packetData = ByteBuffer.wrap(frame, headerLength, dataLength).slice();
             else
             {
-                byte[] compressedPackedData = Utils.readNBytes(is, dataLength);
-
-                decompressor.setInput(compressedPackedData);
-                packetData = new byte[uncompressedLength];
-                decompressor.inflate(packetData);
+                decompressor.setInput(frame, headerLength, dataLength);
+                byte[] uncompressedData = new byte[uncompressedLength];
+                decompressor.inflate(uncompressedData);
 
                 decompressor.reset();
+
+                packetData = ByteBuffer.wrap(uncompressedData);
             }
 
-            if (state == State.LOGIN
-                    && Utils.readVarInt(new ByteArrayInputStream(packetData)) == 0x02)
+            if (state == State.LOGIN && Utils.readVarInt(packetData, 0) == 0x02)
             {
-                setPacketHandler(new PacketHandler());
+                setPacketHandler(new PacketHandler(context));
                 other.setPacketHandler(packetHandler);
 
                 command = () -> setState(State.PLAY);
@@ -561,23 +722,22 @@ public class ConnectionHandler implements Runnable
 
         if (state == State.PLAY) blockPacket = Utils.safeExecuteTimeoutSync(
                 () -> Utils.reporting(() -> packetHandler.handleRawPacket(direction, packetData)),
-                500, false, "PacketHandler.handlePacket(%s)",
-                Utils.readVarInt(new ByteArrayInputStream(packetData)));
+                500, false, "PacketHandler.handlePacket(%s)", Utils.readVarInt(packetData, 0));
 
-        is.reset();
-
-        byte[] packet = Utils.readNBytes(is, length);
+        if (context != null) context.recordRead(direction, length, blockPacket);
 
         if (!blockPacket)
         {
-            safeWrite(packet);
+            safeWrite(frame, afterForward);
         }
+        else if (afterForward != null) afterForward.run();
 
         command.run();
     }
 
     /**
-     * Attempts to write a packet to this ConnectionHandler's OutputStream
+     * Attempts to write a packet to this ConnectionHandler's OutputStream with
+     * {@link PacketPriority#NORMAL} priority
      *
      * @param direction The direction in which to send the packet
      * @param packetId The id of the packet to send
@@ -585,32 +745,57 @@ public class ConnectionHandler implements Runnable
      *        OutputStream
      *
      * @throws IOException If an I/O error occurs
+     *
+     * @see #writeFrame(PacketDirection, byte[], PacketPriority)
      */
     public void write(PacketDirection direction, int packetId, IOConsumer<OutputStream> writeFunc)
             throws IOException
+    {
+        write(direction, packetId, writeFunc, PacketPriority.NORMAL);
+    }
+
+    /**
+     * Attempts to write a packet to this ConnectionHandler's OutputStream
+     *
+     * @param direction The direction in which to send the packet
+     * @param packetId The id of the packet to send
+     * @param writeFunc A function which, when called, will write the packet to the provided
+     *        OutputStream
+     * @param priority The priority with which to write the packet
+     *
+     * @throws IOException If an I/O error occurs
+     *
+     * @see #writeFrame(PacketDirection, byte[], PacketPriority)
+     */
+    public void write(PacketDirection direction, int packetId, IOConsumer<OutputStream> writeFunc,
+            PacketPriority priority) throws IOException
     {
         if (direction != this.direction)
         {
-            other.write(direction, packetId, writeFunc);
+            other.write(direction, packetId, writeFunc, priority);
 
             return;
         }
 
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
 
+        Utils.writeVarInt(packetId, baos);
         writeFunc.run(baos);
 
-        write(direction, packetId, baos.toByteArray());
+        write(direction, baos.toByteArray(), priority);
     }
 
     /**
-     * Attempts to write a packet to this ConnectionHandler's OutputStream
+     * Attempts to write a packet to this ConnectionHandler's OutputStream with
+     * {@link PacketPriority#NORMAL} priority
      *
      * @param direction The direction in which to send the packet
      * @param packetId The id of the packet to send
      * @param packetData A byte array containing the data to write to the OutputStream
      *
      * @throws IOException If an I/O error occurs
+     *
+     * @see #writeFrame(PacketDirection, byte[], PacketPriority)
      */
     public void write(PacketDirection direction, int packetId, byte[] packetData) throws IOException
     {
@@ -630,52 +815,223 @@ public class ConnectionHandler implements Runnable
     }
 
     /**
-     * Attempts to write a packet to this ConnectionHandler's OutputStream
+     * Attempts to write a packet to this ConnectionHandler's OutputStream with
+     * {@link PacketPriority#NORMAL} priority
      *
      * @param direction The direction in which to send the packet
      * @param packetData A byte array containing the data to write to the OutputStream
      *
      * @throws IOException If an I/O error occurs
+     *
+     * @see #writeFrame(PacketDirection, byte[], PacketPriority)
      */
     public void write(PacketDirection direction, byte[] packetData) throws IOException
+    {
+        write(direction, packetData, PacketPriority.NORMAL);
+    }
+
+    /**
+     * Attempts to write a packet to this ConnectionHandler's OutputStream
+     *
+     * @param direction The direction in which to send the packet
+     * @param packetData A byte array containing the encoded packet, including its id
+     * @param priority The priority with which to write the packet
+     *
+     * @throws IOException If an I/O error occurs
+     *
+     * @see #writeFrame(PacketDirection, byte[], PacketPriority)
+     */
+    public void write(PacketDirection direction, byte[] packetData, PacketPriority priority)
+            throws IOException
     {
         if (direction != this.direction)
         {
-            other.write(direction, packetData);
+            other.write(direction, packetData, priority);
 
             return;
         }
 
-        if (compressionThreshhold == -1 || packetData.length < compressionThreshhold)
+        if (context != null) context.recordSent(direction);
+
+        enqueue(priority, OutboundQueue.Entry.ofPackets(new byte[][] {packetData}, null));
+    }
+
+    /**
+     * Attempts to write a batch of packets to this ConnectionHandler's OutputStream. The packets
+     * are written in order, without any other packets between them, and flushed once.
+     *
+     * @param direction The direction in which to send the packets
+     * @param packets A list of byte arrays containing the encoded packets, including their ids
+     * @param priority The priority with which to write the batch
+     *
+     * @return A future which is completed once the batch has been written or completed
+     *         exceptionally if it could not be written
+     *
+     * @throws IOException If an I/O error occurs
+     *
+     * @see #writeFrame(PacketDirection, byte[], PacketPriority)
+     */
+    public CompletableFuture<Void> writeAll(PacketDirection direction, List<byte[]> packets,
+            PacketPriority priority) throws IOException
+    {
+        if (direction != this.direction) return other.writeAll(direction, packets, priority);
+
+        byte[][] packetData = packets.toArray(new byte[0][]);
+
+        if (context != null)
         {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            for (int i = 0; i < packetData.length; i++)
+                context.recordSent(direction);
+        }
 
-            if (compressionThreshhold != -1) Utils.writeVarInt(0, baos);
+        CompletableFuture<Void> future = new CompletableFuture<>();
 
-            baos.write(packetData);
+        enqueue(priority, OutboundQueue.Entry.ofPackets(packetData, future));
 
-            safeWrite(baos);
+        return future;
+    }
+
+    /**
+     * Attempts to write a pre-encoded packet to this ConnectionHandler's OutputStream. The template
+     * is sent in its own direction with its own priority and its cached frame for this connection's
+     * compression threshold is reused, so the packet is neither serialized nor compressed again.
+     *
+     * @param template The template to send
+     *
+     * @throws IOException If an I/O error occurs
+     *
+     * @see #writeFrame(PacketDirection, byte[], PacketPriority)
+     */
+    public void write(PacketTemplate template) throws IOException
+    {
+        PacketDirection direction = template.getDirection();
+
+        if (direction != this.direction)
+        {
+            other.write(template);
 
             return;
         }
 
-        int uncompressedLength = packetData.length;
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        Utils.writeVarInt(uncompressedLength, baos);
+        if (context != null) context.recordSent(direction);
+
+        enqueue(template.getPriority(), OutboundQueue.Entry.ofTemplate(template));
+    }
+
+    /**
+     * Attempts to write a complete frame to this ConnectionHandler's OutputStream with
+     * {@link PacketPriority#NORMAL} priority
+     *
+     * @param direction The direction in which to send the frame
+     * @param frame A byte array containing the frame
+     *
+     * @throws IOException If an I/O error occurs
+     *
+     * @see #writeFrame(PacketDirection, byte[], PacketPriority)
+     */
+    public void writeFrame(PacketDirection direction, byte[] frame) throws IOException
+    {
+        writeFrame(direction, frame, PacketPriority.NORMAL);
+    }
+
+    /**
+     * Attempts to write a complete frame to this ConnectionHandler's OutputStream. The frame is
+     * written as-is, so it must already be prefixed with its length and compressed according to
+     * this ConnectionHandler's compression threshold. Unlike packets, it is not re-framed if the
+     * threshold changes while it is queued. It will still be encrypted if encryption is enabled.
+     *
+     * Frames sent by mods are queued and written in order of priority as soon as the output is
+     * available, but frames forwarded by the proxy are always written in the order in which they
+     * were received. If the output is in use, this method returns immediately and the frame is
+     * written by the thread which is using it, so an I/O error may be reported to that thread
+     * instead.
+     *
+     * @param direction The direction in which to send the frame
+     * @param frame A byte array containing the frame
+     * @param priority The priority with which to write the frame
+     *
+     * @throws IOException If an I/O error occurs
+     *
+     * @see #getCompressionThreshold()
+     */
+    public void writeFrame(PacketDirection direction, byte[] frame, PacketPriority priority)
+            throws IOException
+    {
+        if (direction != this.direction)
+        {
+            other.writeFrame(direction, frame, priority);
+
+            return;
+        }
+
+        if (context != null) context.recordSent(direction);
+
+        enqueue(priority, OutboundQueue.Entry.ofFrame(frame));
+    }
+
+    /**
+     * @param length The length of an encoded packet, including its id
+     * @param compressionThreshold The compression threshold of the connection or -1 if
+     *        compression is disabled
+     *
+     * @return Whether the packet is compressed when it is framed
+     */
+    static boolean isCompressed(int length, int compressionThreshold)
+    {
+        return compressionThreshold != -1 && length >= compressionThreshold;
+    }
 
-        compressor.setInput(packetData);
-        compressor.finish();
+    /**
+     * Encodes a packet into a frame, compressing it if necessary
+     *
+     * @param packetData A byte array containing the encoded packet, including its id
+     * @param compressionThreshold The compression threshold of the connection or -1 if
+     *        compression is disabled
+     * @param compressor The Deflater to use to compress the packet. The caller must ensure that it
+     *        is not used concurrently. This may be {@code null} if the packet will not be
+     *        compressed.
+     *
+     * @return The frame, including its length prefix
+     *
+     * @throws IOException If an I/O error occurs
+     *
+     * @see #isCompressed(int, int)
+     */
+    static byte[] encodeFrame(byte[] packetData, int compressionThreshold, Deflater compressor)
+            throws IOException
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(packetData.length + 5);
 
-        byte[] buf = new byte[1024];
+        if (!isCompressed(packetData.length, compressionThreshold))
+        {
+            if (compressionThreshold != -1) Utils.writeVarInt(0, baos);
 
-        while (!compressor.finished())
+            baos.write(packetData);
+        }
+        else
         {
-            int numCompressedBytes = compressor.deflate(buf);
+            Utils.writeVarInt(packetData.length, baos);
+
+            compressor.reset();
+            compressor.setInput(packetData);
+            compressor.finish();
+
+            byte[] buf = new byte[1024];
 
-            baos.write(buf, 0, numCompressedBytes);
+            while (!compressor.finished())
+            {
+                int numCompressedBytes = compressor.deflate(buf);
+
+                baos.write(buf, 0, numCompressedBytes);
+            }
         }
 
-        safeWrite(baos);
+        ByteArrayOutputStream frame = new ByteArrayOutputStream(baos.size() + 5);
+
+        Utils.writeVarInt(baos.size(), frame);
+        baos.writeTo(frame);
+
+        return frame.toByteArray();
     }
 
     /**
@@ -706,6 +1062,11 @@ public class ConnectionHandler implements Runnable
         c2s.setOther(s2c);
         s2c.setOther(c2s);
 
+        ConnectionContext context = new ConnectionContext(host, c2s, s2c);
+
+        c2s.setContext(context);
+        s2c.setContext(context);
+
         s2c.startInNewThread();
         c2s.startInNewThread();
 
@@ -716,7 +1077,13 @@ public class ConnectionHandler implements Runnable
     }
 
     /**
+     * Threads which were not started by this ConnectionHandler (ex. executor threads) do not
+     * inherit it, so code which may run on such threads should use the connection's
+     * {@link ConnectionContext} instead.
+     *
      * @return The ConnectionHandler responsible for handling traffic on this thread
+     *
+     * @see PacketHandler#getConnection()
      */
     public static ConnectionHandler getLocal()
     {
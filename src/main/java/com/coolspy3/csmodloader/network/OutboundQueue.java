@@ -0,0 +1,185 @@
+package com.coolspy3.csmodloader.network;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.Deflater;
+
+/**
+ * Holds the packets which have been sent by mods but not yet written to a connection. Entries are
+ * polled in order of priority and, within each priority, in the order in which they were added.
+ *
+ * Packets are framed when they are written rather than when they are queued, so they are always
+ * compressed according to the connection's compression threshold at the time they are written.
+ *
+ * All methods of this class are thread-safe.
+ */
+final class OutboundQueue
+{
+
+    private final ArrayDeque<Entry>[] queues;
+    private int size = 0;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    OutboundQueue()
+    {
+        queues = new ArrayDeque[PacketPriority.values().length];
+
+        for (int i = 0; i < queues.length; i++)
+            queues[i] = new ArrayDeque<>();
+    }
+
+    /**
+     * Adds an entry to the queue
+     *
+     * @param priority The priority of the entry
+     * @param entry The entry to add
+     */
+    synchronized void add(PacketPriority priority, Entry entry)
+    {
+        queues[priority.ordinal()].addLast(entry);
+        size++;
+    }
+
+    /**
+     * @return The entry with the highest priority or {@code null} if the queue is empty
+     */
+    synchronized Entry poll()
+    {
+        if (size == 0) return null;
+
+        for (ArrayDeque<Entry> queue : queues)
+        {
+            Entry entry = queue.pollFirst();
+
+            if (entry != null)
+            {
+                size--;
+
+                return entry;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return Whether the queue is empty
+     */
+    synchronized boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+     * Removes all entries from the queue, completing their futures exceptionally
+     *
+     * @param cause The reason for which the entries were discarded
+     */
+    void clear(Throwable cause)
+    {
+        Entry entry;
+
+        while ((entry = poll()) != null)
+            entry.fail(cause);
+    }
+
+    /**
+     * A group of packets which must be written contiguously
+     */
+    static final class Entry
+    {
+
+        private final byte[][] data;
+        private final boolean framed;
+        private final PacketTemplate template;
+        private final CompletableFuture<Void> future;
+
+        private Entry(byte[][] data, boolean framed, PacketTemplate template,
+                CompletableFuture<Void> future)
+        {
+            this.data = data;
+            this.framed = framed;
+            this.template = template;
+            this.future = future;
+        }
+
+        /**
+         * @param packets The encoded packets, including their ids, to frame and write contiguously
+         * @param future A future to complete once the packets have been written or {@code null}
+         *
+         * @return An entry containing the provided packets
+         */
+        static Entry ofPackets(byte[][] packets, CompletableFuture<Void> future)
+        {
+            return new Entry(packets, false, null, future);
+        }
+
+        /**
+         * @param frame A complete frame, including its length prefix, to write as-is
+         *
+         * @return An entry containing the provided frame
+         */
+        static Entry ofFrame(byte[] frame)
+        {
+            return new Entry(new byte[][] {frame}, true, null, null);
+        }
+
+        /**
+         * @param template The template to write
+         *
+         * @return An entry containing the provided template
+         */
+        static Entry ofTemplate(PacketTemplate template)
+        {
+            return new Entry(null, false, template, null);
+        }
+
+        /**
+         * Writes the packets of this entry, framing them if necessary
+         *
+         * @param os The stream to which to write
+         * @param compressionThreshold The current compression threshold of the connection or -1
+         *        if compression is disabled
+         * @param compressor The Deflater to use to compress the packets. The caller must ensure
+         *        that it is not used concurrently.
+         *
+         * @throws IOException If an I/O error occurs
+         */
+        void writeTo(OutputStream os, int compressionThreshold, Deflater compressor)
+                throws IOException
+        {
+            if (template != null)
+            {
+                os.write(template.getFrame(compressionThreshold));
+
+                return;
+            }
+
+            for (byte[] packet : data)
+                os.write(framed ? packet
+                        : ConnectionHandler.encodeFrame(packet, compressionThreshold, compressor));
+        }
+
+        /**
+         * Signals that the frames have been written and flushed
+         */
+        void complete()
+        {
+            if (future != null) future.complete(null);
+        }
+
+        /**
+         * Signals that the frames could not be written
+         *
+         * @param cause The reason for which the frames could not be written
+         */
+        void fail(Throwable cause)
+        {
+            if (future != null) future.completeExceptionally(cause);
+        }
+
+    }
+
+}
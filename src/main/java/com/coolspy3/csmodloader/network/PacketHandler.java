@@ -1,24 +1,56 @@
 package com.coolspy3.csmodloader.network;
 
-import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
 
+import com.coolspy3.csmodloader.interfaces.ExceptionBiConsumer;
+import com.coolspy3.csmodloader.interfaces.ExceptionBiFunction;
 import com.coolspy3.csmodloader.interfaces.ExceptionConsumer;
 import com.coolspy3.csmodloader.interfaces.ExceptionFunction;
+import com.coolspy3.csmodloader.interfaces.ExceptionRunnable;
 import com.coolspy3.csmodloader.mod.Entrypoint;
 import com.coolspy3.csmodloader.mod.ModLoader;
+import com.coolspy3.csmodloader.network.chat.ChatMatch;
+import com.coolspy3.csmodloader.network.chat.ChatTriggers;
+import com.coolspy3.csmodloader.network.chat.ChatWriter;
+import com.coolspy3.csmodloader.network.command.CommandContext;
+import com.coolspy3.csmodloader.network.command.CommandRouter;
+import com.coolspy3.csmodloader.network.packet.DecodeCache;
 import com.coolspy3.csmodloader.network.packet.Packet;
+import com.coolspy3.csmodloader.network.packet.PacketFilter;
 import com.coolspy3.csmodloader.network.packet.PacketParser;
+import com.coolspy3.csmodloader.network.packet.PacketSpec;
+import com.coolspy3.csmodloader.network.packet.PacketPool;
+import com.coolspy3.csmodloader.network.packet.PacketView;
+import com.coolspy3.csmodloader.network.packet.PooledPacket;
+import com.coolspy3.csmodloader.network.stream.PacketPublisher;
+import com.coolspy3.csmodloader.util.HashedWheelTimer;
 import com.coolspy3.csmodloader.util.Utils;
 
+import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -33,6 +65,17 @@ public class PacketHandler
     private static final InheritableThreadLocal<PacketHandler> localHandler =
             new InheritableThreadLocal<>();
 
+    /**
+     * Marks a packet class for which at least one subscriber reads all fields
+     */
+    private static final BitSet ALL_FIELDS = new BitSet();
+
+    /**
+     * The maximum number of idle instances kept by each packet pool
+     */
+    private static final int POOL_CAPACITY = 16;
+
+
     /**
      * The collection of entrypoints returned from {@link ModLoader#loadMods()}.
      */
@@ -43,22 +86,119 @@ public class PacketHandler
      */
     private final ArrayList<Entrypoint> loadedMods;
 
+    /**
+     * The connection whose packets are processed by this PacketHandler or {@code null}
+     */
+    private final ConnectionContext connection;
+
     private final ArrayList<SubscriberFunction> subscribers = new ArrayList<>();
 
+    private final ArrayList<ViewSubscriber> viewSubscribers = new ArrayList<>();
+
+    private final ArrayList<RawSubscriber> rawSubscribers = new ArrayList<>();
+
+    private final ChatTriggers chatTriggers = new ChatTriggers();
+
+    private final CommandRouter commandRouter = new CommandRouter();
+
+    /**
+     * The reusable PacketViews for each direction. Packets are dispatched on a new thread each, so
+     * a view is checked out of its slot for the duration of a dispatch instead of being stored per
+     * thread. If a slot is empty because its view is in use, a new view is created.
+     */
+    private final AtomicReferenceArray<PacketView> views =
+            new AtomicReferenceArray<>(PacketDirection.values().length);
+
+    /**
+     * The pools used to recycle instances of each pooled packet class. Packets are dispatched on a
+     * new thread each, so the pools are shared by all threads of this handler rather than being
+     * stored per thread.
+     *
+     * @see PooledPacket
+     */
+    private final ConcurrentHashMap<Class<? extends Packet>, PacketPool<? extends PooledPacket>> pools =
+            new ConcurrentHashMap<>();
+
+    /**
+     * The caches used to memoize the decoded forms of each packet class for which caching is
+     * enabled. These are kept per handler so that cached packets are never shared between
+     * connections.
+     *
+     * @see PacketParser#enableDecodeCache(Class, int)
+     */
+    private final ConcurrentHashMap<Class<? extends Packet>, DecodeCache> decodeCaches =
+            new ConcurrentHashMap<>();
+
+    /**
+     * A cache of the union of the fields required by the subscribers to each packet class. This is
+     * cleared whenever a new subscriber is registered.
+     */
+    private final ConcurrentHashMap<Class<? extends Packet>, BitSet> projections =
+            new ConcurrentHashMap<>();
+
+    /**
+     * The publishers of each packet class returned by {@link #getPublisher(Class)}
+     */
+    private final ConcurrentHashMap<Class<? extends Packet>, PacketPublisher<?>> publishers =
+            new ConcurrentHashMap<>();
+
+    /**
+     * The scope of all tasks scheduled for this PacketHandler's connection on the shared timer.
+     * This is closed when the connection is closed.
+     */
+    private final HashedWheelTimer.Scope timerScope = HashedWheelTimer.SHARED.newScope();
+
+    /**
+     * The waits created by {@link #awaitPacket(Class, Predicate, long, TimeUnit)} indexed by the
+     * packet class which they await
+     */
+    private final ConcurrentHashMap<Class<? extends Packet>, CopyOnWriteArrayList<PendingWait<?>>> waits =
+            new ConcurrentHashMap<>();
+
+    /**
+     * The number of waits in {@link #waits}. This allows the lookup to be skipped when no waits
+     * are pending.
+     */
+    private final AtomicInteger numWaits = new AtomicInteger();
+
+    /**
+     * Whether any subscriber has been registered with a {@link PacketFilter} or a
+     * {@link PacketSampler}
+     */
+    private volatile boolean hasGates = false;
+
     /**
      * Whether {@link #shutdown()} has been called;
      */
     private boolean isShutdown = false;
 
+    /**
+     * Creates a new PacketHandler which is not attached to a connection
+     *
+     * @see #PacketHandler(ConnectionContext)
+     */
+    PacketHandler()
+    {
+        this(null);
+    }
+
     /**
      * Creates a new PacketHandler and initializes all mods by calling
      * {@link Entrypoint#init(PacketHandler)} on all instances returned by
      * {@link Entrypoint#create()}.
+     *
+     * @param connection The connection whose packets will be processed by this PacketHandler or
+     *        {@code null} if it is not attached to a connection
      */
-    PacketHandler()
+    PacketHandler(ConnectionContext connection)
     {
         logger.debug("Initializing PacketHandler...");
 
+        this.connection = connection;
+
+        // Mods may access the connection's handler during initialization
+        if (connection != null) connection.setPacketHandler(this);
+
         loadedMods = new ArrayList<>(mods);
         loadedMods.replaceAll(Entrypoint::create);
 
@@ -78,6 +218,30 @@ public class PacketHandler
         return subscribers.stream().filter(sub -> sub.invoke(p)).count() > 0;
     }
 
+    /**
+     * Dispatches the given packet to the subscribed listeners which admitted it
+     *
+     * @param p The packet to dispatch
+     * @param admitted The indices in {@link #subscribers} of the subscribers to invoke or
+     *        {@code null} to invoke all of them
+     *
+     * @return Whether any of the invoked subscribers requested that the packet be blocked
+     *
+     * @see #admit(PacketDirection, Class, ByteBuffer)
+     */
+    private boolean dispatch(Packet p, BitSet admitted)
+    {
+        if (admitted == null) return dispatch(p);
+
+        boolean blocked = false;
+
+        // Explicitly evaluate each subscriber to ensure that all of them are invoked
+        for (int i = admitted.nextSetBit(0); i >= 0; i = admitted.nextSetBit(i + 1))
+            blocked = subscribers.get(i).invoke(p) | blocked;
+
+        return blocked;
+    }
+
     /**
      * Attempts to parse a packet from the provided InputStream
      *
@@ -89,22 +253,264 @@ public class PacketHandler
      */
     public boolean handlePacket(PacketDirection direction, int packetId, InputStream packetData)
     {
-        Packet packet = Utils.reporting(() -> {
+        Class<? extends Packet> packetClass = PacketParser.getPacketClass(direction, packetId);
+
+        // Filters are evaluated on the encoded packet, so it must be buffered first
+        if (packetClass != null && hasGates && subscribers.stream()
+                .anyMatch(sub -> sub.filter != null && sub.accepts(packetClass)))
+        {
+            byte[] data = Utils.reporting(() -> IOUtils.toByteArray(packetData), null);
+
+            // View subscribers only receive packets from the ByteBuffer overload, so only filter
+            // and dispatch the buffered packet
+            return data != null && decodeAndDispatch(direction, packetClass, ByteBuffer.wrap(data));
+        }
+
+        if (packetClass == null) return false;
+
+        boolean subscribed = subscribers.stream().anyMatch(sub -> sub.accepts(packetClass));
+        boolean awaited = isAwaited(packetClass);
+
+        // If there are no subscribers which care about the Packet, there's no need to parse it
+        if (!subscribed && !awaited) return false;
+
+        BitSet admitted = subscribed && hasGates ? admit(direction, packetClass, null) : null;
+
+        // If every subscriber's sampler skipped the Packet, there's no need to parse it either
+        if (admitted != null && admitted.isEmpty() && !awaited) return false;
+
+        Packet packet = Utils.reporting(() -> PacketParser.read(packetClass, packetData,
+                awaited ? null : getProjection(packetClass)), null);
+
+        if (packet == null) return false;
+
+        boolean blocked = dispatch(packet, admitted);
+
+        if (awaited) completeWaits(packet);
+
+        return blocked;
+    }
+
+    /**
+     * Dispatches a packet to all subscribers registered with
+     * {@link #registerView(ExceptionConsumer, Class...)} without decoding it
+     *
+     * @param direction The direction in which the packet is being sent
+     * @param packetClass The class of the packet
+     * @param packetData The buffer containing the packet's fields. Its position will not be
+     *        modified.
+     */
+    private void dispatchView(PacketDirection direction, Class<? extends Packet> packetClass,
+            ByteBuffer packetData)
+    {
+        // Avoid the Iterator allocation of a for-each loop
+        int numSubscribers = viewSubscribers.size();
+        PacketView view = null;
+
+        for (int i = 0; i < numSubscribers; i++)
+        {
+            ViewSubscriber sub = viewSubscribers.get(i);
+
+            if (!sub.accepts(packetClass)) continue;
+
+            if (view == null)
+            {
+                view = acquireView(direction);
+
+                if (!view.bind(packetClass, packetData)) break;
+            }
+
+            sub.invoke(view);
+        }
+
+        if (view != null) releaseView(direction, view);
+    }
+
+    /**
+     * Checks out the reusable view for a direction, creating a new view if it is in use
+     *
+     * @param direction The direction in which the packet is being sent
+     *
+     * @return An unbound view
+     */
+    private PacketView acquireView(PacketDirection direction)
+    {
+        PacketView view = views.getAndSet(direction.ordinal(), null);
+
+        return view == null ? new PacketView() : view;
+    }
+
+    /**
+     * Unbinds a view acquired with {@link #acquireView(PacketDirection)} and returns it to its
+     * slot
+     *
+     * @param direction The direction in which the packet was being sent
+     * @param view The view to return
+     */
+    private void releaseView(PacketDirection direction, PacketView view)
+    {
+        view.release();
+        views.set(direction.ordinal(), view);
+    }
+
+    /**
+     * Attempts to parse a packet from the provided ByteBuffer. The packet will be decoded in place
+     * using {@link PacketParser#read(Class, ByteBuffer, BitSet)}. Only the fields required by at
+     * least one subscriber to the packet type are decoded. Before the packet is decoded, it is
+     * passed to all subscribers registered with {@link #registerView(ExceptionConsumer, Class...)}.
+     *
+     * @param direction The direction in which the packet is being sent
+     * @param packetId The id of the packet to read
+     * @param packetData The buffer from which to read the packet
+     *
+     * @return Whether any of the subscribers requested that the packet be blocked
+     */
+    public boolean handlePacket(PacketDirection direction, int packetId, ByteBuffer packetData)
+    {
+        Class<? extends Packet> packetClass = PacketParser.getPacketClass(direction, packetId);
+
+        if (packetClass == null) return false;
+
+        if (!viewSubscribers.isEmpty())
+            Utils.reporting(() -> dispatchView(direction, packetClass, packetData));
+
+        return decodeAndDispatch(direction, packetClass, packetData);
+    }
 
-            Class<? extends Packet> packetClass = PacketParser.getPacketClass(direction, packetId);
+    /**
+     * Evaluates the filters and samplers of the subscribers to a packet, decodes it if any of them
+     * admitted it or it is awaited and dispatches it
+     *
+     * @param direction The direction in which the packet is being sent
+     * @param packetClass The class of the packet
+     * @param packetData The buffer from which to read the packet
+     *
+     * @return Whether any of the subscribers requested that the packet be blocked
+     *
+     * @see #handlePacket(PacketDirection, int, ByteBuffer)
+     */
+    private boolean decodeAndDispatch(PacketDirection direction,
+            Class<? extends Packet> packetClass, ByteBuffer packetData)
+    {
+        boolean subscribed = subscribers.stream().anyMatch(sub -> sub.accepts(packetClass));
+        boolean awaited = isAwaited(packetClass);
 
-            if (packetClass == null) return null;
+        // If there are no subscribers which care about the Packet, there's no need to parse it
+        if (!subscribed && !awaited) return false;
 
-            // If there are no subscribers which care about the Packet, there's no need to parse it
-            if (subscribers.stream().noneMatch(sub -> sub.accepts(packetClass))) return null;
+        BitSet admitted =
+                subscribed && hasGates ? admit(direction, packetClass, packetData) : null;
 
-            return PacketParser.read(packetClass, packetData);
+        // If every subscriber's filter or sampler rejected the Packet, there's no need to parse it
+        // either
+        if (admitted != null && admitted.isEmpty() && !awaited) return false;
+
+        Packet packet = Utils.reporting(() -> {
+
+            BitSet projection = awaited ? null : getProjection(packetClass);
+
+            if (PacketParser.isPooled(packetClass))
+            {
+                PooledPacket pooled = getPool(packetClass).acquire();
+
+                try
+                {
+                    return PacketParser.readInto(pooled, packetData, projection);
+                }
+                catch (Exception e)
+                {
+                    // The packet will never be dispatched, so return it to the pool now
+                    release(packetClass, pooled);
+
+                    throw e;
+                }
+            }
+
+            return PacketParser.read(packetClass, packetData, projection,
+                    getOrCreateDecodeCache(packetClass));
 
         }, null);
 
         if (packet == null) return false;
 
-        return dispatch(packet);
+        if (!(packet instanceof PooledPacket))
+        {
+            boolean blocked = dispatch(packet, admitted);
+
+            if (awaited) completeWaits(packet);
+
+            return blocked;
+        }
+
+        try
+        {
+            return dispatch(packet, admitted);
+        }
+        finally
+        {
+            release(packetClass, (PooledPacket) packet);
+        }
+    }
+
+    /**
+     * Evaluates the filters and samplers of all subscribers which accept the provided packet class
+     * against the encoded packet. Packets which cannot be viewed (because they do not use default
+     * serialization) and packets for which a filter fails pass the filter. Each sampler is only
+     * offered packets which pass its subscriber's filter.
+     *
+     * @param direction The direction in which the packet is being sent
+     * @param packetClass The class of the packet
+     * @param packetData The buffer containing the packet's fields or {@code null} if no subscriber
+     *        which accepts the packet class has a filter. Its position will not be modified.
+     *
+     * @return The indices in {@link #subscribers} of the subscribers to which the packet should be
+     *         dispatched or {@code null} if it should be dispatched to all of them
+     */
+    private BitSet admit(PacketDirection direction, Class<? extends Packet> packetClass,
+            ByteBuffer packetData)
+    {
+        // Avoid the Iterator allocation of a for-each loop
+        int numSubscribers = subscribers.size();
+        BitSet admitted = new BitSet(numSubscribers);
+        boolean rejected = false;
+        PacketView view = null;
+        boolean bound = false;
+
+        for (int i = 0; i < numSubscribers; i++)
+        {
+            SubscriberFunction sub = subscribers.get(i);
+
+            if (!sub.accepts(packetClass)) continue;
+
+            if (sub.filter != null)
+            {
+                if (view == null)
+                {
+                    view = acquireView(direction);
+                    bound = view.bind(packetClass, packetData);
+                }
+
+                if (bound && !sub.admits(packetClass, view))
+                {
+                    rejected = true;
+
+                    continue;
+                }
+            }
+
+            if (sub.sampler != null && !sub.sampler.sample())
+            {
+                rejected = true;
+
+                continue;
+            }
+
+            admitted.set(i);
+        }
+
+        if (view != null) releaseView(direction, view);
+
+        return rejected ? admitted : null;
     }
 
     /**
@@ -119,9 +525,81 @@ public class PacketHandler
      */
     public boolean handleRawPacket(PacketDirection direction, byte[] packetData) throws IOException
     {
-        ByteArrayInputStream bais = new ByteArrayInputStream(packetData);
+        return handleRawPacket(direction, ByteBuffer.wrap(packetData));
+    }
+
+    /**
+     * Attempts to parse a packet from the remaining bytes of the provided buffer. Both heap and
+     * direct buffers are supported.
+     *
+     * @param direction The direction in which the packet is being sent
+     * @param packetData A buffer containing the encoded packet
+     *
+     * @return Whether any of the subscribers requested that the packet be blocked
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public boolean handleRawPacket(PacketDirection direction, ByteBuffer packetData)
+            throws IOException
+    {
+        int packetId = Utils.readVarInt(packetData);
+
+        boolean blockedByRaw = !rawSubscribers.isEmpty() && dispatchRaw(direction, packetId,
+                packetData.slice().asReadOnlyBuffer());
+
+        // Chat triggers are matched once per message, before any subscriber decodes the packet
+        boolean blockedByTrigger = direction == PacketDirection.CLIENTBOUND
+                && packetId == ChatWriter.CHAT_PACKET_ID && !chatTriggers.isEmpty()
+                && Utils.reporting(() -> chatTriggers.dispatch(packetData), false);
+
+        // Commands are routed to exactly one handler and are always blocked once routed
+        boolean routedCommand = direction == PacketDirection.SERVERBOUND
+                && packetId == CommandRouter.CHAT_PACKET_ID && !commandRouter.isEmpty()
+                && Utils.reporting(() -> commandRouter.dispatch(packetData), false);
+
+        return handlePacket(direction, packetId, packetData) | blockedByRaw | blockedByTrigger
+                | routedCommand;
+    }
+
+    /**
+     * Dispatches an encoded packet to all subscribers registered with
+     * {@link #registerRaw(RawPacketSubscriber, PacketDirection, int...)}
+     *
+     * @param direction The direction in which the packet is being sent
+     * @param packetId The id of the packet
+     * @param payload A read-only buffer containing the packet data following its id. It is rewound
+     *        before being passed to each subscriber.
+     *
+     * @return Whether any of the subscribers requested that the packet be blocked
+     */
+    private boolean dispatchRaw(PacketDirection direction, int packetId, ByteBuffer payload)
+    {
+        // Avoid the Iterator allocation of a for-each loop
+        int numSubscribers = rawSubscribers.size();
+        boolean blocked = false;
+
+        for (int i = 0; i < numSubscribers; i++)
+        {
+            RawSubscriber sub = rawSubscribers.get(i);
 
-        return handlePacket(direction, Utils.readVarInt(bais), bais);
+            if (!sub.accepts(direction, packetId)) continue;
+
+            payload.clear();
+
+            // Explicitly evaluate each subscriber to ensure that all of them are invoked
+            blocked = sub.invoke(direction, packetId, payload) | blocked;
+        }
+
+        return blocked;
+    }
+
+    /**
+     * @return The connection whose packets are processed by this PacketHandler or {@code null} if
+     *         it is not attached to a connection
+     */
+    public ConnectionContext getConnection()
+    {
+        return connection;
     }
 
     /**
@@ -188,87 +666,802 @@ public class PacketHandler
                 logger.trace("Valid types: {}", Arrays.toString(validTypes));
             }
 
+            SubscriptionOptions options = new SubscriptionOptions()
+                    .fields(method.getAnnotation(SubscribeToPacketStream.class).fields());
+
             Class<?> returnType = method.getReturnType();
+            boolean takesConnection = method.getParameterCount() == 2;
 
             if (returnType == Boolean.class || returnType == Boolean.TYPE)
             {
                 logger.trace("Adding as boolean function");
 
-                subscribers.add(new SubscriberFunction(method,
-                        packet -> (Boolean) method.invoke(o, packet), validTypes));
-            }
+                addSubscriber(new SubscriberFunction(method,
+                        packet -> (Boolean) (takesConnection ? method.invoke(o, packet, connection)
+                                : method.invoke(o, packet)),
+                        validTypes, options));
+            }
+
+            else
+            {
+                logger.trace("Adding as consumer");
+
+                addSubscriber(new SubscriberFunction(method, packet -> {
+
+                    if (takesConnection) method.invoke(o, packet, connection);
+                    else method.invoke(o, packet);
+
+                }, validTypes, options));
+            }
+        }
+    }
+
+    /**
+     * Registers the provided function to be called whenever a packet is dispatched. If this
+     * function has already been registered, this method has no effect.
+     *
+     * @param <T> The packet type accepted by this function
+     * @param func The function to register
+     * @param validTypes The packet types which should be fed to this function. At least one type
+     *        must be specified or the function will not be invoked.
+     *
+     * @throws NullPointerException If {@code func} is {@code null}
+     */
+    @SafeVarargs
+    public final <T extends Packet> void register(ExceptionConsumer<T> func,
+            Class<? extends T>... validTypes) throws NullPointerException
+    {
+        register(func, new SubscriptionOptions(), validTypes);
+    }
+
+    /**
+     * Registers the provided function to be called whenever a packet is dispatched. If this
+     * function has already been registered, this method has no effect.
+     *
+     * @param <T> The packet type accepted by this function
+     * @param func The function to register
+     * @param options The options controlling how packets are delivered to this function
+     * @param validTypes The packet types which should be fed to this function. At least one type
+     *        must be specified or the function will not be invoked.
+     *
+     * @throws NullPointerException If {@code func} or {@code options} is {@code null}
+     */
+    @SafeVarargs
+    @SuppressWarnings("unchecked")
+    public final <T extends Packet> void register(ExceptionConsumer<T> func,
+            SubscriptionOptions options, Class<? extends T>... validTypes)
+            throws NullPointerException
+    {
+        logger.trace("Registering consumer...");
+        if (subscribers.stream().noneMatch(sub -> sub.matches(func)))
+            addSubscriber(new SubscriberFunction(func, packet -> {
+
+                func.accept((T) packet);
+
+            }, validTypes, options));
+
+        else
+            logger.trace("Consumer has already been registered! Aborting...");
+
+    }
+
+    /**
+     * Registers the provided function to be called whenever a packet is dispatched. If this
+     * function has already been registered, this method has no effect.
+     *
+     * A return value of {@code true} from {@code func} will be interpreted as a request to block
+     * the processed packet.
+     *
+     * @param <T> The packet type accepted by this function
+     * @param func The function to register
+     * @param validTypes The packet types which should be fed to this function. At least one type
+     *        must be specified or the function will not be invoked.
+     *
+     * @throws NullPointerException If {@code func} is {@code null}
+     */
+    @SafeVarargs
+    public final <T extends Packet> void register(ExceptionFunction<T, Boolean> func,
+            Class<? extends T>... validTypes) throws NullPointerException
+    {
+        register(func, new SubscriptionOptions(), validTypes);
+    }
+
+    /**
+     * Registers the provided function to be called whenever a packet is dispatched. If this
+     * function has already been registered, this method has no effect.
+     *
+     * A return value of {@code true} from {@code func} will be interpreted as a request to block
+     * the processed packet.
+     *
+     * @param <T> The packet type accepted by this function
+     * @param func The function to register
+     * @param options The options controlling how packets are delivered to this function
+     * @param validTypes The packet types which should be fed to this function. At least one type
+     *        must be specified or the function will not be invoked.
+     *
+     * @throws NullPointerException If {@code func} or {@code options} is {@code null}
+     */
+    @SafeVarargs
+    @SuppressWarnings("unchecked")
+    public final <T extends Packet> void register(ExceptionFunction<T, Boolean> func,
+            SubscriptionOptions options, Class<? extends T>... validTypes)
+            throws NullPointerException
+    {
+        logger.trace("Registering function...");
+        if (subscribers.stream().noneMatch(sub -> sub.matches(func)))
+            addSubscriber(new SubscriberFunction(func, packet -> {
+
+                return func.apply((T) packet);
+
+            }, validTypes, options));
+
+        else
+            logger.trace("Function has already been registered! Aborting...");
+    }
+
+    /**
+     * Registers the provided function to be called with a {@link PacketView} of each matching
+     * packet. Views are read directly from the frame buffer without decoding the packet, so
+     * observing a packet this way does not allocate a packet object or box its values. The view is
+     * only valid until the function returns and must not be retained.
+     *
+     * View subscribers cannot block packets. They are invoked before any other subscribers and only
+     * receive packets which use default serialization. If this function has already been
+     * registered, this method has no effect.
+     *
+     * @param func The function to register
+     * @param validTypes The packet types which should be fed to this function. At least one type
+     *        must be specified or the function will not be invoked.
+     *
+     * @throws NullPointerException If {@code func} is {@code null}
+     */
+    @SafeVarargs
+    public final void registerView(ExceptionConsumer<PacketView> func,
+            Class<? extends Packet>... validTypes) throws NullPointerException
+    {
+        logger.trace("Registering view consumer...");
+        if (viewSubscribers.stream().noneMatch(sub -> sub.id.equals(func)))
+            viewSubscribers.add(new ViewSubscriber(func, validTypes));
+
+        else
+            logger.trace("View consumer has already been registered! Aborting...");
+    }
+
+    /**
+     * Registers the provided function to be called with each dispatched packet and the connection
+     * which received it. The connection can be captured to reach it from other threads. If this
+     * function has already been registered, this method has no effect.
+     *
+     * @param <T> The packet type accepted by this function
+     * @param func The function to register
+     * @param validTypes The packet types which should be fed to this function. At least one type
+     *        must be specified or the function will not be invoked.
+     *
+     * @throws NullPointerException If {@code func} is {@code null}
+     *
+     * @see #getConnection()
+     */
+    @SafeVarargs
+    public final <T extends Packet> void register(ExceptionBiConsumer<T, ConnectionContext> func,
+            Class<? extends T>... validTypes) throws NullPointerException
+    {
+        register(func, new SubscriptionOptions(), validTypes);
+    }
+
+    /**
+     * Registers the provided function to be called with each dispatched packet and the connection
+     * which received it. The connection can be captured to reach it from other threads. If this
+     * function has already been registered, this method has no effect.
+     *
+     * @param <T> The packet type accepted by this function
+     * @param func The function to register
+     * @param options The options controlling how packets are delivered to this function
+     * @param validTypes The packet types which should be fed to this function. At least one type
+     *        must be specified or the function will not be invoked.
+     *
+     * @throws NullPointerException If {@code func} or {@code options} is {@code null}
+     *
+     * @see #getConnection()
+     */
+    @SafeVarargs
+    @SuppressWarnings("unchecked")
+    public final <T extends Packet> void register(ExceptionBiConsumer<T, ConnectionContext> func,
+            SubscriptionOptions options, Class<? extends T>... validTypes)
+            throws NullPointerException
+    {
+        logger.trace("Registering consumer...");
+        if (subscribers.stream().noneMatch(sub -> sub.matches(func)))
+            addSubscriber(new SubscriberFunction(func, packet -> {
+
+                func.accept((T) packet, connection);
+
+            }, validTypes, options));
+
+        else
+            logger.trace("Consumer has already been registered! Aborting...");
+    }
+
+    /**
+     * Registers the provided function to be called with each dispatched packet and the connection
+     * which received it. The connection can be captured to reach it from other threads. If this
+     * function has already been registered, this method has no effect.
+     *
+     * A return value of {@code true} from {@code func} will be interpreted as a request to block
+     * the processed packet.
+     *
+     * @param <T> The packet type accepted by this function
+     * @param func The function to register
+     * @param validTypes The packet types which should be fed to this function. At least one type
+     *        must be specified or the function will not be invoked.
+     *
+     * @throws NullPointerException If {@code func} is {@code null}
+     *
+     * @see #getConnection()
+     */
+    @SafeVarargs
+    public final <T extends Packet> void register(
+            ExceptionBiFunction<T, ConnectionContext, Boolean> func,
+            Class<? extends T>... validTypes) throws NullPointerException
+    {
+        register(func, new SubscriptionOptions(), validTypes);
+    }
+
+    /**
+     * Registers the provided function to be called with each dispatched packet and the connection
+     * which received it. The connection can be captured to reach it from other threads. If this
+     * function has already been registered, this method has no effect.
+     *
+     * A return value of {@code true} from {@code func} will be interpreted as a request to block
+     * the processed packet.
+     *
+     * @param <T> The packet type accepted by this function
+     * @param func The function to register
+     * @param options The options controlling how packets are delivered to this function
+     * @param validTypes The packet types which should be fed to this function. At least one type
+     *        must be specified or the function will not be invoked.
+     *
+     * @throws NullPointerException If {@code func} or {@code options} is {@code null}
+     *
+     * @see #getConnection()
+     */
+    @SafeVarargs
+    @SuppressWarnings("unchecked")
+    public final <T extends Packet> void register(
+            ExceptionBiFunction<T, ConnectionContext, Boolean> func, SubscriptionOptions options,
+            Class<? extends T>... validTypes) throws NullPointerException
+    {
+        logger.trace("Registering function...");
+        if (subscribers.stream().noneMatch(sub -> sub.matches(func)))
+            addSubscriber(new SubscriberFunction(func, packet -> {
+
+                return func.apply((T) packet, connection);
+
+            }, validTypes, options));
+
+        else
+            logger.trace("Function has already been registered! Aborting...");
+    }
+
+    /**
+     * Registers the provided function to be called with the encoded form of every packet. This is
+     * equivalent to calling {@link #registerRaw(RawPacketSubscriber, PacketDirection, int...)} with
+     * a {@code null} direction and no packet ids.
+     *
+     * @param func The function to register
+     *
+     * @throws NullPointerException If {@code func} is {@code null}
+     */
+    public void registerRaw(RawPacketSubscriber func) throws NullPointerException
+    {
+        registerRaw(func, null);
+    }
+
+    /**
+     * Registers the provided function to be called with the encoded form of each matching packet.
+     * Raw subscribers bypass {@link PacketParser} entirely, so they receive packets whose ids do not
+     * have a registered packet class and never cause a packet to be decoded. They are invoked
+     * before any other subscribers. If this function has already been registered, this method has
+     * no effect.
+     *
+     * A return value of {@code true} from {@code func} will be interpreted as a request to block
+     * the packet.
+     *
+     * @param func The function to register
+     * @param direction The direction of the packets which should be fed to this function or
+     *        {@code null} to feed it packets sent in both directions
+     * @param packetIds The ids of the packets which should be fed to this function. If no ids are
+     *        specified, it will be fed all packets.
+     *
+     * @throws IllegalArgumentException If any packet id is negative
+     * @throws NullPointerException If {@code func} is {@code null}
+     */
+    public void registerRaw(RawPacketSubscriber func, PacketDirection direction,
+            int... packetIds) throws IllegalArgumentException, NullPointerException
+    {
+        logger.trace("Registering raw subscriber...");
+        if (rawSubscribers.stream().noneMatch(sub -> sub.id.equals(func)))
+            rawSubscribers.add(new RawSubscriber(func, direction, packetIds));
+
+        else
+            logger.trace("Raw subscriber has already been registered! Aborting...");
+    }
+
+    /**
+     * Schedules a task to be run once on the shared timer. The task is cancelled automatically if
+     * the connection is closed before it runs. Tasks run on the timer's thread, so they should be
+     * short and should not rely on {@link #getLocal()} or {@link ConnectionHandler#getLocal()}.
+     *
+     * @param task The task to run
+     * @param delay The delay after which to run the task
+     * @param unit The unit of {@code delay}
+     *
+     * @return A handle which can be used to cancel the task
+     *
+     * @throws NullPointerException If {@code task} or {@code unit} is {@code null}
+     *
+     * @see HashedWheelTimer#SHARED
+     */
+    public HashedWheelTimer.Timeout schedule(ExceptionRunnable task, long delay, TimeUnit unit)
+            throws NullPointerException
+    {
+        Objects.requireNonNull(task);
+
+        return timerScope.schedule(() -> Utils.reporting(task), delay, unit);
+    }
+
+    /**
+     * Schedules a task to be run periodically on the shared timer until it is cancelled or the
+     * connection is closed. Tasks run on the timer's thread, so they should be short and should not
+     * rely on {@link #getLocal()} or {@link ConnectionHandler#getLocal()}.
+     *
+     * @param task The task to run
+     * @param initialDelay The delay after which to run the task for the first time
+     * @param period The interval between successive runs
+     * @param unit The unit of {@code initialDelay} and {@code period}
+     *
+     * @return A handle which can be used to cancel the task
+     *
+     * @throws IllegalArgumentException If the period is not positive
+     * @throws NullPointerException If {@code task} or {@code unit} is {@code null}
+     *
+     * @see HashedWheelTimer#SHARED
+     */
+    public HashedWheelTimer.Timeout scheduleAtFixedRate(ExceptionRunnable task, long initialDelay,
+            long period, TimeUnit unit) throws IllegalArgumentException, NullPointerException
+    {
+        Objects.requireNonNull(task);
+
+        return timerScope.scheduleAtFixedRate(() -> Utils.reporting(task), initialDelay, period,
+                unit);
+    }
+
+    /**
+     * Schedules a packet to be sent after a delay. The packet is discarded if the connection is
+     * closed before it is sent.
+     *
+     * @param packet The packet to send
+     * @param delay The delay after which to send the packet
+     * @param unit The unit of {@code delay}
+     *
+     * @return A handle which can be used to cancel the send
+     *
+     * @throws IllegalStateException If this PacketHandler is not attached to a connection
+     * @throws NullPointerException If {@code packet} or {@code unit} is {@code null}
+     *
+     * @see #sendPacket(Packet)
+     */
+    public HashedWheelTimer.Timeout sendPacketLater(Packet packet, long delay, TimeUnit unit)
+            throws IllegalStateException, NullPointerException
+    {
+        Objects.requireNonNull(packet);
+
+        // The timer's thread has no local connection handler
+        if (connection == null) throw new IllegalStateException(
+                "PacketHandler is not attached to a connection");
+
+        return timerScope.schedule(() -> connection.sendPacket(packet), delay, unit);
+    }
+
+    /**
+     * Waits for the next packet of the specified class which matches a predicate. This can be used
+     * to correlate a request sent by a mod with the server's response without registering a
+     * temporary subscriber or blocking a thread. The packet is decoded in full, regardless of the
+     * fields requested by other subscribers, and the wait is completed whether or not the packet
+     * is blocked.
+     *
+     * The returned future is completed on the thread which dispatches the packet, after all
+     * subscribers have been invoked, so any expensive dependent actions should use the
+     * {@code *Async} methods of {@link CompletableFuture}. Cancelling the future cancels the wait.
+     * All pending waits are cancelled when the connection is closed.
+     *
+     * Pooled packets are only valid during dispatch, so they cannot be awaited.
+     *
+     * @param <T> The type of packet to wait for
+     * @param packetClass The packet class. Packets of any subclass also match.
+     * @param predicate The predicate which the packet must match
+     * @param timeout The maximum time to wait. If no matching packet is received before it
+     *        elapses, the future is completed exceptionally with a {@link TimeoutException}.
+     * @param unit The unit of {@code timeout}
+     *
+     * @return A future which is completed with the first matching packet
+     *
+     * @throws IllegalArgumentException If the packet class is a subclass of {@link PooledPacket}
+     * @throws NullPointerException If any of the arguments are {@code null}
+     */
+    public <T extends Packet> CompletableFuture<T> awaitPacket(Class<T> packetClass,
+            Predicate<? super T> predicate, long timeout, TimeUnit unit)
+            throws IllegalArgumentException, NullPointerException
+    {
+        if (PooledPacket.class.isAssignableFrom(packetClass)) throw new IllegalArgumentException(
+                "Pooled packets cannot be awaited: " + packetClass.getName());
+
+        PendingWait<T> wait = new PendingWait<>(packetClass, Objects.requireNonNull(predicate));
+        CopyOnWriteArrayList<PendingWait<?>> classWaits =
+                waits.computeIfAbsent(packetClass, c -> new CopyOnWriteArrayList<>());
+
+        classWaits.add(wait);
+        numWaits.incrementAndGet();
+
+        HashedWheelTimer.Timeout expiry = timerScope.schedule(
+                () -> wait.future.completeExceptionally(new TimeoutException(
+                        "Timed out waiting for packet: " + packetClass.getName())),
+                timeout, Objects.requireNonNull(unit));
+
+        wait.future.whenComplete((packet, t) -> {
+
+            expiry.cancel();
+
+            if (classWaits.remove(wait)) numWaits.decrementAndGet();
+
+        });
+
+        if (isShutdown) wait.future.cancel(false);
+
+        return wait.future;
+    }
+
+    /**
+     * Checks whether any pending wait will accept packets of the provided class
+     *
+     * @param packetClass The packet class
+     *
+     * @return Whether any pending wait accepts the packet class
+     */
+    private boolean isAwaited(Class<? extends Packet> packetClass)
+    {
+        if (numWaits.get() == 0 || PacketParser.isPooled(packetClass)) return false;
+
+        for (Class<?> c = packetClass; c != null && c != Object.class; c = c.getSuperclass())
+        {
+            CopyOnWriteArrayList<PendingWait<?>> classWaits = waits.get(c);
+
+            if (classWaits != null && !classWaits.isEmpty()) return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Completes all pending waits which match the provided packet
+     *
+     * @param packet The packet
+     */
+    private void completeWaits(Packet packet)
+    {
+        for (Class<?> c = packet.getClass(); c != null && c != Object.class; c = c.getSuperclass())
+        {
+            CopyOnWriteArrayList<PendingWait<?>> classWaits = waits.get(c);
+
+            if (classWaits == null) continue;
+
+            for (PendingWait<?> wait : classWaits)
+                wait.offer(packet);
+        }
+    }
+
+    /**
+     * Retrieves the publisher of the specified packet class, creating it if it does not exist.
+     * Publishers deliver packets to observe-only subscribers on executors owned by the subscribing
+     * mods, so expensive processing (ex. disk or network I/O) can be performed without delaying
+     * the connection. Publishing a packet only adds it to the queue of each subscription. Packets
+     * are only decoded for a publisher while it has subscriptions. Publishers are closed when the
+     * connection is closed.
+     *
+     * Pooled packets are only valid during dispatch, so they are never published.
+     *
+     * @param <T> The type of packet to publish
+     * @param packetClass The packet class. Packets of any subclass are also published.
+     *
+     * @return The publisher
+     *
+     * @throws IllegalArgumentException If the packet class is a subclass of {@link PooledPacket}
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Packet> PacketPublisher<T> getPublisher(Class<T> packetClass)
+            throws IllegalArgumentException
+    {
+        if (PooledPacket.class.isAssignableFrom(packetClass)) throw new IllegalArgumentException(
+                "Pooled packets cannot be published: " + packetClass.getName());
+
+        return (PacketPublisher<T>) publishers.computeIfAbsent(packetClass, c -> {
+
+            AtomicReference<SubscriberFunction> forwarder = new AtomicReference<>();
+
+            // Only subscribe to the packet stream while the publisher has subscribers, so that
+            // unobserved packets are neither decoded nor read in full
+            PacketPublisher<T> publisher = new PacketPublisher<>(active -> {
+
+                if (active) addSubscriber(forwarder.get());
+                else
+                    removeSubscriber(forwarder.get());
+
+            });
+
+            forwarder.set(new SubscriberFunction(publisher, packet -> {
+
+                if (!(packet instanceof PooledPacket)) publisher.publish((T) packet);
+
+            }, (Class<? extends Packet>[]) new Class<?>[] {packetClass},
+                    new SubscriptionOptions()));
+
+            return publisher;
+
+        });
+    }
+
+    /**
+     * Registers the provided function to be called with every clientbound chat message whose plain
+     * text contains the provided literal. All literal triggers are matched in a single pass over
+     * each message. If this function has already been registered for the same literal, this method
+     * has no effect.
+     *
+     * @param literal The text which must be contained in a message
+     * @param func The function to register
+     *
+     * @throws IllegalArgumentException If the literal is empty
+     * @throws NullPointerException If either argument is {@code null}
+     *
+     * @see ChatTriggers
+     */
+    public void registerChatTrigger(String literal, ExceptionConsumer<ChatMatch> func)
+            throws IllegalArgumentException, NullPointerException
+    {
+        logger.trace("Registering chat trigger: {}", literal);
+        chatTriggers.register(literal, func);
+    }
+
+    /**
+     * Registers the provided function to be called with every clientbound chat message whose plain
+     * text contains the provided literal. All literal triggers are matched in a single pass over
+     * each message. If this function has already been registered for the same literal, this method
+     * has no effect.
+     *
+     * A return value of {@code true} from {@code func} will be interpreted as a request to block
+     * the message.
+     *
+     * @param literal The text which must be contained in a message
+     * @param func The function to register
+     *
+     * @throws IllegalArgumentException If the literal is empty
+     * @throws NullPointerException If either argument is {@code null}
+     *
+     * @see ChatTriggers
+     */
+    public void registerChatTrigger(String literal, ExceptionFunction<ChatMatch, Boolean> func)
+            throws IllegalArgumentException, NullPointerException
+    {
+        logger.trace("Registering chat trigger: {}", literal);
+        chatTriggers.register(literal, func);
+    }
+
+    /**
+     * Registers the provided function to be called with every clientbound chat message whose plain
+     * text contains a match of the provided expression. If this function has already been
+     * registered for the same expression, this method has no effect.
+     *
+     * @param pattern The expression which must be found in a message
+     * @param func The function to register
+     *
+     * @throws NullPointerException If either argument is {@code null}
+     *
+     * @see ChatTriggers
+     */
+    public void registerChatTrigger(Pattern pattern, ExceptionConsumer<ChatMatch> func)
+            throws NullPointerException
+    {
+        logger.trace("Registering chat trigger: {}", pattern);
+        chatTriggers.register(pattern, func);
+    }
+
+    /**
+     * Registers the provided function to be called with every clientbound chat message whose plain
+     * text contains a match of the provided expression. If this function has already been
+     * registered for the same expression, this method has no effect.
+     *
+     * A return value of {@code true} from {@code func} will be interpreted as a request to block
+     * the message.
+     *
+     * @param pattern The expression which must be found in a message
+     * @param func The function to register
+     *
+     * @throws NullPointerException If either argument is {@code null}
+     *
+     * @see ChatTriggers
+     */
+    public void registerChatTrigger(Pattern pattern, ExceptionFunction<ChatMatch, Boolean> func)
+            throws NullPointerException
+    {
+        logger.trace("Registering chat trigger: {}", pattern);
+        chatTriggers.register(pattern, func);
+    }
+
+    /**
+     * Registers the provided function to handle commands typed by the player which match the
+     * provided usage. Matching commands are routed to exactly one handler and are blocked from
+     * reaching the server. See {@link CommandRouter} for the syntax of usages.
+     *
+     * @param usage The usage of the command
+     * @param handler The function to register
+     *
+     * @throws IllegalArgumentException If the usage is invalid or has already been registered
+     * @throws NullPointerException If either argument is {@code null}
+     *
+     * @see CommandRouter#register(String, ExceptionConsumer)
+     */
+    public void registerCommand(String usage, ExceptionConsumer<CommandContext> handler)
+            throws IllegalArgumentException, NullPointerException
+    {
+        logger.trace("Registering command: {}", usage);
+        commandRouter.register(usage, handler);
+    }
+
+    /**
+     * @return The router used by this handler to dispatch commands
+     */
+    public CommandRouter getCommandRouter()
+    {
+        return commandRouter;
+    }
+
+    /**
+     * @return The registry of chat triggers used by this handler
+     */
+    public ChatTriggers getChatTriggers()
+    {
+        return chatTriggers;
+    }
+
+    /**
+     * Retrieves the pool used to recycle instances of the specified packet class, creating it if
+     * it does not exist
+     *
+     * @param packetClass The pooled packet class
+     *
+     * @return The pool
+     */
+    private PacketPool<? extends PooledPacket> getPool(Class<? extends Packet> packetClass)
+    {
+        return pools.computeIfAbsent(packetClass,
+                c -> PacketParser.createPool(c, POOL_CAPACITY));
+    }
+
+    /**
+     * Returns a dispatched packet to its pool
+     *
+     * @param packetClass The class with which the packet was read
+     * @param packet The packet to release
+     */
+    @SuppressWarnings("unchecked")
+    private void release(Class<? extends Packet> packetClass, PooledPacket packet)
+    {
+        ((PacketPool<PooledPacket>) getPool(packetClass)).release(packet);
+    }
+
+    /**
+     * Retrieves the cache used to memoize the decoded forms of the specified packet class, creating
+     * it if it does not exist or its capacity has changed
+     *
+     * @param packetClass The packet class
+     *
+     * @return The cache or {@code null} if caching is not enabled for the packet class
+     *
+     * @see PacketParser#getDecodeCacheCapacity(Class)
+     */
+    private DecodeCache getOrCreateDecodeCache(Class<? extends Packet> packetClass)
+    {
+        int capacity = PacketParser.getDecodeCacheCapacity(packetClass);
+
+        if (capacity == 0) return null;
 
-            else
-            {
-                logger.trace("Adding as consumer");
+        DecodeCache cache = decodeCaches.get(packetClass);
 
-                subscribers.add(new SubscriberFunction(method, packet -> {
+        if (cache != null && cache.getCapacity() == capacity) return cache;
 
-                    method.invoke(o, packet);
+        cache = new DecodeCache(capacity);
+        decodeCaches.put(packetClass, cache);
 
-                }, validTypes));
-            }
-        }
+        return cache;
     }
 
     /**
-     * Registers the provided function to be called whenever a packet is dispatched. If this
-     * function has already been registered, this method has no effect.
+     * @param packetClass The packet class
      *
-     * @param <T> The packet type accepted by this function
-     * @param func The function to register
-     * @param validTypes The packet types which should be fed to this function. At least one type
-     *        must be specified or the function will not be invoked.
+     * @return The cache used by this handler to memoize the decoded forms of the provided packet
+     *         class or {@code null} if caching is not enabled for it or no instances have been read
+     *         yet. Its statistics can be used to query hit rates.
      *
-     * @throws NullPointerException If {@code func} is {@code null}
+     * @see PacketParser#enableDecodeCache(Class, int)
      */
-    @SafeVarargs
-    @SuppressWarnings("unchecked")
-    public final <T extends Packet> void register(ExceptionConsumer<T> func,
-            Class<? extends T>... validTypes) throws NullPointerException
+    public DecodeCache getDecodeCache(Class<? extends Packet> packetClass)
     {
-        logger.trace("Registering consumer...");
-        if (subscribers.stream().noneMatch(sub -> sub.matches(func)))
-            subscribers.add(new SubscriberFunction(func, packet -> {
-
-                func.accept((T) packet);
+        return PacketParser.getDecodeCacheCapacity(packetClass) == 0 ? null
+                : decodeCaches.get(packetClass);
+    }
 
-            }, validTypes));
+    /**
+     * @param packetClass A pooled packet class
+     *
+     * @return The pool used by this handler to recycle instances of the provided packet class or
+     *         {@code null} if no instances have been read yet
+     */
+    public PacketPool<? extends PooledPacket> getPacketPool(
+            Class<? extends PooledPacket> packetClass)
+    {
+        return pools.get(packetClass);
+    }
 
-        else
-            logger.trace("Consumer has already been registered! Aborting...");
+    /**
+     * Adds a subscriber and invalidates the cached field projections
+     *
+     * @param sub The subscriber to add
+     */
+    private void addSubscriber(SubscriberFunction sub)
+    {
+        subscribers.add(sub);
+        projections.clear();
 
+        if (sub.filter != null || sub.sampler != null) hasGates = true;
     }
 
     /**
-     * Registers the provided function to be called whenever a packet is dispatched. If this
-     * function has already been registered, this method has no effect.
+     * Removes a subscriber and invalidates the cached field projections
      *
-     * A return value of {@code true} from {@code func} will be interpreted as a request to block
-     * the processed packet.
+     * @param sub The subscriber to remove
+     */
+    private void removeSubscriber(SubscriberFunction sub)
+    {
+        subscribers.remove(sub);
+        projections.clear();
+    }
+
+    /**
+     * Computes the union of the fields required by all subscribers which accept the provided packet
+     * class
      *
-     * @param <T> The packet type accepted by this function
-     * @param func The function to register
-     * @param validTypes The packet types which should be fed to this function. At least one type
-     *        must be specified or the function will not be invoked.
+     * @param packetClass The packet class
      *
-     * @throws NullPointerException If {@code func} is {@code null}
+     * @return The required fields or {@code null} if all fields are required
      */
-    @SafeVarargs
-    @SuppressWarnings("unchecked")
-    public final <T extends Packet> void register(ExceptionFunction<T, Boolean> func,
-            Class<? extends T>... validTypes) throws NullPointerException
+    private BitSet getProjection(Class<? extends Packet> packetClass)
     {
-        logger.trace("Registering function...");
-        if (subscribers.stream().noneMatch(sub -> sub.matches(func)))
-            subscribers.add(new SubscriberFunction(func, packet -> {
+        BitSet projection = projections.computeIfAbsent(packetClass, c -> {
 
-                return func.apply((T) packet);
+            BitSet union = new BitSet();
 
-            }, validTypes));
+            for (SubscriberFunction sub : subscribers)
+            {
+                if (!sub.accepts(c)) continue;
 
-        else
-            logger.trace("Function has already been registered! Aborting...");
+                if (sub.fields == null) return ALL_FIELDS;
+
+                union.or(sub.fields);
+            }
+
+            return union;
+
+        });
+
+        return projection == ALL_FIELDS ? null : projection;
     }
 
     /**
@@ -283,6 +1476,12 @@ public class PacketHandler
         isShutdown = true;
 
         loadedMods.forEach(entrypoint -> Utils.reporting(entrypoint::shutdown));
+
+        publishers.values().forEach(PacketPublisher::close);
+
+        waits.values().forEach(classWaits -> classWaits.forEach(wait -> wait.future.cancel(false)));
+
+        timerScope.close();
     }
 
     /**
@@ -291,7 +1490,10 @@ public class PacketHandler
      *
      * 1) It is annotated with {@link SubscribeToPacketStream} and
      *
-     * 2) It accepts a single argument which is a subclass of packet
+     * 2) Its first argument is a subclass of packet and
+     *
+     * 3) It either accepts no other arguments or accepts a {@link ConnectionContext} as its second
+     * argument, in which case it will be passed this PacketHandler's connection
      *
      * If the function returns a boolean, it will be used as an indicator of whether the function
      * requests that the packet it was sent be blocked. Otherwise, it will be assumed to be
@@ -317,7 +1519,9 @@ public class PacketHandler
 
         Class<?>[] parameterTypes = method.getParameterTypes();
 
-        if (parameterTypes.length != 1) return null;
+        if (parameterTypes.length == 0 || parameterTypes.length > 2) return null;
+        if (parameterTypes.length == 2 && parameterTypes[1] != ConnectionContext.class)
+            return null;
 
         Class<?> packetType = parameterTypes[0];
 
@@ -331,11 +1535,16 @@ public class PacketHandler
     }
 
     /**
-     * Attempts to send the given packet using its specification and the local connection handler
+     * Attempts to send the given packet using its specification. The packet is sent on this
+     * PacketHandler's connection or, if it is not attached to a connection, on the local connection
+     * handler. The packet is encoded immediately, but it is written to the socket asynchronously,
+     * so errors which occur while writing it are not reported to the caller. Use
+     * {@link #sendPackets(Collection)} to be notified once a packet has been written.
      *
      * @param packet The packet to send
      *
-     * @return Whether the packet was sent successfully
+     * @return Whether the packet was encoded and queued to be written. This does not guarantee
+     *         that it will be written.
      *
      * @see PacketParser#getPacketSpecification(Packet)
      * @see PacketParser#getClassId(PacketDirection, Class)
@@ -344,12 +1553,106 @@ public class PacketHandler
     public boolean sendPacket(Packet packet)
     {
         return Utils.reporting(() -> {
-            PacketDirection direction = PacketParser.getPacketSpecification(packet).direction();
+            PacketSpec spec = PacketParser.getPacketSpecification(packet);
+            PacketDirection direction = spec.direction();
 
             int packetId = PacketParser.getClassId(direction, packet.getClass());
 
-            ConnectionHandler.getLocal().write(direction, packetId,
-                    os -> PacketParser.write(packet, os));
+            ConnectionHandler handler = connection == null ? ConnectionHandler.getLocal()
+                    : connection.getHandler(direction);
+
+            handler.write(direction, packetId, os -> PacketParser.write(packet, os),
+                    spec.priority());
+
+            return true;
+
+        }, false);
+    }
+
+    /**
+     * Sends a batch of packets. All packets are encoded before any of them are written, so a packet
+     * which cannot be encoded prevents the whole batch from being sent. The packets sent in each
+     * direction are then written in order, without any forwarded or other injected packets between
+     * them, and flushed once. Each direction's packets are written with the highest priority of
+     * any packet among them. Packets sent in different directions are written to different
+     * sockets, so their relative order is not preserved. The batch is sent on this PacketHandler's
+     * connection or, if it is not attached to a connection, on the local connection handler.
+     *
+     * @param packets The packets to send
+     *
+     * @return A future which is completed once the batch has been written or completed
+     *         exceptionally with the exception which prevented it from being written
+     *
+     * @see #sendPacket(Packet)
+     * @see PacketPriority
+     */
+    public CompletableFuture<Void> sendPackets(Collection<? extends Packet> packets)
+    {
+        try
+        {
+            EnumMap<PacketDirection, List<byte[]>> batches = new EnumMap<>(PacketDirection.class);
+            EnumMap<PacketDirection, PacketPriority> priorities =
+                    new EnumMap<>(PacketDirection.class);
+
+            for (Packet packet : packets)
+            {
+                PacketSpec spec = PacketParser.getPacketSpecification(packet);
+                PacketDirection direction = spec.direction();
+
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+                Utils.writeVarInt(PacketParser.getClassId(direction, packet.getClass()), baos);
+                PacketParser.write(packet, baos);
+
+                batches.computeIfAbsent(direction, d -> new ArrayList<>()).add(baos.toByteArray());
+                priorities.merge(direction, spec.priority(),
+                        (a, b) -> a.compareTo(b) <= 0 ? a : b);
+            }
+
+            ArrayList<CompletableFuture<Void>> futures = new ArrayList<>();
+
+            for (Map.Entry<PacketDirection, List<byte[]>> batch : batches.entrySet())
+            {
+                PacketDirection direction = batch.getKey();
+
+                ConnectionHandler handler = connection == null ? ConnectionHandler.getLocal()
+                        : connection.getHandler(direction);
+
+                futures.add(handler.writeAll(direction, batch.getValue(),
+                        priorities.get(direction)));
+            }
+
+            return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+        }
+        catch (Exception e)
+        {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+
+            future.completeExceptionally(e);
+
+            return future;
+        }
+    }
+
+    /**
+     * Attempts to send a pre-encoded packet. This is considerably cheaper than
+     * {@link #sendPacket(Packet)} for packets which are sent repeatedly. Like that method, the
+     * packet is written asynchronously.
+     *
+     * @param template The template to send
+     *
+     * @return Whether the packet was queued to be written. This does not guarantee that it will be
+     *         written.
+     *
+     * @see PacketTemplate#of(Packet)
+     */
+    public boolean sendPacket(PacketTemplate template)
+    {
+        return Utils.reporting(() -> {
+            ConnectionHandler handler = connection == null ? ConnectionHandler.getLocal()
+                    : connection.getHandler(template.getDirection());
+
+            handler.write(template);
 
             return true;
 
@@ -408,6 +1711,24 @@ public class PacketHandler
          * A list of packet types accepted by this function
          */
         private final List<Class<? extends Packet>> types;
+        /**
+         * The indices of the packet fields read by this function or {@code null} if it reads all
+         * fields
+         */
+        private final BitSet fields;
+        /**
+         * The filter which packets must match to be sent to this function or {@code null}
+         */
+        private final PacketFilter filter;
+        /**
+         * The sampler which selects the packets sent to this function or {@code null}
+         */
+        private final PacketSampler sampler;
+        /**
+         * Whether {@link #filter} can be evaluated against each packet class
+         */
+        private final ConcurrentHashMap<Class<? extends Packet>, Boolean> validFilter =
+                new ConcurrentHashMap<>();
 
         /**
          * Creates a new SubscriberFunction
@@ -416,11 +1737,13 @@ public class PacketHandler
          * @param func The function to call when a valid packet is received. It will be assumed to
          *        never attempt to block packets.
          * @param types The packet types accepted by this SubscriberFunction
+         * @param options The options with which this function was registered
          *
          * @throws NullPointerException If any of the arguments are null
          */
         public SubscriberFunction(Object id, ExceptionConsumer<Packet> func,
-                Class<? extends Packet>[] types) throws NullPointerException
+                Class<? extends Packet>[] types, SubscriptionOptions options)
+                throws NullPointerException
         {
             this(id, func == null ? null : packet -> {
 
@@ -428,7 +1751,7 @@ public class PacketHandler
 
                 return false;
 
-            }, types);
+            }, types, options);
         }
 
         /**
@@ -439,15 +1762,62 @@ public class PacketHandler
          *        function returns {@code true}, it will be interpreted as a request to block the
          *        processed packet.
          * @param types The packet types accepted by this SubscriberFunction
+         * @param options The options with which this function was registered
          *
          * @throws NullPointerException If any of the arguments are null
          */
         public SubscriberFunction(Object id, ExceptionFunction<Packet, Boolean> func,
-                Class<? extends Packet>[] types) throws NullPointerException
+                Class<? extends Packet>[] types, SubscriptionOptions options)
+                throws NullPointerException
         {
             this.id = Objects.requireNonNull(id);
             this.func = Utils.reporting(Objects.requireNonNull(func), false);
             this.types = Arrays.asList(types);
+            this.fields = options.getFields();
+            this.filter = options.getFilter();
+            this.sampler = options.getSampler();
+        }
+
+        /**
+         * Evaluates this SubscriberFunction's filter against an encoded packet. If the filter
+         * cannot be applied to the packet class or fails, the packet is admitted.
+         *
+         * @param c The class of the packet
+         * @param view A view of the packet
+         *
+         * @return Whether the packet should be sent to this function
+         */
+        public boolean admits(Class<? extends Packet> c, PacketView view)
+        {
+            if (filter == null) return true;
+
+            if (!validFilter.computeIfAbsent(c, this::validateFilter)) return true;
+
+            return Utils.reporting(() -> filter.test(view), true);
+        }
+
+        /**
+         * Checks whether this SubscriberFunction's filter can be evaluated against a packet class
+         *
+         * @param c The class to check
+         *
+         * @return Whether the filter is valid for the class
+         */
+        private boolean validateFilter(Class<? extends Packet> c)
+        {
+            try
+            {
+                filter.validate(c);
+
+                return true;
+            }
+            catch (IllegalArgumentException e)
+            {
+                logger.warn("Ignoring filter {} for packet class {}: {}", filter, c.getName(),
+                        e.getMessage());
+
+                return false;
+            }
         }
 
         /**
@@ -491,4 +1861,211 @@ public class PacketHandler
 
     }
 
+    /**
+     * An internal class representing a subscriber registered with
+     * {@link PacketHandler#registerView(ExceptionConsumer, Class...)}
+     */
+    private static final class ViewSubscriber
+    {
+
+        /**
+         * The function passed to {@link PacketHandler#registerView(ExceptionConsumer, Class...)}
+         */
+        private final ExceptionConsumer<PacketView> id;
+        /**
+         * The function which will be called when a valid packet is received
+         */
+        private final Function<PacketView, Boolean> func;
+        /**
+         * The packet types accepted by this function
+         */
+        private final Class<? extends Packet>[] types;
+
+        /**
+         * Creates a new ViewSubscriber
+         *
+         * @param func The function to call when a valid packet is received
+         * @param types The packet types accepted by this ViewSubscriber
+         *
+         * @throws NullPointerException If any of the arguments are null
+         */
+        public ViewSubscriber(ExceptionConsumer<PacketView> func,
+                Class<? extends Packet>[] types) throws NullPointerException
+        {
+            this.id = Objects.requireNonNull(func);
+            this.func = Utils.reporting(view -> {
+
+                func.accept(view);
+
+                return false;
+
+            }, false);
+            this.types = types.clone();
+        }
+
+        /**
+         * Sends the provided view to the underlying function
+         *
+         * @param view The view to send
+         */
+        public void invoke(PacketView view)
+        {
+            func.apply(view);
+        }
+
+        /**
+         * Checks whether this ViewSubscriber can process the provided packet class
+         *
+         * @param c The class to check
+         *
+         * @return Whether this ViewSubscriber can process the provided packet class
+         */
+        public boolean accepts(Class<? extends Packet> c)
+        {
+            // Avoid allocating a stream for every packet
+            for (Class<? extends Packet> type : types)
+                if (type.isAssignableFrom(c)) return true;
+
+            return false;
+        }
+
+    }
+
+    /**
+     * An internal class representing a subscriber registered with
+     * {@link PacketHandler#registerRaw(RawPacketSubscriber, PacketDirection, int...)}
+     */
+    private static final class RawSubscriber
+    {
+
+        /**
+         * The function passed to
+         * {@link PacketHandler#registerRaw(RawPacketSubscriber, PacketDirection, int...)}
+         */
+        private final RawPacketSubscriber id;
+        /**
+         * The direction of the packets accepted by this subscriber or {@code null} if it accepts
+         * both directions
+         */
+        private final PacketDirection direction;
+        /**
+         * The ids of the packets accepted by this subscriber or {@code null} if it accepts all ids
+         */
+        private final BitSet packetIds;
+
+        /**
+         * Creates a new RawSubscriber
+         *
+         * @param func The function to call when a valid packet is received
+         * @param direction The direction of the packets accepted by this subscriber or
+         *        {@code null} to accept both directions
+         * @param packetIds The ids of the packets accepted by this subscriber. If no ids are
+         *        specified, all ids are accepted.
+         *
+         * @throws IllegalArgumentException If any packet id is negative
+         * @throws NullPointerException If {@code func} is {@code null}
+         */
+        public RawSubscriber(RawPacketSubscriber func, PacketDirection direction,
+                int[] packetIds) throws IllegalArgumentException, NullPointerException
+        {
+            this.id = Objects.requireNonNull(func);
+            this.direction = direction;
+
+            if (packetIds.length == 0)
+            {
+                this.packetIds = null;
+
+                return;
+            }
+
+            this.packetIds = new BitSet();
+
+            for (int packetId : packetIds)
+            {
+                if (packetId < 0)
+                    throw new IllegalArgumentException("Invalid packet id: " + packetId);
+
+                this.packetIds.set(packetId);
+            }
+        }
+
+        /**
+         * Sends the provided packet to the underlying function
+         *
+         * @param direction The direction in which the packet is being sent
+         * @param packetId The id of the packet
+         * @param payload The packet data following its id
+         *
+         * @return Whether the function requested to block the packet
+         */
+        public boolean invoke(PacketDirection direction, int packetId, ByteBuffer payload)
+        {
+            return Utils.reporting(() -> id.handle(direction, packetId, payload), false);
+        }
+
+        /**
+         * Checks whether this RawSubscriber can process the provided packet
+         *
+         * @param direction The direction in which the packet is being sent
+         * @param packetId The id of the packet
+         *
+         * @return Whether this RawSubscriber can process the provided packet
+         */
+        public boolean accepts(PacketDirection direction, int packetId)
+        {
+            return (this.direction == null || this.direction == direction)
+                    && (packetIds == null || packetId >= 0 && packetIds.get(packetId));
+        }
+
+    }
+
+    /**
+     * An internal class representing a wait created by
+     * {@link PacketHandler#awaitPacket(Class, Predicate, long, TimeUnit)}
+     *
+     * @param <T> The type of packet awaited
+     */
+    private static final class PendingWait<T extends Packet>
+    {
+
+        private final Class<T> type;
+        private final Predicate<? super T> predicate;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        /**
+         * Creates a new PendingWait
+         *
+         * @param type The type of packet awaited
+         * @param predicate The predicate which the packet must match
+         */
+        public PendingWait(Class<T> type, Predicate<? super T> predicate)
+        {
+            this.type = type;
+            this.predicate = predicate;
+        }
+
+        /**
+         * Completes this wait with the provided packet if it matches. If the predicate throws an
+         * exception, this wait is completed exceptionally.
+         *
+         * @param packet The packet
+         */
+        public void offer(Packet packet)
+        {
+            if (future.isDone() || !type.isInstance(packet)) return;
+
+            T t = type.cast(packet);
+
+            try
+            {
+                if (predicate.test(t)) future.complete(t);
+            }
+            catch (Throwable e)
+            {
+                future.completeExceptionally(e);
+            }
+        }
+
+    }
+
 }
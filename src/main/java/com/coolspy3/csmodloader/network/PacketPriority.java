@@ -0,0 +1,29 @@
+package com.coolspy3.csmodloader.network;
+
+import com.coolspy3.csmodloader.network.packet.PacketSpec;
+
+/**
+ * Determines the order in which packets sent by mods are written to a connection. Packets sent by
+ * mods are queued, and whenever the connection's output becomes available, the queued packets are
+ * written in order of priority. Packets with the same priority are written in the order in which
+ * they were sent. Packets forwarded by the proxy are never reordered.
+ *
+ * @see PacketSpec#priority()
+ */
+public enum PacketPriority
+{
+    /**
+     * Indicates that a packet is latency-critical (ex. a keep-alive, player position, or teleport
+     * confirmation) and should be written before any other queued packets
+     */
+    HIGH,
+    /**
+     * Indicates that a packet has no special requirements
+     */
+    NORMAL,
+    /**
+     * Indicates that a packet is part of bulk traffic and should only be written once no other
+     * packets are queued
+     */
+    LOW;
+}
@@ -0,0 +1,184 @@
+package com.coolspy3.csmodloader.network;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Selects a sample of the packets offered to a subscriber. Samplers are evaluated before a packet
+ * is decoded, so a packet which is not sampled by any of its subscribers is never decoded.
+ *
+ * Each sampler keeps track of the number of packets which were offered to it and sampled by it, so
+ * the effective sampling rate can be monitored. A sampler holds state and should only be attached
+ * to a single subscriber. If it is shared, the subscribers are sampled jointly.
+ *
+ * All methods of this class are thread-safe.
+ *
+ * @see SubscriptionOptions#sample(PacketSampler)
+ */
+public abstract class PacketSampler
+{
+
+    private final long createdAt = System.nanoTime();
+
+    private long offered = 0;
+    private long sampled = 0;
+
+    PacketSampler()
+    {}
+
+    /**
+     * Decides whether the next packet should be sampled. This is called while holding the lock on
+     * this sampler.
+     *
+     * @param now The current value of {@link System#nanoTime()}
+     *
+     * @return Whether the packet should be sampled
+     */
+    abstract boolean accept(long now);
+
+    /**
+     * Offers a packet to this sampler
+     *
+     * @return Whether the packet was sampled and should be delivered
+     */
+    synchronized boolean sample()
+    {
+        offered++;
+
+        if (!accept(System.nanoTime())) return false;
+
+        sampled++;
+
+        return true;
+    }
+
+    /**
+     * @return The number of packets which have been offered to this sampler
+     */
+    public synchronized long getOffered()
+    {
+        return offered;
+    }
+
+    /**
+     * @return The number of packets which have been sampled
+     */
+    public synchronized long getSampled()
+    {
+        return sampled;
+    }
+
+    /**
+     * @return The fraction of offered packets which were sampled or {@code 0} if no packets have
+     *         been offered
+     */
+    public synchronized double getSampleRate()
+    {
+        return offered == 0 ? 0 : (double) sampled / offered;
+    }
+
+    /**
+     * @return The average number of packets sampled per second since this sampler was created
+     */
+    public synchronized double getSampledPerSecond()
+    {
+        long elapsed = System.nanoTime() - createdAt;
+
+        return elapsed <= 0 ? 0 : sampled * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return String.format(
+                "PacketSampler[offered=%d, sampled=%d, sampleRate=%.3f, sampledPerSecond=%.3f]",
+                offered, sampled, getSampleRate(), getSampledPerSecond());
+    }
+
+    /**
+     * @param n The sampling interval
+     *
+     * @return A sampler which samples the first of every {@code n} packets
+     *
+     * @throws IllegalArgumentException If {@code n} is not positive
+     */
+    public static PacketSampler every(int n) throws IllegalArgumentException
+    {
+        if (n <= 0) throw new IllegalArgumentException("Invalid interval: " + n);
+
+        return new PacketSampler()
+        {
+            private int count = 0;
+
+            @Override
+            boolean accept(long now)
+            {
+                boolean accept = count == 0;
+
+                if (++count == n) count = 0;
+
+                return accept;
+            }
+        };
+    }
+
+    /**
+     * Creates a sampler which limits the rate at which packets are sampled. Packets are sampled
+     * using a token bucket which holds up to {@code n} tokens and is refilled at a rate of
+     * {@code n} tokens per second, so short bursts are sampled in full while the long-term rate
+     * never exceeds the limit.
+     *
+     * @param n The maximum number of packets to sample per second
+     *
+     * @return The sampler
+     *
+     * @throws IllegalArgumentException If {@code n} is not positive
+     */
+    public static PacketSampler atMostPerSecond(int n) throws IllegalArgumentException
+    {
+        if (n <= 0) throw new IllegalArgumentException("Invalid rate: " + n);
+
+        long nanosPerToken = Math.max(TimeUnit.SECONDS.toNanos(1) / n, 1);
+
+        return new PacketSampler()
+        {
+            private double tokens = n;
+            private long lastRefill = System.nanoTime();
+
+            @Override
+            boolean accept(long now)
+            {
+                tokens = Math.min(n, tokens + (double) (now - lastRefill) / nanosPerToken);
+                lastRefill = now;
+
+                if (tokens < 1) return false;
+
+                tokens--;
+
+                return true;
+            }
+        };
+    }
+
+    /**
+     * @param p The probability with which each packet is sampled
+     *
+     * @return A sampler which samples each packet independently with the provided probability
+     *
+     * @throws IllegalArgumentException If {@code p} is not between {@code 0} and {@code 1}
+     */
+    public static PacketSampler withProbability(double p) throws IllegalArgumentException
+    {
+        if (!(p >= 0 && p <= 1)) throw new IllegalArgumentException("Invalid probability: " + p);
+
+        return new PacketSampler()
+        {
+            @Override
+            boolean accept(long now)
+            {
+                return ThreadLocalRandom.current().nextDouble() < p;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,135 @@
+package com.coolspy3.csmodloader.network;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+
+import com.coolspy3.csmodloader.network.packet.Packet;
+import com.coolspy3.csmodloader.network.packet.PacketParser;
+import com.coolspy3.csmodloader.network.packet.PacketSpec;
+import com.coolspy3.csmodloader.util.Utils;
+
+/**
+ * A packet which has been encoded ahead of time so that it can be sent repeatedly at a minimal
+ * cost. The packet is serialized once, when the template is created, and the complete frame for
+ * each compression threshold is built and cached the first time it is sent over a connection using
+ * that threshold. Subsequent sends only copy the cached bytes to the connection.
+ *
+ * Changes made to the packet after the template is created are not reflected in the template.
+ *
+ * All methods of this class are thread-safe.
+ *
+ * @see PacketHandler#sendPacket(PacketTemplate)
+ * @see ConnectionContext#sendPacket(PacketTemplate)
+ */
+public final class PacketTemplate
+{
+
+    private final PacketDirection direction;
+    private final PacketPriority priority;
+    private final byte[] packetData;
+    private final Map<Integer, byte[]> frames = new ConcurrentHashMap<>();
+
+    private PacketTemplate(PacketDirection direction, PacketPriority priority, byte[] packetData)
+    {
+        this.direction = direction;
+        this.priority = priority;
+        this.packetData = packetData;
+    }
+
+    /**
+     * Creates a template from the current state of the provided packet
+     *
+     * @param packet The packet to encode
+     *
+     * @return The template
+     *
+     * @throws IllegalArgumentException If the packet's specification or id cannot be found or
+     *         default serialization is used and one or more ObjectParsers cannot be found
+     * @throws IOException If an I/O error occurs
+     *
+     * @see PacketParser#getPacketSpecification(Packet)
+     * @see PacketParser#getClassId(PacketDirection, Class)
+     */
+    public static PacketTemplate of(Packet packet) throws IllegalArgumentException, IOException
+    {
+        PacketSpec spec = PacketParser.getPacketSpecification(packet);
+        PacketDirection direction = spec.direction();
+
+        int packetId = PacketParser.getClassId(direction, packet.getClass());
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        Utils.writeVarInt(packetId, baos);
+        PacketParser.write(packet, baos);
+
+        return new PacketTemplate(direction, spec.priority(), baos.toByteArray());
+    }
+
+    /**
+     * @return The direction in which this template is sent
+     */
+    public PacketDirection getDirection()
+    {
+        return direction;
+    }
+
+    /**
+     * @return The priority with which this template is written
+     */
+    public PacketPriority getPriority()
+    {
+        return priority;
+    }
+
+    /**
+     * @return The length of the encoded packet, including its id, before compression
+     */
+    public int getLength()
+    {
+        return packetData.length;
+    }
+
+    /**
+     * Retrieves the frame of this template for the provided compression threshold, building it if
+     * it has not been built yet
+     *
+     * @param compressionThreshold The compression threshold of the connection or -1 if
+     *        compression is disabled
+     *
+     * @return The frame, including its length prefix. This array must not be modified.
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    byte[] getFrame(int compressionThreshold) throws IOException
+    {
+        byte[] frame = frames.get(compressionThreshold);
+
+        if (frame != null) return frame;
+
+        if (!ConnectionHandler.isCompressed(packetData.length, compressionThreshold))
+            frame = ConnectionHandler.encodeFrame(packetData, compressionThreshold, null);
+        else
+        {
+            // Frames are built at most once per threshold in practice, so a short-lived Deflater
+            // is used instead of contending for the lock on the connection's Deflater
+            Deflater compressor = new Deflater();
+
+            try
+            {
+                frame = ConnectionHandler.encodeFrame(packetData, compressionThreshold, compressor);
+            }
+            finally
+            {
+                compressor.end();
+            }
+        }
+
+        byte[] existing = frames.putIfAbsent(compressionThreshold, frame);
+
+        return existing == null ? frame : existing;
+    }
+
+}
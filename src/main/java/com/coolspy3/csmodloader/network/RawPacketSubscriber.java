@@ -0,0 +1,32 @@
+package com.coolspy3.csmodloader.network;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A subscriber which receives the encoded form of each packet without it being parsed. Raw
+ * subscribers receive packets whether or not a packet class has been registered for their ids.
+ *
+ * @see PacketHandler#registerRaw(RawPacketSubscriber)
+ * @see PacketHandler#registerRaw(RawPacketSubscriber, PacketDirection, int...)
+ */
+@FunctionalInterface
+public interface RawPacketSubscriber
+{
+
+    /**
+     * Processes a packet
+     *
+     * @param direction The direction in which the packet is being sent
+     * @param packetId The id of the packet
+     * @param payload A read-only buffer containing the uncompressed packet data following the
+     *        packet id. The buffer is positioned at its start and its limit is the end of the
+     *        packet. It is only valid until this method returns and must not be retained.
+     *
+     * @return Whether the packet should be blocked
+     *
+     * @throws Exception If an Exception occurs
+     */
+    public boolean handle(PacketDirection direction, int packetId, ByteBuffer payload)
+            throws Exception;
+
+}
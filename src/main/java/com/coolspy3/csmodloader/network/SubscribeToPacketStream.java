@@ -22,4 +22,12 @@ public @interface SubscribeToPacketStream
      */
     public Class<? extends Packet>[] acceptedPacketTypes() default {Packet.class};
 
+    /**
+     * @return The indices of the packet fields which are read by this function. If this array is
+     *         empty, all fields are assumed to be read.
+     *
+     * @see SubscriptionOptions#fields(int...)
+     */
+    public int[] fields() default {};
+
 }
@@ -0,0 +1,134 @@
+package com.coolspy3.csmodloader.network;
+
+import java.util.BitSet;
+
+import com.coolspy3.csmodloader.network.packet.PacketFilter;
+
+/**
+ * Additional options which control how packets are delivered to a subscriber registered with
+ * {@link PacketHandler#register(com.coolspy3.csmodloader.interfaces.ExceptionConsumer, SubscriptionOptions, Class...)}
+ * or
+ * {@link PacketHandler#register(com.coolspy3.csmodloader.interfaces.ExceptionFunction, SubscriptionOptions, Class...)}
+ */
+public final class SubscriptionOptions
+{
+
+    /**
+     * The indices of the fields which the subscriber reads or {@code null} if it reads all fields
+     */
+    private BitSet fields = null;
+
+    /**
+     * The filter which packets must match to be delivered or {@code null} to deliver all packets
+     */
+    private PacketFilter filter = null;
+
+    /**
+     * The sampler which selects the packets to deliver or {@code null} to deliver all packets
+     */
+    private PacketSampler sampler = null;
+
+    /**
+     * Declares which fields of the packets fed to the subscriber are read. Fields which are not
+     * required by any subscriber to a packet type are skipped instead of decoded and will be
+     * {@code null} in the dispatched packet, or {@code 0} or {@code false} if they are boxed
+     * primitives. Packets with a custom serializer and lazily decoded packets are always decoded in
+     * full.
+     *
+     * @param indices The indices of the required fields in the packet's
+     *        {@link com.coolspy3.csmodloader.network.packet.PacketSpec}. If no indices are
+     *        specified, all fields are required.
+     *
+     * @return This object
+     *
+     * @throws IllegalArgumentException If any index is negative
+     */
+    public SubscriptionOptions fields(int... indices) throws IllegalArgumentException
+    {
+        if (indices.length == 0)
+        {
+            fields = null;
+
+            return this;
+        }
+
+        BitSet fields = new BitSet();
+
+        for (int index : indices)
+        {
+            if (index < 0) throw new IllegalArgumentException("Invalid field index: " + index);
+
+            fields.set(index);
+        }
+
+        this.fields = fields;
+
+        return this;
+    }
+
+    /**
+     * Declares a filter which packets must match to be delivered to the subscriber. Filters are
+     * evaluated on the encoded packet before it is decoded, so a packet which is rejected by the
+     * filters of all of its subscribers is never decoded. Filters only apply to packets which use
+     * default serialization. Packets of any other kind are always delivered.
+     *
+     * @param filter The filter or {@code null} to deliver all packets
+     *
+     * @return This object
+     */
+    public SubscriptionOptions filter(PacketFilter filter)
+    {
+        this.filter = filter;
+
+        return this;
+    }
+
+    /**
+     * Declares a sampler which selects the packets delivered to the subscriber. Samplers are
+     * evaluated before packets are decoded and after the subscriber's filter, so only packets which
+     * match the filter are offered to the sampler. A packet which is not sampled by any of its
+     * subscribers is never decoded.
+     *
+     * @param sampler The sampler or {@code null} to deliver all packets
+     *
+     * @return This object
+     *
+     * @see PacketSampler#every(int)
+     * @see PacketSampler#atMostPerSecond(int)
+     * @see PacketSampler#withProbability(double)
+     */
+    public SubscriptionOptions sample(PacketSampler sampler)
+    {
+        this.sampler = sampler;
+
+        return this;
+    }
+
+    /**
+     * @return The sampler which selects the packets to deliver or {@code null} if all packets are
+     *         delivered
+     */
+    public PacketSampler getSampler()
+    {
+        return sampler;
+    }
+
+    /**
+     * @return The filter which packets must match to be delivered or {@code null} if all packets
+     *         are delivered
+     */
+    public PacketFilter getFilter()
+    {
+        return filter;
+    }
+
+    /**
+     * @return The indices of the fields which the subscriber reads or {@code null} if it reads all
+     *         fields
+     */
+    public BitSet getFields()
+    {
+        return fields == null ? null : (BitSet) fields.clone();
+    }
+
+}
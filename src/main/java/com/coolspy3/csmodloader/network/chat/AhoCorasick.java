@@ -0,0 +1,215 @@
+package com.coolspy3.csmodloader.network.chat;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An Aho-Corasick automaton which finds occurrences of any number of literal patterns in a single
+ * pass over a piece of text. Transitions are stored as sorted arrays so that the automaton does
+ * not box characters or allocate while searching.
+ *
+ * Instances of this class are immutable and thread-safe.
+ */
+final class AhoCorasick
+{
+
+    /**
+     * The characters on the outgoing edges of each state in ascending order
+     */
+    private final char[][] keys;
+    /**
+     * The targets of the outgoing edges of each state in the same order as {@link #keys}
+     */
+    private final int[][] targets;
+    /**
+     * The state reached by following the longest proper suffix of each state's path which is also
+     * a path in the trie
+     */
+    private final int[] fail;
+    /**
+     * The pattern which ends at each state or {@code -1}
+     */
+    private final int[] output;
+    /**
+     * The nearest state in each state's failure chain which has an output or {@code -1}
+     */
+    private final int[] outputLink;
+    private final int numPatterns;
+
+    /**
+     * Compiles an automaton which matches the provided patterns
+     *
+     * @param patterns The patterns to match. Each pattern's index in this list is used to identify
+     *        it in the search results. Patterns must be non-empty and unique.
+     *
+     * @throws IllegalArgumentException If a pattern is empty or duplicated
+     */
+    AhoCorasick(List<String> patterns) throws IllegalArgumentException
+    {
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        List<Integer> outputs = new ArrayList<>();
+
+        trie.add(new TreeMap<>());
+        outputs.add(-1);
+
+        for (int i = 0; i < patterns.size(); i++)
+        {
+            String pattern = patterns.get(i);
+
+            if (pattern.isEmpty()) throw new IllegalArgumentException("Empty pattern");
+
+            int state = 0;
+
+            for (int j = 0; j < pattern.length(); j++)
+            {
+                Integer next = trie.get(state).get(pattern.charAt(j));
+
+                if (next == null)
+                {
+                    next = trie.size();
+
+                    trie.get(state).put(pattern.charAt(j), next);
+                    trie.add(new TreeMap<>());
+                    outputs.add(-1);
+                }
+
+                state = next;
+            }
+
+            if (outputs.get(state) != -1)
+                throw new IllegalArgumentException("Duplicate pattern: " + pattern);
+
+            outputs.set(state, i);
+        }
+
+        int numStates = trie.size();
+
+        this.keys = new char[numStates][];
+        this.targets = new int[numStates][];
+        this.fail = new int[numStates];
+        this.output = new int[numStates];
+        this.outputLink = new int[numStates];
+        this.numPatterns = patterns.size();
+
+        for (int state = 0; state < numStates; state++)
+        {
+            TreeMap<Character, Integer> edges = trie.get(state);
+
+            keys[state] = new char[edges.size()];
+            targets[state] = new int[edges.size()];
+            output[state] = outputs.get(state);
+
+            int i = 0;
+
+            for (Map.Entry<Character, Integer> edge : edges.entrySet())
+            {
+                keys[state][i] = edge.getKey();
+                targets[state][i] = edge.getValue();
+                i++;
+            }
+        }
+
+        // Compute failure links in breadth-first order so that each state's parent is done first
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+
+        outputLink[0] = -1;
+
+        for (int child : targets[0])
+        {
+            fail[child] = 0;
+            outputLink[child] = -1;
+            queue.add(child);
+        }
+
+        while (!queue.isEmpty())
+        {
+            int state = queue.poll();
+
+            for (int i = 0; i < keys[state].length; i++)
+            {
+                char c = keys[state][i];
+                int child = targets[state][i];
+                int f = fail[state];
+
+                while (f != 0 && next(f, c) == -1)
+                    f = fail[f];
+
+                int target = next(f, c);
+
+                fail[child] = target == -1 ? 0 : target;
+                outputLink[child] =
+                        output[fail[child]] != -1 ? fail[child] : outputLink[fail[child]];
+
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * Searches for the first occurrence of each pattern
+     *
+     * @param text The text to search
+     *
+     * @return The index in the text just after the end of the first occurrence of each pattern or
+     *         {@code -1} for each pattern which does not occur
+     */
+    int[] findFirst(CharSequence text)
+    {
+        int[] ends = new int[numPatterns];
+        Arrays.fill(ends, -1);
+
+        int remaining = numPatterns;
+        int state = 0;
+
+        for (int i = 0; i < text.length() && remaining > 0; i++)
+        {
+            char c = text.charAt(i);
+            int target;
+
+            while ((target = next(state, c)) == -1 && state != 0)
+                state = fail[state];
+
+            state = target == -1 ? 0 : target;
+
+            for (int s = output[state] != -1 ? state : outputLink[state]; s != -1; s =
+                    outputLink[s])
+            {
+                if (ends[output[s]] == -1)
+                {
+                    ends[output[s]] = i + 1;
+                    remaining--;
+                }
+            }
+        }
+
+        return ends;
+    }
+
+    /**
+     * @return The number of patterns matched by this automaton
+     */
+    int size()
+    {
+        return numPatterns;
+    }
+
+    /**
+     * Follows an edge of the trie
+     *
+     * @param state The state from which to start
+     * @param c The character on the edge
+     *
+     * @return The target of the edge or {@code -1} if it does not exist
+     */
+    private int next(int state, char c)
+    {
+        int i = Arrays.binarySearch(keys[state], c);
+
+        return i < 0 ? -1 : targets[state][i];
+    }
+
+}
@@ -0,0 +1,118 @@
+package com.coolspy3.csmodloader.network.chat;
+
+import java.io.IOException;
+
+import com.coolspy3.csmodloader.util.LruCache;
+
+/**
+ * A bounded cache mapping JSON chat payloads to their parsed components. When the cache is full,
+ * the least recently used entry is evicted. Servers tend to send the same messages repeatedly
+ * (ex. join messages, scoreboard updates, and periodic announcements), so repeated payloads can be
+ * served without being parsed again.
+ *
+ * All methods of this class are thread-safe.
+ *
+ * @see ChatParser#parseCached(String)
+ */
+public final class ChatCache
+{
+
+    private final int maxLength;
+    private final LruCache<String, ChatComponent> entries;
+
+    /**
+     * Creates a new ChatCache
+     *
+     * @param capacity The maximum number of entries held by this cache
+     * @param maxLength The maximum length of payloads which should be cached. Longer payloads are
+     *        always parsed.
+     *
+     * @throws IllegalArgumentException If either value is not positive
+     */
+    public ChatCache(int capacity, int maxLength) throws IllegalArgumentException
+    {
+        if (capacity <= 0) throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        if (maxLength <= 0) throw new IllegalArgumentException("Invalid max length: " + maxLength);
+
+        this.maxLength = maxLength;
+        this.entries = new LruCache<>(capacity);
+    }
+
+    /**
+     * Looks up the component parsed from the provided payload, parsing and caching it if it is not
+     * present. Payloads are parsed outside of the cache's lock, so two threads which miss on the
+     * same payload may both parse it.
+     *
+     * @param json The payload
+     *
+     * @return The parsed component
+     *
+     * @throws IOException If the payload is malformed
+     */
+    public ChatComponent get(String json) throws IOException
+    {
+        if (json.length() > maxLength)
+        {
+            entries.recordMiss();
+
+            return ChatParser.parse(json);
+        }
+
+        ChatComponent component = entries.get(json);
+
+        if (component != null) return component;
+
+        component = ChatParser.parse(json);
+        entries.put(json, component);
+
+        return component;
+    }
+
+    /**
+     * Removes all entries from this cache. The statistics are not reset.
+     */
+    public void clear()
+    {
+        entries.clear();
+    }
+
+    /**
+     * @return The number of entries in this cache
+     */
+    public int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * @return The number of lookups which returned a cached component
+     */
+    public long getHits()
+    {
+        return entries.getHits();
+    }
+
+    /**
+     * @return The number of lookups which required the payload to be parsed
+     */
+    public long getMisses()
+    {
+        return entries.getMisses();
+    }
+
+    /**
+     * @return The fraction of lookups which returned a cached component or {@code 0} if no lookups
+     *         have been performed
+     */
+    public double getHitRate()
+    {
+        return entries.getHitRate();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ChatCache[" + entries.getStatistics() + "]";
+    }
+
+}
@@ -0,0 +1,509 @@
+package com.coolspy3.csmodloader.network.chat;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.coolspy3.csmodloader.util.WrapperException;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * An immutable chat component tree. A component's content is either literal text, a translation
+ * key with arguments, an entity selector, or a scoreboard score. Each component may have a style
+ * and a list of child components which are rendered after it.
+ *
+ * The plain text and JSON renderings of a component are computed when they are first requested
+ * and then cached, so components returned by {@link ChatParser} can be shared between every
+ * subscriber which receives them.
+ *
+ * All methods of this class are thread-safe.
+ */
+public final class ChatComponent
+{
+
+    /**
+     * The English formats of the translation keys which are commonly sent by servers, so that the
+     * plain text of a message matches what the client displays
+     */
+    private static final Map<String, String> TRANSLATIONS = new HashMap<>();
+
+    static
+    {
+        TRANSLATIONS.put("chat.type.text", "<%s> %s");
+        TRANSLATIONS.put("chat.type.emote", "* %s %s");
+        TRANSLATIONS.put("chat.type.announcement", "[%s] %s");
+        TRANSLATIONS.put("chat.type.admin", "[%s: %s]");
+        TRANSLATIONS.put("chat.type.achievement", "%s has just earned the achievement %s");
+        TRANSLATIONS.put("chat.type.achievement.taken", "%s has lost the achievement %s");
+        TRANSLATIONS.put("multiplayer.player.joined", "%s joined the game");
+        TRANSLATIONS.put("multiplayer.player.joined.renamed",
+                "%s (formerly known as %s) joined the game");
+        TRANSLATIONS.put("multiplayer.player.left", "%s left the game");
+        TRANSLATIONS.put("commands.message.display.incoming", "%s whispers to you: %s");
+        TRANSLATIONS.put("commands.message.display.outgoing", "You whisper to %s: %s");
+    }
+
+    private final String text;
+    private final String translate;
+    private final List<ChatComponent> with;
+    private final String selector;
+    private final String scoreName;
+    private final String scoreObjective;
+    private final String scoreValue;
+    private final ChatStyle style;
+    private final List<ChatComponent> extra;
+
+    private volatile String plainText;
+    private volatile String json;
+
+    ChatComponent(String text, String translate, List<ChatComponent> with, String selector,
+            String scoreName, String scoreObjective, String scoreValue, ChatStyle style,
+            List<ChatComponent> extra)
+    {
+        this.text = text;
+        this.translate = translate;
+        this.with = immutable(with);
+        this.selector = selector;
+        this.scoreName = scoreName;
+        this.scoreObjective = scoreObjective;
+        this.scoreValue = scoreValue;
+        this.style = style == null ? ChatStyle.EMPTY : style;
+        this.extra = immutable(extra);
+    }
+
+    /**
+     * Creates a new component containing literal text
+     *
+     * @param text The text
+     * @param style The style of the component or {@code null}
+     * @param extra The children of the component
+     *
+     * @return The new component
+     */
+    public static ChatComponent text(String text, ChatStyle style, ChatComponent... extra)
+    {
+        return new ChatComponent(Objects.requireNonNull(text), null, null, null, null, null, null,
+                style, Arrays.asList(extra));
+    }
+
+    /**
+     * Creates a new component containing literal text without a style or children
+     *
+     * @param text The text
+     *
+     * @return The new component
+     */
+    public static ChatComponent text(String text)
+    {
+        return text(text, null);
+    }
+
+    /**
+     * Creates a new component containing a translation key
+     *
+     * @param key The translation key
+     * @param style The style of the component or {@code null}
+     * @param with The arguments to the translation
+     *
+     * @return The new component
+     */
+    public static ChatComponent translate(String key, ChatStyle style, ChatComponent... with)
+    {
+        return new ChatComponent(null, Objects.requireNonNull(key), Arrays.asList(with), null,
+                null, null, null, style, null);
+    }
+
+    /**
+     * Parses a JSON chat component using the shared cache
+     *
+     * @param json The JSON to parse
+     *
+     * @return The parsed component
+     *
+     * @throws IOException If the JSON is malformed
+     *
+     * @see ChatParser#parseCached(String)
+     */
+    public static ChatComponent fromJson(String json) throws IOException
+    {
+        return ChatParser.parseCached(json);
+    }
+
+    /**
+     * @return The literal text of this component or {@code null} if it does not contain text
+     */
+    public String getText()
+    {
+        return text;
+    }
+
+    /**
+     * @return The translation key of this component or {@code null} if it is not translated
+     */
+    public String getTranslate()
+    {
+        return translate;
+    }
+
+    /**
+     * @return An unmodifiable list of the arguments to this component's translation
+     */
+    public List<ChatComponent> getWith()
+    {
+        return with;
+    }
+
+    /**
+     * @return The entity selector of this component or {@code null} if it does not contain one
+     */
+    public String getSelector()
+    {
+        return selector;
+    }
+
+    /**
+     * @return The name of the score holder of this component or {@code null} if it does not
+     *         contain a score
+     */
+    public String getScoreName()
+    {
+        return scoreName;
+    }
+
+    /**
+     * @return The objective of the score of this component or {@code null} if it does not contain
+     *         a score
+     */
+    public String getScoreObjective()
+    {
+        return scoreObjective;
+    }
+
+    /**
+     * @return The resolved value of the score of this component or {@code null} if it was not
+     *         resolved
+     */
+    public String getScoreValue()
+    {
+        return scoreValue;
+    }
+
+    /**
+     * @return The style of this component
+     */
+    public ChatStyle getStyle()
+    {
+        return style;
+    }
+
+    /**
+     * @return An unmodifiable list of the children of this component
+     */
+    public List<ChatComponent> getExtra()
+    {
+        return extra;
+    }
+
+    /**
+     * Renders this component and its children as plain text without any formatting. Translated
+     * components are rendered by substituting their arguments into their keys because the client's
+     * language files are not available.
+     *
+     * @return The plain text of this component
+     */
+    public String getPlainText()
+    {
+        String plainText = this.plainText;
+
+        if (plainText == null)
+        {
+            StringBuilder builder = new StringBuilder();
+            appendPlainText(builder);
+
+            this.plainText = plainText = builder.toString();
+        }
+
+        return plainText;
+    }
+
+    /**
+     * Serializes this component. Components returned by {@link ChatParser} return the JSON from
+     * which they were parsed.
+     *
+     * @return The JSON representation of this component
+     *
+     * @throws WrapperException If an error occurs serializing the component
+     */
+    public String toJson() throws WrapperException
+    {
+        String json = this.json;
+
+        if (json == null)
+        {
+            StringWriter out = new StringWriter();
+
+            try (JsonWriter writer = new JsonWriter(out))
+            {
+                write(writer);
+            }
+            catch (IOException e)
+            {
+                throw new WrapperException(e);
+            }
+
+            this.json = json = out.toString();
+        }
+
+        return json;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) return true;
+        if (!(o instanceof ChatComponent)) return false;
+
+        ChatComponent other = (ChatComponent) o;
+
+        return Objects.equals(text, other.text) && Objects.equals(translate, other.translate)
+                && with.equals(other.with) && Objects.equals(selector, other.selector)
+                && Objects.equals(scoreName, other.scoreName)
+                && Objects.equals(scoreObjective, other.scoreObjective)
+                && Objects.equals(scoreValue, other.scoreValue) && style.equals(other.style)
+                && extra.equals(other.extra);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(text, translate, with, selector, scoreName, scoreObjective, scoreValue,
+                style, extra);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ChatComponent[" + toJson() + "]";
+    }
+
+    /**
+     * Records the JSON from which this component was parsed
+     *
+     * @param json The source JSON
+     *
+     * @return This component
+     */
+    ChatComponent withJson(String json)
+    {
+        this.json = json;
+
+        return this;
+    }
+
+    /**
+     * Creates a copy of this component with additional children
+     *
+     * @param children The children to append
+     *
+     * @return The new component
+     */
+    ChatComponent withExtra(List<ChatComponent> children)
+    {
+        if (children.isEmpty()) return this;
+
+        ChatComponent[] all = extra.toArray(new ChatComponent[extra.size() + children.size()]);
+
+        for (int i = 0; i < children.size(); i++)
+            all[extra.size() + i] = children.get(i);
+
+        return new ChatComponent(text, translate, with, selector, scoreName, scoreObjective,
+                scoreValue, style, Arrays.asList(all));
+    }
+
+    private void appendPlainText(StringBuilder builder)
+    {
+        if (text != null) builder.append(text);
+        else if (translate != null) appendTranslation(builder);
+        else if (selector != null) builder.append(selector);
+        else if (scoreValue != null) builder.append(scoreValue);
+
+        for (ChatComponent child : extra)
+            child.appendPlainText(builder);
+    }
+
+    /**
+     * Substitutes this component's arguments into the format of its translation key. Both
+     * sequential ({@code %s}) and indexed ({@code %1$s}) arguments are supported, and {@code %%} is
+     * rendered as a percent sign. Keys in {@link #TRANSLATIONS} are rendered using their English
+     * format. Any other key is used as its own format, and if it does not reference any arguments,
+     * they are appended to it, separated by spaces.
+     *
+     * @param builder The builder to which to append the result
+     */
+    private void appendTranslation(StringBuilder builder)
+    {
+        String format = TRANSLATIONS.getOrDefault(translate, translate);
+        int next = 0;
+        boolean substituted = false;
+        int len = format.length();
+
+        for (int i = 0; i < len; i++)
+        {
+            char c = format.charAt(i);
+
+            if (c != '%' || i + 1 == len)
+            {
+                builder.append(c);
+
+                continue;
+            }
+
+            char d = format.charAt(i + 1);
+
+            if (d == '%')
+            {
+                builder.append('%');
+                i++;
+            }
+            else if (d == 's')
+            {
+                appendArgument(builder, next++);
+                substituted = true;
+                i++;
+            }
+            else
+            {
+                int end = i + 1;
+
+                while (end < len && Character.isDigit(format.charAt(end)))
+                    end++;
+
+                if (end > i + 1 && end + 1 < len && format.charAt(end) == '$'
+                        && format.charAt(end + 1) == 's')
+                {
+                    appendArgument(builder, Integer.parseInt(format.substring(i + 1, end)) - 1);
+                    substituted = true;
+                    i = end + 1;
+                }
+                else builder.append(c);
+            }
+        }
+
+        // Keys without a known format would otherwise hide their arguments
+        if (substituted) return;
+
+        for (int i = 0; i < with.size(); i++)
+        {
+            builder.append(' ');
+            appendArgument(builder, i);
+        }
+    }
+
+    private void appendArgument(StringBuilder builder, int index)
+    {
+        if (index >= 0 && index < with.size()) with.get(index).appendPlainText(builder);
+    }
+
+    /**
+     * Writes this component as a JSON object
+     *
+     * @param writer The writer to which to write
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    void write(JsonWriter writer) throws IOException
+    {
+        writer.beginObject();
+
+        if (translate != null)
+        {
+            writer.name("translate").value(translate);
+
+            if (!with.isEmpty())
+            {
+                writer.name("with").beginArray();
+
+                for (ChatComponent arg : with)
+                    arg.write(writer);
+
+                writer.endArray();
+            }
+        }
+        else if (selector != null) writer.name("selector").value(selector);
+        else if (scoreName != null)
+        {
+            writer.name("score").beginObject().name("name").value(scoreName).name("objective")
+                    .value(scoreObjective);
+
+            if (scoreValue != null) writer.name("value").value(scoreValue);
+
+            writer.endObject();
+        }
+        else writer.name("text").value(text == null ? "" : text);
+
+        writeValue(writer, "color", style.getColor());
+        writeValue(writer, "bold", style.getBold());
+        writeValue(writer, "italic", style.getItalic());
+        writeValue(writer, "underlined", style.getUnderlined());
+        writeValue(writer, "strikethrough", style.getStrikethrough());
+        writeValue(writer, "obfuscated", style.getObfuscated());
+        writeValue(writer, "insertion", style.getInsertion());
+        writeEvent(writer, "clickEvent", style.getClickEvent(), true);
+        writeEvent(writer, "hoverEvent", style.getHoverEvent(), false);
+
+        if (!extra.isEmpty())
+        {
+            writer.name("extra").beginArray();
+
+            for (ChatComponent child : extra)
+                child.write(writer);
+
+            writer.endArray();
+        }
+
+        writer.endObject();
+    }
+
+    private static void writeValue(JsonWriter writer, String name, String value)
+            throws IOException
+    {
+        if (value != null) writer.name(name).value(value);
+    }
+
+    private static void writeValue(JsonWriter writer, String name, Boolean value)
+            throws IOException
+    {
+        if (value != null) writer.name(name).value(value);
+    }
+
+    private static void writeEvent(JsonWriter writer, String name, ChatEvent event,
+            boolean plainValue) throws IOException
+    {
+        if (event == null) return;
+
+        writer.name(name).beginObject().name("action").value(event.getAction());
+
+        if (event.getValue() != null)
+        {
+            writer.name("value");
+
+            if (plainValue) writer.value(event.getValueText());
+            else event.getValue().write(writer);
+        }
+
+        writer.endObject();
+    }
+
+    private static List<ChatComponent> immutable(List<ChatComponent> list)
+    {
+        return list == null || list.isEmpty() ? Collections.emptyList()
+                : Collections.unmodifiableList(new ArrayList<>(list));
+    }
+
+}
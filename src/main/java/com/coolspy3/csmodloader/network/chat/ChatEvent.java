@@ -0,0 +1,74 @@
+package com.coolspy3.csmodloader.network.chat;
+
+import java.util.Objects;
+
+/**
+ * A click or hover event attached to a {@link ChatComponent}
+ */
+public final class ChatEvent
+{
+
+    private final String action;
+    private final ChatComponent value;
+
+    /**
+     * Creates a new ChatEvent
+     *
+     * @param action The action performed by the event (ex. {@code open_url} or {@code show_text})
+     * @param value The value of the event. Events whose values are plain Strings (such as click
+     *        events) store them as text components.
+     */
+    public ChatEvent(String action, ChatComponent value)
+    {
+        this.action = action;
+        this.value = value;
+    }
+
+    /**
+     * @return The action performed by this event
+     */
+    public String getAction()
+    {
+        return action;
+    }
+
+    /**
+     * @return The value of this event
+     */
+    public ChatComponent getValue()
+    {
+        return value;
+    }
+
+    /**
+     * @return The plain text of the value of this event or {@code null} if it has no value
+     */
+    public String getValueText()
+    {
+        return value == null ? null : value.getPlainText();
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) return true;
+        if (!(o instanceof ChatEvent)) return false;
+
+        ChatEvent other = (ChatEvent) o;
+
+        return Objects.equals(action, other.action) && Objects.equals(value, other.value);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(action, value);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ChatEvent[action=" + action + ", value=" + value + "]";
+    }
+
+}
@@ -0,0 +1,105 @@
+package com.coolspy3.csmodloader.network.chat;
+
+import java.util.regex.MatchResult;
+
+/**
+ * Describes a chat message which matched a trigger registered with {@link ChatTriggers}
+ */
+public final class ChatMatch
+{
+
+    private final ChatComponent message;
+    private final byte position;
+    private final String trigger;
+    private final int start;
+    private final int end;
+    private final MatchResult matchResult;
+
+    ChatMatch(ChatComponent message, byte position, String trigger, int start, int end,
+            MatchResult matchResult)
+    {
+        this.message = message;
+        this.position = position;
+        this.trigger = trigger;
+        this.start = start;
+        this.end = end;
+        this.matchResult = matchResult;
+    }
+
+    /**
+     * @return The message which matched the trigger
+     */
+    public ChatComponent getMessage()
+    {
+        return message;
+    }
+
+    /**
+     * @return The plain text of the message which was searched
+     */
+    public String getText()
+    {
+        return message.getPlainText();
+    }
+
+    /**
+     * @return The position at which the message is displayed
+     *
+     * @see ChatWriter#CHAT
+     * @see ChatWriter#SYSTEM
+     * @see ChatWriter#ACTION_BAR
+     */
+    public byte getPosition()
+    {
+        return position;
+    }
+
+    /**
+     * @return The literal or regular expression of the trigger which matched
+     */
+    public String getTrigger()
+    {
+        return trigger;
+    }
+
+    /**
+     * @return The index in the message's plain text of the start of the first match
+     */
+    public int getStart()
+    {
+        return start;
+    }
+
+    /**
+     * @return The index in the message's plain text just after the end of the first match
+     */
+    public int getEnd()
+    {
+        return end;
+    }
+
+    /**
+     * @return The text of the first match
+     */
+    public String getMatched()
+    {
+        return getText().substring(start, end);
+    }
+
+    /**
+     * @return The result of the first match, including any capturing groups, if the trigger is a
+     *         regular expression or {@code null} if it is a literal
+     */
+    public MatchResult getMatchResult()
+    {
+        return matchResult;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ChatMatch[trigger=" + trigger + ", start=" + start + ", end=" + end + ", text="
+                + getText() + "]";
+    }
+
+}
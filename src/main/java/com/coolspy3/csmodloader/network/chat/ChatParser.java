@@ -0,0 +1,396 @@
+package com.coolspy3.csmodloader.network.chat;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.coolspy3.csmodloader.network.packet.ObjectParser;
+import com.coolspy3.csmodloader.util.Utils;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Parses JSON chat components with Gson's streaming {@link JsonReader}, without building an
+ * intermediate {@link com.google.gson.JsonElement} tree or reflecting over model classes. Parsing
+ * is lenient in the same ways as the vanilla client: components may be plain strings or arrays,
+ * and booleans and numbers may be quoted.
+ */
+public final class ChatParser
+{
+
+    /**
+     * The maximum nesting depth of a component
+     */
+    public static final int MAX_DEPTH = 512;
+
+    /**
+     * The cache used by {@link #parseCached(String)} and {@link #parser()}
+     */
+    private static final ChatCache cache = new ChatCache(256, 4096);
+
+    /**
+     * @return An ObjectParser which reads and writes chat components encoded as JSON Strings. Read
+     *         components are looked up in the shared cache, so every subscriber which receives a
+     *         packet shares the same component and its cached plain text.
+     */
+    public static ObjectParser<ChatComponent> parser()
+    {
+        return ObjectParser.skipping(ObjectParser.of(
+                (component, os) -> Utils.writeString(component.toJson(), os),
+                is -> parseCached(Utils.readString(is)),
+                (component, buf) -> Utils.writeString(component.toJson(), buf),
+                buf -> parseCached(Utils.readString(buf)), ChatComponent.class),
+                Utils::skipBytes, Utils::skipBytes);
+    }
+
+    /**
+     * @return The cache shared by {@link #parseCached(String)} and {@link #parser()}
+     */
+    public static ChatCache getCache()
+    {
+        return cache;
+    }
+
+    /**
+     * Parses a JSON chat component, returning the cached component if the same payload has been
+     * parsed recently
+     *
+     * @param json The JSON to parse
+     *
+     * @return The parsed component
+     *
+     * @throws IOException If the JSON is malformed
+     */
+    public static ChatComponent parseCached(String json) throws IOException
+    {
+        return cache.get(json);
+    }
+
+    /**
+     * Parses a JSON chat component
+     *
+     * @param json The JSON to parse
+     *
+     * @return The parsed component
+     *
+     * @throws IOException If the JSON is malformed
+     */
+    public static ChatComponent parse(String json) throws IOException
+    {
+        try (JsonReader reader = new JsonReader(new StringReader(json)))
+        {
+            reader.setLenient(true);
+
+            ChatComponent component = read(reader, 0);
+
+            if (reader.peek() != JsonToken.END_DOCUMENT)
+                throw new IOException("Trailing data after chat component");
+
+            return component.withJson(json);
+        }
+        catch (IllegalStateException | NumberFormatException e)
+        {
+            throw new IOException("Malformed chat component", e);
+        }
+    }
+
+    /**
+     * Reads a single chat component
+     *
+     * @param reader The reader from which to read
+     *
+     * @return The read component
+     *
+     * @throws IOException If the JSON is malformed
+     */
+    public static ChatComponent read(JsonReader reader) throws IOException
+    {
+        return read(reader, 0);
+    }
+
+    private static ChatComponent read(JsonReader reader, int depth) throws IOException
+    {
+        if (depth > MAX_DEPTH) throw new IOException("Chat component is nested too deeply");
+
+        switch (reader.peek())
+        {
+            case STRING:
+            case NUMBER:
+                return ChatComponent.text(reader.nextString());
+
+            case BOOLEAN:
+                return ChatComponent.text(Boolean.toString(reader.nextBoolean()));
+
+            case BEGIN_ARRAY:
+            {
+                // The first element is the parent of the remaining elements
+                reader.beginArray();
+
+                if (!reader.hasNext()) throw new IOException("Empty chat component array");
+
+                ChatComponent parent = read(reader, depth + 1);
+                List<ChatComponent> children = new ArrayList<>();
+
+                while (reader.hasNext())
+                    children.add(read(reader, depth + 1));
+
+                reader.endArray();
+
+                return parent.withExtra(children);
+            }
+
+            case BEGIN_OBJECT:
+                return readObject(reader, depth);
+
+            default:
+                throw new IOException("Unexpected token in chat component: " + reader.peek());
+        }
+    }
+
+    private static ChatComponent readObject(JsonReader reader, int depth) throws IOException
+    {
+        String text = null;
+        String translate = null;
+        List<ChatComponent> with = null;
+        String selector = null;
+        String[] score = null;
+        List<ChatComponent> extra = null;
+
+        String color = null;
+        Boolean bold = null;
+        Boolean italic = null;
+        Boolean underlined = null;
+        Boolean strikethrough = null;
+        Boolean obfuscated = null;
+        String insertion = null;
+        ChatEvent clickEvent = null;
+        ChatEvent hoverEvent = null;
+
+        reader.beginObject();
+
+        while (reader.hasNext())
+        {
+            String name = reader.nextName();
+
+            if (reader.peek() == JsonToken.NULL)
+            {
+                reader.nextNull();
+
+                continue;
+            }
+
+            switch (name)
+            {
+                case "text":
+                    text = readString(reader);
+                    break;
+
+                case "translate":
+                    translate = readString(reader);
+                    break;
+
+                case "with":
+                    with = readList(reader, depth);
+                    break;
+
+                case "selector":
+                    selector = readString(reader);
+                    break;
+
+                case "score":
+                    score = readScore(reader);
+                    break;
+
+                case "extra":
+                    extra = readList(reader, depth);
+                    break;
+
+                case "color":
+                    color = readString(reader);
+                    break;
+
+                case "bold":
+                    bold = readBoolean(reader);
+                    break;
+
+                case "italic":
+                    italic = readBoolean(reader);
+                    break;
+
+                case "underlined":
+                    underlined = readBoolean(reader);
+                    break;
+
+                case "strikethrough":
+                    strikethrough = readBoolean(reader);
+                    break;
+
+                case "obfuscated":
+                    obfuscated = readBoolean(reader);
+                    break;
+
+                case "insertion":
+                    insertion = readString(reader);
+                    break;
+
+                case "clickEvent":
+                    clickEvent = readEvent(reader, depth);
+                    break;
+
+                case "hoverEvent":
+                    hoverEvent = readEvent(reader, depth);
+                    break;
+
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+
+        reader.endObject();
+
+        if (text == null && translate == null && selector == null && score == null)
+            throw new IOException("Chat component has no content");
+
+        ChatStyle style = color == null && bold == null && italic == null && underlined == null
+                && strikethrough == null && obfuscated == null && insertion == null
+                && clickEvent == null && hoverEvent == null ? ChatStyle.EMPTY
+                        : new ChatStyle(color, bold, italic, underlined, strikethrough,
+                                obfuscated, insertion, clickEvent, hoverEvent);
+
+        // Content is resolved in the same order as the vanilla client
+        if (text != null) return new ChatComponent(text, null, null, null, null, null, null,
+                style, extra);
+        if (translate != null) return new ChatComponent(null, translate, with, null, null, null,
+                null, style, extra);
+        if (score != null) return new ChatComponent(null, null, null, null, score[0], score[1],
+                score[2], style, extra);
+
+        return new ChatComponent(null, null, null, selector, null, null, null, style, extra);
+    }
+
+    private static List<ChatComponent> readList(JsonReader reader, int depth) throws IOException
+    {
+        if (reader.peek() != JsonToken.BEGIN_ARRAY)
+            return Collections.singletonList(read(reader, depth + 1));
+
+        List<ChatComponent> list = new ArrayList<>();
+
+        reader.beginArray();
+
+        while (reader.hasNext())
+            list.add(read(reader, depth + 1));
+
+        reader.endArray();
+
+        return list;
+    }
+
+    /**
+     * @return The name, objective, and value of the score
+     */
+    private static String[] readScore(JsonReader reader) throws IOException
+    {
+        String[] score = new String[3];
+
+        reader.beginObject();
+
+        while (reader.hasNext())
+        {
+            String name = reader.nextName();
+
+            if (reader.peek() == JsonToken.NULL)
+            {
+                reader.nextNull();
+
+                continue;
+            }
+
+            switch (name)
+            {
+                case "name":
+                    score[0] = readString(reader);
+                    break;
+
+                case "objective":
+                    score[1] = readString(reader);
+                    break;
+
+                case "value":
+                    score[2] = readString(reader);
+                    break;
+
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+
+        reader.endObject();
+
+        if (score[0] == null || score[1] == null)
+            throw new IOException("Score component is missing its name or objective");
+
+        return score;
+    }
+
+    private static ChatEvent readEvent(JsonReader reader, int depth) throws IOException
+    {
+        String action = null;
+        ChatComponent value = null;
+
+        reader.beginObject();
+
+        while (reader.hasNext())
+        {
+            String name = reader.nextName();
+
+            if (reader.peek() == JsonToken.NULL)
+            {
+                reader.nextNull();
+
+                continue;
+            }
+
+            switch (name)
+            {
+                case "action":
+                    action = readString(reader);
+                    break;
+
+                case "value":
+                    value = read(reader, depth + 1);
+                    break;
+
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+
+        reader.endObject();
+
+        return action == null ? null : new ChatEvent(action, value);
+    }
+
+    private static String readString(JsonReader reader) throws IOException
+    {
+        if (reader.peek() == JsonToken.BOOLEAN) return Boolean.toString(reader.nextBoolean());
+
+        return reader.nextString();
+    }
+
+    private static Boolean readBoolean(JsonReader reader) throws IOException
+    {
+        // Lenient readers accept unquoted and quoted booleans alike
+        if (reader.peek() == JsonToken.BOOLEAN) return reader.nextBoolean();
+
+        return Boolean.valueOf(reader.nextString());
+    }
+
+    private ChatParser()
+    {}
+
+}
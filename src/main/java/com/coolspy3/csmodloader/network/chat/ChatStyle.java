@@ -0,0 +1,172 @@
+package com.coolspy3.csmodloader.network.chat;
+
+import java.util.Objects;
+
+/**
+ * The formatting applied to a {@link ChatComponent}. Properties which are {@code null} are
+ * inherited from the parent component.
+ */
+public final class ChatStyle
+{
+
+    /**
+     * A style which does not set any properties
+     */
+    public static final ChatStyle EMPTY =
+            new ChatStyle(null, null, null, null, null, null, null, null, null);
+
+    private final String color;
+    private final Boolean bold;
+    private final Boolean italic;
+    private final Boolean underlined;
+    private final Boolean strikethrough;
+    private final Boolean obfuscated;
+    private final String insertion;
+    private final ChatEvent clickEvent;
+    private final ChatEvent hoverEvent;
+
+    /**
+     * Creates a new ChatStyle
+     *
+     * @param color The name of the color
+     * @param bold Whether the text is bold
+     * @param italic Whether the text is italic
+     * @param underlined Whether the text is underlined
+     * @param strikethrough Whether the text is struck through
+     * @param obfuscated Whether the text is obfuscated
+     * @param insertion The text inserted into the chat box when the component is shift-clicked
+     * @param clickEvent The event triggered when the component is clicked
+     * @param hoverEvent The event triggered when the component is hovered over
+     */
+    public ChatStyle(String color, Boolean bold, Boolean italic, Boolean underlined,
+            Boolean strikethrough, Boolean obfuscated, String insertion, ChatEvent clickEvent,
+            ChatEvent hoverEvent)
+    {
+        this.color = color;
+        this.bold = bold;
+        this.italic = italic;
+        this.underlined = underlined;
+        this.strikethrough = strikethrough;
+        this.obfuscated = obfuscated;
+        this.insertion = insertion;
+        this.clickEvent = clickEvent;
+        this.hoverEvent = hoverEvent;
+    }
+
+    /**
+     * @return The name of the color or {@code null} if it is inherited
+     */
+    public String getColor()
+    {
+        return color;
+    }
+
+    /**
+     * @return Whether the text is bold or {@code null} if it is inherited
+     */
+    public Boolean getBold()
+    {
+        return bold;
+    }
+
+    /**
+     * @return Whether the text is italic or {@code null} if it is inherited
+     */
+    public Boolean getItalic()
+    {
+        return italic;
+    }
+
+    /**
+     * @return Whether the text is underlined or {@code null} if it is inherited
+     */
+    public Boolean getUnderlined()
+    {
+        return underlined;
+    }
+
+    /**
+     * @return Whether the text is struck through or {@code null} if it is inherited
+     */
+    public Boolean getStrikethrough()
+    {
+        return strikethrough;
+    }
+
+    /**
+     * @return Whether the text is obfuscated or {@code null} if it is inherited
+     */
+    public Boolean getObfuscated()
+    {
+        return obfuscated;
+    }
+
+    /**
+     * @return The text inserted into the chat box when the component is shift-clicked or
+     *         {@code null} if it is inherited
+     */
+    public String getInsertion()
+    {
+        return insertion;
+    }
+
+    /**
+     * @return The event triggered when the component is clicked or {@code null} if it is inherited
+     */
+    public ChatEvent getClickEvent()
+    {
+        return clickEvent;
+    }
+
+    /**
+     * @return The event triggered when the component is hovered over or {@code null} if it is
+     *         inherited
+     */
+    public ChatEvent getHoverEvent()
+    {
+        return hoverEvent;
+    }
+
+    /**
+     * @return Whether this style does not set any properties
+     */
+    public boolean isEmpty()
+    {
+        return equals(EMPTY);
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) return true;
+        if (!(o instanceof ChatStyle)) return false;
+
+        ChatStyle other = (ChatStyle) o;
+
+        return Objects.equals(color, other.color) && Objects.equals(bold, other.bold)
+                && Objects.equals(italic, other.italic)
+                && Objects.equals(underlined, other.underlined)
+                && Objects.equals(strikethrough, other.strikethrough)
+                && Objects.equals(obfuscated, other.obfuscated)
+                && Objects.equals(insertion, other.insertion)
+                && Objects.equals(clickEvent, other.clickEvent)
+                && Objects.equals(hoverEvent, other.hoverEvent);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(color, bold, italic, underlined, strikethrough, obfuscated, insertion,
+                clickEvent, hoverEvent);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ChatStyle[color=" + color + ", bold=" + bold + ", italic=" + italic
+                + ", underlined=" + underlined + ", strikethrough=" + strikethrough
+                + ", obfuscated=" + obfuscated + ", insertion=" + insertion + ", clickEvent="
+                + clickEvent + ", hoverEvent=" + hoverEvent + "]";
+    }
+
+}
@@ -0,0 +1,468 @@
+package com.coolspy3.csmodloader.network.chat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.coolspy3.csmodloader.interfaces.ExceptionConsumer;
+import com.coolspy3.csmodloader.interfaces.ExceptionFunction;
+import com.coolspy3.csmodloader.util.Utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A registry of chat triggers which are matched against the plain text of each incoming chat
+ * message. Instead of every mod scanning every message, all literal triggers are compiled into a
+ * single Aho-Corasick automaton, so each message is scanned once regardless of the number of
+ * triggers. Regular expression triggers are prefiltered by a literal which every match must
+ * contain (when one can be determined), so they are only evaluated for messages which may match.
+ *
+ * Each trigger fires at most once per message, with its first match. Triggers fire in the order in
+ * which they were registered.
+ *
+ * All methods of this class are thread-safe.
+ */
+public final class ChatTriggers
+{
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatTriggers.class);
+
+    private final ArrayList<Trigger> triggers = new ArrayList<>();
+
+    /**
+     * The compiled form of {@link #triggers} or {@code null} if it needs to be recompiled
+     */
+    private volatile Compiled compiled = null;
+
+    /**
+     * Registers a literal trigger. If this function has already been registered for the same
+     * literal, this method has no effect.
+     *
+     * @param literal The text which must be contained in a message
+     * @param func The function to call with each matching message
+     *
+     * @throws IllegalArgumentException If the literal is empty
+     * @throws NullPointerException If either argument is {@code null}
+     */
+    public void register(String literal, ExceptionConsumer<ChatMatch> func)
+            throws IllegalArgumentException, NullPointerException
+    {
+        Objects.requireNonNull(func);
+
+        add(new Trigger(func, literal, null, match -> {
+
+            func.accept(match);
+
+            return false;
+
+        }));
+    }
+
+    /**
+     * Registers a literal trigger. If this function has already been registered for the same
+     * literal, this method has no effect.
+     *
+     * A return value of {@code true} from {@code func} will be interpreted as a request to block
+     * the message.
+     *
+     * @param literal The text which must be contained in a message
+     * @param func The function to call with each matching message
+     *
+     * @throws IllegalArgumentException If the literal is empty
+     * @throws NullPointerException If either argument is {@code null}
+     */
+    public void register(String literal, ExceptionFunction<ChatMatch, Boolean> func)
+            throws IllegalArgumentException, NullPointerException
+    {
+        add(new Trigger(func, literal, null, Objects.requireNonNull(func)));
+    }
+
+    /**
+     * Registers a regular expression trigger. If this function has already been registered for the
+     * same expression, this method has no effect.
+     *
+     * @param pattern The expression which must be found in a message
+     * @param func The function to call with each matching message
+     *
+     * @throws NullPointerException If either argument is {@code null}
+     */
+    public void register(Pattern pattern, ExceptionConsumer<ChatMatch> func)
+            throws NullPointerException
+    {
+        Objects.requireNonNull(func);
+
+        add(new Trigger(func, null, pattern, match -> {
+
+            func.accept(match);
+
+            return false;
+
+        }));
+    }
+
+    /**
+     * Registers a regular expression trigger. If this function has already been registered for the
+     * same expression, this method has no effect.
+     *
+     * A return value of {@code true} from {@code func} will be interpreted as a request to block
+     * the message.
+     *
+     * @param pattern The expression which must be found in a message
+     * @param func The function to call with each matching message
+     *
+     * @throws NullPointerException If either argument is {@code null}
+     */
+    public void register(Pattern pattern, ExceptionFunction<ChatMatch, Boolean> func)
+            throws NullPointerException
+    {
+        add(new Trigger(func, null, pattern, Objects.requireNonNull(func)));
+    }
+
+    /**
+     * @return Whether no triggers have been registered
+     */
+    public synchronized boolean isEmpty()
+    {
+        return triggers.isEmpty();
+    }
+
+    /**
+     * Decodes a clientbound chat message packet and matches it against all registered triggers
+     *
+     * @param packetData A buffer containing the packet's fields (its JSON message and position).
+     *        The buffer's position is not modified.
+     *
+     * @return Whether any of the triggered functions requested that the message be blocked
+     *
+     * @throws IOException If the message cannot be decoded
+     */
+    public boolean dispatch(ByteBuffer packetData) throws IOException
+    {
+        ByteBuffer buf = packetData.duplicate();
+        String json = Utils.readString(buf);
+        byte position = buf.hasRemaining() ? buf.get() : ChatWriter.CHAT;
+
+        return dispatch(ChatParser.parseCached(json), position);
+    }
+
+    /**
+     * Matches a message against all registered triggers
+     *
+     * @param message The message
+     * @param position The position at which the message is displayed
+     *
+     * @return Whether any of the triggered functions requested that the message be blocked
+     */
+    public boolean dispatch(ChatComponent message, byte position)
+    {
+        Compiled compiled = getCompiled();
+
+        if (compiled.triggers.length == 0) return false;
+
+        String text = message.getPlainText();
+        int[] ends = compiled.automaton.findFirst(text);
+        boolean blocked = false;
+
+        for (int i = 0; i < compiled.triggers.length; i++)
+        {
+            Trigger trigger = compiled.triggers[i];
+            int literalId = compiled.literalIds[i];
+            ChatMatch match;
+
+            if (trigger.pattern == null)
+            {
+                int end = ends[literalId];
+
+                if (end == -1) continue;
+
+                match = new ChatMatch(message, position, trigger.literal,
+                        end - trigger.literal.length(), end, null);
+            }
+            else
+            {
+                if (literalId != -1 && ends[literalId] == -1) continue;
+
+                Matcher matcher = trigger.pattern.matcher(text);
+
+                if (!matcher.find()) continue;
+
+                match = new ChatMatch(message, position, trigger.pattern.pattern(),
+                        matcher.start(), matcher.end(), matcher.toMatchResult());
+            }
+
+            // Explicitly evaluate each function to ensure that all triggers fire
+            blocked = trigger.func.apply(match) | blocked;
+        }
+
+        return blocked;
+    }
+
+    private synchronized void add(Trigger trigger)
+    {
+        if (triggers.stream().anyMatch(t -> t.id.equals(trigger.id)
+                && Objects.equals(t.literal, trigger.literal)
+                && (t.pattern == null ? trigger.pattern == null
+                        : trigger.pattern != null
+                                && t.pattern.pattern().equals(trigger.pattern.pattern())
+                                && t.pattern.flags() == trigger.pattern.flags())))
+        {
+            logger.trace("Trigger has already been registered! Aborting...");
+
+            return;
+        }
+
+        triggers.add(trigger);
+        compiled = null;
+    }
+
+    /**
+     * @return The compiled form of the registered triggers, compiling them if necessary
+     */
+    private Compiled getCompiled()
+    {
+        Compiled compiled = this.compiled;
+
+        if (compiled != null) return compiled;
+
+        synchronized (this)
+        {
+            if (this.compiled == null) this.compiled = new Compiled(triggers);
+
+            return this.compiled;
+        }
+    }
+
+    /**
+     * Determines a literal which must be contained in every match of a regular expression. The
+     * analysis is conservative: it only considers characters outside of groups, and gives up on
+     * constructs which it does not understand.
+     *
+     * @param pattern The expression to analyze
+     *
+     * @return The longest such literal which was found or {@code null} if none could be determined
+     */
+    static String requiredLiteral(Pattern pattern)
+    {
+        String src = pattern.pattern();
+
+        if ((pattern.flags() & Pattern.LITERAL) != 0) return src.isEmpty() ? null : src;
+        if ((pattern.flags() & (Pattern.CASE_INSENSITIVE | Pattern.COMMENTS)) != 0) return null;
+
+        StringBuilder run = new StringBuilder();
+        String best = "";
+        int depth = 0;
+
+        for (int i = 0; i < src.length(); i++)
+        {
+            char c = src.charAt(i);
+
+            switch (c)
+            {
+                case '\\':
+                {
+                    if (++i == src.length()) return null;
+
+                    char d = src.charAt(i);
+
+                    if (d == 'Q')
+                    {
+                        int end = src.indexOf("\\E", i + 1);
+                        String quoted = src.substring(i + 1, end == -1 ? src.length() : end);
+
+                        i = end == -1 ? src.length() : end + 1;
+
+                        // A quantifier only applies to the last quoted character
+                        if (depth == 0) run.append(quoted);
+                        else best = longest(best, run);
+                    }
+                    else if (!Character.isLetterOrDigit(d))
+                    {
+                        if (depth == 0) run.append(d);
+                        else best = longest(best, run);
+                    }
+                    // These escapes span multiple characters
+                    else if ("xu0cpPkN".indexOf(d) != -1) return null;
+                    else best = longest(best, run);
+
+                    break;
+                }
+
+                case '|':
+                    return null;
+
+                case '[':
+                {
+                    best = longest(best, run);
+
+                    // Skip the class, including nested classes and escaped brackets
+                    int nesting = 0;
+
+                    for (; i < src.length(); i++)
+                    {
+                        char d = src.charAt(i);
+
+                        if (d == '\\') i++;
+                        else if (d == '[') nesting++;
+                        else if (d == ']' && --nesting == 0) break;
+                    }
+
+                    break;
+                }
+
+                case '(':
+                    if (i + 1 < src.length() && src.charAt(i + 1) == '?'
+                            && !src.startsWith("(?:", i))
+                        return null;
+
+                    best = longest(best, run);
+                    depth++;
+
+                    break;
+
+                case ')':
+                    best = longest(best, run);
+                    depth--;
+
+                    break;
+
+                case '?':
+                case '*':
+                case '{':
+                    // The previous character is optional
+                    if (run.length() > 0) run.setLength(run.length() - 1);
+
+                    best = longest(best, run);
+
+                    if (c == '{')
+                    {
+                        int end = src.indexOf('}', i);
+
+                        if (end == -1) return null;
+
+                        i = end;
+                    }
+
+                    break;
+
+                case '+':
+                case '.':
+                case '^':
+                case '$':
+                    best = longest(best, run);
+                    break;
+
+                default:
+                    if (depth == 0) run.append(c);
+                    else best = longest(best, run);
+
+                    break;
+            }
+        }
+
+        best = longest(best, run);
+
+        return best.isEmpty() ? null : best;
+    }
+
+    /**
+     * Compares a run of literal characters to the longest run found so far and clears it
+     *
+     * @param best The longest run found so far
+     * @param run The current run
+     *
+     * @return The longer of the two runs
+     */
+    private static String longest(String best, StringBuilder run)
+    {
+        if (run.length() > best.length()) best = run.toString();
+
+        run.setLength(0);
+
+        return best;
+    }
+
+    /**
+     * An internal class representing a registered trigger
+     */
+    private static final class Trigger
+    {
+
+        /**
+         * The function passed to the register method
+         */
+        private final Object id;
+        private final String literal;
+        private final Pattern pattern;
+        private final Function<ChatMatch, Boolean> func;
+
+        public Trigger(Object id, String literal, Pattern pattern,
+                ExceptionFunction<ChatMatch, Boolean> func)
+        {
+            if (pattern == null && Objects.requireNonNull(literal).isEmpty())
+                throw new IllegalArgumentException("Empty trigger");
+
+            this.id = id;
+            this.literal = literal;
+            this.pattern = pattern;
+            this.func = Utils.reporting(func, false);
+        }
+
+    }
+
+    /**
+     * An immutable snapshot of the registered triggers
+     */
+    private static final class Compiled
+    {
+
+        private final Trigger[] triggers;
+        /**
+         * The index of each trigger's literal or prefilter in {@link #automaton} or {@code -1} if
+         * it has none
+         */
+        private final int[] literalIds;
+        private final AhoCorasick automaton;
+
+        public Compiled(List<Trigger> triggers)
+        {
+            HashMap<String, Integer> literalIds = new HashMap<>();
+            ArrayList<String> literals = new ArrayList<>();
+
+            this.triggers = triggers.toArray(new Trigger[0]);
+            this.literalIds = new int[this.triggers.length];
+
+            for (int i = 0; i < this.triggers.length; i++)
+            {
+                Trigger trigger = this.triggers[i];
+                String literal =
+                        trigger.pattern == null ? trigger.literal : requiredLiteral(trigger.pattern);
+
+                if (literal == null)
+                {
+                    this.literalIds[i] = -1;
+
+                    continue;
+                }
+
+                this.literalIds[i] = literalIds.computeIfAbsent(literal, l -> {
+
+                    literals.add(l);
+
+                    return literals.size() - 1;
+
+                });
+            }
+
+            this.automaton = new AhoCorasick(literals);
+        }
+
+    }
+
+}
@@ -0,0 +1,868 @@
+package com.coolspy3.csmodloader.network.chat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.coolspy3.csmodloader.network.ConnectionHandler;
+import com.coolspy3.csmodloader.network.PacketDirection;
+import com.coolspy3.csmodloader.util.Utils;
+
+/**
+ * Builds a JSON chat component by writing escaped UTF-8 bytes directly into a reusable buffer. No
+ * intermediate objects, Strings, or reflection are involved, so messages which are rebuilt many
+ * times per second (such as status overlays and action bars) can be produced cheaply. Parts of a
+ * message which never change can be escaped once and stored as {@link Fragment}s.
+ *
+ * Components are opened with {@link #begin()} and closed with {@link #end()}. Lists of child
+ * components and translation arguments are opened with {@link #beginExtra()} and
+ * {@link #beginWith()} and closed with {@link #endList()}. For example:
+ *
+ * <pre>
+ * writer.reset().begin().text(PREFIX).color("gold").beginExtra().begin().text(status).end()
+ *         .endList().end().send(ConnectionHandler.getLocal(), ChatWriter.ACTION_BAR);
+ * </pre>
+ *
+ * This class is not thread-safe. Each instance should only be used by a single thread at a time.
+ */
+public final class ChatWriter
+{
+
+    /**
+     * The id of the clientbound chat message packet
+     */
+    public static final int CHAT_PACKET_ID = 0x02;
+
+    /**
+     * The position of a message which is displayed in the chat box
+     */
+    public static final byte CHAT = 0;
+    /**
+     * The position of a system message which is displayed in the chat box
+     */
+    public static final byte SYSTEM = 1;
+    /**
+     * The position of a message which is displayed above the hotbar
+     */
+    public static final byte ACTION_BAR = 2;
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(Utils.CHARSET);
+
+    private static final byte OBJECT = 0;
+    private static final byte LIST = 1;
+
+    private byte[] buf;
+    private int len = 0;
+
+    private byte[] scopes = new byte[8];
+    private boolean[] hasElements = new boolean[8];
+    private int depth = 0;
+    private boolean complete = false;
+
+    /**
+     * Creates a new ChatWriter with a default initial capacity
+     */
+    public ChatWriter()
+    {
+        this(256);
+    }
+
+    /**
+     * Creates a new ChatWriter
+     *
+     * @param initialCapacity The initial size of the buffer in bytes. The buffer grows as needed.
+     *
+     * @throws IllegalArgumentException If the capacity is negative
+     */
+    public ChatWriter(int initialCapacity) throws IllegalArgumentException
+    {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Invalid capacity: " + initialCapacity);
+
+        this.buf = new byte[initialCapacity];
+    }
+
+    /**
+     * Escapes a String once so that it can be written as text any number of times without being
+     * escaped again
+     *
+     * @param text The text to escape
+     *
+     * @return The escaped text
+     *
+     * @see #text(Fragment)
+     */
+    public static Fragment escape(String text)
+    {
+        ChatWriter writer = new ChatWriter(text.length() + 16);
+        writer.writeEscaped(text);
+
+        return new Fragment(Arrays.copyOf(writer.buf, writer.len), false);
+    }
+
+    /**
+     * Serializes a component once so that it can be written any number of times without being
+     * serialized again
+     *
+     * @param component The component to serialize
+     *
+     * @return The serialized component
+     *
+     * @see #component(Fragment)
+     */
+    public static Fragment encode(ChatComponent component)
+    {
+        return new Fragment(component.toJson().getBytes(Utils.CHARSET), true);
+    }
+
+    /**
+     * Clears this writer so that a new message can be built. The buffer is retained.
+     *
+     * @return This writer
+     */
+    public ChatWriter reset()
+    {
+        len = 0;
+        depth = 0;
+        complete = false;
+
+        return this;
+    }
+
+    /**
+     * Opens a new component. Components may be opened at the top level or inside of a list.
+     *
+     * @return This writer
+     *
+     * @throws IllegalStateException If a component cannot be opened here
+     */
+    public ChatWriter begin() throws IllegalStateException
+    {
+        beginElement();
+        write('{');
+        push(OBJECT);
+
+        return this;
+    }
+
+    /**
+     * Closes the current component
+     *
+     * @return This writer
+     *
+     * @throws IllegalStateException If a component is not open
+     */
+    public ChatWriter end() throws IllegalStateException
+    {
+        pop(OBJECT);
+        write('}');
+
+        return this;
+    }
+
+    /**
+     * Opens the list of the current component's children
+     *
+     * @return This writer
+     *
+     * @throws IllegalStateException If a component is not open
+     */
+    public ChatWriter beginExtra() throws IllegalStateException
+    {
+        name("extra");
+        write('[');
+        push(LIST);
+
+        return this;
+    }
+
+    /**
+     * Opens the list of the current component's translation arguments
+     *
+     * @return This writer
+     *
+     * @throws IllegalStateException If a component is not open
+     */
+    public ChatWriter beginWith() throws IllegalStateException
+    {
+        name("with");
+        write('[');
+        push(LIST);
+
+        return this;
+    }
+
+    /**
+     * Closes the current list
+     *
+     * @return This writer
+     *
+     * @throws IllegalStateException If a list is not open
+     */
+    public ChatWriter endList() throws IllegalStateException
+    {
+        pop(LIST);
+        write(']');
+
+        return this;
+    }
+
+    /**
+     * Sets the text of the current component
+     *
+     * @param text The text
+     *
+     * @return This writer
+     *
+     * @throws IllegalStateException If a component is not open
+     */
+    public ChatWriter text(String text) throws IllegalStateException
+    {
+        return property("text", text);
+    }
+
+    /**
+     * Sets the text of the current component to a pre-escaped fragment
+     *
+     * @param text The text
+     *
+     * @return This writer
+     *
+     * @throws IllegalArgumentException If the fragment is a serialized component
+     * @throws IllegalStateException If a component is not open
+     */
+    public ChatWriter text(Fragment text) throws IllegalArgumentException, IllegalStateException
+    {
+        if (text.component) throw new IllegalArgumentException("Fragment is not text");
+
+        name("text");
+        write('"');
+        write(text.bytes);
+        write('"');
+
+        return this;
+    }
+
+    /**
+     * Sets the text of the current component to a number without converting it to a String
+     *
+     * @param value The number
+     *
+     * @return This writer
+     *
+     * @throws IllegalStateException If a component is not open
+     */
+    public ChatWriter text(long value) throws IllegalStateException
+    {
+        name("text");
+        write('"');
+
+        if (value == Long.MIN_VALUE) writeEscaped(Long.toString(value));
+        else
+        {
+            if (value < 0)
+            {
+                write('-');
+                value = -value;
+            }
+
+            int start = len;
+
+            do
+            {
+                write((char) ('0' + value % 10));
+                value /= 10;
+            }
+            while (value != 0);
+
+            // The digits were written in reverse order
+            for (int i = start, j = len - 1; i < j; i++, j--)
+            {
+                byte b = buf[i];
+                buf[i] = buf[j];
+                buf[j] = b;
+            }
+        }
+
+        write('"');
+
+        return this;
+    }
+
+    /**
+     * Sets the translation key of the current component
+     *
+     * @param key The translation key
+     *
+     * @return This writer
+     *
+     * @throws IllegalStateException If a component is not open
+     */
+    public ChatWriter translate(String key) throws IllegalStateException
+    {
+        return property("translate", key);
+    }
+
+    /**
+     * Sets the color of the current component
+     *
+     * @param color The name of the color
+     *
+     * @return This writer
+     *
+     * @throws IllegalStateException If a component is not open
+     */
+    public ChatWriter color(String color) throws IllegalStateException
+    {
+        return property("color", color);
+    }
+
+    /**
+     * @param bold Whether the current component is bold
+     *
+     * @return This writer
+     *
+     * @throws IllegalStateException If a component is not open
+     */
+    public ChatWriter bold(boolean bold) throws IllegalStateException
+    {
+        return property("bold", bold);
+    }
+
+    /**
+     * @param italic Whether the current component is italic
+     *
+     * @return This writer
+     *
+     * @throws IllegalStateException If a component is not open
+     */
+    public ChatWriter italic(boolean italic) throws IllegalStateException
+    {
+        return property("italic", italic);
+    }
+
+    /**
+     * @param underlined Whether the current component is underlined
+     *
+     * @return This writer
+     *
+     * @throws IllegalStateException If a component is not open
+     */
+    public ChatWriter underlined(boolean underlined) throws IllegalStateException
+    {
+        return property("underlined", underlined);
+    }
+
+    /**
+     * @param strikethrough Whether the current component is struck through
+     *
+     * @return This writer
+     *
+     * @throws IllegalStateException If a component is not open
+     */
+    public ChatWriter strikethrough(boolean strikethrough) throws IllegalStateException
+    {
+        return property("strikethrough", strikethrough);
+    }
+
+    /**
+     * @param obfuscated Whether the current component is obfuscated
+     *
+     * @return This writer
+     *
+     * @throws IllegalStateException If a component is not open
+     */
+    public ChatWriter obfuscated(boolean obfuscated) throws IllegalStateException
+    {
+        return property("obfuscated", obfuscated);
+    }
+
+    /**
+     * Sets the text inserted into the chat box when the current component is shift-clicked
+     *
+     * @param insertion The text to insert
+     *
+     * @return This writer
+     *
+     * @throws IllegalStateException If a component is not open
+     */
+    public ChatWriter insertion(String insertion) throws IllegalStateException
+    {
+        return property("insertion", insertion);
+    }
+
+    /**
+     * Sets the event triggered when the current component is clicked
+     *
+     * @param action The action (ex. {@code run_command} or {@code open_url})
+     * @param value The value passed to the action
+     *
+     * @return This writer
+     *
+     * @throws IllegalStateException If a component is not open
+     */
+    public ChatWriter clickEvent(String action, String value) throws IllegalStateException
+    {
+        return event("clickEvent", action, value);
+    }
+
+    /**
+     * Sets the event triggered when the current component is hovered over
+     *
+     * @param action The action (ex. {@code show_text})
+     * @param value The value passed to the action
+     *
+     * @return This writer
+     *
+     * @throws IllegalStateException If a component is not open
+     */
+    public ChatWriter hoverEvent(String action, String value) throws IllegalStateException
+    {
+        return event("hoverEvent", action, value);
+    }
+
+    /**
+     * Appends a plain text element to the current list
+     *
+     * @param text The text
+     *
+     * @return This writer
+     *
+     * @throws IllegalStateException If a list is not open
+     */
+    public ChatWriter append(String text) throws IllegalStateException
+    {
+        requireScope(LIST);
+        beginElement();
+        writeString(text);
+
+        return this;
+    }
+
+    /**
+     * Appends an existing component to the current list or writes it as the top-level component
+     *
+     * @param component The component to append
+     *
+     * @return This writer
+     *
+     * @throws IllegalStateException If a component cannot be written here
+     */
+    public ChatWriter component(ChatComponent component) throws IllegalStateException
+    {
+        beginElement();
+        writeUTF8(component.toJson());
+
+        return this;
+    }
+
+    /**
+     * Appends a serialized component to the current list or writes it as the top-level component
+     *
+     * @param component The component to append
+     *
+     * @return This writer
+     *
+     * @throws IllegalArgumentException If the fragment is not a serialized component
+     * @throws IllegalStateException If a component cannot be written here
+     */
+    public ChatWriter component(Fragment component)
+            throws IllegalArgumentException, IllegalStateException
+    {
+        if (!component.component) throw new IllegalArgumentException("Fragment is not a component");
+
+        beginElement();
+        write(component.bytes);
+
+        return this;
+    }
+
+    /**
+     * @return The number of bytes written so far
+     */
+    public int size()
+    {
+        return len;
+    }
+
+    /**
+     * @return A copy of the encoded JSON
+     *
+     * @throws IllegalStateException If the message is not complete
+     */
+    public byte[] toByteArray() throws IllegalStateException
+    {
+        requireComplete();
+
+        return Arrays.copyOf(buf, len);
+    }
+
+    /**
+     * Writes the encoded JSON prefixed with its length in bytes encoded as a VarInt, in the same
+     * format as {@link Utils#writeString(String, ByteBuffer)}
+     *
+     * @param out The buffer to which to write
+     *
+     * @throws IllegalStateException If the message is not complete
+     */
+    public void writeTo(ByteBuffer out) throws IllegalStateException
+    {
+        requireComplete();
+
+        Utils.writeVarInt(len, out);
+        out.put(buf, 0, len);
+    }
+
+    /**
+     * Writes the encoded JSON prefixed with its length in bytes encoded as a VarInt, in the same
+     * format as {@link Utils#writeString(String, OutputStream)}
+     *
+     * @param os The stream to which to write
+     *
+     * @throws IllegalStateException If the message is not complete
+     * @throws IOException If an I/O error occurs
+     */
+    public void writeTo(OutputStream os) throws IllegalStateException, IOException
+    {
+        requireComplete();
+
+        Utils.writeVarInt(len, os);
+        os.write(buf, 0, len);
+    }
+
+    /**
+     * Encodes a clientbound chat message packet containing the message
+     *
+     * @param position The position at which to display the message
+     *
+     * @return The packet id followed by the packet's data
+     *
+     * @throws IllegalStateException If the message is not complete
+     */
+    public byte[] toPacket(byte position) throws IllegalStateException
+    {
+        requireComplete();
+
+        byte[] packet = new byte[Utils.varIntLen(CHAT_PACKET_ID) + Utils.varIntLen(len) + len + 1];
+        ByteBuffer out = ByteBuffer.wrap(packet);
+
+        Utils.writeVarInt(CHAT_PACKET_ID, out);
+        writeTo(out);
+        out.put(position);
+
+        return packet;
+    }
+
+    /**
+     * Sends the message to the client as a chat message packet
+     *
+     * @param handler The handler through which to send the message
+     * @param position The position at which to display the message
+     *
+     * @throws IllegalStateException If the message is not complete
+     * @throws IOException If an I/O error occurs
+     *
+     * @see ConnectionHandler#write(PacketDirection, byte[])
+     */
+    public void send(ConnectionHandler handler, byte position)
+            throws IllegalStateException, IOException
+    {
+        handler.write(PacketDirection.CLIENTBOUND, toPacket(position));
+    }
+
+    @Override
+    public String toString()
+    {
+        return new String(buf, 0, len, Utils.CHARSET);
+    }
+
+    private ChatWriter property(String name, String value)
+    {
+        name(name);
+        writeString(value);
+
+        return this;
+    }
+
+    private ChatWriter property(String name, boolean value)
+    {
+        name(name);
+        writeASCII(value ? "true" : "false");
+
+        return this;
+    }
+
+    private ChatWriter event(String name, String action, String value)
+    {
+        name(name);
+        writeASCII("{\"action\":");
+        writeString(action);
+        writeASCII(",\"value\":");
+        writeString(value);
+        write('}');
+
+        return this;
+    }
+
+    /**
+     * Writes the name of a property of the current component
+     *
+     * @param name The name, which must not need to be escaped
+     */
+    private void name(String name)
+    {
+        requireScope(OBJECT);
+
+        if (hasElements[depth - 1]) write(',');
+        hasElements[depth - 1] = true;
+
+        write('"');
+        writeASCII(name);
+        write('"');
+        write(':');
+    }
+
+    /**
+     * Prepares to write an element, either at the top level or inside of a list
+     */
+    private void beginElement()
+    {
+        if (depth == 0)
+        {
+            if (complete) throw new IllegalStateException("Message is already complete");
+
+            // The top-level element is complete once its scope (if any) has been closed
+            complete = true;
+
+            return;
+        }
+
+        requireScope(LIST);
+
+        if (hasElements[depth - 1]) write(',');
+        hasElements[depth - 1] = true;
+    }
+
+    private void push(byte scope)
+    {
+        if (depth == scopes.length)
+        {
+            scopes = Arrays.copyOf(scopes, depth * 2);
+            hasElements = Arrays.copyOf(hasElements, depth * 2);
+        }
+
+        scopes[depth] = scope;
+        hasElements[depth] = false;
+        depth++;
+    }
+
+    private void pop(byte scope)
+    {
+        requireScope(scope);
+
+        depth--;
+    }
+
+    private void requireScope(byte scope)
+    {
+        if (depth == 0 || scopes[depth - 1] != scope) throw new IllegalStateException(
+                scope == OBJECT ? "No component is open" : "No list is open");
+    }
+
+    private void requireComplete()
+    {
+        if (depth != 0 || !complete)
+            throw new IllegalStateException("Message is not complete");
+    }
+
+    private void writeString(String str)
+    {
+        write('"');
+        writeEscaped(str);
+        write('"');
+    }
+
+    /**
+     * Writes a String as the contents of a JSON string literal
+     *
+     * @param str The String to write
+     */
+    private void writeEscaped(String str)
+    {
+        int strLen = str.length();
+
+        // Most characters are ASCII and do not need escaping, so this is usually exact
+        ensureCapacity(strLen);
+
+        for (int i = 0; i < strLen; i++)
+        {
+            char c = str.charAt(i);
+
+            if (c == '"' || c == '\\')
+            {
+                write('\\');
+                write(c);
+            }
+            else if (c < 0x20 || c == '\u2028' || c == '\u2029')
+            {
+                switch (c)
+                {
+                    case '\n':
+                        writeASCII("\\n");
+                        break;
+
+                    case '\r':
+                        writeASCII("\\r");
+                        break;
+
+                    case '\t':
+                        writeASCII("\\t");
+                        break;
+
+                    default:
+                        writeASCII("\\u");
+                        write(HEX[c >> 12 & 0xF]);
+                        write(HEX[c >> 8 & 0xF]);
+                        write(HEX[c >> 4 & 0xF]);
+                        write(HEX[c & 0xF]);
+                        break;
+                }
+            }
+            else if (c < 0x80) write(c);
+            else i = writeUTF8(str, i);
+        }
+    }
+
+    /**
+     * Encodes the non-ASCII character at the specified index
+     *
+     * @param str The String containing the character
+     * @param i The index of the character
+     *
+     * @return The index of the last char consumed
+     */
+    private int writeUTF8(String str, int i)
+    {
+        char c = str.charAt(i);
+
+        ensureCapacity(4);
+
+        if (c < 0x800)
+        {
+            buf[len++] = (byte) (0xC0 | c >> 6);
+            buf[len++] = (byte) (0x80 | c & 0x3F);
+        }
+        else if (Character.isHighSurrogate(c) && i + 1 < str.length()
+                && Character.isLowSurrogate(str.charAt(i + 1)))
+        {
+            int cp = Character.toCodePoint(c, str.charAt(++i));
+
+            buf[len++] = (byte) (0xF0 | cp >> 18);
+            buf[len++] = (byte) (0x80 | cp >> 12 & 0x3F);
+            buf[len++] = (byte) (0x80 | cp >> 6 & 0x3F);
+            buf[len++] = (byte) (0x80 | cp & 0x3F);
+        }
+        else if (Character.isSurrogate(c)) buf[len++] = '?';
+        else
+        {
+            buf[len++] = (byte) (0xE0 | c >> 12);
+            buf[len++] = (byte) (0x80 | c >> 6 & 0x3F);
+            buf[len++] = (byte) (0x80 | c & 0x3F);
+        }
+
+        return i;
+    }
+
+    /**
+     * Writes a String which is already valid JSON
+     *
+     * @param str The String to write
+     */
+    private void writeUTF8(String str)
+    {
+        ensureCapacity(str.length());
+
+        for (int i = 0; i < str.length(); i++)
+        {
+            char c = str.charAt(i);
+
+            if (c < 0x80) write(c);
+            else i = writeUTF8(str, i);
+        }
+    }
+
+    /**
+     * Writes a String which only contains ASCII characters which do not need to be escaped
+     *
+     * @param str The String to write
+     */
+    private void writeASCII(String str)
+    {
+        ensureCapacity(str.length());
+
+        for (int i = 0; i < str.length(); i++)
+            buf[len++] = (byte) str.charAt(i);
+    }
+
+    private void write(char c)
+    {
+        write((byte) c);
+    }
+
+    private void write(byte b)
+    {
+        ensureCapacity(1);
+
+        buf[len++] = b;
+    }
+
+    private void write(byte[] bytes)
+    {
+        ensureCapacity(bytes.length);
+
+        System.arraycopy(bytes, 0, buf, len, bytes.length);
+        len += bytes.length;
+    }
+
+    private void ensureCapacity(int extra)
+    {
+        if (len + extra > buf.length)
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + extra));
+    }
+
+    /**
+     * A piece of a message which has already been escaped or serialized
+     *
+     * @see ChatWriter#escape(String)
+     * @see ChatWriter#encode(ChatComponent)
+     */
+    public static final class Fragment
+    {
+
+        private final byte[] bytes;
+        private final boolean component;
+
+        private Fragment(byte[] bytes, boolean component)
+        {
+            this.bytes = bytes;
+            this.component = component;
+        }
+
+        /**
+         * @return The number of bytes in this fragment
+         */
+        public int length()
+        {
+            return bytes.length;
+        }
+
+        @Override
+        public String toString()
+        {
+            return new String(bytes, Utils.CHARSET);
+        }
+
+    }
+
+}
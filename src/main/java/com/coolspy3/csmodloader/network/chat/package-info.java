@@ -0,0 +1,4 @@
+/**
+ * Chat component parsing
+ */
+package com.coolspy3.csmodloader.network.chat;
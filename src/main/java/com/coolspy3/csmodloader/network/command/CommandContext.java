@@ -0,0 +1,66 @@
+package com.coolspy3.csmodloader.network.command;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Describes a command which was routed to a handler by a {@link CommandRouter}
+ */
+public final class CommandContext
+{
+
+    private final String command;
+    private final String usage;
+    private final Map<String, String> arguments;
+
+    CommandContext(String command, String usage, LinkedHashMap<String, String> arguments)
+    {
+        this.command = command;
+        this.usage = usage;
+        this.arguments = Collections.unmodifiableMap(arguments);
+    }
+
+    /**
+     * @return The full command as typed by the player, without the leading slash
+     */
+    public String getCommand()
+    {
+        return command;
+    }
+
+    /**
+     * @return The usage string with which the handler was registered
+     */
+    public String getUsage()
+    {
+        return usage;
+    }
+
+    /**
+     * @param name The name of the argument
+     *
+     * @return The value of the argument or {@code null} if the usage does not declare it
+     */
+    public String getArgument(String name)
+    {
+        return arguments.get(name);
+    }
+
+    /**
+     * @return An unmodifiable map of the arguments' names to their values in the order in which
+     *         they were declared
+     */
+    public Map<String, String> getArguments()
+    {
+        return arguments;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "CommandContext[command=" + command + ", usage=" + usage + ", arguments="
+                + arguments + "]";
+    }
+
+}
@@ -0,0 +1,313 @@
+package com.coolspy3.csmodloader.network.command;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.function.Function;
+
+import com.coolspy3.csmodloader.interfaces.ExceptionConsumer;
+import com.coolspy3.csmodloader.util.Utils;
+
+/**
+ * Routes commands typed by the player to the handlers registered by mods. All registered usages
+ * are stored in a single prefix trie, so each serverbound chat message is matched by walking the
+ * trie once instead of being parsed by every mod.
+ *
+ * A usage consists of space-separated tokens. The first token must be a literal (the command's
+ * name). Each following token is either a literal, an argument of the form {@code <name>} which
+ * matches a single word, or (as the last token) a greedy argument of the form {@code <name...>}
+ * which matches the rest of the command. Literals are matched case-insensitively. When more than
+ * one usage could match a command, literals are preferred over arguments, and arguments are
+ * preferred over greedy arguments. For example:
+ *
+ * <pre>
+ * router.register("mymod set &lt;key&gt; &lt;value...&gt;", ctx -&gt; set(ctx.getArgument("key"),
+ *         ctx.getArgument("value")));
+ * </pre>
+ *
+ * Commands which do not match any usage are left untouched.
+ *
+ * All methods of this class are thread-safe.
+ */
+public final class CommandRouter
+{
+
+    /**
+     * The id of the serverbound chat message packet
+     */
+    public static final int CHAT_PACKET_ID = 0x01;
+
+    private final Node root = new Node();
+    private volatile boolean empty = true;
+
+    /**
+     * Registers a command handler
+     *
+     * @param usage The usage of the command, optionally including the leading slash
+     * @param handler The function to call when a command matches the usage
+     *
+     * @throws IllegalArgumentException If the usage is invalid or another handler has already been
+     *         registered for the same usage
+     * @throws NullPointerException If either argument is {@code null}
+     */
+    public synchronized void register(String usage, ExceptionConsumer<CommandContext> handler)
+            throws IllegalArgumentException, NullPointerException
+    {
+        Objects.requireNonNull(handler);
+
+        String[] tokens = tokenize(usage);
+        ArrayList<String> names = new ArrayList<>();
+        Node node = root;
+
+        if (tokens.length == 0) throw new IllegalArgumentException("Empty usage");
+
+        for (int i = 0; i < tokens.length; i++)
+        {
+            String token = tokens[i];
+
+            if (!token.startsWith("<"))
+            {
+                node = node.literals.computeIfAbsent(token.toLowerCase(Locale.ROOT),
+                        t -> new Node());
+
+                continue;
+            }
+
+            if (i == 0) throw new IllegalArgumentException(
+                    "Usage must start with the command name: " + usage);
+            if (!token.endsWith(">") || token.length() < 3)
+                throw new IllegalArgumentException("Invalid argument: " + token);
+
+            String name = token.substring(1, token.length() - 1);
+
+            if (name.endsWith("..."))
+            {
+                if (i != tokens.length - 1) throw new IllegalArgumentException(
+                        "Greedy argument must be the last token: " + usage);
+
+                name = name.substring(0, name.length() - 3);
+
+                if (node.greedy == null) node.greedy = new Node();
+
+                node = node.greedy;
+            }
+            else
+            {
+                if (node.argument == null) node.argument = new Node();
+
+                node = node.argument;
+            }
+
+            if (name.isEmpty() || names.contains(name))
+                throw new IllegalArgumentException("Invalid argument name: " + token);
+
+            names.add(name);
+        }
+
+        if (node.handler != null)
+            throw new IllegalArgumentException("Command already registered: " + node.usage);
+
+        node.usage = usage;
+        node.names = names.toArray(new String[0]);
+        node.handler = Utils.reporting(ctx -> {
+
+            handler.accept(ctx);
+
+            return true;
+
+        }, true);
+
+        empty = false;
+    }
+
+    /**
+     * @return Whether no handlers have been registered
+     */
+    public boolean isEmpty()
+    {
+        return empty;
+    }
+
+    /**
+     * Decodes a serverbound chat message packet and routes it if it contains a matching command
+     *
+     * @param packetData A buffer containing the packet's fields. The buffer's position is not
+     *        modified.
+     *
+     * @return Whether the message was routed to a handler and should therefore be blocked
+     *
+     * @throws IOException If the message cannot be decoded
+     */
+    public boolean dispatch(ByteBuffer packetData) throws IOException
+    {
+        ByteBuffer buf = packetData.duplicate();
+
+        // Only decode the message if it may be a command
+        int len = Utils.readVarInt(buf);
+
+        if (len <= 0 || len > buf.remaining() || buf.get(buf.position()) != '/') return false;
+
+        buf.position(buf.position() - Utils.varIntLen(len));
+
+        return dispatch(Utils.readString(buf));
+    }
+
+    /**
+     * Routes a chat message if it contains a matching command
+     *
+     * @param message The message typed by the player
+     *
+     * @return Whether the message was routed to a handler and should therefore be blocked
+     */
+    public boolean dispatch(String message)
+    {
+        if (empty || !message.startsWith("/")) return false;
+
+        String command = message.substring(1);
+        int[] bounds = bounds(command);
+        ArrayList<String> values = new ArrayList<>();
+        Node node;
+
+        synchronized (this)
+        {
+            node = match(root, command, bounds, 0, values);
+        }
+
+        if (node == null) return false;
+
+        LinkedHashMap<String, String> arguments = new LinkedHashMap<>();
+
+        for (int i = 0; i < node.names.length; i++)
+            arguments.put(node.names[i], values.get(i));
+
+        return node.handler.apply(new CommandContext(command, node.usage, arguments));
+    }
+
+    /**
+     * Finds the node of the usage which matches the remaining tokens of a command
+     *
+     * @param node The node at which to start
+     * @param command The command
+     * @param bounds The start and end indices of each token in the command
+     * @param token The index of the next token to match
+     * @param values The list to which to add the value of each matched argument
+     *
+     * @return The matching node or {@code null} if no usage matches
+     */
+    private static Node match(Node node, String command, int[] bounds, int token,
+            ArrayList<String> values)
+    {
+        if (token * 2 == bounds.length) return node.handler == null ? null : node;
+
+        int start = bounds[token * 2];
+        int end = bounds[token * 2 + 1];
+        Node literal =
+                node.literals.get(command.substring(start, end).toLowerCase(Locale.ROOT));
+
+        if (literal != null)
+        {
+            Node result = match(literal, command, bounds, token + 1, values);
+
+            if (result != null) return result;
+        }
+
+        if (node.argument != null)
+        {
+            values.add(command.substring(start, end));
+
+            Node result = match(node.argument, command, bounds, token + 1, values);
+
+            if (result != null) return result;
+
+            values.remove(values.size() - 1);
+        }
+
+        if (node.greedy != null && node.greedy.handler != null)
+        {
+            values.add(command.substring(start));
+
+            return node.greedy;
+        }
+
+        return null;
+    }
+
+    /**
+     * Splits a String on spaces
+     *
+     * @param str The String to split
+     *
+     * @return The non-empty tokens of the String
+     */
+    private static String[] tokenize(String str)
+    {
+        if (str.startsWith("/")) str = str.substring(1);
+
+        int[] bounds = bounds(str);
+        String[] tokens = new String[bounds.length / 2];
+
+        for (int i = 0; i < tokens.length; i++)
+            tokens[i] = str.substring(bounds[i * 2], bounds[i * 2 + 1]);
+
+        return tokens;
+    }
+
+    /**
+     * Finds the tokens of a String without allocating them
+     *
+     * @param str The String to split
+     *
+     * @return The start and end index of each non-empty, space-separated token
+     */
+    private static int[] bounds(String str)
+    {
+        int[] bounds = new int[8];
+        int count = 0;
+
+        for (int i = 0; i < str.length(); i++)
+        {
+            if (str.charAt(i) == ' ') continue;
+
+            int end = str.indexOf(' ', i);
+
+            if (end == -1) end = str.length();
+
+            if (count + 2 > bounds.length) bounds = Arrays.copyOf(bounds, count * 2);
+
+            bounds[count++] = i;
+            bounds[count++] = end;
+
+            i = end;
+        }
+
+        return Arrays.copyOf(bounds, count);
+    }
+
+    /**
+     * A node in the command trie
+     */
+    private static final class Node
+    {
+
+        private final HashMap<String, Node> literals = new HashMap<>();
+        private Node argument;
+        private Node greedy;
+
+        /**
+         * The handler of the usage which ends at this node or {@code null}
+         */
+        private Function<CommandContext, Boolean> handler;
+        private String usage;
+        /**
+         * The names of the arguments of the usage which ends at this node
+         */
+        private String[] names;
+
+    }
+
+}
@@ -0,0 +1,4 @@
+/**
+ * Command routing
+ */
+package com.coolspy3.csmodloader.network.command;
@@ -0,0 +1,124 @@
+package com.coolspy3.csmodloader.network.packet;
+
+import java.nio.ByteBuffer;
+
+import com.coolspy3.csmodloader.util.LruCache;
+
+/**
+ * A bounded cache mapping raw packet payloads to their decoded packets. Entries are keyed by the
+ * complete payload, so a cached packet is only returned for a byte-identical payload and payloads
+ * whose hashes collide are cached side by side. When the cache is full, the least recently used
+ * entry is evicted.
+ *
+ * Each connection uses its own caches, and a cached packet is shared between every read of the
+ * same payload on that connection. Only immutable packet classes may therefore be cached (see
+ * {@link PacketParser#enableDecodeCache(Class, int)}).
+ *
+ * All methods of this class are thread-safe.
+ *
+ * @see PacketParser#enableDecodeCache(Class, int)
+ * @see PacketParser#read(Class, ByteBuffer, java.util.BitSet, DecodeCache)
+ */
+public final class DecodeCache
+{
+
+    private final LruCache<ByteBuffer, Packet> entries;
+
+    /**
+     * Creates a new DecodeCache
+     *
+     * @param capacity The maximum number of entries held by this cache
+     *
+     * @throws IllegalArgumentException If the capacity is not positive
+     */
+    public DecodeCache(int capacity) throws IllegalArgumentException
+    {
+        this.entries = new LruCache<>(capacity);
+    }
+
+    /**
+     * Looks up the packet decoded from the remaining bytes of the provided buffer. The buffer's
+     * position is not modified.
+     *
+     * @param payload The encoded packet
+     *
+     * @return The cached packet or {@code null} if the payload is not cached
+     */
+    public Packet get(ByteBuffer payload)
+    {
+        // ByteBuffers hash and compare their remaining bytes, so the payload can be used as the key
+        return entries.get(payload);
+    }
+
+    /**
+     * Caches a decoded packet. The remaining bytes of the provided buffer are copied, so the buffer
+     * may be reused once this method returns. The buffer's position is not modified.
+     *
+     * @param payload The encoded packet
+     * @param packet The decoded packet
+     */
+    public void put(ByteBuffer payload, Packet packet)
+    {
+        byte[] data = new byte[payload.remaining()];
+        payload.duplicate().get(data);
+
+        // The copy is never exposed, so its contents and hash cannot change while it is a key
+        entries.put(ByteBuffer.wrap(data), packet);
+    }
+
+    /**
+     * Removes all entries from this cache. The statistics are not reset.
+     */
+    public void clear()
+    {
+        entries.clear();
+    }
+
+    /**
+     * @return The maximum number of entries held by this cache
+     */
+    public int getCapacity()
+    {
+        return entries.getCapacity();
+    }
+
+    /**
+     * @return The number of entries in this cache
+     */
+    public int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * @return The number of lookups which returned a cached packet
+     */
+    public long getHits()
+    {
+        return entries.getHits();
+    }
+
+    /**
+     * @return The number of lookups which did not return a cached packet
+     */
+    public long getMisses()
+    {
+        return entries.getMisses();
+    }
+
+    /**
+     * @return The fraction of lookups which returned a cached packet or {@code 0} if no lookups
+     *         have been performed
+     */
+    public double getHitRate()
+    {
+        return entries.getHitRate();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "DecodeCache[" + entries.getStatistics() + "]";
+    }
+
+}
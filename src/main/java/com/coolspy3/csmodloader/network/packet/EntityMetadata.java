@@ -0,0 +1,686 @@
+package com.coolspy3.csmodloader.network.packet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import com.coolspy3.csmodloader.util.Utils;
+import com.coolspy3.csmodloader.util.WrapperException;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.TeeInputStream;
+
+/**
+ * A lazy, read-only view over an encoded entity metadata list. Entity metadata is encoded as a
+ * sequence of entries, each consisting of a key byte (the entry's type id in the upper 3 bits and
+ * its index in the lower 5 bits) followed by the entry's value, and terminated by the byte
+ * {@code 0x7F}.
+ *
+ * When metadata is read, the raw bytes are copied and the offset of each entry is recorded by
+ * skipping over the entries' values using the parser registered for their types. Values are only
+ * decoded when they are requested.
+ *
+ * The getters for primitive types return {@code 0} if the requested index is not present. All
+ * other getters return {@code null}.
+ *
+ * All methods of this class are thread-safe.
+ */
+public final class EntityMetadata
+{
+
+    public static final int BYTE = 0;
+    public static final int SHORT = 1;
+    public static final int INT = 2;
+    public static final int FLOAT = 3;
+    public static final int STRING = 4;
+    public static final int SLOT = 5;
+    public static final int POSITION = 6;
+    public static final int ROTATION = 7;
+
+    /**
+     * The largest index which can be encoded in an entry's key
+     */
+    public static final int MAX_INDEX = 0x1F;
+
+    /**
+     * The byte which marks the end of the list
+     */
+    private static final int TERMINATOR = 0x7F;
+
+    /**
+     * Marks a value which has not yet been decoded
+     */
+    private static final Object UNDECODED = new Object();
+
+    /**
+     * The parsers used to read and skip values of each type id
+     */
+    private static final ObjectParser<?>[] typeParsers = new ObjectParser<?>[8];
+
+    static
+    {
+        registerType(BYTE, Parsers.fixedLength(
+                ObjectParser.of((b, os) -> Utils.writeByte(b, os), Utils::readByte,
+                        (b, buf) -> buf.put(b), ByteBuffer::get, Byte.class),
+                1));
+        registerType(SHORT, Parsers.ofNumber(2, ByteBuffer::putShort, ByteBuffer::getShort,
+                Short.class));
+        registerType(INT, Parsers.ofNumber(4, ByteBuffer::putInt, ByteBuffer::getInt,
+                Integer.class));
+        registerType(FLOAT, Parsers.ofNumber(4, ByteBuffer::putFloat, ByteBuffer::getFloat,
+                Float.class));
+        registerType(STRING,
+                ObjectParser.skipping(ObjectParser.of(Utils::writeString, Utils::readString,
+                        Utils::writeString, Utils::readString, String.class), Utils::skipBytes,
+                        Utils::skipBytes));
+        registerType(SLOT, Slot.parser());
+        registerType(POSITION, Parsers.fixedLength(ObjectParser.of((pos, os) -> {
+            ByteBuffer buf = ByteBuffer.allocate(12);
+            buf.putInt(pos.getX()).putInt(pos.getY()).putInt(pos.getZ());
+            os.write(buf.array());
+        }, is -> {
+            ByteBuffer buf = ByteBuffer.wrap(Utils.readNBytes(is, 12));
+            return new Position(buf.getInt(), buf.getInt(), buf.getInt());
+        }, (pos, buf) -> buf.putInt(pos.getX()).putInt(pos.getY()).putInt(pos.getZ()),
+                buf -> new Position(buf.getInt(), buf.getInt(), buf.getInt()), Position.class),
+                12));
+        registerType(ROTATION, Parsers.fixedLength(ObjectParser.of((rot, os) -> {
+            ByteBuffer buf = ByteBuffer.allocate(12);
+            buf.putFloat(rot[0]).putFloat(rot[1]).putFloat(rot[2]);
+            os.write(buf.array());
+        }, is -> {
+            ByteBuffer buf = ByteBuffer.wrap(Utils.readNBytes(is, 12));
+            return new float[] {buf.getFloat(), buf.getFloat(), buf.getFloat()};
+        }, (rot, buf) -> buf.putFloat(rot[0]).putFloat(rot[1]).putFloat(rot[2]),
+                buf -> new float[] {buf.getFloat(), buf.getFloat(), buf.getFloat()},
+                float[].class), 12));
+    }
+
+    private final ByteBuffer data;
+    /**
+     * The offset of the value of each index within {@link #data} or {@code -1} if the index is not
+     * present
+     */
+    private final int[] offsets;
+    /**
+     * The type id of each index
+     */
+    private final byte[] types;
+    private final Object[] values;
+
+    private EntityMetadata(byte[] data, int[] offsets, byte[] types)
+    {
+        this.data = ByteBuffer.wrap(data);
+        this.offsets = offsets;
+        this.types = types;
+        this.values = new Object[MAX_INDEX + 1];
+
+        Arrays.fill(values, UNDECODED);
+    }
+
+    /**
+     * Registers the parser used to read, write and skip values of a type. Parsers should override
+     * {@link ObjectParser#skip(ByteBuffer)} so that unwanted entries can be skipped without being
+     * decoded.
+     *
+     * @param typeId The type id
+     * @param parser The parser for values of the type
+     *
+     * @throws IllegalArgumentException If the type id cannot be encoded in an entry's key
+     */
+    public static void registerType(int typeId, ObjectParser<?> parser)
+            throws IllegalArgumentException
+    {
+        if (typeId < 0 || typeId >= typeParsers.length)
+            throw new IllegalArgumentException("Invalid type id: " + typeId);
+
+        typeParsers[typeId] = parser;
+    }
+
+    /**
+     * @param typeId The type id
+     *
+     * @return The parser registered for the type or {@code null} if no parser is registered
+     */
+    public static ObjectParser<?> getTypeParser(int typeId)
+    {
+        return typeId < 0 || typeId >= typeParsers.length ? null : typeParsers[typeId];
+    }
+
+    /**
+     * @return An ObjectParser which reads and writes entity metadata lists
+     */
+    public static ObjectParser<EntityMetadata> parser()
+    {
+        return ObjectParser.skipping(ObjectParser.of(EntityMetadata::write, EntityMetadata::read,
+                EntityMetadata::write, EntityMetadata::read, EntityMetadata.class),
+                EntityMetadata::skip, EntityMetadata::skip);
+    }
+
+    /**
+     * Reads an entity metadata list from an InputStream. Only the raw bytes of the list are copied.
+     * None of its values are decoded.
+     *
+     * @param is The stream from which to read
+     *
+     * @return A view over the list
+     *
+     * @throws IOException If an I/O error occurs or the list contains an unknown type
+     */
+    public static EntityMetadata read(InputStream is) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        InputStream tee = new TeeInputStream(is, bytes)
+        {
+            // Make sure that skipped bytes are also copied
+            @Override
+            public long skip(long n) throws IOException
+            {
+                return IOUtils.skip(this, n);
+            }
+        };
+
+        int[] offsets = newOffsets();
+        byte[] types = new byte[MAX_INDEX + 1];
+
+        while (true)
+        {
+            int key = tee.read();
+
+            if (key == -1) throw new EOFException("Unexpected end of entity metadata");
+            if (key == TERMINATOR) break;
+
+            offsets[key & MAX_INDEX] = bytes.size();
+            types[key & MAX_INDEX] = (byte) (key >> 5);
+
+            parser(key >> 5).skip(tee);
+        }
+
+        return new EntityMetadata(bytes.toByteArray(), offsets, types);
+    }
+
+    /**
+     * Reads an entity metadata list from a ByteBuffer. Only the raw bytes of the list are copied.
+     * None of its values are decoded.
+     *
+     * @param buf The buffer from which to read
+     *
+     * @return A view over the list
+     *
+     * @throws IOException If the list is invalid or contains an unknown type
+     */
+    public static EntityMetadata read(ByteBuffer buf) throws IOException
+    {
+        int start = buf.position();
+        int[] offsets = newOffsets();
+        byte[] types = new byte[MAX_INDEX + 1];
+
+        scan(buf, offsets, types);
+
+        int end = buf.position();
+        byte[] bytes = new byte[end - start];
+
+        buf.position(start);
+        buf.get(bytes);
+
+        // Offsets were recorded relative to the start of the buffer
+        for (int i = 0; i < offsets.length; i++)
+            if (offsets[i] >= 0) offsets[i] -= start;
+
+        return new EntityMetadata(bytes, offsets, types);
+    }
+
+    /**
+     * Creates a view over an encoded entity metadata list
+     *
+     * @param data The encoded list, including its terminator. The array is not copied and must not
+     *        be modified after it has been passed to this method.
+     *
+     * @return The new view
+     *
+     * @throws IOException If the list is invalid or contains an unknown type
+     */
+    public static EntityMetadata wrap(byte[] data) throws IOException
+    {
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        int[] offsets = newOffsets();
+        byte[] types = new byte[MAX_INDEX + 1];
+
+        scan(buf, offsets, types);
+
+        if (buf.hasRemaining()) throw new IOException("Trailing bytes after entity metadata");
+
+        return new EntityMetadata(data, offsets, types);
+    }
+
+    /**
+     * Writes an entity metadata list
+     *
+     * @param metadata The list to write
+     * @param os The stream to which to write
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public static void write(EntityMetadata metadata, OutputStream os) throws IOException
+    {
+        os.write(metadata.data.array());
+    }
+
+    /**
+     * Writes an entity metadata list
+     *
+     * @param metadata The list to write
+     * @param buf The buffer to which to write
+     */
+    public static void write(EntityMetadata metadata, ByteBuffer buf)
+    {
+        buf.put(metadata.data.array());
+    }
+
+    /**
+     * Skips an entity metadata list in an InputStream without decoding it
+     *
+     * @param is The stream to skip
+     *
+     * @throws IOException If an I/O error occurs or the list contains an unknown type
+     */
+    public static void skip(InputStream is) throws IOException
+    {
+        while (true)
+        {
+            int key = Utils.readByte(is) & 0xFF;
+
+            if (key == TERMINATOR) return;
+
+            parser(key >> 5).skip(is);
+        }
+    }
+
+    /**
+     * Skips an entity metadata list in a ByteBuffer without decoding it
+     *
+     * @param buf The buffer to skip
+     *
+     * @throws IOException If the list is invalid or contains an unknown type
+     */
+    public static void skip(ByteBuffer buf) throws IOException
+    {
+        scan(buf, null, null);
+    }
+
+    /**
+     * @param index The index
+     *
+     * @return Whether the specified index is present in this list
+     *
+     * @throws IndexOutOfBoundsException If the index is out of range
+     */
+    public boolean contains(int index) throws IndexOutOfBoundsException
+    {
+        return offsets[index] >= 0;
+    }
+
+    /**
+     * @param index The index
+     *
+     * @return The type id of the specified index or {@code -1} if it is not present
+     *
+     * @throws IndexOutOfBoundsException If the index is out of range
+     */
+    public int getType(int index) throws IndexOutOfBoundsException
+    {
+        return offsets[index] < 0 ? -1 : types[index];
+    }
+
+    /**
+     * @return The indices present in this list in ascending order
+     */
+    public int[] indices()
+    {
+        return IntStream.rangeClosed(0, MAX_INDEX).filter(this::contains).toArray();
+    }
+
+    /**
+     * Decodes the value of an index of any type using the parser registered for its type
+     *
+     * @param index The index
+     *
+     * @return The value or {@code null} if the index is not present
+     *
+     * @throws IndexOutOfBoundsException If the index is out of range
+     * @throws WrapperException If the value cannot be decoded
+     */
+    public synchronized Object get(int index) throws IndexOutOfBoundsException, WrapperException
+    {
+        if (offsets[index] < 0) return null;
+
+        Object value = values[index];
+
+        if (value != UNDECODED) return value;
+
+        try
+        {
+            value = parser(types[index])
+                    .decode((ByteBuffer) data.duplicate().position(offsets[index]));
+        }
+        catch (Exception e)
+        {
+            throw new WrapperException("Error occurred decoding entity metadata index: " + index,
+                    e);
+        }
+
+        values[index] = value;
+
+        return value;
+    }
+
+    /**
+     * @param index The index
+     *
+     * @return The value of the index
+     *
+     * @throws ClassCastException If the index is not a byte
+     * @throws IndexOutOfBoundsException If the index is out of range
+     */
+    public byte getByte(int index) throws ClassCastException, IndexOutOfBoundsException
+    {
+        int offset = offset(index, BYTE);
+
+        return offset < 0 ? 0 : data.get(offset);
+    }
+
+    /**
+     * @param index The index
+     *
+     * @return The value of the index
+     *
+     * @throws ClassCastException If the index is not a short
+     * @throws IndexOutOfBoundsException If the index is out of range
+     */
+    public short getShort(int index) throws ClassCastException, IndexOutOfBoundsException
+    {
+        int offset = offset(index, SHORT);
+
+        return offset < 0 ? 0 : data.getShort(offset);
+    }
+
+    /**
+     * @param index The index
+     *
+     * @return The value of the index
+     *
+     * @throws ClassCastException If the index is not an int
+     * @throws IndexOutOfBoundsException If the index is out of range
+     */
+    public int getInt(int index) throws ClassCastException, IndexOutOfBoundsException
+    {
+        int offset = offset(index, INT);
+
+        return offset < 0 ? 0 : data.getInt(offset);
+    }
+
+    /**
+     * @param index The index
+     *
+     * @return The value of the index
+     *
+     * @throws ClassCastException If the index is not a float
+     * @throws IndexOutOfBoundsException If the index is out of range
+     */
+    public float getFloat(int index) throws ClassCastException, IndexOutOfBoundsException
+    {
+        int offset = offset(index, FLOAT);
+
+        return offset < 0 ? 0 : data.getFloat(offset);
+    }
+
+    /**
+     * @param index The index
+     *
+     * @return The value of the index
+     *
+     * @throws ClassCastException If the index is not a string
+     * @throws IndexOutOfBoundsException If the index is out of range
+     * @throws WrapperException If the value cannot be decoded
+     */
+    public String getString(int index)
+            throws ClassCastException, IndexOutOfBoundsException, WrapperException
+    {
+        return offset(index, STRING) < 0 ? null : (String) get(index);
+    }
+
+    /**
+     * @param index The index
+     *
+     * @return The value of the index
+     *
+     * @throws ClassCastException If the index is not a slot
+     * @throws IndexOutOfBoundsException If the index is out of range
+     * @throws WrapperException If the value cannot be decoded
+     */
+    public Slot getSlot(int index)
+            throws ClassCastException, IndexOutOfBoundsException, WrapperException
+    {
+        return offset(index, SLOT) < 0 ? null : (Slot) get(index);
+    }
+
+    /**
+     * @param index The index
+     *
+     * @return The value of the index
+     *
+     * @throws ClassCastException If the index is not a position
+     * @throws IndexOutOfBoundsException If the index is out of range
+     * @throws WrapperException If the value cannot be decoded
+     */
+    public Position getPosition(int index)
+            throws ClassCastException, IndexOutOfBoundsException, WrapperException
+    {
+        return offset(index, POSITION) < 0 ? null : (Position) get(index);
+    }
+
+    /**
+     * @param index The index
+     *
+     * @return The pitch, yaw and roll of the index
+     *
+     * @throws ClassCastException If the index is not a rotation
+     * @throws IndexOutOfBoundsException If the index is out of range
+     * @throws WrapperException If the value cannot be decoded
+     */
+    public float[] getRotation(int index)
+            throws ClassCastException, IndexOutOfBoundsException, WrapperException
+    {
+        return offset(index, ROTATION) < 0 ? null : ((float[]) get(index)).clone();
+    }
+
+    /**
+     * @return The encoded form of this list, including its terminator
+     */
+    public byte[] toByteArray()
+    {
+        return data.array().clone();
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) return true;
+        if (!(o instanceof EntityMetadata)) return false;
+
+        return data.equals(((EntityMetadata) o).data);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return data.hashCode();
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder("EntityMetadata{");
+
+        for (int index : indices())
+        {
+            if (builder.length() > 15) builder.append(", ");
+
+            Object value = get(index);
+
+            builder.append(index).append('=').append(
+                    value instanceof float[] ? Arrays.toString((float[]) value) : value);
+        }
+
+        return builder.append('}').toString();
+    }
+
+    /**
+     * Creates a new Builder which can be used to encode a new entity metadata list
+     *
+     * @return The new builder
+     */
+    public static Builder builder()
+    {
+        return new Builder();
+    }
+
+    /**
+     * Checks the type of an index and computes the position of its value
+     *
+     * @param index The index
+     * @param type The expected type id
+     *
+     * @return The position of the value within {@link #data} or {@code -1} if the index is not
+     *         present
+     *
+     * @throws ClassCastException If the index is not of the expected type
+     * @throws IndexOutOfBoundsException If the index is out of range
+     */
+    private int offset(int index, int type) throws ClassCastException, IndexOutOfBoundsException
+    {
+        int offset = offsets[index];
+
+        if (offset >= 0 && types[index] != type) throw new ClassCastException(
+                "Entity metadata index: " + index + " has type " + types[index] + ", not " + type);
+
+        return offset;
+    }
+
+    /**
+     * Moves past an encoded list, recording the offset and type of each index if requested
+     *
+     * @param buf The buffer to scan
+     * @param offsets The array in which to store the positions of each value or {@code null}
+     * @param types The array in which to store the type ids of each index or {@code null}
+     *
+     * @throws IOException If the list is invalid or contains an unknown type
+     */
+    private static void scan(ByteBuffer buf, int[] offsets, byte[] types) throws IOException
+    {
+        while (true)
+        {
+            if (!buf.hasRemaining()) throw new EOFException("Unexpected end of entity metadata");
+
+            int key = buf.get() & 0xFF;
+
+            if (key == TERMINATOR) return;
+
+            if (offsets != null)
+            {
+                offsets[key & MAX_INDEX] = buf.position();
+                types[key & MAX_INDEX] = (byte) (key >> 5);
+            }
+
+            parser(key >> 5).skip(buf);
+        }
+    }
+
+    /**
+     * @param typeId The type id
+     *
+     * @return The parser registered for the type
+     *
+     * @throws IOException If no parser is registered for the type
+     */
+    private static ObjectParser<?> parser(int typeId) throws IOException
+    {
+        ObjectParser<?> parser = getTypeParser(typeId);
+
+        if (parser == null) throw new IOException("Unknown entity metadata type: " + typeId);
+
+        return parser;
+    }
+
+    /**
+     * @return A new array of offsets marking every index as not present
+     */
+    private static int[] newOffsets()
+    {
+        int[] offsets = new int[MAX_INDEX + 1];
+        Arrays.fill(offsets, -1);
+
+        return offsets;
+    }
+
+    /**
+     * Encodes a new entity metadata list
+     */
+    public static final class Builder
+    {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        private Builder()
+        {}
+
+        /**
+         * Appends an entry to the list
+         *
+         * @param index The index of the entry
+         * @param typeId The type id of the entry
+         * @param value The value of the entry
+         *
+         * @return This builder
+         *
+         * @throws IllegalArgumentException If the index or type id cannot be encoded or no parser
+         *         is registered for the type
+         * @throws WrapperException If the value cannot be encoded
+         */
+        public Builder put(int index, int typeId, Object value)
+                throws IllegalArgumentException, WrapperException
+        {
+            if (index < 0 || index > MAX_INDEX)
+                throw new IllegalArgumentException("Invalid index: " + index);
+
+            ObjectParser<?> parser = getTypeParser(typeId);
+
+            if (parser == null) throw new IllegalArgumentException("Unknown type: " + typeId);
+
+            bytes.write(typeId << 5 | index);
+            Utils.wrap(() -> parser.encodeObject(value, bytes));
+
+            return this;
+        }
+
+        /**
+         * @return The encoded list
+         *
+         * @throws WrapperException If the list cannot be read back
+         */
+        public EntityMetadata build() throws WrapperException
+        {
+            byte[] data = Arrays.copyOf(bytes.toByteArray(), bytes.size() + 1);
+            data[data.length - 1] = TERMINATOR;
+
+            return Utils.wrap(() -> wrap(data));
+        }
+
+    }
+
+}
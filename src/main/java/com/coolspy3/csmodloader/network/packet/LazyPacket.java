@@ -0,0 +1,91 @@
+package com.coolspy3.csmodloader.network.packet;
+
+import java.util.function.Function;
+
+import com.coolspy3.csmodloader.util.WrapperException;
+
+/**
+ * A packet whose fields are only decoded when they are accessed. Subclasses should provide
+ * accessors which call {@link #get(int)} with the index of the field in their {@link PacketSpec}.
+ *
+ * Lazy packets are registered with
+ * {@link PacketParser#registerLazyPacket(Class, Function, int, int...)}. When one is read from the
+ * packet stream, it keeps a copy of the raw payload. If it is re-serialized, the original payload
+ * is written without re-encoding any values.
+ */
+public abstract class LazyPacket extends Packet
+{
+
+    private final LazyValues values;
+
+    /**
+     * Creates a new LazyPacket from a set of already decoded values. This is the constructor which
+     * should be used by mods creating a packet to send.
+     *
+     * @param values The values of this packet. These should match the types specified by the
+     *        packet's {@link PacketSpec}.
+     *
+     * @throws IllegalArgumentException If the packet class does not provide an @PacketSpec
+     *         annotation or the number of values does not match its specification
+     */
+    protected LazyPacket(Object... values) throws IllegalArgumentException
+    {
+        PacketSpec spec = getClass().getAnnotation(PacketSpec.class);
+
+        if (spec == null) throw new IllegalArgumentException(
+                "No specification defined for packet type: " + getClass().getCanonicalName());
+
+        this.values = LazyValues.of(spec.types(), values);
+    }
+
+    /**
+     * Creates a new LazyPacket backed by the provided values. This is the constructor which should
+     * be used by the function passed to
+     * {@link PacketParser#registerLazyPacket(Class, Function, int, int...)}.
+     *
+     * @param values The values backing this packet
+     */
+    protected LazyPacket(LazyValues values)
+    {
+        this.values = values;
+    }
+
+    /**
+     * Retrieves the value of a field, decoding it if it has not been accessed before
+     *
+     * @param <T> The type of the value
+     * @param index The index of the field in this packet's {@link PacketSpec}
+     *
+     * @return The value
+     *
+     * @throws ClassCastException If the value is not of the expected type
+     * @throws IndexOutOfBoundsException If the index is out of range
+     * @throws WrapperException If the value cannot be decoded
+     */
+    @SuppressWarnings("unchecked")
+    protected <T> T get(int index)
+            throws ClassCastException, IndexOutOfBoundsException, WrapperException
+    {
+        return (T) values.get(index);
+    }
+
+    /**
+     * @return The values backing this packet
+     */
+    public LazyValues getLazyValues()
+    {
+        return values;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Calling this method decodes all fields which have not yet been accessed.
+     */
+    @Override
+    public Object[] getValues()
+    {
+        return values.toArray();
+    }
+
+}
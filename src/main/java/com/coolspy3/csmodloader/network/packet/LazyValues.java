@@ -0,0 +1,287 @@
+package com.coolspy3.csmodloader.network.packet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.coolspy3.csmodloader.util.WrapperException;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * The values backing a {@link LazyPacket}. When read from the packet stream, a LazyValues object
+ * keeps a copy of the packet's raw payload and only decodes a field the first time it is accessed.
+ * The offsets of the fields preceding an accessed field are computed (and cached) as they are
+ * needed by skipping over them, so they are not decoded. Fields after the last accessed field are
+ * never read.
+ *
+ * All methods of this class are thread-safe.
+ */
+public final class LazyValues
+{
+
+    /**
+     * Marks a value which has not yet been decoded
+     */
+    private static final Object UNDECODED = new Object();
+
+    private final Class<?>[] types;
+    private final Object[] values;
+
+    /**
+     * The raw payload from which values are decoded or {@code null} if all values were provided
+     * upfront
+     */
+    private final ByteBuffer data;
+    /**
+     * The starting offsets of each field within {@link #data}. The entry after the last field
+     * contains the length of the payload.
+     */
+    private final int[] offsets;
+    /**
+     * The number of entries at the start of {@link #offsets} which have been computed
+     */
+    private int knownOffsets;
+
+    private LazyValues(Class<?>[] types, Object[] values, ByteBuffer data)
+    {
+        this.types = types;
+        this.values = values;
+        this.data = data;
+
+        if (data == null)
+        {
+            offsets = null;
+        }
+        else
+        {
+            offsets = new int[types.length + 1];
+            knownOffsets = 1;
+        }
+    }
+
+    /**
+     * Creates a new LazyValues object from a set of already decoded values
+     *
+     * @param types The object types used to serialize the values
+     * @param values The values
+     *
+     * @return The new LazyValues object
+     *
+     * @throws IllegalArgumentException If the number of values does not match the number of types
+     */
+    public static LazyValues of(Class<?>[] types, Object... values)
+            throws IllegalArgumentException
+    {
+        if (types.length != values.length) throw new IllegalArgumentException(
+                "Expected " + types.length + " values but got " + values.length);
+
+        return new LazyValues(types, values.clone(), null);
+    }
+
+    /**
+     * Creates a new LazyValues object which will lazily decode values from the remaining bytes of
+     * the provided buffer. The bytes are copied, so the buffer may be reused once this method
+     * returns. The buffer's position will be advanced to its limit.
+     *
+     * @param types The object types used to serialize the values
+     * @param buf The buffer containing the encoded values
+     *
+     * @return The new LazyValues object
+     */
+    public static LazyValues read(Class<?>[] types, ByteBuffer buf)
+    {
+        byte[] payload = new byte[buf.remaining()];
+        buf.get(payload);
+
+        return wrap(types, payload);
+    }
+
+    /**
+     * Creates a new LazyValues object which will lazily decode values from the remaining bytes of
+     * the provided stream. The stream will be read until it is exhausted.
+     *
+     * @param types The object types used to serialize the values
+     * @param is The stream containing the encoded values
+     *
+     * @return The new LazyValues object
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public static LazyValues read(Class<?>[] types, InputStream is) throws IOException
+    {
+        return wrap(types, IOUtils.toByteArray(is));
+    }
+
+    /**
+     * Creates a new LazyValues object which will lazily decode values from the provided payload.
+     * The array is not copied and must not be modified after it has been passed to this method.
+     *
+     * @param types The object types used to serialize the values
+     * @param payload The encoded values
+     *
+     * @return The new LazyValues object
+     */
+    public static LazyValues wrap(Class<?>[] types, byte[] payload)
+    {
+        Object[] values = new Object[types.length];
+        Arrays.fill(values, UNDECODED);
+
+        return new LazyValues(types, values, ByteBuffer.wrap(payload));
+    }
+
+    /**
+     * Retrieves the value at the specified index, decoding it if it has not been accessed before
+     *
+     * @param index The index of the value
+     *
+     * @return The value
+     *
+     * @throws IndexOutOfBoundsException If the index is out of range
+     * @throws WrapperException If the value cannot be decoded
+     */
+    public synchronized Object get(int index) throws IndexOutOfBoundsException, WrapperException
+    {
+        Object value = values[index];
+
+        if (value != UNDECODED) return value;
+
+        seek(index);
+
+        return decodeCurrent(index);
+    }
+
+    /**
+     * @param index The index of the value
+     *
+     * @return Whether the value at the specified index has been decoded
+     *
+     * @throws IndexOutOfBoundsException If the index is out of range
+     */
+    public synchronized boolean isDecoded(int index) throws IndexOutOfBoundsException
+    {
+        return values[index] != UNDECODED;
+    }
+
+    /**
+     * @return The number of values
+     */
+    public int size()
+    {
+        return types.length;
+    }
+
+    /**
+     * Decodes all remaining values
+     *
+     * @return A copy of all values
+     *
+     * @throws WrapperException If a value cannot be decoded
+     */
+    public synchronized Object[] toArray() throws WrapperException
+    {
+        for (int i = 0; i < values.length; i++)
+            get(i);
+
+        return values.clone();
+    }
+
+    /**
+     * @return Whether this object holds the raw payload from which it was read
+     */
+    public boolean hasRawData()
+    {
+        return data != null;
+    }
+
+    /**
+     * Writes the raw payload from which this object was read
+     *
+     * @param os The stream to which to write
+     *
+     * @throws IllegalStateException If this object was not read from a payload
+     * @throws IOException If an I/O error occurs
+     */
+    void writeRaw(OutputStream os) throws IllegalStateException, IOException
+    {
+        if (data == null) throw new IllegalStateException("No raw data available!");
+
+        os.write(data.array(), 0, data.limit());
+    }
+
+    /**
+     * Writes the raw payload from which this object was read
+     *
+     * @param buf The buffer into which to write
+     *
+     * @throws IllegalStateException If this object was not read from a payload
+     */
+    void writeRaw(ByteBuffer buf) throws IllegalStateException
+    {
+        if (data == null) throw new IllegalStateException("No raw data available!");
+
+        buf.put(data.array(), 0, data.limit());
+    }
+
+    /**
+     * Moves the position of {@link #data} to the start of the specified field, computing the
+     * offsets of any preceding fields along the way
+     *
+     * @param index The index of the field
+     */
+    private void seek(int index)
+    {
+        while (knownOffsets <= index)
+        {
+            int field = knownOffsets - 1;
+
+            data.position(offsets[field]);
+
+            // Decoding a field always records the offset of the next one, so any field reached
+            // here has not been decoded and can be skipped
+            try
+            {
+                PacketParser.skipObject(types[field], data);
+            }
+            catch (Exception e)
+            {
+                throw new WrapperException("Error occurred lazily skipping arg (" + field + "): "
+                        + types[field].getName(), e);
+            }
+
+            offsets[knownOffsets++] = data.position();
+        }
+
+        data.position(offsets[index]);
+    }
+
+    /**
+     * Decodes the field at the current position of {@link #data} and records the offset of the
+     * field which follows it
+     *
+     * @param index The index of the field
+     *
+     * @return The decoded value
+     */
+    private Object decodeCurrent(int index)
+    {
+        try
+        {
+            Object value = PacketParser.readAnyObject(types[index], data);
+
+            values[index] = value;
+
+            if (knownOffsets == index + 1) offsets[knownOffsets++] = data.position();
+
+            return value;
+        }
+        catch (Exception e)
+        {
+            throw new WrapperException("Error occurred lazily reading arg (" + index + "): "
+                    + types[index].getName(), e);
+        }
+    }
+
+}
@@ -3,10 +3,14 @@ package com.coolspy3.csmodloader.network.packet;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.function.Function;
 
 import com.coolspy3.csmodloader.interfaces.IOBiConsumer;
+import com.coolspy3.csmodloader.interfaces.IOConsumer;
 import com.coolspy3.csmodloader.interfaces.IOFunction;
+import com.coolspy3.csmodloader.util.ByteBufferInputStream;
+import com.coolspy3.csmodloader.util.ByteBufferOutputStream;
 import com.coolspy3.csmodloader.util.Utils;
 
 /**
@@ -41,12 +45,42 @@ public interface ObjectParser<T>
                 return decMapper.apply(parser.decode(is));
             }
 
+            @Override
+            public U decode(ByteBuffer buf) throws IOException
+            {
+                return decMapper.apply(parser.decode(buf));
+            }
+
             @Override
             public void encode(U obj, OutputStream os) throws IOException
             {
                 parser.encode(encMapper.apply(obj), os);
             }
 
+            @Override
+            public void encode(U obj, ByteBuffer buf) throws IOException
+            {
+                parser.encode(encMapper.apply(obj), buf);
+            }
+
+            @Override
+            public void skip(InputStream is) throws IOException
+            {
+                parser.skip(is);
+            }
+
+            @Override
+            public void skip(ByteBuffer buf) throws IOException
+            {
+                parser.skip(buf);
+            }
+
+            @Override
+            public boolean supportsBuffers()
+            {
+                return parser.supportsBuffers();
+            }
+
             @Override
             public Class<U> getType()
             {
@@ -114,12 +148,42 @@ public interface ObjectParser<T>
                 return decFunc.apply(Utils.box(Utils.readNBytes(is, length)));
             }
 
+            @Override
+            public T decode(ByteBuffer buf) throws IOException
+            {
+                return decFunc.apply(Utils.box(Utils.readNBytes(buf, length)));
+            }
+
             @Override
             public void encode(T obj, OutputStream os) throws IOException
             {
                 os.write(Utils.unbox(encFunc.apply(obj)));
             }
 
+            @Override
+            public void encode(T obj, ByteBuffer buf) throws IOException
+            {
+                buf.put(Utils.unbox(encFunc.apply(obj)));
+            }
+
+            @Override
+            public void skip(InputStream is) throws IOException
+            {
+                Utils.skipNBytes(is, length);
+            }
+
+            @Override
+            public void skip(ByteBuffer buf) throws IOException
+            {
+                Utils.skipNBytes(buf, length);
+            }
+
+            @Override
+            public boolean supportsBuffers()
+            {
+                return true;
+            }
+
             @Override
             public Class<?> getType()
             {
@@ -163,6 +227,63 @@ public interface ObjectParser<T>
         };
     }
 
+    /**
+     * Creates a new object parser which serializes and deserializes using either I/O streams or
+     * ByteBuffers
+     *
+     * @param <T> The type of object serialized by this ObjectParser
+     * @param encFunc The function used to serialize an object to an OutputStream
+     * @param decFunc The function used to deserialize an object from an InputStream
+     * @param bufEncFunc The function used to serialize an object to a ByteBuffer
+     * @param bufDecFunc The function used to deserialize an object from a ByteBuffer
+     * @param type The class type serialized by this ObjectParser
+     *
+     * @return The new parser
+     */
+    public static <T> ObjectParser<T> of(IOBiConsumer<T, OutputStream> encFunc,
+            IOFunction<InputStream, T> decFunc, IOBiConsumer<T, ByteBuffer> bufEncFunc,
+            IOFunction<ByteBuffer, T> bufDecFunc, Class<T> type)
+    {
+        return new ObjectParser<T>()
+        {
+            @Override
+            public T decode(InputStream is) throws IOException
+            {
+                return decFunc.run(is);
+            }
+
+            @Override
+            public T decode(ByteBuffer buf) throws IOException
+            {
+                return bufDecFunc.run(buf);
+            }
+
+            @Override
+            public void encode(T obj, OutputStream os) throws IOException
+            {
+                encFunc.run(obj, os);
+            }
+
+            @Override
+            public void encode(T obj, ByteBuffer buf) throws IOException
+            {
+                bufEncFunc.run(obj, buf);
+            }
+
+            @Override
+            public boolean supportsBuffers()
+            {
+                return true;
+            }
+
+            @Override
+            public Class<?> getType()
+            {
+                return type;
+            }
+        };
+    }
+
     /**
      * Creates a new object parser which serializes a functionally equivalent type to an existing
      * parser.
@@ -188,12 +309,42 @@ public interface ObjectParser<T>
                 return parser.decode(is);
             }
 
+            @Override
+            public T decode(ByteBuffer buf) throws IOException
+            {
+                return parser.decode(buf);
+            }
+
             @Override
             public void encode(T obj, OutputStream os) throws IOException
             {
                 parser.encode(obj, os);
             }
 
+            @Override
+            public void encode(T obj, ByteBuffer buf) throws IOException
+            {
+                parser.encode(obj, buf);
+            }
+
+            @Override
+            public void skip(InputStream is) throws IOException
+            {
+                parser.skip(is);
+            }
+
+            @Override
+            public void skip(ByteBuffer buf) throws IOException
+            {
+                parser.skip(buf);
+            }
+
+            @Override
+            public boolean supportsBuffers()
+            {
+                return parser.supportsBuffers();
+            }
+
             @Override
             public Class<?> getType()
             {
@@ -202,6 +353,76 @@ public interface ObjectParser<T>
         };
     }
 
+    /**
+     * Creates a new object parser which behaves identically to an existing parser but which can
+     * skip over encoded objects without decoding them.
+     *
+     * @param <T> The type of the original parser
+     * @param parser The original parser
+     * @param skipFunc The function used to skip an object in an InputStream
+     * @param bufSkipFunc The function used to skip an object in a ByteBuffer
+     *
+     * @return The new parser
+     *
+     * @see #skip(InputStream)
+     * @see #skip(ByteBuffer)
+     */
+    public static <T> ObjectParser<T> skipping(ObjectParser<T> parser,
+            IOConsumer<InputStream> skipFunc, IOConsumer<ByteBuffer> bufSkipFunc)
+    {
+        return new ObjectParser<T>()
+        {
+
+            @Override
+            public T decode(InputStream is) throws IOException
+            {
+                return parser.decode(is);
+            }
+
+            @Override
+            public T decode(ByteBuffer buf) throws IOException
+            {
+                return parser.decode(buf);
+            }
+
+            @Override
+            public void encode(T obj, OutputStream os) throws IOException
+            {
+                parser.encode(obj, os);
+            }
+
+            @Override
+            public void encode(T obj, ByteBuffer buf) throws IOException
+            {
+                parser.encode(obj, buf);
+            }
+
+            @Override
+            public void skip(InputStream is) throws IOException
+            {
+                skipFunc.run(is);
+            }
+
+            @Override
+            public void skip(ByteBuffer buf) throws IOException
+            {
+                bufSkipFunc.run(buf);
+            }
+
+            @Override
+            public boolean supportsBuffers()
+            {
+                return parser.supportsBuffers();
+            }
+
+            @Override
+            public Class<?> getType()
+            {
+                return parser.getType();
+            }
+        };
+    }
+
     /**
      * Decodes an object from the provided InputStream
      *
@@ -212,6 +433,25 @@ public interface ObjectParser<T>
      */
     public T decode(InputStream is) throws IOException;
 
+    /**
+     * Decodes an object from the provided ByteBuffer, advancing its position past the decoded
+     * object. The buffer may be either a heap or a direct buffer and is expected to use big-endian
+     * byte order.
+     *
+     * The default implementation reads from the buffer through a {@link ByteBufferInputStream}.
+     * Parsers which can read from the buffer directly should override this method and
+     * {@link #supportsBuffers()}.
+     *
+     * @param buf The buffer from which to decode
+     * @return The resulting object
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public default T decode(ByteBuffer buf) throws IOException
+    {
+        return decode(new ByteBufferInputStream(buf));
+    }
+
     /**
      * Encodes an object to the provided OutputStream
      *
@@ -222,6 +462,67 @@ public interface ObjectParser<T>
      */
     public void encode(T obj, OutputStream os) throws IOException;
 
+    /**
+     * Encodes an object into the provided ByteBuffer, advancing its position past the encoded
+     * object.
+     *
+     * The default implementation writes to the buffer through a {@link ByteBufferOutputStream}.
+     * Parsers which can write to the buffer directly should override this method and
+     * {@link #supportsBuffers()}.
+     *
+     * @param obj The object to encode
+     * @param buf The ByteBuffer into which to write the encoded object
+     *
+     * @throws java.nio.BufferOverflowException If the buffer does not have enough space remaining
+     * @throws IOException If an I/O error occurs
+     */
+    public default void encode(T obj, ByteBuffer buf) throws IOException
+    {
+        encode(obj, new ByteBufferOutputStream(buf));
+    }
+
+    /**
+     * Moves past an encoded object in the provided InputStream without returning it.
+     *
+     * The default implementation decodes and discards the object. Parsers which can determine the
+     * length of an encoded object more cheaply should override this method.
+     *
+     * @param is The stream to skip
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public default void skip(InputStream is) throws IOException
+    {
+        decode(is);
+    }
+
+    /**
+     * Moves past an encoded object in the provided ByteBuffer without returning it.
+     *
+     * The default implementation decodes and discards the object. Parsers which can determine the
+     * length of an encoded object more cheaply should override this method.
+     *
+     * @param buf The buffer to skip
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public default void skip(ByteBuffer buf) throws IOException
+    {
+        decode(buf);
+    }
+
+    /**
+     * @return Whether this parser reads and writes ByteBuffers directly rather than through the
+     *         default stream bridges
+     *
+     * @see #decode(ByteBuffer)
+     * @see #encode(Object, ByteBuffer)
+     */
+    public default boolean supportsBuffers()
+    {
+        return false;
+    }
+
     /**
      * @return The class type serialized by this ObjectParser
      */
@@ -243,4 +544,20 @@ public interface ObjectParser<T>
         encode((T) obj, os);
     }
 
+    /**
+     * Attempts to encode the given object into the provided ByteBuffer
+     *
+     * @param obj The object to encode
+     * @param buf The ByteBuffer into which to write the encoded object
+     *
+     * @throws ClassCastException If the provided object cannot be encoded by this ObjectParser
+     * @throws IOException If an I/O error occurs
+     */
+    @SuppressWarnings("unchecked")
+    public default void encodeObject(Object obj, ByteBuffer buf)
+            throws ClassCastException, IOException
+    {
+        encode((T) obj, buf);
+    }
+
 }
@@ -24,4 +24,18 @@ public abstract class Packet
     public static final class VarLong extends WrapperType<Long>
     {}
 
+    /**
+     * A WrapperType for an array of variable-length integers
+     */
+    public static final class VarIntArray extends WrapperType<int[]>
+    {}
+
+    /**
+     * A WrapperType for a String which is expected to take only a small number of distinct values,
+     * such as a player name, channel name, or resource location. Decoded values are interned in
+     * {@link com.coolspy3.csmodloader.util.StringInterner#IDENTIFIERS}.
+     */
+    public static final class Identifier extends WrapperType<String>
+    {}
+
 }
@@ -0,0 +1,499 @@
+package com.coolspy3.csmodloader.network.packet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.UUID;
+
+import com.coolspy3.csmodloader.util.Utils;
+import com.coolspy3.csmodloader.util.WrapperException;
+
+/**
+ * A predicate over the encoded fields of a packet. Filters are evaluated directly on the frame
+ * buffer through a {@link PacketView}, so packets which are rejected by a filter are never
+ * decoded. Strings are compared by their encoded bytes without being decoded.
+ *
+ * Filters are built from the static factory methods of this class and combined with
+ * {@link #and(PacketFilter)}, {@link #or(PacketFilter)}, and {@link #negate()}. For example:
+ *
+ * <pre>
+ * PacketFilter.equalTo(0, entityId).and(PacketFilter.between(1, -64, 64))
+ * </pre>
+ *
+ * Fields are identified by their indices in the packet's {@link PacketSpec}. Integral comparisons
+ * accept fields of type {@code byte}, {@code short}, {@code int}, {@code long},
+ * {@link Packet.VarInt}, and {@link Packet.VarLong}. Floating-point comparisons additionally
+ * accept {@code float} and {@code double} fields.
+ *
+ * Instances of this class are immutable and thread-safe.
+ */
+public abstract class PacketFilter
+{
+
+    PacketFilter()
+    {}
+
+    /**
+     * Evaluates this filter
+     *
+     * @param view A view of the packet to test
+     *
+     * @return Whether the packet matches this filter
+     *
+     * @throws ClassCastException If a field's type is not supported by the comparison applied to
+     *         it
+     * @throws WrapperException If a field cannot be read
+     */
+    public abstract boolean test(PacketView view) throws ClassCastException, WrapperException;
+
+    /**
+     * Checks whether this filter can be evaluated against a packet layout
+     *
+     * @param layout The types of the packet's fields
+     *
+     * @throws IllegalArgumentException If this filter references a field which does not exist or
+     *         whose type is not supported by the comparison applied to it
+     */
+    abstract void validate(Class<?>[] layout) throws IllegalArgumentException;
+
+    /**
+     * Checks whether this filter can be evaluated against a packet class
+     *
+     * @param packetClass The packet class
+     *
+     * @throws IllegalArgumentException If the packet class does not use default serialization, or
+     *         this filter references a field which does not exist or whose type is not supported
+     *         by the comparison applied to it
+     */
+    public final void validate(Class<? extends Packet> packetClass)
+            throws IllegalArgumentException
+    {
+        Class<?>[] layout = PacketParser.getLayout(packetClass);
+
+        if (layout == null) throw new IllegalArgumentException(
+                "Packet does not use default serialization: " + packetClass.getName());
+
+        validate(layout);
+    }
+
+    /**
+     * @param other Another filter
+     *
+     * @return A filter which matches packets matched by both filters. The other filter is only
+     *         evaluated if this filter matches.
+     */
+    public PacketFilter and(PacketFilter other)
+    {
+        Objects.requireNonNull(other);
+
+        PacketFilter self = this;
+
+        return new PacketFilter()
+        {
+            @Override
+            public boolean test(PacketView view)
+            {
+                return self.test(view) && other.test(view);
+            }
+
+            @Override
+            void validate(Class<?>[] layout)
+            {
+                self.validate(layout);
+                other.validate(layout);
+            }
+
+            @Override
+            public String toString()
+            {
+                return "(" + self + " && " + other + ")";
+            }
+        };
+    }
+
+    /**
+     * @param other Another filter
+     *
+     * @return A filter which matches packets matched by either filter. The other filter is only
+     *         evaluated if this filter does not match.
+     */
+    public PacketFilter or(PacketFilter other)
+    {
+        Objects.requireNonNull(other);
+
+        PacketFilter self = this;
+
+        return new PacketFilter()
+        {
+            @Override
+            public boolean test(PacketView view)
+            {
+                return self.test(view) || other.test(view);
+            }
+
+            @Override
+            void validate(Class<?>[] layout)
+            {
+                self.validate(layout);
+                other.validate(layout);
+            }
+
+            @Override
+            public String toString()
+            {
+                return "(" + self + " || " + other + ")";
+            }
+        };
+    }
+
+    /**
+     * @return A filter which matches packets not matched by this filter
+     */
+    public PacketFilter negate()
+    {
+        PacketFilter self = this;
+
+        return new PacketFilter()
+        {
+            @Override
+            public boolean test(PacketView view)
+            {
+                return !self.test(view);
+            }
+
+            @Override
+            void validate(Class<?>[] layout)
+            {
+                self.validate(layout);
+            }
+
+            @Override
+            public String toString()
+            {
+                return "!" + self;
+            }
+        };
+    }
+
+    /**
+     * @param field The index of an integral field
+     * @param value The value to compare against
+     *
+     * @return A filter which matches packets whose field is equal to the value
+     */
+    public static PacketFilter equalTo(int field, long value)
+    {
+        return between(field, value, value);
+    }
+
+    /**
+     * @param field The index of an integral field
+     * @param min The minimum value (inclusive)
+     * @param max The maximum value (inclusive)
+     *
+     * @return A filter which matches packets whose field is within the range
+     */
+    public static PacketFilter between(int field, long min, long max)
+    {
+        return new FieldFilter(field, "in [" + min + ", " + max + "]")
+        {
+            @Override
+            public boolean test(PacketView view)
+            {
+                long value = readIntegral(view, field);
+
+                return value >= min && value <= max;
+            }
+
+            @Override
+            boolean accepts(Class<?> type)
+            {
+                return isIntegral(type);
+            }
+        };
+    }
+
+    /**
+     * @param field The index of a numeric field
+     * @param min The minimum value (inclusive)
+     * @param max The maximum value (inclusive)
+     *
+     * @return A filter which matches packets whose field is within the range
+     */
+    public static PacketFilter between(int field, double min, double max)
+    {
+        return new FieldFilter(field, "in [" + min + ", " + max + "]")
+        {
+            @Override
+            public boolean test(PacketView view)
+            {
+                Class<?> type = view.getType(field);
+                double value = type == Float.class ? view.getFloat(field)
+                        : type == Double.class ? view.getDouble(field) : readIntegral(view, field);
+
+                return value >= min && value <= max;
+            }
+
+            @Override
+            boolean accepts(Class<?> type)
+            {
+                return type == Float.class || type == Double.class || isIntegral(type);
+            }
+        };
+    }
+
+    /**
+     * @param field The index of a {@code boolean} field
+     * @param value The value to compare against
+     *
+     * @return A filter which matches packets whose field is equal to the value
+     */
+    public static PacketFilter equalTo(int field, boolean value)
+    {
+        return new FieldFilter(field, "== " + value)
+        {
+            @Override
+            public boolean test(PacketView view)
+            {
+                return view.getBoolean(field) == value;
+            }
+
+            @Override
+            boolean accepts(Class<?> type)
+            {
+                return type == Boolean.class;
+            }
+        };
+    }
+
+    /**
+     * @param field The index of a {@link UUID} field
+     * @param value The value to compare against
+     *
+     * @return A filter which matches packets whose field is equal to the value
+     */
+    public static PacketFilter equalTo(int field, UUID value)
+    {
+        Objects.requireNonNull(value);
+
+        return new FieldFilter(field, "== " + value)
+        {
+            @Override
+            public boolean test(PacketView view)
+            {
+                int offset = view.fieldOffset(field);
+                ByteBuffer buf = view.getBuffer();
+
+                return buf.getLong(offset) == value.getMostSignificantBits()
+                        && buf.getLong(offset + 8) == value.getLeastSignificantBits();
+            }
+
+            @Override
+            boolean accepts(Class<?> type)
+            {
+                return type == UUID.class;
+            }
+        };
+    }
+
+    /**
+     * @param field The index of a String field
+     * @param value The value to compare against
+     *
+     * @return A filter which matches packets whose field is equal to the value
+     */
+    public static PacketFilter equalTo(int field, String value)
+    {
+        byte[] bytes = value.getBytes(Utils.CHARSET);
+
+        return new StringFilter(field, "== \"" + value + "\"")
+        {
+            @Override
+            boolean test(ByteBuffer buf, int start, int len)
+            {
+                return len == bytes.length && regionMatches(buf, start, bytes);
+            }
+        };
+    }
+
+    /**
+     * @param field The index of a String field
+     * @param prefix The prefix to search for
+     *
+     * @return A filter which matches packets whose field starts with the prefix
+     */
+    public static PacketFilter startsWith(int field, String prefix)
+    {
+        byte[] bytes = prefix.getBytes(Utils.CHARSET);
+
+        return new StringFilter(field, "startsWith \"" + prefix + "\"")
+        {
+            @Override
+            boolean test(ByteBuffer buf, int start, int len)
+            {
+                return len >= bytes.length && regionMatches(buf, start, bytes);
+            }
+        };
+    }
+
+    /**
+     * @param field The index of a String field
+     * @param substring The substring to search for
+     *
+     * @return A filter which matches packets whose field contains the substring
+     */
+    public static PacketFilter contains(int field, String substring)
+    {
+        // UTF-8 is self-synchronizing, so a byte-wise match is always a character-wise match
+        byte[] bytes = substring.getBytes(Utils.CHARSET);
+
+        return new StringFilter(field, "contains \"" + substring + "\"")
+        {
+            @Override
+            boolean test(ByteBuffer buf, int start, int len)
+            {
+                for (int i = start, end = start + len - bytes.length; i <= end; i++)
+                    if (regionMatches(buf, i, bytes)) return true;
+
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Reads an integral field as a long
+     *
+     * @param view The view from which to read
+     * @param field The index of the field
+     *
+     * @return The value of the field
+     *
+     * @throws ClassCastException If the field is not integral
+     * @throws WrapperException If the field cannot be read
+     */
+    static long readIntegral(PacketView view, int field)
+            throws ClassCastException, WrapperException
+    {
+        Class<?> type = view.getType(field);
+
+        if (type == Integer.class) return view.getInt(field);
+        if (type == Packet.VarInt.class) return view.getVarInt(field);
+        if (type == Long.class) return view.getLong(field);
+        if (type == Packet.VarLong.class) return view.getVarLong(field);
+        if (type == Short.class) return view.getShort(field);
+        if (type == Byte.class) return view.getByte(field);
+
+        throw new ClassCastException("Field " + field + " of type " + type.getName()
+                + " is not integral");
+    }
+
+    private static boolean isIntegral(Class<?> type)
+    {
+        return type == Byte.class || type == Short.class || type == Integer.class
+                || type == Long.class || type == Packet.VarInt.class
+                || type == Packet.VarLong.class;
+    }
+
+    private static boolean regionMatches(ByteBuffer buf, int start, byte[] bytes)
+    {
+        for (int i = 0; i < bytes.length; i++)
+            if (buf.get(start + i) != bytes[i]) return false;
+
+        return true;
+    }
+
+    /**
+     * A filter which compares a single field
+     */
+    private abstract static class FieldFilter extends PacketFilter
+    {
+
+        final int field;
+        private final String description;
+
+        FieldFilter(int field, String description)
+        {
+            if (field < 0) throw new IllegalArgumentException("Invalid field index: " + field);
+
+            this.field = field;
+            this.description = description;
+        }
+
+        /**
+         * @param type The type of the field
+         *
+         * @return Whether this filter can compare fields of the provided type
+         */
+        abstract boolean accepts(Class<?> type);
+
+        @Override
+        void validate(Class<?>[] layout)
+        {
+            if (field >= layout.length)
+                throw new IllegalArgumentException("Packet has no field: " + field);
+
+            if (!accepts(layout[field])) throw new IllegalArgumentException(
+                    "Filter " + this + " cannot be applied to type: " + layout[field].getName());
+        }
+
+        @Override
+        public String toString()
+        {
+            return "[" + field + "] " + description;
+        }
+
+    }
+
+    /**
+     * A filter which compares the encoded bytes of a String field
+     */
+    private abstract static class StringFilter extends FieldFilter
+    {
+
+        StringFilter(int field, String description)
+        {
+            super(field, description);
+        }
+
+        /**
+         * @param buf The buffer containing the encoded String
+         * @param start The position of the first byte of the String
+         * @param len The length of the String in bytes
+         *
+         * @return Whether the String matches this filter
+         */
+        abstract boolean test(ByteBuffer buf, int start, int len);
+
+        @Override
+        public boolean test(PacketView view)
+        {
+            if (view.getType(field) != String.class)
+                throw new ClassCastException("Field " + field + " is not a String");
+
+            int offset = view.fieldOffset(field);
+            ByteBuffer buf = view.getBuffer();
+
+            try
+            {
+                int len = Utils.readVarInt(buf, offset);
+                int start = offset + Utils.varIntLen(buf, offset);
+
+                if (len < 0 || start + len > buf.limit())
+                    throw new IOException("Invalid String length: " + len);
+
+                return test(buf, start, len);
+            }
+            catch (IOException e)
+            {
+                throw new WrapperException("Error occurred reading arg (" + field + ")", e);
+            }
+        }
+
+        @Override
+        boolean accepts(Class<?> type)
+        {
+            return type == String.class;
+        }
+
+    }
+}
@@ -3,10 +3,17 @@ package com.coolspy3.csmodloader.network.packet;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 import com.coolspy3.csmodloader.network.PacketDirection;
+import com.coolspy3.csmodloader.util.ByteBufferInputStream;
 import com.coolspy3.csmodloader.util.WrapperException;
 
 import org.slf4j.Logger;
@@ -34,6 +41,50 @@ public final class PacketParser
     private static final HashMap<Class<? extends Packet>, Function<Object[], ? extends Packet>> constructors =
             new HashMap<>();
 
+    /**
+     * A mapping of lazily decoded packet classes to the functions required to create them from a
+     * set of {@link LazyValues}
+     */
+    private static final HashMap<Class<? extends Packet>, Function<LazyValues, ? extends Packet>> lazyConstructors =
+            new HashMap<>();
+
+    /**
+     * A mapping of pooled packet classes to the functions used to create new instances of them
+     */
+    private static final HashMap<Class<? extends Packet>, Supplier<? extends PooledPacket>> pooledFactories =
+            new HashMap<>();
+
+    /**
+     * A mapping of packet classes to the capacities of the caches used by each connection to
+     * memoize their decoded forms
+     *
+     * @see #enableDecodeCache(Class, int)
+     */
+    private static final ConcurrentHashMap<Class<? extends Packet>, Integer> decodeCacheCapacities =
+            new ConcurrentHashMap<>();
+
+    /**
+     * A cache of whether each packet class is immutable
+     *
+     * @see #isImmutable(Class)
+     */
+    private static final ConcurrentHashMap<Class<? extends Packet>, Boolean> immutableClasses =
+            new ConcurrentHashMap<>();
+
+    /**
+     * A cache of the field types of each packet class
+     *
+     * @see #getLayout(Class)
+     */
+    private static final ConcurrentHashMap<Class<? extends Packet>, Class<?>[]> layouts =
+            new ConcurrentHashMap<>();
+
+    /**
+     * The values passed to constructors in place of skipped fields of boxed primitive types, so
+     * that constructors which unbox them do not throw
+     */
+    private static final HashMap<Class<?>, Object> primitiveDefaults = new HashMap<>();
+
     /**
      * A mapping of packet ids to their associated clientbound packet classes
      */
@@ -69,6 +120,15 @@ public final class PacketParser
 
     static
     {
+        primitiveDefaults.put(Boolean.class, false);
+        primitiveDefaults.put(Byte.class, (byte) 0);
+        primitiveDefaults.put(Short.class, (short) 0);
+        primitiveDefaults.put(Character.class, (char) 0);
+        primitiveDefaults.put(Integer.class, 0);
+        primitiveDefaults.put(Long.class, 0L);
+        primitiveDefaults.put(Float.class, 0f);
+        primitiveDefaults.put(Double.class, 0d);
+
         Parsers.registerDefaults();
     }
 
@@ -95,6 +155,7 @@ public final class PacketParser
                 "No specification defined for packet type: " + packetType.getCanonicalName());
 
         specifications.put(packetType, spec);
+        layouts.remove(packetType);
         constructors.put(packetType, constructor);
     }
 
@@ -113,9 +174,217 @@ public final class PacketParser
     {
         logger.trace("Adding specification for Packet: {}", packetType);
         specifications.put(packetType, spec);
+        layouts.remove(packetType);
         constructors.put(packetType, constructor);
     }
 
+    /**
+     * Registers a lazily decoded packet specification. The specification is assumed to annotate the
+     * provided packet's class. When a packet of this type is read, it will hold onto the raw
+     * payload and only decode each field when it is first accessed.
+     *
+     * @param <T> The packet type
+     * @param packetType The packet's class type
+     * @param constructor The function to use to create the packet from its lazily decoded values
+     *
+     * @throws IllegalArgumentException If the provided packet's class does not provide
+     *         an @PacketSpec annotation
+     *
+     * @see LazyPacket
+     */
+    public static <T extends LazyPacket> void addLazySpecification(Class<T> packetType,
+            Function<LazyValues, T> constructor) throws IllegalArgumentException
+    {
+        logger.trace("Adding lazy specification for Packet: {}", packetType);
+        PacketSpec spec = packetType.getAnnotation(PacketSpec.class);
+
+        if (spec == null) throw new IllegalArgumentException(
+                "No specification defined for packet type: " + packetType.getCanonicalName());
+
+        specifications.put(packetType, spec);
+        layouts.remove(packetType);
+        constructors.put(packetType,
+                values -> constructor.apply(LazyValues.of(spec.types(), values)));
+        lazyConstructors.put(packetType, constructor);
+    }
+
+    /**
+     * Registers a pooled packet specification. The specification is assumed to annotate the
+     * provided packet's class. Instances of this type may be recycled by a {@link PacketPool} after
+     * they have been dispatched.
+     *
+     * @param <T> The packet type
+     * @param packetType The packet's class type
+     * @param factory The function used to create new, empty instances of the packet
+     *
+     * @throws IllegalArgumentException If the provided packet's class does not provide
+     *         an @PacketSpec annotation
+     *
+     * @see PooledPacket
+     */
+    public static <T extends PooledPacket> void addPooledSpecification(Class<T> packetType,
+            Supplier<T> factory) throws IllegalArgumentException
+    {
+        logger.trace("Adding pooled specification for Packet: {}", packetType);
+        PacketSpec spec = packetType.getAnnotation(PacketSpec.class);
+
+        if (spec == null) throw new IllegalArgumentException(
+                "No specification defined for packet type: " + packetType.getCanonicalName());
+
+        specifications.put(packetType, spec);
+        layouts.remove(packetType);
+        constructors.put(packetType, values -> {
+
+            T packet = factory.get();
+            packet.load(values);
+
+            return packet;
+
+        });
+        pooledFactories.put(packetType, factory);
+        decodeCacheCapacities.remove(packetType);
+    }
+
+    /**
+     * Checks whether instances of the specified packet class may be recycled
+     *
+     * @param packetClass The packet class to check
+     *
+     * @return Whether the packet class was registered as a pooled packet and uses default
+     *         serialization
+     */
+    public static boolean isPooled(Class<? extends Packet> packetClass)
+    {
+        return pooledFactories.containsKey(packetClass)
+                && !customSerializers.containsKey(packetClass);
+    }
+
+    /**
+     * Creates a new pool for the specified packet class
+     *
+     * @param packetClass The packet class
+     * @param capacity The maximum number of idle instances held by the pool
+     *
+     * @return The new pool
+     *
+     * @throws IllegalArgumentException If the packet class is not pooled or the capacity is
+     *         negative
+     *
+     * @see #isPooled(Class)
+     */
+    public static PacketPool<? extends PooledPacket> createPool(
+            Class<? extends Packet> packetClass, int capacity) throws IllegalArgumentException
+    {
+        if (!isPooled(packetClass))
+            throw new IllegalArgumentException("Not a pooled packet: " + packetClass.getName());
+
+        return new PacketPool<>(pooledFactories.get(packetClass), capacity);
+    }
+
+    /**
+     * Enables memoized decoding for the specified packet class. Each connection keeps its own
+     * {@link DecodeCache} for the packet class. When a packet of this type is received whose
+     * remaining bytes are identical to a packet recently received on the same connection, the
+     * previously decoded instance is dispatched instead of decoding the payload again. Since the
+     * same instance may be dispatched many times, only immutable packet classes may be cached (see
+     * {@link #isImmutable(Class)}).
+     *
+     * This is intended for packets which servers resend unchanged, such as tab list headers,
+     * scoreboard lines and boss bars. If caching is already enabled for the packet class, its
+     * capacity is replaced.
+     *
+     * @param packetClass The packet class
+     * @param capacity The maximum number of distinct payloads to cache per connection
+     *
+     * @throws IllegalArgumentException If the packet class is pooled or mutable or the capacity is
+     *         not positive
+     *
+     * @see #disableDecodeCache(Class)
+     * @see com.coolspy3.csmodloader.network.PacketHandler#getDecodeCache(Class)
+     */
+    public static void enableDecodeCache(Class<? extends Packet> packetClass, int capacity)
+            throws IllegalArgumentException
+    {
+        if (pooledFactories.containsKey(packetClass)) throw new IllegalArgumentException(
+                "Pooled packets cannot be cached: " + packetClass.getName());
+
+        if (!isImmutable(packetClass)) throw new IllegalArgumentException(
+                "Mutable packets cannot be cached: " + packetClass.getName());
+
+        if (capacity <= 0) throw new IllegalArgumentException("Invalid capacity: " + capacity);
+
+        logger.trace("Enabling decode cache for Packet: {}", packetClass);
+        decodeCacheCapacities.put(packetClass, capacity);
+    }
+
+    /**
+     * Disables memoized decoding for the specified packet class
+     *
+     * @param packetClass The packet class
+     *
+     * @see #enableDecodeCache(Class, int)
+     */
+    public static void disableDecodeCache(Class<? extends Packet> packetClass)
+    {
+        decodeCacheCapacities.remove(packetClass);
+    }
+
+    /**
+     * @param packetClass The packet class
+     *
+     * @return The capacity of the cache each connection should use to memoize the decoded forms of
+     *         the specified packet class or {@code 0} if caching is not enabled for it
+     *
+     * @see #enableDecodeCache(Class, int)
+     */
+    public static int getDecodeCacheCapacity(Class<? extends Packet> packetClass)
+    {
+        return decodeCacheCapacities.getOrDefault(packetClass, 0);
+    }
+
+    /**
+     * Checks whether instances of the specified packet class can be safely shared between
+     * subscribers. A packet class is considered immutable if every instance field declared by it
+     * and its superclasses is final and not an array. Pooled packets are never immutable.
+     *
+     * @param packetClass The packet class to check
+     *
+     * @return Whether the packet class is immutable
+     */
+    public static boolean isImmutable(Class<? extends Packet> packetClass)
+    {
+        return immutableClasses.computeIfAbsent(packetClass, cls -> {
+
+            if (PooledPacket.class.isAssignableFrom(cls)) return false;
+
+            for (Class<?> c = cls; c != Packet.class; c = c.getSuperclass())
+                for (Field field : c.getDeclaredFields())
+                {
+                    int modifiers = field.getModifiers();
+
+                    if (Modifier.isStatic(modifiers)) continue;
+
+                    if (!Modifier.isFinal(modifiers) || field.getType().isArray()) return false;
+                }
+
+            return true;
+
+        });
+    }
+
+    /**
+     * Checks whether the specified packet class is decoded lazily
+     *
+     * @param packetClass The packet class to check
+     *
+     * @return Whether the packet class was registered with
+     *         {@link #addLazySpecification(Class, Function)}
+     */
+    public static boolean isLazy(Class<? extends Packet> packetClass)
+    {
+        return lazyConstructors.containsKey(packetClass);
+    }
+
     /**
      * Registers the specified ObjectParser to be available during serialization
      *
@@ -222,6 +491,35 @@ public final class PacketParser
         return specifications.get(packetClass);
     }
 
+    /**
+     * Retrieves the types of the fields making up the default serialized form of the provided
+     * packet class
+     *
+     * @param packetClass The packet class to check
+     *
+     * @return The field types or {@code null} if the packet class has no specification or is
+     *         serialized by a custom serializer
+     */
+    static Class<?>[] getLayout(Class<? extends Packet> packetClass)
+    {
+        if (customSerializers.containsKey(packetClass)
+                || !specifications.containsKey(packetClass))
+            return null;
+
+        // PacketSpec.types() returns a new copy on every call, so cache it
+        return layouts.computeIfAbsent(packetClass, PacketParser::computeLayout);
+    }
+
+    /**
+     * @param packetClass The packet class
+     *
+     * @return The types specified by the PacketSpec associated with the provided packet class
+     */
+    private static Class<?>[] computeLayout(Class<? extends Packet> packetClass)
+    {
+        return specifications.get(packetClass).types();
+    }
+
     /**
      * Retrieves the ObjectParser used to serialize the provided type.
      *
@@ -378,9 +676,37 @@ public final class PacketParser
      * @see #registerPacket(Class, Function, int, int...)
      * @see #registerPacket(Class, PacketSerializer, int, int...)
      */
-    @SuppressWarnings("unchecked")
     public static <T extends Packet> T read(Class<T> packetClass, InputStream is)
             throws IllegalArgumentException, IOException
+    {
+        return read(packetClass, is, null);
+    }
+
+    /**
+     * Attempts to read the specified packet type, only decoding the requested fields. All other
+     * fields are skipped using {@link ObjectParser#skip(InputStream)} and will be passed to the
+     * packet's constructor as {@code null}, or as {@code 0} or {@code false} if they are boxed
+     * primitives. Reading stops after the last requested field, so the stream may not be advanced
+     * past the end of the packet.
+     *
+     * Packets with a custom serializer and lazily decoded packets are always read in full.
+     *
+     * @param <T> The packet type
+     * @param packetClass The packet class
+     * @param is The stream from which to read
+     * @param fields The indices of the fields to decode or {@code null} to decode all fields
+     *
+     * @return The read packet
+     *
+     * @throws IllegalArgumentException If default serialization is used and the packet's
+     *         specification or one or more ObjectParsers cannot be found
+     * @throws IOException If an I/O error occurs
+     *
+     * @see #read(Class, InputStream)
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Packet> T read(Class<T> packetClass, InputStream is, BitSet fields)
+            throws IllegalArgumentException, IOException
     {
         // If a custom serializer is registered, use that
         if (customSerializers.containsKey(packetClass))
@@ -391,14 +717,21 @@ public final class PacketParser
 
         PacketSpec spec = getPacketSpecification(packetClass);
 
+        // Lazy packets consume the rest of the stream and decode their fields on demand
+        if (lazyConstructors.containsKey(packetClass)) return (T) lazyConstructors.get(packetClass)
+                .apply(LazyValues.read(spec.types(), is));
+
         Class<?>[] types = spec.types();
         Object[] values = new Object[types.length];
+        int end = fields == null ? types.length : Math.min(types.length, fields.length());
 
-        for (int i = 0; i < types.length; i++)
+        for (int i = 0; i < end; i++)
         {
             try
             {
-                values[i] = readAnyObject(types[i], is);
+                if (fields == null || fields.get(i)) values[i] = readAnyObject(types[i], is);
+                else
+                    skipObject(types[i], is);
             }
             catch (Exception e)
             {
@@ -407,9 +740,261 @@ public final class PacketParser
             }
         }
 
+        fillSkipped(types, fields, values);
+
         return (T) constructors.get(packetClass).apply(values);
     }
 
+    /**
+     * Attempts to read the specified packet type from a ByteBuffer. Fields whose parsers support
+     * ByteBuffers are decoded directly from the buffer. All other fields are read through a
+     * {@link ByteBufferInputStream}. The buffer's position will be advanced past the packet.
+     *
+     * @param <T> The packet type
+     * @param packetClass The packet class
+     * @param buf The buffer from which to read
+     *
+     * @return The read packet
+     *
+     * @throws IllegalArgumentException If default serialization is used and the packet's
+     *         specification or one or more ObjectParsers cannot be found
+     * @throws IOException If an I/O error occurs
+     *
+     * @see #read(Class, InputStream)
+     * @see ObjectParser#supportsBuffers()
+     */
+    public static <T extends Packet> T read(Class<T> packetClass, ByteBuffer buf)
+            throws IllegalArgumentException, IOException
+    {
+        return read(packetClass, buf, null);
+    }
+
+    /**
+     * Attempts to read the specified packet type from a ByteBuffer, only decoding the requested
+     * fields. All other fields are skipped using {@link ObjectParser#skip(ByteBuffer)} and will be
+     * passed to the packet's constructor as {@code null}, or as {@code 0} or {@code false} if they
+     * are boxed primitives. Reading stops after the last requested field, so the buffer's position
+     * may not be advanced past the end of the packet.
+     *
+     * Packets with a custom serializer and lazily decoded packets are always read in full.
+     *
+     * @param <T> The packet type
+     * @param packetClass The packet class
+     * @param buf The buffer from which to read
+     * @param fields The indices of the fields to decode or {@code null} to decode all fields
+     *
+     * @return The read packet
+     *
+     * @throws IllegalArgumentException If default serialization is used and the packet's
+     *         specification or one or more ObjectParsers cannot be found
+     * @throws IOException If an I/O error occurs
+     *
+     * @see #read(Class, ByteBuffer)
+     */
+    public static <T extends Packet> T read(Class<T> packetClass, ByteBuffer buf, BitSet fields)
+            throws IllegalArgumentException, IOException
+    {
+        return read(packetClass, buf, fields, null);
+    }
+
+    /**
+     * Attempts to read the specified packet type from a ByteBuffer, consulting the provided decode
+     * cache first. If the cache is not {@code null}, the packet is read in full, the entire
+     * remainder of the buffer is treated as its payload and a previously decoded instance may be
+     * returned. Otherwise, this behaves like {@link #read(Class, ByteBuffer, BitSet)}.
+     *
+     * @param <T> The packet type
+     * @param packetClass The packet class
+     * @param buf The buffer from which to read
+     * @param fields The indices of the fields to decode or {@code null} to decode all fields. This
+     *        is ignored if a cache is provided.
+     * @param cache The cache of previously decoded instances of the packet class or {@code null}
+     *
+     * @return The read packet
+     *
+     * @throws IllegalArgumentException If default serialization is used and the packet's
+     *         specification or one or more ObjectParsers cannot be found or a cache is provided for
+     *         a mutable packet class
+     * @throws IOException If an I/O error occurs
+     *
+     * @see #enableDecodeCache(Class, int)
+     * @see #isImmutable(Class)
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Packet> T read(Class<T> packetClass, ByteBuffer buf, BitSet fields,
+            DecodeCache cache) throws IllegalArgumentException, IOException
+    {
+        if (cache == null) return readUncached(packetClass, buf, fields);
+
+        if (!isImmutable(packetClass)) throw new IllegalArgumentException(
+                "Mutable packets cannot be cached: " + packetClass.getName());
+
+        Packet packet = cache.get(buf);
+
+        if (packet != null)
+        {
+            buf.position(buf.limit());
+
+            return (T) packet;
+        }
+
+        // Cached packets are shared by all future reads, so they must be decoded in full
+        ByteBuffer payload = buf.duplicate();
+        T decoded = readUncached(packetClass, buf, null);
+
+        cache.put(payload, decoded);
+
+        return decoded;
+    }
+
+    /**
+     * Reads a packet from a ByteBuffer without consulting a decode cache
+     *
+     * @param <T> The packet type
+     * @param packetClass The packet class
+     * @param buf The buffer from which to read
+     * @param fields The indices of the fields to decode or {@code null} to decode all fields
+     *
+     * @return The read packet
+     *
+     * @throws IllegalArgumentException If default serialization is used and the packet's
+     *         specification or one or more ObjectParsers cannot be found
+     * @throws IOException If an I/O error occurs
+     *
+     * @see #read(Class, ByteBuffer, BitSet)
+     */
+    @SuppressWarnings("unchecked")
+    private static <T extends Packet> T readUncached(Class<T> packetClass, ByteBuffer buf,
+            BitSet fields) throws IllegalArgumentException, IOException
+    {
+        // If a custom serializer is registered, use that
+        if (customSerializers.containsKey(packetClass))
+            return (T) customSerializers.get(packetClass).read(buf);
+
+        if (!specifications.containsKey(packetClass))
+            throw new IllegalArgumentException("Unknown Specification: " + packetClass.getName());
+
+        PacketSpec spec = getPacketSpecification(packetClass);
+
+        // Lazy packets consume the rest of the buffer and decode their fields on demand
+        if (lazyConstructors.containsKey(packetClass)) return (T) lazyConstructors.get(packetClass)
+                .apply(LazyValues.read(spec.types(), buf));
+
+        Class<?>[] types = spec.types();
+        Object[] values = new Object[types.length];
+
+        decodeValues(packetClass, types, buf, fields, values);
+
+        return (T) constructors.get(packetClass).apply(values);
+    }
+
+    /**
+     * Decodes the fields of a packet from a ByteBuffer
+     *
+     * @param packetClass The packet class
+     * @param types The types of the packet's fields
+     * @param buf The buffer from which to read
+     * @param fields The indices of the fields to decode or {@code null} to decode all fields
+     * @param values The array into which to store the decoded values
+     *
+     * @throws WrapperException If a field cannot be read
+     */
+    private static void decodeValues(Class<?> packetClass, Class<?>[] types, ByteBuffer buf,
+            BitSet fields, Object[] values) throws WrapperException
+    {
+        int end = fields == null ? types.length : Math.min(types.length, fields.length());
+
+        // Only created if a parser requires it
+        ByteBufferInputStream is = null;
+
+        for (int i = 0; i < end; i++)
+        {
+            try
+            {
+                ObjectParser<?> parser = getObjectParser(types[i]);
+
+                if (parser == null)
+                    throw new IllegalArgumentException("Unknown Type: " + types[i].getName());
+
+                boolean decode = fields == null || fields.get(i);
+
+                if (parser.supportsBuffers())
+                {
+                    if (decode) values[i] = parser.decode(buf);
+                    else
+                        parser.skip(buf);
+                }
+                else
+                {
+                    if (is == null) is = new ByteBufferInputStream(buf);
+
+                    if (decode) values[i] = parser.decode(is);
+                    else
+                        parser.skip(is);
+                }
+            }
+            catch (Exception e)
+            {
+                throw new WrapperException("Error occurred reading packet: " + packetClass.getName()
+                        + " while reading arg (" + i + "): " + types[i].getName(), e);
+            }
+        }
+
+        fillSkipped(types, fields, values);
+    }
+
+    /**
+     * Replaces the values of all fields which were not decoded with their defaults. Fields of boxed
+     * primitive types default to {@code 0} or {@code false}. All other fields default to
+     * {@code null}.
+     *
+     * @param types The types of the packet's fields
+     * @param fields The indices of the fields which were decoded or {@code null} if all fields
+     *        were decoded
+     * @param values The decoded values
+     */
+    private static void fillSkipped(Class<?>[] types, BitSet fields, Object[] values)
+    {
+        if (fields == null) return;
+
+        for (int i = fields.nextClearBit(0); i < types.length; i = fields.nextClearBit(i + 1))
+            values[i] = primitiveDefaults.get(types[i]);
+    }
+
+    /**
+     * Reads a pooled packet from a ByteBuffer into an existing instance. Only the requested fields
+     * are decoded. All other fields are passed to {@link PooledPacket#load(Object[])} as
+     * {@code null}, or as {@code 0} or {@code false} if they are boxed primitives.
+     *
+     * @param <T> The packet type
+     * @param packet The instance into which to read
+     * @param buf The buffer from which to read
+     * @param fields The indices of the fields to decode or {@code null} to decode all fields
+     *
+     * @return The provided instance
+     *
+     * @throws IllegalArgumentException If the packet's specification or one or more ObjectParsers
+     *         cannot be found or the packet uses a custom serializer
+     *
+     * @see #registerPooledPacket(Class, Supplier, int, int...)
+     */
+    public static <T extends PooledPacket> T readInto(T packet, ByteBuffer buf, BitSet fields)
+            throws IllegalArgumentException
+    {
+        Class<?>[] types = getLayout(packet.getClass());
+
+        if (types == null) throw new IllegalArgumentException(
+                "Packet type does not use default serialization: " + packet.getClass().getName());
+
+        Object[] values = packet.scratch(types.length);
+
+        decodeValues(packet.getClass(), types, buf, fields, values);
+
+        packet.load(values);
+
+        return packet;
+    }
+
     /**
      * Attempts to read an object from an InputStream
      *
@@ -487,6 +1072,140 @@ public final class PacketParser
         return (T) objectParsers.get(type).decode(is);
     }
 
+    /**
+     * Attempts to read an object from a ByteBuffer
+     *
+     * @param <T> The object type to read
+     * @param type The object class type to read
+     * @param buf The ByteBuffer from which to read
+     *
+     * @return The read object
+     *
+     * @throws ClassCastException If the parser associated with the specified object class is a
+     *         wrapping parser
+     * @throws IllegalArgumentException If no parser is registered which can
+     * @throws IOException If an I/O error occurs
+     *
+     * @see #addParser(ObjectParser)
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T readObject(Class<T> type, ByteBuffer buf)
+            throws ClassCastException, IllegalArgumentException, IOException
+    {
+        return (T) readAnyObject(type, buf);
+    }
+
+    /**
+     * Attempts to read an object from a ByteBuffer
+     *
+     * @param <T> The object type to read
+     * @param type The object class type to read
+     * @param buf The ByteBuffer from which to read
+     *
+     * @return The read object
+     *
+     * @throws IllegalArgumentException If no parser is registered which can
+     * @throws IOException If an I/O error occurs
+     *
+     * @see #addParser(ObjectParser)
+     */
+    public static <T> Object readAnyObject(Class<T> type, ByteBuffer buf)
+            throws IllegalArgumentException, IOException
+    {
+        ObjectParser<?> parser = getObjectParser(type);
+
+        if (parser == null) throw new IllegalArgumentException("Unknown Type: " + type.getName());
+
+        return parser.decode(buf);
+    }
+
+    /**
+     * Attempts to read a wrapped object from a ByteBuffer
+     *
+     * @param <T> The object type to read
+     * @param <U> The object wrapper type to read
+     * @param type The object wrapper type class to read
+     * @param buf The ByteBuffer from which to read
+     *
+     * @return The read object
+     *
+     * @throws IllegalArgumentException If no parser is registered which can
+     * @throws IOException If an I/O error occurs
+     *
+     * @see #addParser(ObjectParser)
+     */
+    @SuppressWarnings("unchecked")
+    public static <T, U extends WrapperType<T>> T readWrappedObject(Class<U> type, ByteBuffer buf)
+            throws IllegalArgumentException, IOException
+    {
+        return (T) readAnyObject(type, buf);
+    }
+
+    /**
+     * Moves past an encoded object in an InputStream without returning it
+     *
+     * @param type The object class type to skip
+     * @param is The InputStream from which to read
+     *
+     * @throws IllegalArgumentException If no parser is registered which can
+     * @throws IOException If an I/O error occurs
+     *
+     * @see ObjectParser#skip(InputStream)
+     */
+    public static void skipObject(Class<?> type, InputStream is)
+            throws IllegalArgumentException, IOException
+    {
+        ObjectParser<?> parser = getObjectParser(type);
+
+        if (parser == null) throw new IllegalArgumentException("Unknown Type: " + type.getName());
+
+        parser.skip(is);
+    }
+
+    /**
+     * Moves past an encoded object in a ByteBuffer without returning it
+     *
+     * @param type The object class type to skip
+     * @param buf The ByteBuffer from which to read
+     *
+     * @throws IllegalArgumentException If no parser is registered which can
+     * @throws IOException If an I/O error occurs
+     *
+     * @see ObjectParser#skip(ByteBuffer)
+     */
+    public static void skipObject(Class<?> type, ByteBuffer buf)
+            throws IllegalArgumentException, IOException
+    {
+        ObjectParser<?> parser = getObjectParser(type);
+
+        if (parser == null) throw new IllegalArgumentException("Unknown Type: " + type.getName());
+
+        parser.skip(buf);
+    }
+
+    /**
+     * Registers a pooled packet type by calling {@link #addPooledSpecification(Class, Supplier)}
+     * and {@link #registerPacketClass(Class, int, int...)}
+     *
+     * @param <T> The type of packet to register
+     * @param packetType The packet class type to register
+     * @param factory The function used to create new, empty instances of the packet
+     * @param packetId The packet id to use when sending or receiving the packet
+     * @param additionalIds Additional ids which may be used to receive the packet
+     *
+     * @throws IllegalArgumentException If the provided packet class does have provide a
+     *         {@link PacketSpec} annotation
+     *
+     * @see PooledPacket
+     */
+    public static <T extends PooledPacket> void registerPooledPacket(Class<T> packetType,
+            Supplier<T> factory, int packetId, int... additionalIds)
+            throws IllegalArgumentException
+    {
+        addPooledSpecification(packetType, factory);
+        registerPacketClass(packetType, packetId, additionalIds);
+    }
+
     /**
      * Registers a packet type by calling {@link #addSpecification(Class, Function)} and
      * {@link #registerPacketClass(Class, int, int...)}
@@ -537,6 +1256,30 @@ public final class PacketParser
         registerPacketClass(packetType, packetId, additionalIds);
     }
 
+    /**
+     * Registers a lazily decoded packet type by calling
+     * {@link #addLazySpecification(Class, Function)} and
+     * {@link #registerPacketClass(Class, int, int...)}
+     *
+     * @param <T> The type of packet to register
+     * @param packetType The packet class type to register
+     * @param constructor The function to use to create the packet from its lazily decoded values
+     * @param packetId The packet id to use when sending or receiving the packet
+     * @param additionalIds Additional ids which may be used to receive the packet
+     *
+     * @throws IllegalArgumentException If the provided packet class does have provide a
+     *         {@link PacketSpec} annotation
+     *
+     * @see LazyPacket
+     */
+    public static <T extends LazyPacket> void registerLazyPacket(Class<T> packetType,
+            Function<LazyValues, T> constructor, int packetId, int... additionalIds)
+            throws IllegalArgumentException
+    {
+        addLazySpecification(packetType, constructor);
+        registerPacketClass(packetType, packetId, additionalIds);
+    }
+
     /**
      * Registers the ids to use to send and receive the specified packet
      *
@@ -640,6 +1383,14 @@ public final class PacketParser
             return;
         }
 
+        // Lazy packets which were read from the packet stream can reuse their original payload
+        if (packet instanceof LazyPacket && ((LazyPacket) packet).getLazyValues().hasRawData())
+        {
+            ((LazyPacket) packet).getLazyValues().writeRaw(os);
+
+            return;
+        }
+
         if (!specifications.containsKey(packetClass))
             throw new IllegalArgumentException("Unknown Specification: " + packetClass.getName());
 
@@ -673,6 +1424,88 @@ public final class PacketParser
         objectParsers.get(type).encodeObject(obj, os);
     }
 
+    /**
+     * Writes the specified packet into the given ByteBuffer
+     *
+     * @param <T> The packet type
+     * @param packet The packet
+     * @param buf The buffer into which to write
+     *
+     * @throws IllegalArgumentException If default serialization is used and the packet's
+     *         specification or one or more ObjectParsers cannot be found
+     * @throws IOException If an I/O error occurs
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Packet> void write(T packet, ByteBuffer buf)
+            throws IllegalArgumentException, IOException
+    {
+        write(packet, (Class<T>) packet.getClass(), buf);
+    }
+
+    /**
+     * Writes the specified packet into the given ByteBuffer
+     *
+     * @param <T> The packet type
+     * @param packet The packet
+     * @param packetClass The packet class
+     * @param buf The buffer into which to write
+     *
+     * @throws IllegalArgumentException If default serialization is used and the packet's
+     *         specification or one or more ObjectParsers cannot be found
+     * @throws IOException If an I/O error occurs
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Packet> void write(T packet, Class<T> packetClass, ByteBuffer buf)
+            throws IllegalArgumentException, IOException
+    {
+        if (customSerializers.containsKey(packetClass))
+        {
+            ((PacketSerializer<T>) customSerializers.get(packetClass)).write(packet, buf);
+
+            return;
+        }
+
+        // Lazy packets which were read from the packet stream can reuse their original payload
+        if (packet instanceof LazyPacket && ((LazyPacket) packet).getLazyValues().hasRawData())
+        {
+            ((LazyPacket) packet).getLazyValues().writeRaw(buf);
+
+            return;
+        }
+
+        if (!specifications.containsKey(packetClass))
+            throw new IllegalArgumentException("Unknown Specification: " + packetClass.getName());
+
+        PacketSpec spec = specifications.get(packetClass);
+
+        Class<?>[] types = spec.types();
+        Object[] values = packet.getValues();
+
+        for (int i = 0; i < types.length; i++)
+            writeObject(types[i], values[i], buf);
+    }
+
+    /**
+     * Writes an object into a ByteBuffer
+     *
+     * @param type The object class type to write
+     * @param obj The object to write
+     * @param buf The ByteBuffer into which to write
+     *
+     * @throws IllegalArgumentException If no parser is registered which can
+     * @throws IOException If an I/O error occurs
+     *
+     * @see #addParser(ObjectParser)
+     */
+    public static void writeObject(Class<?> type, Object obj, ByteBuffer buf)
+            throws IllegalArgumentException, IOException
+    {
+        if (!objectParsers.containsKey(type))
+            throw new IllegalArgumentException("Unknown Type: " + type.getName());
+
+        objectParsers.get(type).encodeObject(obj, buf);
+    }
+
     private PacketParser()
     {}
 
@@ -0,0 +1,105 @@
+package com.coolspy3.csmodloader.network.packet;
+
+import java.util.function.Supplier;
+
+/**
+ * A bounded pool of reusable {@link PooledPacket} instances. If the pool is empty, new instances
+ * are created on demand. If the pool is full, released instances are discarded.
+ *
+ * All methods of this class are thread-safe.
+ *
+ * @param <T> The type of packet held by this pool
+ */
+public final class PacketPool<T extends PooledPacket>
+{
+
+    private final Supplier<? extends T> factory;
+    private final Object[] instances;
+    private int size = 0;
+
+    private long created = 0;
+    private long reused = 0;
+
+    /**
+     * Creates a new PacketPool
+     *
+     * @param factory The function used to create new instances
+     * @param capacity The maximum number of idle instances held by this pool
+     *
+     * @throws IllegalArgumentException If the capacity is negative
+     */
+    public PacketPool(Supplier<? extends T> factory, int capacity) throws IllegalArgumentException
+    {
+        if (capacity < 0) throw new IllegalArgumentException("Invalid capacity: " + capacity);
+
+        this.factory = factory;
+        this.instances = new Object[capacity];
+    }
+
+    /**
+     * Retrieves an idle instance from this pool or creates a new one if none are available
+     *
+     * @return The instance
+     */
+    @SuppressWarnings("unchecked")
+    public T acquire()
+    {
+        T packet = null;
+
+        synchronized (this)
+        {
+            if (size > 0)
+            {
+                packet = (T) instances[--size];
+                instances[size] = null;
+                reused++;
+            }
+            else
+                created++;
+        }
+
+        if (packet == null) packet = factory.get();
+
+        packet.acquire();
+
+        return packet;
+    }
+
+    /**
+     * Releases an instance back into this pool. The instance must not be used by the caller after
+     * this method has been called. When assertions are enabled, released instances are discarded
+     * instead of being recycled so that any retained references can be detected.
+     *
+     * @param packet The instance to release
+     *
+     * @see PooledPacket#ensureLive()
+     */
+    public void release(T packet)
+    {
+        packet.release();
+
+        if (PooledPacket.DEBUG) return;
+
+        synchronized (this)
+        {
+            if (size < instances.length) instances[size++] = packet;
+        }
+    }
+
+    /**
+     * @return The number of instances which have been created by this pool
+     */
+    public synchronized long getCreatedCount()
+    {
+        return created;
+    }
+
+    /**
+     * @return The number of times an idle instance has been reused by this pool
+     */
+    public synchronized long getReusedCount()
+    {
+        return reused;
+    }
+
+}
@@ -3,6 +3,10 @@ package com.coolspy3.csmodloader.network.packet;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import com.coolspy3.csmodloader.util.ByteBufferInputStream;
+import com.coolspy3.csmodloader.util.ByteBufferOutputStream;
 
 /**
  * A class providing custom code to serialize and deserialize a packet
@@ -28,6 +32,22 @@ public interface PacketSerializer<T extends Packet>
      */
     public T read(InputStream is) throws IOException;
 
+    /**
+     * Deserializes a packet from the provided ByteBuffer, advancing its position past the packet.
+     *
+     * The default implementation reads from the buffer through a {@link ByteBufferInputStream}.
+     *
+     * @param buf The buffer from which to read
+     *
+     * @return The resulting object
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public default T read(ByteBuffer buf) throws IOException
+    {
+        return read(new ByteBufferInputStream(buf));
+    }
+
     /**
      * Writes a packet to the provided OutputStream
      *
@@ -38,4 +58,20 @@ public interface PacketSerializer<T extends Packet>
      */
     public void write(T packet, OutputStream os) throws IOException;
 
+    /**
+     * Writes a packet into the provided ByteBuffer, advancing its position past the packet.
+     *
+     * The default implementation writes to the buffer through a {@link ByteBufferOutputStream}.
+     *
+     * @param packet The packet to serialize
+     * @param buf The ByteBuffer into which to write the packet
+     *
+     * @throws java.nio.BufferOverflowException If the buffer does not have enough space remaining
+     * @throws IOException If an I/O error occurs
+     */
+    public default void write(T packet, ByteBuffer buf) throws IOException
+    {
+        write(packet, new ByteBufferOutputStream(buf));
+    }
+
 }
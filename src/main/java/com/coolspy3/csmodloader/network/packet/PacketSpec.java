@@ -6,6 +6,7 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
 import com.coolspy3.csmodloader.network.PacketDirection;
+import com.coolspy3.csmodloader.network.PacketPriority;
 
 /**
  * Defines general information about how a packet should be processed
@@ -26,4 +27,9 @@ public @interface PacketSpec
      */
     public PacketDirection direction();
 
+    /**
+     * @return The priority with which this packet is written when it is sent by a mod
+     */
+    public PacketPriority priority() default PacketPriority.NORMAL;
+
 }
@@ -0,0 +1,485 @@
+package com.coolspy3.csmodloader.network.packet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+import com.coolspy3.csmodloader.util.Utils;
+import com.coolspy3.csmodloader.util.WrapperException;
+
+/**
+ * A reusable, read-only accessor over the encoded fields of a packet. Instead of decoding a full
+ * packet, a PacketView reads individual fields directly from the frame buffer using the layout
+ * specified by the packet's {@link PacketSpec}. The primitive getters do not allocate.
+ *
+ * A PacketView is only valid during the callback to which it was passed. It will be rebound to
+ * another packet once the callback returns, so neither the view nor the buffer returned by
+ * {@link #getBuffer()} may be retained.
+ *
+ * The getters assume that each field is encoded by the default parser for its type (see
+ * {@link Parsers}). Fields of any other type may be read with {@link #getObject(int)}.
+ *
+ * This class is not thread-safe.
+ */
+public final class PacketView
+{
+
+    private Class<? extends Packet> packetClass;
+    private Class<?>[] types;
+    private ByteBuffer buf;
+    /**
+     * The position of the first field within {@link #buf}
+     */
+    private int base;
+    /**
+     * The starting offsets of each field relative to {@link #base}
+     */
+    private int[] offsets = new int[8];
+    /**
+     * The number of entries at the start of {@link #offsets} which have been computed
+     */
+    private int knownOffsets;
+
+    /**
+     * Binds this view to the remaining bytes of the provided buffer. The buffer's position is not
+     * modified by any methods of this view.
+     *
+     * @param packetClass The class of the packet contained in the buffer
+     * @param buf The buffer containing the packet's encoded fields
+     *
+     * @return Whether the view could be bound. A view can only be bound to packets which use
+     *         default serialization.
+     */
+    public boolean bind(Class<? extends Packet> packetClass, ByteBuffer buf)
+    {
+        Class<?>[] types = PacketParser.getLayout(packetClass);
+
+        if (types == null) return false;
+
+        if (offsets.length <= types.length) offsets = new int[types.length + 1];
+
+        this.packetClass = packetClass;
+        this.types = types;
+        this.buf = buf;
+        this.base = buf.position();
+        this.knownOffsets = 1;
+
+        return true;
+    }
+
+    /**
+     * Unbinds this view from its buffer. Any further accesses will fail until it is rebound.
+     */
+    public void release()
+    {
+        packetClass = null;
+        types = null;
+        buf = null;
+    }
+
+    /**
+     * @return Whether this view is currently bound to a packet
+     */
+    public boolean isBound()
+    {
+        return buf != null;
+    }
+
+    /**
+     * @return The class of the packet to which this view is bound
+     *
+     * @throws IllegalStateException If this view is not bound
+     */
+    public Class<? extends Packet> getPacketClass() throws IllegalStateException
+    {
+        checkBound();
+
+        return packetClass;
+    }
+
+    /**
+     * @return The number of fields in the packet to which this view is bound
+     *
+     * @throws IllegalStateException If this view is not bound
+     */
+    public int size() throws IllegalStateException
+    {
+        checkBound();
+
+        return types.length;
+    }
+
+    /**
+     * @param index The index of the field
+     *
+     * @return The type used to serialize the specified field
+     *
+     * @throws IllegalStateException If this view is not bound
+     * @throws IndexOutOfBoundsException If the index is out of range
+     */
+    public Class<?> getType(int index) throws IllegalStateException, IndexOutOfBoundsException
+    {
+        checkBound();
+
+        return types[index];
+    }
+
+    /**
+     * @param index The index of the field
+     *
+     * @return The value of the specified field
+     *
+     * @throws ClassCastException If the field is not a {@code boolean}
+     * @throws IllegalStateException If this view is not bound
+     * @throws IndexOutOfBoundsException If the index is out of range
+     * @throws WrapperException If a preceding field cannot be skipped
+     */
+    public boolean getBoolean(int index)
+            throws ClassCastException, IllegalStateException, IndexOutOfBoundsException,
+            WrapperException
+    {
+        return buf.get(offset(index, Boolean.class)) == 0x01;
+    }
+
+    /**
+     * @param index The index of the field
+     *
+     * @return The value of the specified field
+     *
+     * @throws ClassCastException If the field is not a {@code byte}
+     * @throws IllegalStateException If this view is not bound
+     * @throws IndexOutOfBoundsException If the index is out of range
+     * @throws WrapperException If a preceding field cannot be skipped
+     */
+    public byte getByte(int index) throws ClassCastException, IllegalStateException,
+            IndexOutOfBoundsException, WrapperException
+    {
+        return buf.get(offset(index, Byte.class));
+    }
+
+    /**
+     * @param index The index of the field
+     *
+     * @return The value of the specified field
+     *
+     * @throws ClassCastException If the field is not a {@code short}
+     * @throws IllegalStateException If this view is not bound
+     * @throws IndexOutOfBoundsException If the index is out of range
+     * @throws WrapperException If a preceding field cannot be skipped
+     */
+    public short getShort(int index) throws ClassCastException, IllegalStateException,
+            IndexOutOfBoundsException, WrapperException
+    {
+        return buf.getShort(offset(index, Short.class));
+    }
+
+    /**
+     * @param index The index of the field
+     *
+     * @return The value of the specified field
+     *
+     * @throws ClassCastException If the field is not an {@code int}
+     * @throws IllegalStateException If this view is not bound
+     * @throws IndexOutOfBoundsException If the index is out of range
+     * @throws WrapperException If a preceding field cannot be skipped
+     */
+    public int getInt(int index) throws ClassCastException, IllegalStateException,
+            IndexOutOfBoundsException, WrapperException
+    {
+        return buf.getInt(offset(index, Integer.class));
+    }
+
+    /**
+     * @param index The index of the field
+     *
+     * @return The value of the specified field
+     *
+     * @throws ClassCastException If the field is not a {@code long}
+     * @throws IllegalStateException If this view is not bound
+     * @throws IndexOutOfBoundsException If the index is out of range
+     * @throws WrapperException If a preceding field cannot be skipped
+     */
+    public long getLong(int index) throws ClassCastException, IllegalStateException,
+            IndexOutOfBoundsException, WrapperException
+    {
+        return buf.getLong(offset(index, Long.class));
+    }
+
+    /**
+     * @param index The index of the field
+     *
+     * @return The value of the specified field
+     *
+     * @throws ClassCastException If the field is not a {@code float}
+     * @throws IllegalStateException If this view is not bound
+     * @throws IndexOutOfBoundsException If the index is out of range
+     * @throws WrapperException If a preceding field cannot be skipped
+     */
+    public float getFloat(int index) throws ClassCastException, IllegalStateException,
+            IndexOutOfBoundsException, WrapperException
+    {
+        return buf.getFloat(offset(index, Float.class));
+    }
+
+    /**
+     * @param index The index of the field
+     *
+     * @return The value of the specified field
+     *
+     * @throws ClassCastException If the field is not a {@code double}
+     * @throws IllegalStateException If this view is not bound
+     * @throws IndexOutOfBoundsException If the index is out of range
+     * @throws WrapperException If a preceding field cannot be skipped
+     */
+    public double getDouble(int index) throws ClassCastException, IllegalStateException,
+            IndexOutOfBoundsException, WrapperException
+    {
+        return buf.getDouble(offset(index, Double.class));
+    }
+
+    /**
+     * @param index The index of the field
+     *
+     * @return The value of the specified field
+     *
+     * @throws ClassCastException If the field is not a {@link Packet.VarInt}
+     * @throws IllegalStateException If this view is not bound
+     * @throws IndexOutOfBoundsException If the index is out of range
+     * @throws WrapperException If the field cannot be read or a preceding field cannot be skipped
+     */
+    public int getVarInt(int index) throws ClassCastException, IllegalStateException,
+            IndexOutOfBoundsException, WrapperException
+    {
+        int offset = offset(index, Packet.VarInt.class);
+
+        try
+        {
+            return Utils.readVarInt(buf, offset);
+        }
+        catch (IOException e)
+        {
+            throw new WrapperException("Error occurred reading arg (" + index + ") of packet: "
+                    + packetClass.getName(), e);
+        }
+    }
+
+    /**
+     * @param index The index of the field
+     *
+     * @return The value of the specified field
+     *
+     * @throws ClassCastException If the field is not a {@link Packet.VarLong}
+     * @throws IllegalStateException If this view is not bound
+     * @throws IndexOutOfBoundsException If the index is out of range
+     * @throws WrapperException If the field cannot be read or a preceding field cannot be skipped
+     */
+    public long getVarLong(int index) throws ClassCastException, IllegalStateException,
+            IndexOutOfBoundsException, WrapperException
+    {
+        buf.position(offset(index, Packet.VarLong.class));
+
+        try
+        {
+            return Utils.readVarLong(buf);
+        }
+        catch (IOException e)
+        {
+            throw new WrapperException("Error occurred reading arg (" + index + ") of packet: "
+                    + packetClass.getName(), e);
+        }
+        finally
+        {
+            buf.position(base);
+        }
+    }
+
+    /**
+     * @param index The index of the field
+     *
+     * @return The value of the specified field
+     *
+     * @throws ClassCastException If the field is not a {@link String}
+     * @throws IllegalStateException If this view is not bound
+     * @throws IndexOutOfBoundsException If the index is out of range
+     * @throws WrapperException If the field cannot be read or a preceding field cannot be skipped
+     */
+    public String getString(int index) throws ClassCastException, IllegalStateException,
+            IndexOutOfBoundsException, WrapperException
+    {
+        buf.position(offset(index, String.class));
+
+        try
+        {
+            return Utils.readString(buf);
+        }
+        catch (IOException e)
+        {
+            throw new WrapperException("Error occurred reading arg (" + index + ") of packet: "
+                    + packetClass.getName(), e);
+        }
+        finally
+        {
+            buf.position(base);
+        }
+    }
+
+    /**
+     * @param index The index of the field
+     *
+     * @return The value of the specified field
+     *
+     * @throws ClassCastException If the field is not a {@link UUID}
+     * @throws IllegalStateException If this view is not bound
+     * @throws IndexOutOfBoundsException If the index is out of range
+     * @throws WrapperException If a preceding field cannot be skipped
+     */
+    public UUID getUUID(int index) throws ClassCastException, IllegalStateException,
+            IndexOutOfBoundsException, WrapperException
+    {
+        int offset = offset(index, UUID.class);
+
+        return new UUID(buf.getLong(offset), buf.getLong(offset + 8));
+    }
+
+    /**
+     * @param index The index of the field
+     *
+     * @return The value of the specified field in its packed form
+     *
+     * @throws ClassCastException If the field is not a {@link Position}
+     * @throws IllegalStateException If this view is not bound
+     * @throws IndexOutOfBoundsException If the index is out of range
+     * @throws WrapperException If a preceding field cannot be skipped
+     *
+     * @see Position#unpackX(long)
+     * @see Position#unpackY(long)
+     * @see Position#unpackZ(long)
+     */
+    public long getPackedPosition(int index) throws ClassCastException, IllegalStateException,
+            IndexOutOfBoundsException, WrapperException
+    {
+        return buf.getLong(offset(index, Position.class));
+    }
+
+    /**
+     * Decodes the specified field of any type using its registered parser
+     *
+     * @param index The index of the field
+     *
+     * @return The value of the specified field
+     *
+     * @throws IllegalStateException If this view is not bound
+     * @throws IndexOutOfBoundsException If the index is out of range
+     * @throws WrapperException If the field cannot be read or a preceding field cannot be skipped
+     *
+     * @see PacketParser#readAnyObject(Class, ByteBuffer)
+     */
+    public Object getObject(int index)
+            throws IllegalStateException, IndexOutOfBoundsException, WrapperException
+    {
+        buf.position(offset(index, null));
+
+        try
+        {
+            return PacketParser.readAnyObject(types[index], buf);
+        }
+        catch (Exception e)
+        {
+            throw new WrapperException("Error occurred reading arg (" + index + ") of packet: "
+                    + packetClass.getName(), e);
+        }
+        finally
+        {
+            buf.position(base);
+        }
+    }
+
+    /**
+     * @return The buffer to which this view is bound. Its position marks the start of the first
+     *         field. The buffer must not be modified or retained.
+     *
+     * @throws IllegalStateException If this view is not bound
+     */
+    public ByteBuffer getBuffer() throws IllegalStateException
+    {
+        checkBound();
+
+        return buf;
+    }
+
+    /**
+     * Computes the absolute position of the specified field within the bound buffer without
+     * checking its type
+     *
+     * @param index The index of the field
+     *
+     * @return The position of the field
+     *
+     * @throws IllegalStateException If this view is not bound
+     * @throws IndexOutOfBoundsException If the index is out of range
+     * @throws WrapperException If a preceding field cannot be skipped
+     */
+    int fieldOffset(int index)
+            throws IllegalStateException, IndexOutOfBoundsException, WrapperException
+    {
+        return offset(index, null);
+    }
+
+    /**
+     * @throws IllegalStateException If this view is not bound
+     */
+    private void checkBound() throws IllegalStateException
+    {
+        if (buf == null)
+            throw new IllegalStateException("PacketView accessed outside of its callback!");
+    }
+
+    /**
+     * Computes the absolute position of the specified field within {@link #buf}, skipping over (and
+     * caching the offsets of) any preceding fields which have not yet been located
+     *
+     * @param index The index of the field
+     * @param type The expected type of the field or {@code null} to accept any type
+     *
+     * @return The position of the field
+     *
+     * @throws ClassCastException If the field is not of the expected type
+     * @throws IllegalStateException If this view is not bound
+     * @throws IndexOutOfBoundsException If the index is out of range
+     * @throws WrapperException If a preceding field cannot be skipped
+     */
+    private int offset(int index, Class<?> type) throws ClassCastException, IllegalStateException,
+            IndexOutOfBoundsException, WrapperException
+    {
+        checkBound();
+
+        if (type != null && types[index] != type) throw new ClassCastException("Arg (" + index
+                + ") of packet: " + packetClass.getName() + " is not of type: " + type.getName());
+
+        while (knownOffsets <= index)
+        {
+            int field = knownOffsets - 1;
+
+            buf.position(base + offsets[field]);
+
+            try
+            {
+                PacketParser.skipObject(types[field], buf);
+
+                offsets[knownOffsets++] = buf.position() - base;
+            }
+            catch (Exception e)
+            {
+                throw new WrapperException("Error occurred skipping arg (" + field
+                        + ") of packet: " + packetClass.getName(), e);
+            }
+            finally
+            {
+                buf.position(base);
+            }
+        }
+
+        return base + offsets[index];
+    }
+
+}
@@ -1,12 +1,15 @@
 package com.coolspy3.csmodloader.network.packet;
 
 import java.nio.ByteBuffer;
-import java.util.Arrays;
+import java.util.BitSet;
 import java.util.UUID;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
+import com.coolspy3.csmodloader.network.chat.ChatParser;
+import com.coolspy3.csmodloader.network.packet.nbt.Nbt;
+import com.coolspy3.csmodloader.util.StringInterner;
 import com.coolspy3.csmodloader.util.Utils;
 
 import org.slf4j.Logger;
@@ -26,10 +29,13 @@ public final class Parsers
     public static ObjectParser<?>[] defaults()
     {
         return new ObjectParser[] {
-                ObjectParser.of(b -> new Byte[] {(byte) (b ? 0x01 : 0x00)}, b -> b[0] == 0x01, 1,
-                        Boolean.class),
+                fixedLength(ObjectParser.of((b, os) -> Utils.writeByte(b ? 0x01 : 0x00, os),
+                        is -> Utils.readByte(is) == 0x01,
+                        (b, buf) -> buf.put((byte) (b ? 0x01 : 0x00)), buf -> buf.get() == 0x01,
+                        Boolean.class), 1),
 
-                ObjectParser.of(b -> new Byte[] {b}, b -> b[0], 1, Byte.class),
+                fixedLength(ObjectParser.of((b, os) -> Utils.writeByte(b, os), Utils::readByte,
+                        (b, buf) -> buf.put(b), ByteBuffer::get, Byte.class), 1),
 
                 ofNumber(2, ByteBuffer::putShort, ByteBuffer::getShort, Short.class),
                 ofNumber(4, ByteBuffer::putInt, ByteBuffer::getInt, Integer.class),
@@ -37,26 +43,80 @@ public final class Parsers
                 ofNumber(4, ByteBuffer::putFloat, ByteBuffer::getFloat, Float.class),
                 ofNumber(8, ByteBuffer::putDouble, ByteBuffer::getDouble, Double.class),
 
-                ObjectParser.of(Utils::writeString, Utils::readString, String.class),
-
-                ObjectParser.wrapping(
-                        ObjectParser.of(Utils::writeVarInt, Utils::readVarInt, Integer.class),
-                        Packet.VarInt.class),
-                ObjectParser.wrapping(
-                        ObjectParser.of(Utils::writeVarLong, Utils::readVarLong, Long.class),
-                        Packet.VarLong.class),
-
-                ObjectParser.of(uid -> {
+                ObjectParser.skipping(
+                        ObjectParser.of(Utils::writeString, Utils::readString, Utils::writeString,
+                                Utils::readString, String.class),
+                        Utils::skipBytes, Utils::skipBytes),
+                ObjectParser.wrapping(ObjectParser.skipping(
+                        ObjectParser.of(Utils::writeString, StringInterner.IDENTIFIERS::read,
+                                Utils::writeString, StringInterner.IDENTIFIERS::read,
+                                String.class),
+                        Utils::skipBytes, Utils::skipBytes), Packet.Identifier.class),
+
+                ObjectParser.wrapping(ObjectParser.skipping(
+                        ObjectParser.of(Utils::writeVarInt, Utils::readVarInt, Utils::writeVarInt,
+                                Utils::readVarInt, Integer.class),
+                        Utils::skipVarInt, Utils::skipVarInt), Packet.VarInt.class),
+                ObjectParser.wrapping(ObjectParser.skipping(
+                        ObjectParser.of(Utils::writeVarLong, Utils::readVarLong,
+                                Utils::writeVarLong, Utils::readVarLong, Long.class),
+                        Utils::skipVarLong, Utils::skipVarLong), Packet.VarLong.class),
+
+                fixedLength(ObjectParser.of((uid, os) -> {
                     ByteBuffer buf = ByteBuffer.allocate(16);
                     buf.putLong(uid.getMostSignificantBits());
                     buf.putLong(uid.getLeastSignificantBits());
-                    return Utils.box(buf.array());
-                }, B -> {
-                    byte[] b = Utils.unbox(B);
-                    return new UUID(Utils.fromBytes(Arrays.copyOf(b, 8), ByteBuffer::getLong),
-                            Utils.fromBytes(Arrays.copyOfRange(b, 8, 16), ByteBuffer::getLong));
-                }, 16, UUID.class), ObjectParser.of((b, os) -> Utils.writeBytes(Utils.unbox(b), os),
-                        is -> Utils.box(Utils.readBytes(is)), Byte[].class)};
+                    os.write(buf.array());
+                }, is -> {
+                    ByteBuffer buf = ByteBuffer.wrap(Utils.readNBytes(is, 16));
+                    return new UUID(buf.getLong(), buf.getLong());
+                }, (uid, buf) -> {
+                    buf.putLong(uid.getMostSignificantBits());
+                    buf.putLong(uid.getLeastSignificantBits());
+                }, buf -> new UUID(buf.getLong(), buf.getLong()), UUID.class), 16),
+
+                ObjectParser.skipping(
+                        ObjectParser.of((b, os) -> Utils.writeBytes(Utils.unbox(b), os),
+                                is -> Utils.box(Utils.readBytes(is)),
+                                (b, buf) -> Utils.writeBytes(Utils.unbox(b), buf),
+                                buf -> Utils.box(Utils.readBytes(buf)), Byte[].class),
+                        Utils::skipBytes, Utils::skipBytes),
+
+                ObjectParser.skipping(
+                        ObjectParser.of(Utils::writeBytes, Utils::readBytes, Utils::writeBytes,
+                                Utils::readBytes, byte[].class),
+                        Utils::skipBytes, Utils::skipBytes),
+
+                ObjectParser.skipping(
+                        ObjectParser.of(Utils::writeInts, Utils::readInts, Utils::writeInts,
+                                Utils::readInts, int[].class),
+                        is -> Utils.skipArray(is, 4), buf -> Utils.skipArray(buf, 4)),
+
+                ObjectParser.skipping(
+                        ObjectParser.of(Utils::writeLongs, Utils::readLongs, Utils::writeLongs,
+                                Utils::readLongs, long[].class),
+                        is -> Utils.skipArray(is, 8), buf -> Utils.skipArray(buf, 8)),
+
+                ObjectParser.wrapping(ObjectParser.skipping(
+                        ObjectParser.of(Utils::writeVarInts, Utils::readVarInts,
+                                Utils::writeVarInts, Utils::readVarInts, int[].class),
+                        Utils::skipVarInts, Utils::skipVarInts), Packet.VarIntArray.class),
+
+                fixedLength(ObjectParser.of(
+                        (pos, os) -> os.write(Utils.getBytes(pos.pack(), 8, ByteBuffer::putLong)),
+                        is -> Position.unpack(
+                                Utils.fromBytes(Utils.readNBytes(is, 8), ByteBuffer::getLong)),
+                        (pos, buf) -> buf.putLong(pos.pack()),
+                        buf -> Position.unpack(buf.getLong()), Position.class), 8),
+
+                ObjectParser.skipping(
+                        ObjectParser.of((bits, os) -> Utils.writeLongs(bits.toLongArray(), os),
+                                is -> BitSet.valueOf(Utils.readLongs(is)),
+                                (bits, buf) -> Utils.writeLongs(bits.toLongArray(), buf),
+                                buf -> BitSet.valueOf(Utils.readLongs(buf)), BitSet.class),
+                        is -> Utils.skipArray(is, 8), buf -> Utils.skipArray(buf, 8)),
+
+                Nbt.parser(), Slot.parser(), EntityMetadata.parser(), ChatParser.parser()};
     }
 
     /**
@@ -84,7 +144,28 @@ public final class Parsers
             BiFunction<ByteBuffer, T, ByteBuffer> encFunc, Function<ByteBuffer, T> decFunc,
             Class<T> type)
     {
-        return ObjectParser.of(getBytes(length, encFunc), fromBytes(decFunc), length, type);
+        return fixedLength(ObjectParser.of((v, os) -> os.write(Utils.getBytes(v, length, encFunc)),
+                is -> Utils.fromBytes(Utils.readNBytes(is, length), decFunc),
+                (v, buf) -> encFunc.apply(buf, v), decFunc::apply, type), length);
+    }
+
+    /**
+     * Creates a parser which behaves identically to an existing parser but which skips encoded
+     * objects by their fixed length instead of decoding them
+     *
+     * @param <T> The type of the parser
+     * @param parser The original parser
+     * @param length The number of bytes used to encode each object
+     *
+     * @return The new parser
+     *
+     * @see ObjectParser#skipping(ObjectParser, com.coolspy3.csmodloader.interfaces.IOConsumer,
+     *      com.coolspy3.csmodloader.interfaces.IOConsumer)
+     */
+    public static <T> ObjectParser<T> fixedLength(ObjectParser<T> parser, int length)
+    {
+        return ObjectParser.skipping(parser, is -> Utils.skipNBytes(is, length),
+                buf -> Utils.skipNBytes(buf, length));
     }
 
     /**
@@ -0,0 +1,112 @@
+package com.coolspy3.csmodloader.network.packet;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * A packet whose instances may be recycled after they have been dispatched. Pooled packets are
+ * registered with {@link PacketParser#registerPooledPacket(Class, Supplier, int, int...)}. When one
+ * is read from the packet stream, an instance is taken from a {@link PacketPool}, filled with
+ * {@link #load(Object[])} and returned to the pool once all subscribers have been invoked.
+ *
+ * Subscribers must not retain references to pooled packets past their callback. If they need to
+ * keep any data, they should copy it out of the packet. Accessors of subclasses should call
+ * {@link #ensureLive()} so that, when assertions are enabled, any access to a packet after it has
+ * been released is detected. Packets released while assertions are enabled are never recycled, so
+ * a retained reference will always fail instead of silently observing a different packet.
+ */
+public abstract class PooledPacket extends Packet
+{
+
+    /**
+     * Whether pooled packets should check for accesses after release
+     */
+    static final boolean DEBUG = PooledPacket.class.desiredAssertionStatus();
+
+    /**
+     * Whether this packet currently holds the values of a dispatched packet
+     */
+    private volatile boolean live = true;
+
+    /**
+     * A reusable array into which the values of this packet are decoded
+     */
+    private Object[] scratch;
+
+    /**
+     * Sets the values of this packet. This is called both when a pooled instance is filled with a
+     * newly read packet and when a packet is constructed through default serialization.
+     *
+     * The array may be reused after this method returns, so implementations must copy the values
+     * they need.
+     *
+     * @param values The values of this packet. These match the types specified by the packet's
+     *        {@link PacketSpec}.
+     */
+    protected abstract void load(Object[] values);
+
+    /**
+     * Called when this packet is returned to its pool. Implementations should clear any references
+     * which should not be kept alive by the pool. The default implementation does nothing.
+     */
+    protected void reset()
+    {}
+
+    /**
+     * Checks that this packet has not been released back to its pool. This check is only performed
+     * when assertions are enabled.
+     *
+     * @throws IllegalStateException If assertions are enabled and this packet has been released
+     */
+    protected final void ensureLive() throws IllegalStateException
+    {
+        if (DEBUG && !live) throw new IllegalStateException("Pooled packet: "
+                + getClass().getName()
+                + " was accessed after it was released! Subscribers must not retain pooled packets"
+                + " past their callback.");
+    }
+
+    /**
+     * @return Whether this packet currently holds the values of a dispatched packet
+     */
+    public final boolean isLive()
+    {
+        return live;
+    }
+
+    /**
+     * Retrieves a cleared array of the specified length into which the values of this packet can be
+     * decoded
+     *
+     * @param length The number of values
+     *
+     * @return The array
+     */
+    final Object[] scratch(int length)
+    {
+        if (scratch == null || scratch.length != length) scratch = new Object[length];
+
+        return scratch;
+    }
+
+    /**
+     * Marks this packet as live
+     */
+    final void acquire()
+    {
+        live = true;
+    }
+
+    /**
+     * Marks this packet as released and clears its state
+     */
+    final void release()
+    {
+        live = false;
+
+        if (scratch != null) Arrays.fill(scratch, null);
+
+        reset();
+    }
+
+}
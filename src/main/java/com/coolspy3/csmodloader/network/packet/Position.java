@@ -0,0 +1,141 @@
+package com.coolspy3.csmodloader.network.packet;
+
+/**
+ * An immutable block position. Positions are encoded as a single long containing the x coordinate
+ * in the upper 26 bits, the y coordinate in the next 12 bits and the z coordinate in the lower 26
+ * bits.
+ */
+public final class Position
+{
+
+    private final int x;
+    private final int y;
+    private final int z;
+
+    /**
+     * Creates a new Position
+     *
+     * @param x The x coordinate. Only the lower 26 bits are encoded.
+     * @param y The y coordinate. Only the lower 12 bits are encoded.
+     * @param z The z coordinate. Only the lower 26 bits are encoded.
+     */
+    public Position(int x, int y, int z)
+    {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    /**
+     * @return The x coordinate of this position
+     */
+    public int getX()
+    {
+        return x;
+    }
+
+    /**
+     * @return The y coordinate of this position
+     */
+    public int getY()
+    {
+        return y;
+    }
+
+    /**
+     * @return The z coordinate of this position
+     */
+    public int getZ()
+    {
+        return z;
+    }
+
+    /**
+     * @return This position in its packed form
+     */
+    public long pack()
+    {
+        return pack(x, y, z);
+    }
+
+    /**
+     * Packs a set of coordinates into a long
+     *
+     * @param x The x coordinate
+     * @param y The y coordinate
+     * @param z The z coordinate
+     *
+     * @return The packed position
+     */
+    public static long pack(int x, int y, int z)
+    {
+        return ((long) (x & 0x3FFFFFF) << 38) | ((long) (y & 0xFFF) << 26) | (z & 0x3FFFFFF);
+    }
+
+    /**
+     * Unpacks a position
+     *
+     * @param packed The packed position
+     *
+     * @return The unpacked position
+     */
+    public static Position unpack(long packed)
+    {
+        return new Position(unpackX(packed), unpackY(packed), unpackZ(packed));
+    }
+
+    /**
+     * @param packed A packed position
+     *
+     * @return The x coordinate of the position
+     */
+    public static int unpackX(long packed)
+    {
+        return (int) (packed >> 38);
+    }
+
+    /**
+     * @param packed A packed position
+     *
+     * @return The y coordinate of the position
+     */
+    public static int unpackY(long packed)
+    {
+        // Shift the field to the top of the long and back down to sign extend it
+        return (int) (packed << 26 >> 52);
+    }
+
+    /**
+     * @param packed A packed position
+     *
+     * @return The z coordinate of the position
+     */
+    public static int unpackZ(long packed)
+    {
+        return (int) (packed << 38 >> 38);
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) return true;
+        if (!(o instanceof Position)) return false;
+
+        Position other = (Position) o;
+
+        return x == other.x && y == other.y && z == other.z;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Long.hashCode(pack());
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Position[x=" + x + ", y=" + y + ", z=" + z + "]";
+    }
+
+}
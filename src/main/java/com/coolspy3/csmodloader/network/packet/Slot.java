@@ -0,0 +1,226 @@
+package com.coolspy3.csmodloader.network.packet;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+import com.coolspy3.csmodloader.network.packet.nbt.Nbt;
+import com.coolspy3.csmodloader.network.packet.nbt.NbtCompound;
+import com.coolspy3.csmodloader.util.Utils;
+
+/**
+ * An immutable, non-empty item stack. Slots are encoded as the item's id as a short followed by
+ * the stack size as a byte, the item's damage as a short and the item's NBT data. An empty slot is
+ * encoded as an item id of {@code -1} and is represented by {@code null}.
+ */
+public final class Slot
+{
+
+    private final int itemId;
+    private final int count;
+    private final int damage;
+    private final NbtCompound nbt;
+
+    /**
+     * Creates a new Slot
+     *
+     * @param itemId The id of the item
+     * @param count The number of items in the stack
+     * @param damage The damage value of the item
+     * @param nbt The item's NBT data or {@code null} if it has none
+     *
+     * @throws IllegalArgumentException If the item id is {@code -1}
+     */
+    public Slot(int itemId, int count, int damage, NbtCompound nbt) throws IllegalArgumentException
+    {
+        if (itemId == -1) throw new IllegalArgumentException("Empty slots are represented by null");
+
+        this.itemId = itemId;
+        this.count = count;
+        this.damage = damage;
+        this.nbt = nbt;
+    }
+
+    /**
+     * @return The id of the item
+     */
+    public int getItemId()
+    {
+        return itemId;
+    }
+
+    /**
+     * @return The number of items in the stack
+     */
+    public int getCount()
+    {
+        return count;
+    }
+
+    /**
+     * @return The damage value of the item
+     */
+    public int getDamage()
+    {
+        return damage;
+    }
+
+    /**
+     * @return The item's NBT data or {@code null} if it has none
+     */
+    public NbtCompound getNbt()
+    {
+        return nbt;
+    }
+
+    /**
+     * @return An ObjectParser which reads and writes Slots. Empty slots are read as (and
+     *         {@code null} is written as) an item id of {@code -1}.
+     */
+    public static ObjectParser<Slot> parser()
+    {
+        return ObjectParser.skipping(ObjectParser.of(Slot::write, Slot::read, Slot::write,
+                Slot::read, Slot.class), Slot::skip, Slot::skip);
+    }
+
+    /**
+     * Reads a slot from an InputStream
+     *
+     * @param is The stream from which to read
+     *
+     * @return The read slot or {@code null} if the slot is empty
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public static Slot read(InputStream is) throws IOException
+    {
+        DataInputStream in = new DataInputStream(is);
+        int itemId = in.readShort();
+
+        if (itemId == -1) return null;
+
+        return new Slot(itemId, in.readByte(), in.readShort(), Nbt.read(is));
+    }
+
+    /**
+     * Reads a slot from a ByteBuffer
+     *
+     * @param buf The buffer from which to read
+     *
+     * @return The read slot or {@code null} if the slot is empty
+     *
+     * @throws IOException If the slot's NBT data is invalid
+     */
+    public static Slot read(ByteBuffer buf) throws IOException
+    {
+        int itemId = buf.getShort();
+
+        if (itemId == -1) return null;
+
+        return new Slot(itemId, buf.get(), buf.getShort(), Nbt.read(buf));
+    }
+
+    /**
+     * Writes a slot to an OutputStream
+     *
+     * @param slot The slot to write or {@code null} to write an empty slot
+     * @param os The stream to which to write
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public static void write(Slot slot, OutputStream os) throws IOException
+    {
+        DataOutputStream out = new DataOutputStream(os);
+
+        if (slot == null)
+        {
+            out.writeShort(-1);
+
+            return;
+        }
+
+        out.writeShort(slot.itemId);
+        out.writeByte(slot.count);
+        out.writeShort(slot.damage);
+        Nbt.write(slot.nbt, os);
+    }
+
+    /**
+     * Writes a slot to a ByteBuffer
+     *
+     * @param slot The slot to write or {@code null} to write an empty slot
+     * @param buf The buffer to which to write
+     */
+    public static void write(Slot slot, ByteBuffer buf)
+    {
+        if (slot == null)
+        {
+            buf.putShort((short) -1);
+
+            return;
+        }
+
+        buf.putShort((short) slot.itemId).put((byte) slot.count).putShort((short) slot.damage);
+        Nbt.write(slot.nbt, buf);
+    }
+
+    /**
+     * Skips a slot in an InputStream without decoding it
+     *
+     * @param is The stream to skip
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public static void skip(InputStream is) throws IOException
+    {
+        if (new DataInputStream(is).readShort() == -1) return;
+
+        Utils.skipNBytes(is, 3);
+        Nbt.skipTag(is);
+    }
+
+    /**
+     * Skips a slot in a ByteBuffer without decoding it
+     *
+     * @param buf The buffer to skip
+     *
+     * @throws IOException If the slot's NBT data is invalid
+     */
+    public static void skip(ByteBuffer buf) throws IOException
+    {
+        if (buf.getShort() == -1) return;
+
+        Utils.skipNBytes(buf, 3);
+        Nbt.skipTag(buf);
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) return true;
+        if (!(o instanceof Slot)) return false;
+
+        Slot other = (Slot) o;
+
+        return itemId == other.itemId && count == other.count && damage == other.damage
+                && Objects.equals(nbt, other.nbt);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(itemId, count, damage, nbt);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Slot[itemId=" + itemId + ", count=" + count + ", damage=" + damage + ", nbt=" + nbt
+                + "]";
+    }
+
+}
@@ -0,0 +1,594 @@
+package com.coolspy3.csmodloader.network.packet.nbt;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import com.coolspy3.csmodloader.network.packet.ObjectParser;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Contains the tag type ids and low-level functions used to walk encoded NBT data.
+ *
+ * Encoded tags are never converted into a tree. Instead, the functions in this class move over
+ * tags using absolute indices, so they neither allocate nor modify the position of the buffer
+ * being walked. {@link NbtCompound} and {@link NbtList} use these functions to provide lazy views
+ * over encoded data.
+ */
+public final class Nbt
+{
+
+    public static final int END = 0;
+    public static final int BYTE = 1;
+    public static final int SHORT = 2;
+    public static final int INT = 3;
+    public static final int LONG = 4;
+    public static final int FLOAT = 5;
+    public static final int DOUBLE = 6;
+    public static final int BYTE_ARRAY = 7;
+    public static final int STRING = 8;
+    public static final int LIST = 9;
+    public static final int COMPOUND = 10;
+    public static final int INT_ARRAY = 11;
+    public static final int LONG_ARRAY = 12;
+
+    /**
+     * The maximum depth to which tags may be nested
+     */
+    public static final int MAX_DEPTH = 512;
+
+    /**
+     * @return An ObjectParser which reads and writes root compound tags as {@link NbtCompound}s. A
+     *         single {@link #END} tag is read as (and {@code null} is written as) the absence of a
+     *         tag.
+     */
+    public static ObjectParser<NbtCompound> parser()
+    {
+        return ObjectParser.skipping(ObjectParser.of(Nbt::write, Nbt::read, Nbt::write, Nbt::read,
+                NbtCompound.class), Nbt::skipTag, Nbt::skipTag);
+    }
+
+    /**
+     * Reads a root compound tag from an InputStream. Only the raw bytes of the tag are copied. None
+     * of its values are decoded.
+     *
+     * @param is The stream from which to read
+     *
+     * @return A view over the tag or {@code null} if the stream contained a single {@link #END} tag
+     *
+     * @throws IOException If an I/O error occurs or the tag is invalid
+     */
+    public static NbtCompound read(InputStream is) throws IOException
+    {
+        DataInputStream in = new DataInputStream(is);
+        int type = in.readUnsignedByte();
+
+        if (type == END) return null;
+        if (type != COMPOUND) throw new IOException("Root NBT tag must be a compound: " + type);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeByte(type);
+        transfer(in, out, STRING, 0);
+        transfer(in, out, COMPOUND, 0);
+
+        return NbtCompound.root(ByteBuffer.wrap(bytes.toByteArray()));
+    }
+
+    /**
+     * Reads a root compound tag from a ByteBuffer. Only the raw bytes of the tag are copied. None of
+     * its values are decoded.
+     *
+     * @param buf The buffer from which to read
+     *
+     * @return A view over the tag or {@code null} if the buffer contained a single {@link #END} tag
+     *
+     * @throws IOException If the tag is invalid
+     */
+    public static NbtCompound read(ByteBuffer buf) throws IOException
+    {
+        int start = buf.position();
+        int end = skipTag(buf, start);
+
+        if (buf.get(start) == END)
+        {
+            buf.position(end);
+
+            return null;
+        }
+
+        if (buf.get(start) != COMPOUND)
+            throw new IOException("Root NBT tag must be a compound: " + buf.get(start));
+
+        byte[] bytes = new byte[end - start];
+        buf.get(bytes);
+
+        return NbtCompound.root(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Writes a root compound tag
+     *
+     * @param tag The tag to write or {@code null} to write a single {@link #END} tag
+     * @param os The stream to which to write
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public static void write(NbtCompound tag, OutputStream os) throws IOException
+    {
+        if (tag == null) os.write(END);
+        else
+            os.write(tag.toByteArray());
+    }
+
+    /**
+     * Writes a root compound tag
+     *
+     * @param tag The tag to write or {@code null} to write a single {@link #END} tag
+     * @param buf The buffer to which to write
+     */
+    public static void write(NbtCompound tag, ByteBuffer buf)
+    {
+        if (tag == null) buf.put((byte) END);
+        else
+            tag.writeTo(buf);
+    }
+
+    /**
+     * Skips a named tag (or a single {@link #END} tag) in an InputStream without decoding it
+     *
+     * @param is The stream to skip
+     *
+     * @throws IOException If an I/O error occurs or the tag is invalid
+     */
+    public static void skipTag(InputStream is) throws IOException
+    {
+        DataInputStream in = new DataInputStream(is);
+        int type = in.readUnsignedByte();
+
+        if (type == END) return;
+
+        transfer(in, null, STRING, 0);
+        transfer(in, null, type, 0);
+    }
+
+    /**
+     * Skips a named tag (or a single {@link #END} tag) in a ByteBuffer without decoding it
+     *
+     * @param buf The buffer to skip
+     *
+     * @throws IOException If the tag is invalid
+     */
+    public static void skipTag(ByteBuffer buf) throws IOException
+    {
+        buf.position(skipTag(buf, buf.position()));
+    }
+
+    /**
+     * Computes the end of a named tag (or a single {@link #END} tag) without modifying the
+     * position of the buffer
+     *
+     * @param data The buffer containing the tag
+     * @param index The index of the tag's type id
+     *
+     * @return The index immediately after the tag
+     *
+     * @throws IOException If the tag is invalid
+     */
+    public static int skipTag(ByteBuffer data, int index) throws IOException
+    {
+        check(data, index, 1);
+
+        int type = data.get(index);
+
+        if (type == END) return index + 1;
+
+        return skipPayload(data, skipPayload(data, index + 1, STRING), type);
+    }
+
+    /**
+     * Computes the end of the payload of a tag without modifying the position of the buffer
+     *
+     * @param data The buffer containing the payload
+     * @param index The index of the start of the payload
+     * @param type The type id of the tag
+     *
+     * @return The index immediately after the payload
+     *
+     * @throws IOException If the payload is invalid
+     */
+    public static int skipPayload(ByteBuffer data, int index, int type) throws IOException
+    {
+        return skipPayload(data, index, type, 0);
+    }
+
+    private static int skipPayload(ByteBuffer data, int index, int type, int depth)
+            throws IOException
+    {
+        if (depth > MAX_DEPTH) throw new IOException("NBT tag is nested too deeply!");
+
+        int size = payloadSize(type);
+
+        if (size >= 0) return check(data, index, size);
+
+        switch (type)
+        {
+            case BYTE_ARRAY:
+                check(data, index, 4);
+
+                return check(data, index + 4, data.getInt(index));
+
+            case STRING:
+                check(data, index, 2);
+
+                return check(data, index + 2, data.getShort(index) & 0xFFFF);
+
+            case INT_ARRAY:
+                check(data, index, 4);
+
+                return check(data, index + 4, (long) data.getInt(index) * 4);
+
+            case LONG_ARRAY:
+                check(data, index, 4);
+
+                return check(data, index + 4, (long) data.getInt(index) * 8);
+
+            case LIST:
+            {
+                check(data, index, 5);
+
+                int elementType = data.get(index);
+                int length = data.getInt(index + 1);
+                int elementSize = payloadSize(elementType);
+
+                index += 5;
+
+                if (length < 0) throw new IOException("Invalid NBT list length: " + length);
+
+                // Lists of fixed-size elements can be skipped all at once
+                if (elementSize >= 0) return check(data, index, (long) length * elementSize);
+
+                for (int i = 0; i < length; i++)
+                    index = skipPayload(data, index, elementType, depth + 1);
+
+                return index;
+            }
+
+            case COMPOUND:
+            {
+                while (true)
+                {
+                    check(data, index, 1);
+
+                    int entryType = data.get(index++);
+
+                    if (entryType == END) return index;
+
+                    index = skipPayload(data, index, STRING, depth);
+                    index = skipPayload(data, index, entryType, depth + 1);
+                }
+            }
+
+            default:
+                throw new IOException("Unknown NBT tag type: " + type);
+        }
+    }
+
+    /**
+     * @param type A tag type id
+     *
+     * @return The number of bytes used to encode the payload of the tag or {@code -1} if the tag
+     *         does not have a fixed size
+     */
+    public static int payloadSize(int type)
+    {
+        switch (type)
+        {
+            case END:
+                return 0;
+            case BYTE:
+                return 1;
+            case SHORT:
+                return 2;
+            case INT:
+            case FLOAT:
+                return 4;
+            case LONG:
+            case DOUBLE:
+                return 8;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Decodes the payload of a tag without modifying the position of the buffer. Primitive tags are
+     * boxed, arrays are copied and lists and compounds are returned as lazy views which share the
+     * provided buffer.
+     *
+     * @param data The buffer containing the payload
+     * @param index The index of the start of the payload
+     * @param type The type id of the tag
+     *
+     * @return The decoded payload
+     *
+     * @throws IOException If the payload is invalid
+     */
+    public static Object readPayload(ByteBuffer data, int index, int type) throws IOException
+    {
+        switch (type)
+        {
+            case BYTE:
+                return data.get(index);
+            case SHORT:
+                return data.getShort(index);
+            case INT:
+                return data.getInt(index);
+            case LONG:
+                return data.getLong(index);
+            case FLOAT:
+                return data.getFloat(index);
+            case DOUBLE:
+                return data.getDouble(index);
+
+            case BYTE_ARRAY:
+            {
+                byte[] arr = new byte[data.getInt(index)];
+                ((ByteBuffer) data.duplicate().position(index + 4)).get(arr);
+
+                return arr;
+            }
+
+            case STRING:
+                return readUTF(data, index);
+
+            case LIST:
+                return new NbtList(data, index);
+
+            case COMPOUND:
+                return new NbtCompound(data, index);
+
+            case INT_ARRAY:
+            {
+                int[] arr = new int[data.getInt(index)];
+                ((ByteBuffer) data.duplicate().position(index + 4)).asIntBuffer().get(arr);
+
+                return arr;
+            }
+
+            case LONG_ARRAY:
+            {
+                long[] arr = new long[data.getInt(index)];
+                ((ByteBuffer) data.duplicate().position(index + 4)).asLongBuffer().get(arr);
+
+                return arr;
+            }
+
+            default:
+                throw new IOException("Unknown NBT tag type: " + type);
+        }
+    }
+
+    /**
+     * Decodes a string encoded in Java's modified UTF-8 format and prefixed with its length as an
+     * unsigned short without modifying the position of the buffer
+     *
+     * @param data The buffer containing the string
+     * @param index The index of the string's length
+     *
+     * @return The decoded string
+     *
+     * @throws IOException If the string is invalid
+     */
+    public static String readUTF(ByteBuffer data, int index) throws IOException
+    {
+        int len = data.getShort(index) & 0xFFFF;
+        char[] chars = new char[len];
+
+        // Modified UTF-8 encodes ASCII characters (other than NUL) as single bytes
+        for (int i = 0; i < len; i++)
+        {
+            byte b = data.get(index + 2 + i);
+
+            if (b < 0) return readUTFSlow(data, index, len);
+
+            chars[i] = (char) b;
+        }
+
+        return new String(chars);
+    }
+
+    private static String readUTFSlow(ByteBuffer data, int index, int len) throws IOException
+    {
+        byte[] bytes = new byte[len + 2];
+        ((ByteBuffer) data.duplicate().position(index)).get(bytes);
+
+        return new DataInputStream(new ByteArrayInputStream(bytes)).readUTF();
+    }
+
+    /**
+     * Encodes a string in Java's modified UTF-8 format without its length prefix
+     *
+     * @param str The string to encode
+     *
+     * @return The encoded string
+     */
+    public static byte[] encodeUTF(String str)
+    {
+        int len = str.length();
+        int encodedLen = 0;
+
+        for (int i = 0; i < len; i++)
+        {
+            char c = str.charAt(i);
+
+            encodedLen += c != 0 && c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+        }
+
+        byte[] bytes = new byte[encodedLen];
+        int index = 0;
+
+        for (int i = 0; i < len; i++)
+        {
+            char c = str.charAt(i);
+
+            if (c != 0 && c < 0x80) bytes[index++] = (byte) c;
+            else if (c < 0x800)
+            {
+                bytes[index++] = (byte) (0xC0 | (c >> 6));
+                bytes[index++] = (byte) (0x80 | (c & 0x3F));
+            }
+            else
+            {
+                bytes[index++] = (byte) (0xE0 | (c >> 12));
+                bytes[index++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[index++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Moves the payload of a tag from an InputStream to an OutputStream, or skips it if no
+     * OutputStream is provided
+     *
+     * @param in The stream from which to read
+     * @param out The stream to which to write or {@code null} to skip the payload
+     * @param type The type id of the tag
+     * @param depth The depth of the tag
+     *
+     * @throws IOException If an I/O error occurs or the payload is invalid
+     */
+    private static void transfer(DataInputStream in, DataOutputStream out, int type, int depth)
+            throws IOException
+    {
+        if (depth > MAX_DEPTH) throw new IOException("NBT tag is nested too deeply!");
+
+        int size = payloadSize(type);
+
+        if (size >= 0)
+        {
+            transfer(in, out, size);
+
+            return;
+        }
+
+        switch (type)
+        {
+            case BYTE_ARRAY:
+            case INT_ARRAY:
+            case LONG_ARRAY:
+            {
+                int length = in.readInt();
+
+                if (length < 0) throw new IOException("Invalid NBT array length: " + length);
+                if (out != null) out.writeInt(length);
+
+                transfer(in, out,
+                        (long) length * (type == BYTE_ARRAY ? 1 : type == INT_ARRAY ? 4 : 8));
+
+                return;
+            }
+
+            case STRING:
+            {
+                int length = in.readUnsignedShort();
+
+                if (out != null) out.writeShort(length);
+
+                transfer(in, out, length);
+
+                return;
+            }
+
+            case LIST:
+            {
+                int elementType = in.readUnsignedByte();
+                int length = in.readInt();
+                int elementSize = payloadSize(elementType);
+
+                if (length < 0) throw new IOException("Invalid NBT list length: " + length);
+
+                if (out != null)
+                {
+                    out.writeByte(elementType);
+                    out.writeInt(length);
+                }
+
+                if (elementSize >= 0) transfer(in, out, (long) length * elementSize);
+                else
+                    for (int i = 0; i < length; i++)
+                        transfer(in, out, elementType, depth + 1);
+
+                return;
+            }
+
+            case COMPOUND:
+            {
+                while (true)
+                {
+                    int entryType = in.readUnsignedByte();
+
+                    if (out != null) out.writeByte(entryType);
+
+                    if (entryType == END) return;
+
+                    transfer(in, out, STRING, depth);
+                    transfer(in, out, entryType, depth + 1);
+                }
+            }
+
+            default:
+                throw new IOException("Unknown NBT tag type: " + type);
+        }
+    }
+
+    /**
+     * Moves a number of bytes from an InputStream to an OutputStream, or skips them if no
+     * OutputStream is provided
+     *
+     * @param in The stream from which to read
+     * @param out The stream to which to write or {@code null} to skip the bytes
+     * @param len The number of bytes
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    private static void transfer(InputStream in, OutputStream out, long len) throws IOException
+    {
+        if (out == null) IOUtils.skipFully(in, len);
+        else if (IOUtils.copyLarge(in, out, 0, len) != len)
+            throw new EOFException("Unexpected end of NBT data");
+    }
+
+    /**
+     * Checks that a number of bytes are available in a buffer
+     *
+     * @param data The buffer
+     * @param index The index of the first byte
+     * @param len The number of bytes
+     *
+     * @return The index immediately after the bytes
+     *
+     * @throws IOException If the bytes are not available
+     */
+    private static int check(ByteBuffer data, int index, long len) throws IOException
+    {
+        if (len < 0 || index + len > data.limit())
+            throw new EOFException("Unexpected end of NBT data");
+
+        return (int) (index + len);
+    }
+
+    private Nbt()
+    {}
+
+}
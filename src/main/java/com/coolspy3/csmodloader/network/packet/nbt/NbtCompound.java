@@ -0,0 +1,625 @@
+package com.coolspy3.csmodloader.network.packet.nbt;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import com.coolspy3.csmodloader.util.Utils;
+
+/**
+ * A lazy, read-only view over an encoded compound tag. Entries are located by scanning the encoded
+ * data and comparing names in place, and values are only decoded when they are requested. Nested
+ * compounds and lists are returned as views which share the same underlying data, so reading a
+ * single value from a large tag does not decode (or copy) the rest of it.
+ *
+ * The getters for primitive types return {@code 0} if the requested entry does not exist. All other
+ * getters return {@code null}.
+ *
+ * All methods of this class are thread-safe.
+ */
+public final class NbtCompound
+{
+
+    /**
+     * The encoded name given to compounds which are nested within another tag
+     */
+    private static final ByteBuffer EMPTY_NAME = ByteBuffer.wrap(new byte[2]).asReadOnlyBuffer();
+
+    private final ByteBuffer data;
+    /**
+     * The index of the root tag's type id or {@code -1} if this compound is nested within another
+     * tag
+     */
+    private final int tagStart;
+    /**
+     * The index of the first entry of this compound
+     */
+    private final int start;
+
+    /**
+     * Creates a view over the payload of a compound tag
+     *
+     * @param data The buffer containing the compound. The buffer's position is never modified.
+     * @param start The index of the start of the compound's payload
+     */
+    NbtCompound(ByteBuffer data, int start)
+    {
+        this(data, -1, start);
+    }
+
+    private NbtCompound(ByteBuffer data, int tagStart, int start)
+    {
+        this.data = data;
+        this.tagStart = tagStart;
+        this.start = start;
+    }
+
+    /**
+     * Creates a view over a root compound tag which has already been validated
+     *
+     * @param data A buffer containing only the tag
+     *
+     * @return The new view
+     *
+     * @throws IOException If the tag's name is invalid
+     */
+    static NbtCompound root(ByteBuffer data) throws IOException
+    {
+        return new NbtCompound(data, 0, Nbt.skipPayload(data, 1, Nbt.STRING));
+    }
+
+    /**
+     * Creates a view over an encoded root compound tag. The tag is validated but none of its values
+     * are decoded.
+     *
+     * @param tag The encoded tag, including its type id and name. The array is not copied and must
+     *        not be modified after it has been passed to this method.
+     *
+     * @return The new view
+     *
+     * @throws IOException If the array does not contain a valid compound tag
+     */
+    public static NbtCompound wrap(byte[] tag) throws IOException
+    {
+        ByteBuffer data = ByteBuffer.wrap(tag);
+
+        if (Nbt.skipTag(data, 0) != tag.length || tag[0] != Nbt.COMPOUND)
+            throw new IOException("Invalid compound tag");
+
+        return root(data);
+    }
+
+    /**
+     * @return The name of this compound if it is a root tag or {@code null} otherwise
+     */
+    public String getName()
+    {
+        return tagStart < 0 ? null : Utils.wrap(() -> Nbt.readUTF(data, tagStart + 1));
+    }
+
+    /**
+     * @param name The name of the entry
+     *
+     * @return Whether this compound contains an entry with the specified name
+     */
+    public boolean contains(String name)
+    {
+        return find(name) >= 0;
+    }
+
+    /**
+     * @param name The name of the entry
+     *
+     * @return The type id of the entry with the specified name or {@link Nbt#END} if it does not
+     *         exist
+     */
+    public int getType(String name)
+    {
+        int index = find(name);
+
+        return index < 0 ? Nbt.END : data.get(index);
+    }
+
+    /**
+     * Decodes an entry of any type
+     *
+     * @param name The name of the entry
+     *
+     * @return The value of the entry or {@code null} if it does not exist
+     *
+     * @see Nbt#readPayload(ByteBuffer, int, int)
+     */
+    public Object get(String name)
+    {
+        int index = find(name);
+
+        if (index < 0) return null;
+
+        return Utils.wrap(() -> Nbt.readPayload(data, payload(index), data.get(index)));
+    }
+
+    /**
+     * Decodes an entry nested within this compound
+     *
+     * @param path The names of the compounds containing the entry followed by the name of the entry
+     *
+     * @return The value of the entry or {@code null} if it does not exist
+     */
+    public Object get(String... path)
+    {
+        NbtCompound compound = this;
+
+        for (int i = 0; i < path.length - 1; i++)
+        {
+            compound = compound.getCompound(path[i]);
+
+            if (compound == null) return null;
+        }
+
+        return path.length == 0 ? this : compound.get(path[path.length - 1]);
+    }
+
+    /**
+     * @param name The name of the entry
+     *
+     * @return The value of the entry
+     *
+     * @throws ClassCastException If the entry is not a byte
+     */
+    public byte getByte(String name) throws ClassCastException
+    {
+        int index = find(name, Nbt.BYTE);
+
+        return index < 0 ? 0 : data.get(payload(index));
+    }
+
+    /**
+     * @param name The name of the entry
+     *
+     * @return The value of the entry
+     *
+     * @throws ClassCastException If the entry is not a short
+     */
+    public short getShort(String name) throws ClassCastException
+    {
+        int index = find(name, Nbt.SHORT);
+
+        return index < 0 ? 0 : data.getShort(payload(index));
+    }
+
+    /**
+     * @param name The name of the entry
+     *
+     * @return The value of the entry
+     *
+     * @throws ClassCastException If the entry is not an int
+     */
+    public int getInt(String name) throws ClassCastException
+    {
+        int index = find(name, Nbt.INT);
+
+        return index < 0 ? 0 : data.getInt(payload(index));
+    }
+
+    /**
+     * @param name The name of the entry
+     *
+     * @return The value of the entry
+     *
+     * @throws ClassCastException If the entry is not a long
+     */
+    public long getLong(String name) throws ClassCastException
+    {
+        int index = find(name, Nbt.LONG);
+
+        return index < 0 ? 0 : data.getLong(payload(index));
+    }
+
+    /**
+     * @param name The name of the entry
+     *
+     * @return The value of the entry
+     *
+     * @throws ClassCastException If the entry is not a float
+     */
+    public float getFloat(String name) throws ClassCastException
+    {
+        int index = find(name, Nbt.FLOAT);
+
+        return index < 0 ? 0 : data.getFloat(payload(index));
+    }
+
+    /**
+     * @param name The name of the entry
+     *
+     * @return The value of the entry
+     *
+     * @throws ClassCastException If the entry is not a double
+     */
+    public double getDouble(String name) throws ClassCastException
+    {
+        int index = find(name, Nbt.DOUBLE);
+
+        return index < 0 ? 0 : data.getDouble(payload(index));
+    }
+
+    /**
+     * @param name The name of the entry
+     *
+     * @return The value of the entry
+     *
+     * @throws ClassCastException If the entry is not a string
+     */
+    public String getString(String name) throws ClassCastException
+    {
+        return (String) get(name, Nbt.STRING);
+    }
+
+    /**
+     * @param name The name of the entry
+     *
+     * @return The value of the entry
+     *
+     * @throws ClassCastException If the entry is not a byte array
+     */
+    public byte[] getByteArray(String name) throws ClassCastException
+    {
+        return (byte[]) get(name, Nbt.BYTE_ARRAY);
+    }
+
+    /**
+     * @param name The name of the entry
+     *
+     * @return The value of the entry
+     *
+     * @throws ClassCastException If the entry is not an int array
+     */
+    public int[] getIntArray(String name) throws ClassCastException
+    {
+        return (int[]) get(name, Nbt.INT_ARRAY);
+    }
+
+    /**
+     * @param name The name of the entry
+     *
+     * @return The value of the entry
+     *
+     * @throws ClassCastException If the entry is not a long array
+     */
+    public long[] getLongArray(String name) throws ClassCastException
+    {
+        return (long[]) get(name, Nbt.LONG_ARRAY);
+    }
+
+    /**
+     * @param name The name of the entry
+     *
+     * @return A view over the entry
+     *
+     * @throws ClassCastException If the entry is not a compound
+     */
+    public NbtCompound getCompound(String name) throws ClassCastException
+    {
+        return (NbtCompound) get(name, Nbt.COMPOUND);
+    }
+
+    /**
+     * @param name The name of the entry
+     *
+     * @return A view over the entry
+     *
+     * @throws ClassCastException If the entry is not a list
+     */
+    public NbtList getList(String name) throws ClassCastException
+    {
+        return (NbtList) get(name, Nbt.LIST);
+    }
+
+    /**
+     * Decodes the names of all entries in this compound
+     *
+     * @return The names of all entries in the order in which they are encoded
+     */
+    public Set<String> keySet()
+    {
+        Set<String> keys = new LinkedHashSet<>();
+
+        forEachEntry(index -> {
+
+            keys.add(Nbt.readUTF(data, index + 1));
+
+            return false;
+
+        });
+
+        return keys;
+    }
+
+    /**
+     * @return The number of entries in this compound
+     */
+    public int size()
+    {
+        int[] size = new int[1];
+
+        forEachEntry(index -> {
+
+            size[0]++;
+
+            return false;
+
+        });
+
+        return size[0];
+    }
+
+    /**
+     * @return The encoded form of this compound as a root tag. If this compound is nested within
+     *         another tag, it is given an empty name.
+     */
+    public byte[] toByteArray()
+    {
+        int end = end();
+
+        if (tagStart >= 0)
+        {
+            byte[] bytes = new byte[end - tagStart];
+            ((ByteBuffer) data.duplicate().position(tagStart)).get(bytes);
+
+            return bytes;
+        }
+
+        byte[] bytes = new byte[3 + end - start];
+        bytes[0] = Nbt.COMPOUND;
+        ((ByteBuffer) data.duplicate().position(start)).get(bytes, 3, end - start);
+
+        return bytes;
+    }
+
+    /**
+     * Writes the encoded form of this compound as a root tag
+     *
+     * @param buf The buffer to which to write
+     *
+     * @see #toByteArray()
+     */
+    public void writeTo(ByteBuffer buf)
+    {
+        int end = end();
+        ByteBuffer src = data.duplicate();
+
+        if (tagStart >= 0) src.position(tagStart);
+        else
+        {
+            buf.put((byte) Nbt.COMPOUND).putShort((short) 0);
+            src.position(start);
+        }
+
+        src.limit(end);
+        buf.put(src);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Two compounds are equal if their encoded forms (including their names) are identical. The
+     * encoded forms are compared in place.
+     *
+     * @see #toByteArray()
+     */
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) return true;
+        if (!(o instanceof NbtCompound)) return false;
+
+        NbtCompound other = (NbtCompound) o;
+
+        return encodedName().equals(other.encodedName())
+                && region(start, end()).equals(other.region(other.start, other.end()));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The hash code is equal to {@code Arrays.hashCode(toByteArray())}, but is computed in place.
+     */
+    @Override
+    public int hashCode()
+    {
+        return hash(hash(31 + Nbt.COMPOUND, encodedName()), region(start, end()));
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder("{");
+
+        forEachEntry(index -> {
+
+            if (builder.length() > 1) builder.append(", ");
+
+            Object value = Nbt.readPayload(data, payload(index), data.get(index));
+
+            builder.append(Nbt.readUTF(data, index + 1)).append(": ")
+                    .append(NbtList.toString(value));
+
+            return false;
+
+        });
+
+        return builder.append('}').toString();
+    }
+
+    /**
+     * Locates an entry of an expected type
+     *
+     * @param name The name of the entry
+     * @param type The expected type id of the entry
+     *
+     * @return The index of the entry's type id or {@code -1} if it does not exist
+     *
+     * @throws ClassCastException If the entry is not of the expected type
+     */
+    private int find(String name, int type) throws ClassCastException
+    {
+        int index = find(name);
+
+        if (index >= 0 && data.get(index) != type) throw new ClassCastException(
+                "NBT entry: " + name + " has type " + data.get(index) + ", not " + type);
+
+        return index;
+    }
+
+    /**
+     * Decodes an entry of an expected type
+     *
+     * @param name The name of the entry
+     * @param type The expected type id of the entry
+     *
+     * @return The value of the entry or {@code null} if it does not exist
+     *
+     * @throws ClassCastException If the entry is not of the expected type
+     */
+    private Object get(String name, int type) throws ClassCastException
+    {
+        int index = find(name, type);
+
+        if (index < 0) return null;
+
+        return Utils.wrap(() -> Nbt.readPayload(data, payload(index), type));
+    }
+
+    /**
+     * Locates an entry by comparing its encoded name with the provided name
+     *
+     * @param name The name of the entry
+     *
+     * @return The index of the entry's type id or {@code -1} if it does not exist
+     */
+    private int find(String name)
+    {
+        byte[] encoded = Nbt.encodeUTF(name);
+        int[] result = {-1};
+
+        forEachEntry(index -> {
+
+            if ((data.getShort(index + 1) & 0xFFFF) != encoded.length) return false;
+
+            for (int i = 0; i < encoded.length; i++)
+                if (data.get(index + 3 + i) != encoded[i]) return false;
+
+            result[0] = index;
+
+            return true;
+
+        });
+
+        return result[0];
+    }
+
+    /**
+     * @return The name of this compound as it is encoded in {@link #toByteArray()}, including its
+     *         length
+     */
+    private ByteBuffer encodedName()
+    {
+        return tagStart < 0 ? EMPTY_NAME.duplicate() : region(tagStart + 1, start);
+    }
+
+    /**
+     * @param from The index of the first byte of the region
+     * @param to The index immediately after the region
+     *
+     * @return A buffer whose remaining bytes are the specified region of {@link #data}
+     */
+    private ByteBuffer region(int from, int to)
+    {
+        ByteBuffer region = data.duplicate();
+
+        region.limit(to);
+        region.position(from);
+
+        return region;
+    }
+
+    /**
+     * Continues a hash code computed in the same manner as
+     * {@link java.util.Arrays#hashCode(byte[])}
+     *
+     * @param hash The hash code of the preceding bytes
+     * @param region A buffer containing the bytes to add to the hash code. Its position is not
+     *        modified.
+     *
+     * @return The new hash code
+     */
+    private static int hash(int hash, ByteBuffer region)
+    {
+        for (int i = region.position(); i < region.limit(); i++)
+            hash = 31 * hash + region.get(i);
+
+        return hash;
+    }
+
+    /**
+     * @param index The index of an entry's type id
+     *
+     * @return The index of the entry's payload
+     */
+    private int payload(int index)
+    {
+        return index + 3 + (data.getShort(index + 1) & 0xFFFF);
+    }
+
+    /**
+     * @return The index immediately after this compound's payload
+     */
+    private int end()
+    {
+        return Utils.wrap(() -> Nbt.skipPayload(data, start, Nbt.COMPOUND));
+    }
+
+    /**
+     * Calls the provided function with the index of the type id of each entry in this compound
+     * until it returns {@code true}
+     *
+     * @param func The function to call
+     */
+    private void forEachEntry(EntryFunction func)
+    {
+        Utils.wrap(() -> {
+
+            int index = start;
+
+            while (data.get(index) != Nbt.END)
+            {
+                if (func.apply(index)) break;
+
+                index = Nbt.skipPayload(data, payload(index), data.get(index));
+            }
+
+            return null;
+
+        });
+    }
+
+    /**
+     * A function which is called with the index of each entry in a compound
+     */
+    @FunctionalInterface
+    private static interface EntryFunction
+    {
+
+        /**
+         * @param index The index of the entry's type id
+         *
+         * @return Whether to stop iterating
+         *
+         * @throws IOException If the entry is invalid
+         */
+        public boolean apply(int index) throws IOException;
+
+    }
+
+}
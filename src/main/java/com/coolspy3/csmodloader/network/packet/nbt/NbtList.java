@@ -0,0 +1,300 @@
+package com.coolspy3.csmodloader.network.packet.nbt;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.coolspy3.csmodloader.util.Utils;
+
+/**
+ * A lazy, read-only view over an encoded list tag. Elements are only decoded when they are
+ * requested. The offsets of variable-size elements are computed (and cached) as they are needed,
+ * so accessing an element only requires skipping over the elements preceding it once.
+ *
+ * The getters for primitive types throw a {@link ClassCastException} if the list does not contain
+ * elements of the requested type.
+ *
+ * All methods of this class are thread-safe.
+ */
+public final class NbtList
+{
+
+    private final ByteBuffer data;
+    private final int elementType;
+    private final int length;
+    /**
+     * The index of the first element of this list
+     */
+    private final int start;
+    /**
+     * The number of bytes used to encode each element or {@code -1} if elements are variable-size
+     */
+    private final int elementSize;
+
+    /**
+     * The indices of each element of a list of variable-size elements. The entry after the last
+     * element contains the end of the list.
+     */
+    private int[] offsets;
+    /**
+     * The number of entries at the start of {@link #offsets} which have been computed
+     */
+    private int knownOffsets;
+
+    /**
+     * Creates a view over the payload of a list tag
+     *
+     * @param data The buffer containing the list. The buffer's position is never modified.
+     * @param index The index of the start of the list's payload
+     */
+    NbtList(ByteBuffer data, int index)
+    {
+        this.data = data;
+        this.elementType = data.get(index);
+        this.length = data.getInt(index + 1);
+        this.start = index + 5;
+        this.elementSize = Nbt.payloadSize(elementType);
+    }
+
+    /**
+     * @return The type id of the elements of this list
+     */
+    public int getElementType()
+    {
+        return elementType;
+    }
+
+    /**
+     * @return The number of elements in this list
+     */
+    public int size()
+    {
+        return length;
+    }
+
+    /**
+     * Decodes an element of any type
+     *
+     * @param i The index of the element
+     *
+     * @return The element
+     *
+     * @throws IndexOutOfBoundsException If the index is out of range
+     *
+     * @see Nbt#readPayload(ByteBuffer, int, int)
+     */
+    public Object get(int i) throws IndexOutOfBoundsException
+    {
+        int index = offset(i);
+
+        return Utils.wrap(() -> Nbt.readPayload(data, index, elementType));
+    }
+
+    /**
+     * @param i The index of the element
+     *
+     * @return The element
+     *
+     * @throws ClassCastException If this list does not contain bytes
+     * @throws IndexOutOfBoundsException If the index is out of range
+     */
+    public byte getByte(int i) throws ClassCastException, IndexOutOfBoundsException
+    {
+        return data.get(offset(i, Nbt.BYTE));
+    }
+
+    /**
+     * @param i The index of the element
+     *
+     * @return The element
+     *
+     * @throws ClassCastException If this list does not contain shorts
+     * @throws IndexOutOfBoundsException If the index is out of range
+     */
+    public short getShort(int i) throws ClassCastException, IndexOutOfBoundsException
+    {
+        return data.getShort(offset(i, Nbt.SHORT));
+    }
+
+    /**
+     * @param i The index of the element
+     *
+     * @return The element
+     *
+     * @throws ClassCastException If this list does not contain ints
+     * @throws IndexOutOfBoundsException If the index is out of range
+     */
+    public int getInt(int i) throws ClassCastException, IndexOutOfBoundsException
+    {
+        return data.getInt(offset(i, Nbt.INT));
+    }
+
+    /**
+     * @param i The index of the element
+     *
+     * @return The element
+     *
+     * @throws ClassCastException If this list does not contain longs
+     * @throws IndexOutOfBoundsException If the index is out of range
+     */
+    public long getLong(int i) throws ClassCastException, IndexOutOfBoundsException
+    {
+        return data.getLong(offset(i, Nbt.LONG));
+    }
+
+    /**
+     * @param i The index of the element
+     *
+     * @return The element
+     *
+     * @throws ClassCastException If this list does not contain floats
+     * @throws IndexOutOfBoundsException If the index is out of range
+     */
+    public float getFloat(int i) throws ClassCastException, IndexOutOfBoundsException
+    {
+        return data.getFloat(offset(i, Nbt.FLOAT));
+    }
+
+    /**
+     * @param i The index of the element
+     *
+     * @return The element
+     *
+     * @throws ClassCastException If this list does not contain doubles
+     * @throws IndexOutOfBoundsException If the index is out of range
+     */
+    public double getDouble(int i) throws ClassCastException, IndexOutOfBoundsException
+    {
+        return data.getDouble(offset(i, Nbt.DOUBLE));
+    }
+
+    /**
+     * @param i The index of the element
+     *
+     * @return The element
+     *
+     * @throws ClassCastException If this list does not contain strings
+     * @throws IndexOutOfBoundsException If the index is out of range
+     */
+    public String getString(int i) throws ClassCastException, IndexOutOfBoundsException
+    {
+        int index = offset(i, Nbt.STRING);
+
+        return Utils.wrap(() -> Nbt.readUTF(data, index));
+    }
+
+    /**
+     * @param i The index of the element
+     *
+     * @return A view over the element
+     *
+     * @throws ClassCastException If this list does not contain compounds
+     * @throws IndexOutOfBoundsException If the index is out of range
+     */
+    public NbtCompound getCompound(int i) throws ClassCastException, IndexOutOfBoundsException
+    {
+        return new NbtCompound(data, offset(i, Nbt.COMPOUND));
+    }
+
+    /**
+     * @param i The index of the element
+     *
+     * @return A view over the element
+     *
+     * @throws ClassCastException If this list does not contain lists
+     * @throws IndexOutOfBoundsException If the index is out of range
+     */
+    public NbtList getList(int i) throws ClassCastException, IndexOutOfBoundsException
+    {
+        return new NbtList(data, offset(i, Nbt.LIST));
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder("[");
+
+        for (int i = 0; i < length; i++)
+        {
+            if (i > 0) builder.append(", ");
+
+            builder.append(toString(get(i)));
+        }
+
+        return builder.append(']').toString();
+    }
+
+    /**
+     * Converts a decoded NBT value to a string
+     *
+     * @param value The value
+     *
+     * @return The string representation of the value
+     */
+    static String toString(Object value)
+    {
+        if (value instanceof String) return '"' + (String) value + '"';
+        if (value instanceof byte[]) return Arrays.toString((byte[]) value);
+        if (value instanceof int[]) return Arrays.toString((int[]) value);
+        if (value instanceof long[]) return Arrays.toString((long[]) value);
+
+        return String.valueOf(value);
+    }
+
+    /**
+     * Computes the index of an element of an expected type
+     *
+     * @param i The index of the element
+     * @param type The expected type id of the elements of this list
+     *
+     * @return The index of the element within {@link #data}
+     *
+     * @throws ClassCastException If this list does not contain elements of the expected type
+     * @throws IndexOutOfBoundsException If the index is out of range
+     */
+    private int offset(int i, int type) throws ClassCastException, IndexOutOfBoundsException
+    {
+        if (elementType != type) throw new ClassCastException(
+                "NBT list contains elements of type " + elementType + ", not " + type);
+
+        return offset(i);
+    }
+
+    /**
+     * Computes the index of an element, skipping over (and caching the offsets of) any preceding
+     * elements which have not yet been located
+     *
+     * @param i The index of the element
+     *
+     * @return The index of the element within {@link #data}
+     *
+     * @throws IndexOutOfBoundsException If the index is out of range
+     */
+    private int offset(int i) throws IndexOutOfBoundsException
+    {
+        if (i < 0 || i >= length) throw new IndexOutOfBoundsException(
+                "Index: " + i + ", Size: " + length);
+
+        if (elementSize >= 0) return start + i * elementSize;
+
+        synchronized (this)
+        {
+            if (offsets == null)
+            {
+                offsets = new int[length + 1];
+                offsets[0] = start;
+                knownOffsets = 1;
+            }
+
+            while (knownOffsets <= i)
+            {
+                int index = offsets[knownOffsets - 1];
+
+                offsets[knownOffsets++] =
+                        Utils.wrap(() -> Nbt.skipPayload(data, index, elementType));
+            }
+
+            return offsets[i];
+        }
+    }
+
+}
@@ -0,0 +1,4 @@
+/**
+ * NBT parsing
+ */
+package com.coolspy3.csmodloader.network.packet.nbt;
@@ -0,0 +1,249 @@
+package com.coolspy3.csmodloader.network.stream;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A subscription which queues published packets and delivers them on its subscriber's executor.
+ * Publishing never blocks on the subscriber: the queue is only locked while packets are added or
+ * removed, and the subscriber is always invoked outside of the lock.
+ *
+ * @param <T> The type of packet delivered by this subscription
+ */
+final class BufferedSubscription<T> implements PacketSubscription, Runnable
+{
+
+    private static final Logger logger = LoggerFactory.getLogger(BufferedSubscription.class);
+
+    private final PacketPublisher<?> publisher;
+    private final PacketSubscriber<? super T> subscriber;
+    private final Executor executor;
+    private final int capacity;
+    private final OverflowPolicy policy;
+
+    private final ArrayDeque<T> queue = new ArrayDeque<>();
+    private long demand = 0;
+    private long dropped = 0;
+    private boolean subscribed = false;
+    private boolean cancelled = false;
+    private boolean completed = false;
+    /**
+     * An error to deliver to the subscriber or {@code null}
+     */
+    private Throwable error = null;
+
+    /**
+     * The number of times delivery has been requested since the last drain started. Only the
+     * caller which increments this from zero schedules a drain, so at most one drain runs at a time
+     * and packets are delivered in order.
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    BufferedSubscription(PacketPublisher<?> publisher, PacketSubscriber<? super T> subscriber,
+            Executor executor, int capacity, OverflowPolicy policy)
+    {
+        this.publisher = publisher;
+        this.subscriber = subscriber;
+        this.executor = executor;
+        this.capacity = capacity;
+        this.policy = policy;
+    }
+
+    /**
+     * Adds a packet to the queue, applying the overflow policy if it is full
+     *
+     * @param packet The packet to add
+     */
+    void offer(T packet)
+    {
+        synchronized (this)
+        {
+            if (cancelled || completed) return;
+
+            if (policy == OverflowPolicy.CONFLATE)
+            {
+                dropped += queue.size();
+                queue.clear();
+            }
+            else if (queue.size() >= capacity)
+            {
+                dropped++;
+
+                if (policy == OverflowPolicy.DROP_NEWEST) return;
+
+                queue.pollFirst();
+            }
+
+            queue.addLast(packet);
+
+            if (demand == 0) return;
+        }
+
+        schedule();
+    }
+
+    /**
+     * Marks this subscription as completed once all queued packets have been delivered
+     */
+    void complete()
+    {
+        synchronized (this)
+        {
+            if (cancelled || completed) return;
+
+            completed = true;
+        }
+
+        schedule();
+    }
+
+    @Override
+    public void request(long n)
+    {
+        synchronized (this)
+        {
+            if (cancelled) return;
+
+            if (n <= 0)
+            {
+                error = new IllegalArgumentException("Non-positive request: " + n);
+                queue.clear();
+            }
+            else
+                demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+        }
+
+        schedule();
+    }
+
+    @Override
+    public void cancel()
+    {
+        synchronized (this)
+        {
+            cancelled = true;
+            queue.clear();
+        }
+
+        publisher.remove(this);
+    }
+
+    @Override
+    public synchronized long getDropped()
+    {
+        return dropped;
+    }
+
+    /**
+     * Schedules a drain on the subscriber's executor if one is not already running
+     */
+    void schedule()
+    {
+        if (pending.getAndIncrement() != 0) return;
+
+        try
+        {
+            executor.execute(this);
+        }
+        catch (RuntimeException e)
+        {
+            logger.error("Failed to schedule packet delivery", e);
+
+            synchronized (this)
+            {
+                cancelled = true;
+                queue.clear();
+            }
+
+            publisher.remove(this);
+        }
+    }
+
+    /**
+     * Delivers queued packets while there is demand
+     */
+    @Override
+    public void run()
+    {
+        int missed = 1;
+
+        do
+        {
+            drain();
+
+            missed = pending.addAndGet(-missed);
+        }
+        while (missed != 0);
+    }
+
+    private void drain()
+    {
+        if (!subscribed)
+        {
+            subscribed = true;
+
+            if (!deliver(() -> subscriber.onSubscribe(this))) return;
+        }
+
+        while (true)
+        {
+            T packet;
+            Throwable error;
+            boolean complete;
+
+            synchronized (this)
+            {
+                if (cancelled) return;
+
+                error = this.error;
+                complete = error == null && completed && queue.isEmpty();
+                packet = error == null && demand > 0 ? queue.pollFirst() : null;
+
+                if (packet == null && error == null && !complete) return;
+
+                if (packet != null) demand--;
+                else cancelled = true;
+            }
+
+            if (error != null || complete)
+            {
+                publisher.remove(this);
+                deliver(error == null ? subscriber::onComplete : () -> subscriber.onError(error));
+
+                return;
+            }
+
+            if (!deliver(() -> subscriber.onNext(packet))) return;
+        }
+    }
+
+    /**
+     * Invokes the subscriber, cancelling this subscription if it throws
+     *
+     * @param call The invocation
+     *
+     * @return Whether the subscriber returned normally
+     */
+    private boolean deliver(Runnable call)
+    {
+        try
+        {
+            call.run();
+
+            return true;
+        }
+        catch (Throwable t)
+        {
+            logger.error("Packet subscriber threw an exception", t);
+
+            cancel();
+
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,24 @@
+package com.coolspy3.csmodloader.network.stream;
+
+/**
+ * Determines what happens when a packet is published to a subscription whose queue is full
+ */
+public enum OverflowPolicy
+{
+
+    /**
+     * The oldest queued packet is discarded to make room for the new packet
+     */
+    DROP_OLDEST,
+    /**
+     * The new packet is discarded
+     */
+    DROP_NEWEST,
+    /**
+     * Only the most recent undelivered packet is retained, regardless of the queue's capacity.
+     * This is intended for packets which describe the current state of something (ex. a position),
+     * where only the latest value is relevant.
+     */
+    CONFLATE;
+
+}
@@ -0,0 +1,178 @@
+package com.coolspy3.csmodloader.network.stream;
+
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+import com.coolspy3.csmodloader.network.packet.Packet;
+
+/**
+ * Publishes the packets of a single type to asynchronous, observe-only subscribers. This mirrors
+ * {@code java.util.concurrent.Flow.Publisher}. Each subscription has its own bounded queue and
+ * delivers packets in order on an executor owned by the subscriber, so a slow subscriber never
+ * delays the connection or any other subscriber. Demand is signalled through
+ * {@link PacketSubscription#request(long)}, and packets which arrive while a subscription's queue
+ * is full are handled according to its {@link OverflowPolicy}.
+ *
+ * All methods of this class are thread-safe.
+ *
+ * @param <T> The type of packet published by this publisher
+ *
+ * @see com.coolspy3.csmodloader.network.PacketHandler#getPublisher(Class)
+ */
+public final class PacketPublisher<T extends Packet>
+{
+
+    /**
+     * The queue capacity used by {@link #subscribe(PacketSubscriber, Executor)}
+     */
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private final CopyOnWriteArrayList<BufferedSubscription<T>> subscriptions =
+            new CopyOnWriteArrayList<>();
+    private volatile boolean closed = false;
+
+    /**
+     * Notified when the first subscription is added and when the last one is removed or
+     * {@code null}
+     */
+    private final Consumer<Boolean> activityListener;
+
+    /**
+     * Creates a new PacketPublisher
+     */
+    public PacketPublisher()
+    {
+        this(null);
+    }
+
+    /**
+     * Creates a new PacketPublisher which notifies a listener whenever it gains its first
+     * subscription or loses its last one. This can be used to only produce packets while they are
+     * being consumed.
+     *
+     * @param activityListener A function which is called with {@code true} when the first
+     *        subscription is added and with {@code false} when the last subscription is removed or
+     *        {@code null}. It is called while holding the lock on this publisher, so it is never
+     *        invoked concurrently and the notifications are always received in order.
+     */
+    public PacketPublisher(Consumer<Boolean> activityListener)
+    {
+        this.activityListener = activityListener;
+    }
+
+    /**
+     * Subscribes to this publisher with a queue of {@link #DEFAULT_CAPACITY} packets which drops
+     * the oldest packet when full
+     *
+     * @param subscriber The subscriber
+     * @param executor The executor on which to invoke the subscriber
+     *
+     * @throws NullPointerException If either argument is {@code null}
+     */
+    public void subscribe(PacketSubscriber<? super T> subscriber, Executor executor)
+            throws NullPointerException
+    {
+        subscribe(subscriber, executor, DEFAULT_CAPACITY, OverflowPolicy.DROP_OLDEST);
+    }
+
+    /**
+     * Subscribes to this publisher. The subscriber's
+     * {@link PacketSubscriber#onSubscribe(PacketSubscription)} method will be invoked on the
+     * executor. If this publisher has already been closed, the subscriber will be completed
+     * immediately after being subscribed.
+     *
+     * @param subscriber The subscriber
+     * @param executor The executor on which to invoke the subscriber
+     * @param capacity The maximum number of undelivered packets to queue
+     * @param policy The policy to apply when a packet is published while the queue is full
+     *
+     * @throws IllegalArgumentException If the capacity is not positive
+     * @throws NullPointerException If any of the arguments are {@code null}
+     */
+    public void subscribe(PacketSubscriber<? super T> subscriber, Executor executor, int capacity,
+            OverflowPolicy policy) throws IllegalArgumentException, NullPointerException
+    {
+        if (capacity <= 0) throw new IllegalArgumentException("Invalid capacity: " + capacity);
+
+        BufferedSubscription<T> subscription =
+                new BufferedSubscription<>(this, Objects.requireNonNull(subscriber),
+                        Objects.requireNonNull(executor), capacity, Objects.requireNonNull(policy));
+
+        synchronized (this)
+        {
+            subscriptions.add(subscription);
+
+            if (activityListener != null && subscriptions.size() == 1)
+                activityListener.accept(true);
+        }
+
+        // Check again after adding the subscription in case the publisher was closed concurrently
+        if (closed) subscription.complete();
+        else subscription.schedule();
+    }
+
+    /**
+     * Offers a packet to all subscriptions without waiting for it to be delivered
+     *
+     * @param packet The packet to publish
+     */
+    public void publish(T packet)
+    {
+        for (BufferedSubscription<T> subscription : subscriptions)
+            subscription.offer(packet);
+    }
+
+    /**
+     * Completes all subscriptions once their queued packets have been delivered. Packets published
+     * after this method is called are discarded.
+     */
+    public void close()
+    {
+        closed = true;
+
+        for (BufferedSubscription<T> subscription : subscriptions)
+            subscription.complete();
+    }
+
+    /**
+     * @return Whether {@link #close()} has been called
+     */
+    public boolean isClosed()
+    {
+        return closed;
+    }
+
+    /**
+     * @return Whether this publisher has any active subscriptions
+     */
+    public boolean hasSubscribers()
+    {
+        return !subscriptions.isEmpty();
+    }
+
+    /**
+     * @return The number of active subscriptions
+     */
+    public int getSubscriberCount()
+    {
+        return subscriptions.size();
+    }
+
+    /**
+     * Removes a cancelled subscription
+     *
+     * @param subscription The subscription to remove
+     */
+    void remove(BufferedSubscription<?> subscription)
+    {
+        synchronized (this)
+        {
+            if (subscriptions.remove(subscription) && activityListener != null
+                    && subscriptions.isEmpty())
+                activityListener.accept(false);
+        }
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.coolspy3.csmodloader.network.stream;
+
+/**
+ * A receiver of packets published by a {@link PacketPublisher}. This mirrors
+ * {@code java.util.concurrent.Flow.Subscriber}. All methods are invoked sequentially on the
+ * executor which was provided when subscribing.
+ *
+ * @param <T> The type of packet received by this subscriber
+ */
+public interface PacketSubscriber<T>
+{
+
+    /**
+     * Called before any other method with the new subscription. No packets will be delivered until
+     * they are requested with {@link PacketSubscription#request(long)}.
+     *
+     * @param subscription The subscription
+     */
+    public void onSubscribe(PacketSubscription subscription);
+
+    /**
+     * Called with each delivered packet
+     *
+     * @param packet The packet
+     */
+    public void onNext(T packet);
+
+    /**
+     * Called if the subscription fails. No further methods will be invoked.
+     *
+     * @param throwable The cause of the failure
+     */
+    public default void onError(Throwable throwable)
+    {}
+
+    /**
+     * Called once all queued packets have been delivered after the publisher is closed (usually
+     * because the connection has been closed). No further methods will be invoked.
+     */
+    public default void onComplete()
+    {}
+
+}
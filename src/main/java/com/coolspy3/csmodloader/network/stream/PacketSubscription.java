@@ -0,0 +1,34 @@
+package com.coolspy3.csmodloader.network.stream;
+
+/**
+ * A link between a {@link PacketPublisher} and a {@link PacketSubscriber}. This mirrors
+ * {@code java.util.concurrent.Flow.Subscription}.
+ *
+ * All methods of this interface are thread-safe.
+ */
+public interface PacketSubscription
+{
+
+    /**
+     * Requests additional packets. Packets are only delivered while there is outstanding demand.
+     * Packets which are published while there is no demand are queued according to the
+     * subscription's {@link OverflowPolicy}.
+     *
+     * @param n The number of additional packets to deliver. If this is not positive, the
+     *        subscription is cancelled and {@link PacketSubscriber#onError(Throwable)} is called
+     *        with an {@link IllegalArgumentException}.
+     */
+    public void request(long n);
+
+    /**
+     * Stops the delivery of packets and discards any queued packets. Packets which are already
+     * being delivered may still be received.
+     */
+    public void cancel();
+
+    /**
+     * @return The number of packets which have been discarded because the queue was full
+     */
+    public long getDropped();
+
+}
@@ -0,0 +1,4 @@
+/**
+ * Asynchronous packet streams
+ */
+package com.coolspy3.csmodloader.network.stream;
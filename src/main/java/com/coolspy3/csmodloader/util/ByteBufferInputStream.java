@@ -0,0 +1,86 @@
+package com.coolspy3.csmodloader.util;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An InputStream which reads from the remaining bytes of a ByteBuffer. Reading from this stream
+ * advances the position of the underlying buffer.
+ */
+public class ByteBufferInputStream extends InputStream
+{
+
+    private final ByteBuffer buf;
+    private int mark;
+
+    /**
+     * Creates a new ByteBufferInputStream
+     *
+     * @param buf The buffer from which to read
+     */
+    public ByteBufferInputStream(ByteBuffer buf)
+    {
+        this.buf = buf;
+        this.mark = buf.position();
+    }
+
+    @Override
+    public int read()
+    {
+        return buf.hasRemaining() ? buf.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len)
+    {
+        if (len == 0) return 0;
+        if (!buf.hasRemaining()) return -1;
+
+        len = Math.min(len, buf.remaining());
+        buf.get(b, off, len);
+
+        return len;
+    }
+
+    @Override
+    public long skip(long n)
+    {
+        int len = (int) Math.max(0, Math.min(n, buf.remaining()));
+        buf.position(buf.position() + len);
+
+        return len;
+    }
+
+    @Override
+    public int available()
+    {
+        return buf.remaining();
+    }
+
+    @Override
+    public boolean markSupported()
+    {
+        return true;
+    }
+
+    @Override
+    public void mark(int readlimit)
+    {
+        mark = buf.position();
+    }
+
+    @Override
+    public void reset()
+    {
+        buf.position(mark);
+    }
+
+    /**
+     * @return The buffer from which this stream reads
+     */
+    public ByteBuffer getBuffer()
+    {
+        return buf;
+    }
+
+}
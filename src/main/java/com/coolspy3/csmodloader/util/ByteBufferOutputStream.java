@@ -0,0 +1,57 @@
+package com.coolspy3.csmodloader.util;
+
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * An OutputStream which writes into a ByteBuffer. Writing to this stream advances the position of
+ * the underlying buffer.
+ */
+public class ByteBufferOutputStream extends OutputStream
+{
+
+    private final ByteBuffer buf;
+
+    /**
+     * Creates a new ByteBufferOutputStream
+     *
+     * @param buf The buffer to which to write
+     */
+    public ByteBufferOutputStream(ByteBuffer buf)
+    {
+        this.buf = buf;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws BufferOverflowException If the underlying buffer is full
+     */
+    @Override
+    public void write(int b) throws BufferOverflowException
+    {
+        buf.put((byte) b);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws BufferOverflowException If the underlying buffer does not have enough space
+     *         remaining
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws BufferOverflowException
+    {
+        buf.put(b, off, len);
+    }
+
+    /**
+     * @return The buffer to which this stream writes
+     */
+    public ByteBuffer getBuffer()
+    {
+        return buf;
+    }
+
+}
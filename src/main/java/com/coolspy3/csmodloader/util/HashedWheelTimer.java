@@ -0,0 +1,503 @@
+package com.coolspy3.csmodloader.util;
+
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A timer which schedules tasks on a hashed wheel. The wheel is a ring of buckets, each covering
+ * one tick. A task is placed in the bucket of the tick in which it expires, along with the number
+ * of full rotations remaining before it does. Scheduling and cancelling a task take constant time
+ * regardless of the number of pending tasks, and all tasks share a single thread, so a large number
+ * of timers (ex. one per mod per connection) does not require a large number of threads.
+ *
+ * Tasks may run up to one tick late. All tasks are executed sequentially on the timer's thread, so
+ * they should be short and should hand off any expensive or blocking work to another thread.
+ * Exceptions thrown by tasks are logged.
+ *
+ * Tasks are usually scheduled through a {@link Scope}, which allows all of the tasks belonging to
+ * one owner (ex. a connection) to be cancelled at once.
+ *
+ * All methods of this class are thread-safe.
+ */
+public final class HashedWheelTimer
+{
+
+    private static final Logger logger = LoggerFactory.getLogger(HashedWheelTimer.class);
+
+    /**
+     * The timer shared by the mod loader and all connections
+     */
+    public static final HashedWheelTimer SHARED =
+            new HashedWheelTimer(10, TimeUnit.MILLISECONDS, 512, "Shared Timer");
+
+    private static final int STATE_PENDING = 0;
+    private static final int STATE_CANCELLED = 1;
+    private static final int STATE_EXPIRED = 2;
+
+    private final long tickDuration;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final String threadName;
+
+    /**
+     * Tasks which have been scheduled but not yet placed in a bucket
+     */
+    private final ConcurrentLinkedQueue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    /**
+     * Tasks which have been cancelled while in a bucket
+     */
+    private final ConcurrentLinkedQueue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final long startTime = System.nanoTime();
+    /**
+     * The index of the current tick. This is only accessed by the timer's thread.
+     */
+    private long tick = 0;
+
+    /**
+     * Creates a new HashedWheelTimer. Its thread is started when the first task is scheduled.
+     *
+     * @param tickDuration The duration of each tick
+     * @param unit The unit of {@code tickDuration}
+     * @param ticksPerWheel The number of buckets in the wheel. This is rounded up to the next power
+     *        of two.
+     * @param threadName The name of the timer's thread
+     *
+     * @throws IllegalArgumentException If either value is not positive
+     */
+    public HashedWheelTimer(long tickDuration, TimeUnit unit, int ticksPerWheel, String threadName)
+            throws IllegalArgumentException
+    {
+        if (tickDuration <= 0)
+            throw new IllegalArgumentException("Invalid tick duration: " + tickDuration);
+        if (ticksPerWheel <= 0)
+            throw new IllegalArgumentException("Invalid ticks per wheel: " + ticksPerWheel);
+
+        int size = Integer.highestOneBit(Math.min(ticksPerWheel, 1 << 30));
+        if (size < ticksPerWheel) size <<= 1;
+
+        this.tickDuration = unit.toNanos(tickDuration);
+        this.wheel = new Bucket[size];
+        this.mask = size - 1;
+        this.threadName = threadName;
+
+        for (int i = 0; i < size; i++)
+            wheel[i] = new Bucket();
+    }
+
+    /**
+     * Schedules a task to be run once
+     *
+     * @param task The task to run
+     * @param delay The delay after which to run the task
+     * @param unit The unit of {@code delay}
+     *
+     * @return A handle which can be used to cancel the task
+     *
+     * @throws NullPointerException If {@code task} or {@code unit} is {@code null}
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) throws NullPointerException
+    {
+        return schedule(task, delay, 0, unit, null);
+    }
+
+    /**
+     * Schedules a task to be run periodically. Each run is scheduled relative to the initial
+     * deadline, so the task does not drift if it is run late.
+     *
+     * @param task The task to run
+     * @param initialDelay The delay after which to run the task for the first time
+     * @param period The interval between successive runs
+     * @param unit The unit of {@code initialDelay} and {@code period}
+     *
+     * @return A handle which can be used to cancel the task
+     *
+     * @throws IllegalArgumentException If the period is not positive
+     * @throws NullPointerException If {@code task} or {@code unit} is {@code null}
+     */
+    public Timeout scheduleAtFixedRate(Runnable task, long initialDelay, long period,
+            TimeUnit unit) throws IllegalArgumentException, NullPointerException
+    {
+        if (period <= 0) throw new IllegalArgumentException("Invalid period: " + period);
+
+        return schedule(task, initialDelay, period, unit, null);
+    }
+
+    /**
+     * @return A new scope whose tasks can be cancelled together
+     */
+    public Scope newScope()
+    {
+        return new Scope();
+    }
+
+    private Timeout schedule(Runnable task, long delay, long period, TimeUnit unit, Scope scope)
+    {
+        Objects.requireNonNull(task);
+
+        start();
+
+        long deadline = System.nanoTime() - startTime + Math.max(unit.toNanos(delay), 0);
+        Timeout timeout = new Timeout(task, deadline, unit.toNanos(period), scope);
+
+        pending.add(timeout);
+
+        return timeout;
+    }
+
+    /**
+     * Starts this timer's thread if it has not been started
+     */
+    private void start()
+    {
+        if (started.get() || !started.compareAndSet(false, true)) return;
+
+        Thread thread = new Thread(this::run, threadName);
+
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run()
+    {
+        // Skip the ticks which elapsed before the thread was started
+        tick = (System.nanoTime() - startTime) / tickDuration;
+
+        while (true)
+        {
+            long deadline = waitForNextTick();
+
+            removeCancelled();
+            transferPending();
+
+            wheel[(int) (tick & mask)].expire(deadline);
+
+            tick++;
+        }
+    }
+
+    /**
+     * Sleeps until the end of the current tick
+     *
+     * @return The time at which the tick ended, relative to {@link #startTime}
+     */
+    private long waitForNextTick()
+    {
+        long deadline = tickDuration * (tick + 1);
+
+        while (true)
+        {
+            long sleepTime = deadline - (System.nanoTime() - startTime);
+
+            if (sleepTime <= 0) return deadline;
+
+            try
+            {
+                TimeUnit.NANOSECONDS.sleep(sleepTime);
+            }
+            catch (InterruptedException e)
+            {
+                // The timer's thread is never interrupted intentionally
+            }
+        }
+    }
+
+    private void removeCancelled()
+    {
+        Timeout timeout;
+
+        while ((timeout = cancelled.poll()) != null)
+            if (timeout.bucket != null) timeout.bucket.remove(timeout);
+    }
+
+    private void transferPending()
+    {
+        Timeout timeout;
+
+        // Limit the number of transfers per tick so that a flood of new tasks cannot stall the wheel
+        for (int i = 0; i < 100000 && (timeout = pending.poll()) != null; i++)
+            if (timeout.state.get() == STATE_PENDING) place(timeout);
+    }
+
+    /**
+     * Places a task in the bucket of the tick in which it expires
+     *
+     * @param timeout The task to place
+     */
+    private void place(Timeout timeout)
+    {
+        long expiryTick = timeout.deadline / tickDuration;
+
+        timeout.remainingRounds = (expiryTick - tick) / wheel.length;
+
+        // Tasks whose deadline has already passed are run in the current tick
+        wheel[(int) (Math.max(expiryTick, tick) & mask)].add(timeout);
+    }
+
+    /**
+     * A task scheduled on a {@link HashedWheelTimer}
+     */
+    public final class Timeout
+    {
+
+        private final Runnable task;
+        private final long period;
+        private final Scope scope;
+        private final AtomicInteger state = new AtomicInteger(STATE_PENDING);
+
+        /**
+         * The time at which this task expires, relative to {@link HashedWheelTimer#startTime}
+         */
+        private long deadline;
+        private long remainingRounds;
+
+        // The bucket and its links are only accessed by the timer's thread
+        private Bucket bucket;
+        private Timeout next;
+        private Timeout prev;
+
+        private Timeout(Runnable task, long deadline, long period, Scope scope)
+        {
+            this.task = task;
+            this.deadline = deadline;
+            this.period = period;
+            this.scope = scope;
+        }
+
+        /**
+         * Cancels this task. If the task is periodic, it will not be run again.
+         *
+         * @return Whether the task was cancelled. This is {@code false} if the task has already
+         *         been cancelled or has already run (if it is not periodic).
+         */
+        public boolean cancel()
+        {
+            if (!state.compareAndSet(STATE_PENDING, STATE_CANCELLED)) return false;
+
+            cancelled.add(this);
+
+            if (scope != null) scope.timeouts.remove(this);
+
+            return true;
+        }
+
+        /**
+         * @return Whether this task has been cancelled
+         */
+        public boolean isCancelled()
+        {
+            return state.get() == STATE_CANCELLED;
+        }
+
+        /**
+         * @return Whether this task has run and will not run again
+         */
+        public boolean isExpired()
+        {
+            return state.get() == STATE_EXPIRED;
+        }
+
+        /**
+         * Runs this task and reschedules it if it is periodic. A periodic task is run as many times
+         * as its period has elapsed within the current tick, and is then rescheduled through the
+         * pending queue so that it is never added to the bucket which is being expired.
+         *
+         * @param tickDeadline The time at which the current tick ended
+         */
+        private void expire(long tickDeadline)
+        {
+            if (period == 0 && !state.compareAndSet(STATE_PENDING, STATE_EXPIRED)) return;
+            if (period != 0 && state.get() != STATE_PENDING) return;
+
+            if (period == 0 && scope != null) scope.timeouts.remove(this);
+
+            do
+            {
+                try
+                {
+                    task.run();
+                }
+                catch (Throwable t)
+                {
+                    logger.error("Timer task threw an exception", t);
+                }
+
+                deadline += period;
+            }
+            while (period != 0 && deadline <= tickDeadline && state.get() == STATE_PENDING);
+
+            if (period != 0 && state.get() == STATE_PENDING) pending.add(this);
+        }
+
+    }
+
+    /**
+     * A group of tasks which can be cancelled together. Once a scope is closed, all of its pending
+     * tasks are cancelled and any tasks scheduled through it are cancelled immediately.
+     */
+    public final class Scope implements SafelyCloseable
+    {
+
+        private final Set<Timeout> timeouts = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        private volatile boolean closed = false;
+
+        private Scope()
+        {}
+
+        /**
+         * Schedules a task to be run once
+         *
+         * @param task The task to run
+         * @param delay The delay after which to run the task
+         * @param unit The unit of {@code delay}
+         *
+         * @return A handle which can be used to cancel the task
+         *
+         * @throws NullPointerException If {@code task} or {@code unit} is {@code null}
+         *
+         * @see HashedWheelTimer#schedule(Runnable, long, TimeUnit)
+         */
+        public Timeout schedule(Runnable task, long delay, TimeUnit unit)
+                throws NullPointerException
+        {
+            return add(HashedWheelTimer.this.schedule(task, delay, 0, unit, this));
+        }
+
+        /**
+         * Schedules a task to be run periodically
+         *
+         * @param task The task to run
+         * @param initialDelay The delay after which to run the task for the first time
+         * @param period The interval between successive runs
+         * @param unit The unit of {@code initialDelay} and {@code period}
+         *
+         * @return A handle which can be used to cancel the task
+         *
+         * @throws IllegalArgumentException If the period is not positive
+         * @throws NullPointerException If {@code task} or {@code unit} is {@code null}
+         *
+         * @see HashedWheelTimer#scheduleAtFixedRate(Runnable, long, long, TimeUnit)
+         */
+        public Timeout scheduleAtFixedRate(Runnable task, long initialDelay, long period,
+                TimeUnit unit) throws IllegalArgumentException, NullPointerException
+        {
+            if (period <= 0) throw new IllegalArgumentException("Invalid period: " + period);
+
+            return add(HashedWheelTimer.this.schedule(task, initialDelay, period, unit, this));
+        }
+
+        /**
+         * @return The number of tasks in this scope which are pending
+         */
+        public int getPendingCount()
+        {
+            return timeouts.size();
+        }
+
+        /**
+         * @return Whether {@link #close()} has been called
+         */
+        public boolean isClosed()
+        {
+            return closed;
+        }
+
+        /**
+         * Cancels all pending tasks in this scope
+         */
+        @Override
+        public void close()
+        {
+            closed = true;
+
+            for (Timeout timeout : timeouts)
+                timeout.cancel();
+        }
+
+        private Timeout add(Timeout timeout)
+        {
+            if (timeout.state.get() == STATE_PENDING) timeouts.add(timeout);
+
+            // Check again after adding the task in case the scope was closed concurrently
+            if (closed || timeout.state.get() != STATE_PENDING) timeout.cancel();
+
+            return timeout;
+        }
+
+    }
+
+    /**
+     * A doubly linked list of the tasks which expire in one tick of the wheel. Buckets are only
+     * accessed by the timer's thread.
+     */
+    private static final class Bucket
+    {
+
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout)
+        {
+            timeout.bucket = this;
+            timeout.prev = tail;
+            timeout.next = null;
+
+            if (tail == null) head = timeout;
+            else tail.next = timeout;
+
+            tail = timeout;
+        }
+
+        void remove(Timeout timeout)
+        {
+            if (timeout.bucket != this) return;
+
+            if (timeout.prev == null) head = timeout.next;
+            else timeout.prev.next = timeout.next;
+
+            if (timeout.next == null) tail = timeout.prev;
+            else timeout.next.prev = timeout.prev;
+
+            timeout.bucket = null;
+            timeout.next = null;
+            timeout.prev = null;
+        }
+
+        /**
+         * Runs all tasks in this bucket which expire in the current rotation
+         *
+         * @param deadline The time at which the current tick ended
+         */
+        void expire(long deadline)
+        {
+            Timeout timeout = head;
+
+            while (timeout != null)
+            {
+                Timeout next = timeout.next;
+
+                if (timeout.remainingRounds <= 0 && timeout.deadline <= deadline)
+                {
+                    remove(timeout);
+                    timeout.expire(deadline);
+                }
+                else
+                    timeout.remainingRounds--;
+
+                timeout = next;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,153 @@
+package com.coolspy3.csmodloader.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded map which evicts its least recently used entry when it is full and keeps track of how
+ * many lookups found an entry.
+ *
+ * All methods of this class are thread-safe.
+ *
+ * @param <K> The type of the keys. Keys must not be modified while they are in the cache.
+ * @param <V> The type of the values
+ */
+public final class LruCache<K, V>
+{
+
+    private final int capacity;
+    private final LinkedHashMap<K, V> entries;
+
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * Creates a new LruCache
+     *
+     * @param capacity The maximum number of entries held by this cache
+     *
+     * @throws IllegalArgumentException If the capacity is not positive
+     */
+    public LruCache(int capacity) throws IllegalArgumentException
+    {
+        if (capacity <= 0) throw new IllegalArgumentException("Invalid capacity: " + capacity);
+
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<K, V>(16, 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest)
+            {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Looks up a value and marks it as the most recently used entry
+     *
+     * @param key The key
+     *
+     * @return The cached value or {@code null} if the key is not cached
+     */
+    public synchronized V get(Object key)
+    {
+        V value = entries.get(key);
+
+        if (value != null) hits++;
+        else
+            misses++;
+
+        return value;
+    }
+
+    /**
+     * Records a lookup which bypassed the cache, such as one for a value which is not eligible for
+     * caching
+     */
+    public synchronized void recordMiss()
+    {
+        misses++;
+    }
+
+    /**
+     * Caches a value, evicting the least recently used entry if the cache is full
+     *
+     * @param key The key
+     * @param value The value
+     */
+    public synchronized void put(K key, V value)
+    {
+        entries.put(key, value);
+    }
+
+    /**
+     * Removes all entries from this cache. The statistics are not reset.
+     */
+    public synchronized void clear()
+    {
+        entries.clear();
+    }
+
+    /**
+     * @return The maximum number of entries held by this cache
+     */
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    /**
+     * @return The number of entries in this cache
+     */
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * @return The number of lookups which returned a cached value
+     */
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * @return The number of lookups which did not return a cached value
+     */
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    /**
+     * @return The fraction of lookups which returned a cached value or {@code 0} if no lookups have
+     *         been performed
+     */
+    public synchronized double getHitRate()
+    {
+        long lookups = hits + misses;
+
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * @return A description of the size and statistics of this cache in the form
+     *         {@code size=..., hits=..., misses=..., hitRate=...}
+     */
+    public synchronized String getStatistics()
+    {
+        return String.format("size=%d, hits=%d, misses=%d, hitRate=%.3f", entries.size(), hits,
+                misses, getHitRate());
+    }
+
+    @Override
+    public String toString()
+    {
+        return "LruCache[" + getStatistics() + "]";
+    }
+
+}
@@ -0,0 +1,209 @@
+package com.coolspy3.csmodloader.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A bounded table which allows repeated, low-cardinality Strings (such as player names, channel
+ * names, and resource locations) to share a single instance. Strings are looked up directly from
+ * their encoded bytes, so a String which is already present in the table is returned without
+ * allocating anything.
+ *
+ * The table is direct-mapped: each String can only occupy the slot selected by its hash, and a
+ * String which collides with another simply replaces it. Only ASCII Strings no longer than the
+ * configured maximum length are interned. All other Strings are decoded normally.
+ *
+ * All methods of this class are thread-safe. Slots are read and written without locking, which is
+ * safe because Strings are immutable. At worst, a concurrent replacement causes an extra lookup to
+ * miss.
+ */
+public final class StringInterner
+{
+
+    /**
+     * The table shared by the {@link com.coolspy3.csmodloader.network.packet.Packet.Identifier}
+     * parser
+     */
+    public static final StringInterner IDENTIFIERS = new StringInterner(1024, 64);
+
+    private final String[] table;
+    private final int mask;
+    private final int maxLength;
+
+    /**
+     * Creates a new StringInterner
+     *
+     * @param capacity The number of slots in the table. This is rounded up to the next power of
+     *        two.
+     * @param maxLength The maximum length in bytes of Strings which should be interned
+     *
+     * @throws IllegalArgumentException If either value is not positive
+     */
+    public StringInterner(int capacity, int maxLength) throws IllegalArgumentException
+    {
+        if (capacity <= 0) throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        if (maxLength <= 0) throw new IllegalArgumentException("Invalid max length: " + maxLength);
+
+        int size = Integer.highestOneBit(Math.min(capacity, 1 << 30));
+        if (size < capacity) size <<= 1;
+
+        this.table = new String[size];
+        this.mask = size - 1;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Reads a UTF-8 encoded String prefixed with its length in bytes encoded as a VarInt from a
+     * ByteBuffer, returning the interned instance if one exists.
+     *
+     * @param buf The ByteBuffer from which to read
+     *
+     * @return The read String
+     *
+     * @throws IOException If the encoded length is invalid
+     */
+    public String read(ByteBuffer buf) throws IOException
+    {
+        int len = Utils.readVarInt(buf);
+
+        if (len < 0 || len > buf.remaining()) throw new EOFException();
+
+        String str = intern(buf, buf.position(), len);
+        buf.position(buf.position() + len);
+
+        return str;
+    }
+
+    /**
+     * Reads a UTF-8 encoded String prefixed with its length in bytes encoded as a VarInt from an
+     * InputStream, returning the interned instance if one exists.
+     *
+     * @param is The InputStream from which to read
+     *
+     * @return The read String
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public String read(InputStream is) throws IOException
+    {
+        byte[] bytes = Utils.readBytes(is);
+
+        return intern(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    /**
+     * Decodes a UTF-8 encoded String from a ByteBuffer, returning the interned instance if one
+     * exists. This method does not modify the position of the buffer.
+     *
+     * @param buf The ByteBuffer from which to read
+     * @param index The index at which the encoded String starts
+     * @param len The length of the encoded String in bytes
+     *
+     * @return The decoded String
+     */
+    public String intern(ByteBuffer buf, int index, int len)
+    {
+        if (len > maxLength || !Utils.isAscii(buf, index, len))
+            return Utils.decodeString(buf, index, len);
+
+        // For ASCII Strings, this matches String.hashCode
+        int hash = 0;
+
+        for (int i = 0; i < len; i++)
+            hash = 31 * hash + buf.get(index + i);
+
+        int slot = spread(hash) & mask;
+        String str = table[slot];
+
+        if (str != null && matches(str, buf, index, len)) return str;
+
+        str = Utils.decodeString(buf, index, len);
+        table[slot] = str;
+
+        return str;
+    }
+
+    /**
+     * Returns the interned instance of a String, adding it to the table if it is eligible
+     *
+     * @param str The String to intern
+     *
+     * @return The interned instance or {@code str} if the String is not eligible
+     */
+    public String intern(String str)
+    {
+        if (str.length() > maxLength) return str;
+
+        for (int i = 0; i < str.length(); i++)
+            if (str.charAt(i) >= 0x80) return str;
+
+        int slot = spread(str.hashCode()) & mask;
+        String existing = table[slot];
+
+        if (str.equals(existing)) return existing;
+
+        table[slot] = str;
+
+        return str;
+    }
+
+    /**
+     * @return The number of slots in this table
+     */
+    public int capacity()
+    {
+        return table.length;
+    }
+
+    /**
+     * @return The maximum length in bytes of Strings which are interned
+     */
+    public int getMaxLength()
+    {
+        return maxLength;
+    }
+
+    /**
+     * Removes every String from this table
+     */
+    public void clear()
+    {
+        for (int i = 0; i < table.length; i++)
+            table[i] = null;
+    }
+
+    /**
+     * Checks whether a String is equal to an ASCII encoded region of a ByteBuffer
+     *
+     * @param str The String to check
+     * @param buf The ByteBuffer containing the region
+     * @param index The index at which the region starts
+     * @param len The length of the region
+     *
+     * @return Whether the String and region contain the same characters
+     */
+    private static boolean matches(String str, ByteBuffer buf, int index, int len)
+    {
+        if (str.length() != len) return false;
+
+        for (int i = 0; i < len; i++)
+            if (str.charAt(i) != buf.get(index + i)) return false;
+
+        return true;
+    }
+
+    /**
+     * Mixes the high bits of a hash into the low bits so that they affect the selected slot
+     *
+     * @param hash The hash to spread
+     *
+     * @return The spread hash
+     */
+    private static int spread(int hash)
+    {
+        return hash ^ hash >>> 16;
+    }
+
+}
@@ -666,6 +666,240 @@ public final class Utils
         os.write(bytes);
     }
 
+    /**
+     * Reads a byte array prefixed with its length encoded as a VarInt from a ByteBuffer.
+     *
+     * @param buf The ByteBuffer from which to read
+     *
+     * @return The read bytes
+     *
+     * @throws IOException If the encoded length is invalid
+     */
+    public static byte[] readBytes(ByteBuffer buf) throws IOException
+    {
+        byte[] bytes = new byte[readLength(buf, 1)];
+        buf.get(bytes);
+
+        return bytes;
+    }
+
+    /**
+     * Writes an array of bytes to a ByteBuffer after prefixing its length encoded as a VarInt
+     *
+     * @param bytes The bytes to write
+     * @param buf The ByteBuffer to which to write
+     */
+    public static void writeBytes(byte[] bytes, ByteBuffer buf)
+    {
+        writeVarInt(bytes.length, buf);
+        buf.put(bytes);
+    }
+
+    /**
+     * Reads an int array prefixed with its length encoded as a VarInt from an InputStream.
+     *
+     * @param is The InputStream from which to read
+     *
+     * @return The read ints
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public static int[] readInts(InputStream is) throws IOException
+    {
+        int[] ints = new int[readVarInt(is)];
+        ByteBuffer.wrap(readNBytes(is, ints.length * 4)).asIntBuffer().get(ints);
+
+        return ints;
+    }
+
+    /**
+     * Writes an array of ints to an OutputStream after prefixing its length encoded as a VarInt
+     *
+     * @param ints The ints to write
+     * @param os The OutputStream to which to write
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public static void writeInts(int[] ints, OutputStream os) throws IOException
+    {
+        ByteBuffer buf = ByteBuffer.allocate(ints.length * 4);
+        buf.asIntBuffer().put(ints);
+
+        writeVarInt(ints.length, os);
+        os.write(buf.array());
+    }
+
+    /**
+     * Reads an int array prefixed with its length encoded as a VarInt from a ByteBuffer.
+     *
+     * @param buf The ByteBuffer from which to read
+     *
+     * @return The read ints
+     *
+     * @throws IOException If the encoded length is invalid
+     */
+    public static int[] readInts(ByteBuffer buf) throws IOException
+    {
+        int[] ints = new int[readLength(buf, 4)];
+        buf.asIntBuffer().get(ints);
+        buf.position(buf.position() + ints.length * 4);
+
+        return ints;
+    }
+
+    /**
+     * Writes an array of ints to a ByteBuffer after prefixing its length encoded as a VarInt
+     *
+     * @param ints The ints to write
+     * @param buf The ByteBuffer to which to write
+     */
+    public static void writeInts(int[] ints, ByteBuffer buf)
+    {
+        writeVarInt(ints.length, buf);
+        buf.asIntBuffer().put(ints);
+        buf.position(buf.position() + ints.length * 4);
+    }
+
+    /**
+     * Reads a long array prefixed with its length encoded as a VarInt from an InputStream.
+     *
+     * @param is The InputStream from which to read
+     *
+     * @return The read longs
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public static long[] readLongs(InputStream is) throws IOException
+    {
+        long[] longs = new long[readVarInt(is)];
+        ByteBuffer.wrap(readNBytes(is, longs.length * 8)).asLongBuffer().get(longs);
+
+        return longs;
+    }
+
+    /**
+     * Writes an array of longs to an OutputStream after prefixing its length encoded as a VarInt
+     *
+     * @param longs The longs to write
+     * @param os The OutputStream to which to write
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public static void writeLongs(long[] longs, OutputStream os) throws IOException
+    {
+        ByteBuffer buf = ByteBuffer.allocate(longs.length * 8);
+        buf.asLongBuffer().put(longs);
+
+        writeVarInt(longs.length, os);
+        os.write(buf.array());
+    }
+
+    /**
+     * Reads a long array prefixed with its length encoded as a VarInt from a ByteBuffer.
+     *
+     * @param buf The ByteBuffer from which to read
+     *
+     * @return The read longs
+     *
+     * @throws IOException If the encoded length is invalid
+     */
+    public static long[] readLongs(ByteBuffer buf) throws IOException
+    {
+        long[] longs = new long[readLength(buf, 8)];
+        buf.asLongBuffer().get(longs);
+        buf.position(buf.position() + longs.length * 8);
+
+        return longs;
+    }
+
+    /**
+     * Writes an array of longs to a ByteBuffer after prefixing its length encoded as a VarInt
+     *
+     * @param longs The longs to write
+     * @param buf The ByteBuffer to which to write
+     */
+    public static void writeLongs(long[] longs, ByteBuffer buf)
+    {
+        writeVarInt(longs.length, buf);
+        buf.asLongBuffer().put(longs);
+        buf.position(buf.position() + longs.length * 8);
+    }
+
+    /**
+     * Reads an array of VarInts prefixed with its length encoded as a VarInt from an InputStream.
+     *
+     * @param is The InputStream from which to read
+     *
+     * @return The read ints
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public static int[] readVarInts(InputStream is) throws IOException
+    {
+        int[] ints = new int[readVarInt(is)];
+
+        for (int i = 0; i < ints.length; i++)
+            ints[i] = readVarInt(is);
+
+        return ints;
+    }
+
+    /**
+     * Writes an array of ints encoded as VarInts to an OutputStream after prefixing its length
+     * encoded as a VarInt
+     *
+     * @param ints The ints to write
+     * @param os The OutputStream to which to write
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public static void writeVarInts(int[] ints, OutputStream os) throws IOException
+    {
+        // Encode into a single array to avoid writing to the stream byte by byte
+        byte[] bytes = new byte[(ints.length + 1) * 5];
+        int len = writeVarInt(ints.length, bytes, 0);
+
+        for (int i : ints)
+            len += writeVarInt(i, bytes, len);
+
+        os.write(bytes, 0, len);
+    }
+
+    /**
+     * Reads an array of VarInts prefixed with its length encoded as a VarInt from a ByteBuffer.
+     *
+     * @param buf The ByteBuffer from which to read
+     *
+     * @return The read ints
+     *
+     * @throws IOException If an encoded value is invalid
+     */
+    public static int[] readVarInts(ByteBuffer buf) throws IOException
+    {
+        // Each VarInt takes at least one byte
+        int[] ints = new int[readLength(buf, 1)];
+
+        for (int i = 0; i < ints.length; i++)
+            ints[i] = readVarInt(buf);
+
+        return ints;
+    }
+
+    /**
+     * Writes an array of ints encoded as VarInts to a ByteBuffer after prefixing its length encoded
+     * as a VarInt
+     *
+     * @param ints The ints to write
+     * @param buf The ByteBuffer to which to write
+     */
+    public static void writeVarInts(int[] ints, ByteBuffer buf)
+    {
+        writeVarInt(ints.length, buf);
+
+        for (int i : ints)
+            writeVarInt(i, buf);
+    }
+
     /**
      * Reads a UTF-8 encoded String prefixed with its length in bytes encoded as a VarInt from an
      * InputStream.
@@ -695,6 +929,199 @@ public final class Utils
         writeBytes(str.getBytes(CHARSET), os);
     }
 
+    /**
+     * Reads a UTF-8 encoded String prefixed with its length in bytes encoded as a VarInt from a
+     * ByteBuffer.
+     *
+     * @param buf The ByteBuffer from which to read
+     *
+     * @return The read String
+     *
+     * @throws IOException If the encoded length is invalid
+     */
+    public static String readString(ByteBuffer buf) throws IOException
+    {
+        int len = readVarInt(buf);
+
+        if (len < 0 || len > buf.remaining()) throw new EOFException();
+
+        String str = decodeString(buf, buf.position(), len);
+        buf.position(buf.position() + len);
+
+        return str;
+    }
+
+    /**
+     * Reads the length prefix of an array encoded as a VarInt from a ByteBuffer and checks that the
+     * buffer is large enough to contain the array, so that a corrupt length cannot cause a large
+     * allocation
+     *
+     * @param buf The ByteBuffer from which to read
+     * @param elementSize The minimum number of bytes used to encode each element
+     *
+     * @return The length of the array
+     *
+     * @throws EOFException If the length is negative or the buffer does not have enough bytes
+     *         remaining to contain the array
+     * @throws IOException If the encoded length is invalid
+     */
+    private static int readLength(ByteBuffer buf, int elementSize) throws IOException
+    {
+        int len = readVarInt(buf);
+
+        if (len < 0 || (long) len * elementSize > buf.remaining()) throw new EOFException();
+
+        return len;
+    }
+
+    /**
+     * Decodes a UTF-8 encoded String directly from a ByteBuffer without copying its bytes into an
+     * intermediate array. Strings which only contain ASCII characters are decoded without going
+     * through a {@link java.nio.charset.CharsetDecoder}. This method does not modify the position of
+     * the buffer.
+     *
+     * @param buf The ByteBuffer from which to read
+     * @param index The index at which the encoded String starts
+     * @param len The length of the encoded String in bytes
+     *
+     * @return The decoded String
+     */
+    public static String decodeString(ByteBuffer buf, int index, int len)
+    {
+        if (isAscii(buf, index, len))
+        {
+            // Every ASCII byte maps to the same char in ISO-8859-1, which can be decoded by copying
+            if (buf.hasArray()) return new String(buf.array(), buf.arrayOffset() + index, len,
+                    StandardCharsets.ISO_8859_1);
+
+            char[] chars = new char[len];
+
+            for (int i = 0; i < len; i++)
+                chars[i] = (char) buf.get(index + i);
+
+            return new String(chars);
+        }
+
+        if (buf.hasArray()) return new String(buf.array(), buf.arrayOffset() + index, len, CHARSET);
+
+        ByteBuffer slice = buf.duplicate();
+        slice.limit(index + len).position(index);
+
+        return CHARSET.decode(slice).toString();
+    }
+
+    /**
+     * Checks whether a region of a ByteBuffer only contains ASCII characters
+     *
+     * @param buf The ByteBuffer to check
+     * @param index The index at which the region starts
+     * @param len The length of the region
+     *
+     * @return Whether every byte in the region is less than {@code 0x80}
+     */
+    public static boolean isAscii(ByteBuffer buf, int index, int len)
+    {
+        int end = index + len;
+        int i = index;
+
+        // Check eight bytes at a time while there are enough left
+        for (; i + 8 <= end; i += 8)
+            if ((buf.getLong(i) & 0x8080808080808080L) != 0) return false;
+
+        for (; i < end; i++)
+            if (buf.get(i) < 0) return false;
+
+        return true;
+    }
+
+    /**
+     * Calculates the number of bytes used to encode a String in UTF-8. Unpaired surrogates are
+     * counted as a single byte because they are replaced with {@code '?'} when encoded.
+     *
+     * @param str The String to check
+     *
+     * @return The length of the encoded String in bytes
+     */
+    public static int utf8Length(CharSequence str)
+    {
+        int len = str.length();
+        int bytes = len;
+
+        for (int i = 0; i < len; i++)
+        {
+            char c = str.charAt(i);
+
+            if (c < 0x80) continue;
+
+            if (c < 0x800) bytes++;
+            else if (Character.isHighSurrogate(c) && i + 1 < len
+                    && Character.isLowSurrogate(str.charAt(i + 1)))
+            {
+                // Both chars of the pair are already counted
+                bytes += 2;
+                i++;
+            }
+            else if (!Character.isSurrogate(c)) bytes += 2;
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Encodes a String in UTF-8 directly into a ByteBuffer without allocating an intermediate
+     * array. Unpaired surrogates are encoded as {@code '?'}, matching
+     * {@link String#getBytes(Charset)}.
+     *
+     * @param str The String to encode
+     * @param buf The ByteBuffer to which to write
+     */
+    public static void encodeString(CharSequence str, ByteBuffer buf)
+    {
+        int len = str.length();
+
+        for (int i = 0; i < len; i++)
+        {
+            char c = str.charAt(i);
+
+            if (c < 0x80) buf.put((byte) c);
+            else if (c < 0x800)
+            {
+                buf.put((byte) (0xC0 | c >> 6));
+                buf.put((byte) (0x80 | c & 0x3F));
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < len
+                    && Character.isLowSurrogate(str.charAt(i + 1)))
+            {
+                int cp = Character.toCodePoint(c, str.charAt(++i));
+
+                buf.put((byte) (0xF0 | cp >> 18));
+                buf.put((byte) (0x80 | cp >> 12 & 0x3F));
+                buf.put((byte) (0x80 | cp >> 6 & 0x3F));
+                buf.put((byte) (0x80 | cp & 0x3F));
+            }
+            else if (Character.isSurrogate(c)) buf.put((byte) '?');
+            else
+            {
+                buf.put((byte) (0xE0 | c >> 12));
+                buf.put((byte) (0x80 | c >> 6 & 0x3F));
+                buf.put((byte) (0x80 | c & 0x3F));
+            }
+        }
+    }
+
+    /**
+     * Writes a String encoded in UTF-8 to a ByteBuffer after prefixing its length in bytes encoded
+     * as a VarInt
+     *
+     * @param str The String to write
+     * @param buf The ByteBuffer to which to write
+     */
+    public static void writeString(String str, ByteBuffer buf)
+    {
+        writeVarInt(utf8Length(str), buf);
+        encodeString(str, buf);
+    }
+
     /**
      * Unboxes the given byte array
      *
@@ -743,50 +1170,225 @@ public final class Utils
      */
     public static <T, U> Function<T, U> wrap(ExceptionFunction<T, U> func) throws WrapperException
     {
-        return t -> wrap(() -> func.apply(t));
+        return t -> wrap(() -> func.apply(t));
+    }
+
+    /**
+     * Executes a function wrapping any thrown exceptions in a WrapperException
+     *
+     * @param <T> The return type of the function
+     * @param func The function to execute
+     *
+     * @return The value returned by the function
+     *
+     * @throws WrapperException If the function throws an exception
+     */
+    public static <T> T wrap(ExceptionSupplier<T> func) throws WrapperException
+    {
+        try
+        {
+            return func.get();
+        }
+        catch (Exception e)
+        {
+            throw new WrapperException(e);
+        }
+    }
+
+    /**
+     * Reads a specified number of bytes from an InputStream
+     *
+     * @param is The InputStream from which to read
+     * @param len The number of bytes to read
+     *
+     * @return The read bytes
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public static byte[] readNBytes(InputStream is, int len) throws IOException
+    {
+        byte[] buf = new byte[len];
+        int nBytesRead = 0;
+
+        while (nBytesRead < len)
+            nBytesRead += is.read(buf, nBytesRead, len - nBytesRead);
+
+        return buf;
+    }
+
+    /**
+     * Reads a specified number of bytes from a ByteBuffer
+     *
+     * @param buf The ByteBuffer from which to read
+     * @param len The number of bytes to read
+     *
+     * @return The read bytes
+     */
+    public static byte[] readNBytes(ByteBuffer buf, int len)
+    {
+        byte[] bytes = new byte[len];
+        buf.get(bytes);
+
+        return bytes;
+    }
+
+    /**
+     * Skips a specified number of bytes of an InputStream
+     *
+     * @param is The InputStream to skip
+     * @param len The number of bytes to skip
+     *
+     * @throws IOException If an I/O error occurs or the end of the stream is reached
+     */
+    public static void skipNBytes(InputStream is, long len) throws IOException
+    {
+        IOUtils.skipFully(is, len);
+    }
+
+    /**
+     * Skips a specified number of bytes of a ByteBuffer
+     *
+     * @param buf The ByteBuffer to skip
+     * @param len The number of bytes to skip
+     *
+     * @throws EOFException If the length is negative or the buffer does not have enough bytes
+     *         remaining
+     */
+    public static void skipNBytes(ByteBuffer buf, int len) throws EOFException
+    {
+        if (len < 0 || len > buf.remaining()) throw new EOFException();
+
+        buf.position(buf.position() + len);
+    }
+
+    /**
+     * Skips a byte array prefixed with its length encoded as a VarInt
+     *
+     * @param is The InputStream to skip
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public static void skipBytes(InputStream is) throws IOException
+    {
+        skipNBytes(is, readVarInt(is));
+    }
+
+    /**
+     * Skips a byte array prefixed with its length encoded as a VarInt
+     *
+     * @param buf The ByteBuffer to skip
+     *
+     * @throws IOException If the encoded length is invalid
+     */
+    public static void skipBytes(ByteBuffer buf) throws IOException
+    {
+        skipNBytes(buf, readVarInt(buf));
+    }
+
+    /**
+     * Skips an array of fixed-length elements prefixed with its length encoded as a VarInt
+     *
+     * @param is The InputStream to skip
+     * @param elementSize The number of bytes used to encode each element
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public static void skipArray(InputStream is, int elementSize) throws IOException
+    {
+        skipNBytes(is, (long) readVarInt(is) * elementSize);
+    }
+
+    /**
+     * Skips an array of fixed-length elements prefixed with its length encoded as a VarInt
+     *
+     * @param buf The ByteBuffer to skip
+     * @param elementSize The number of bytes used to encode each element
+     *
+     * @throws IOException If the encoded length is invalid
+     */
+    public static void skipArray(ByteBuffer buf, int elementSize) throws IOException
+    {
+        skipNBytes(buf, readLength(buf, elementSize) * elementSize);
+    }
+
+    /**
+     * Skips an array of VarInts prefixed with its length encoded as a VarInt
+     *
+     * @param is The InputStream to skip
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public static void skipVarInts(InputStream is) throws IOException
+    {
+        for (int i = readVarInt(is); i > 0; i--)
+            skipVarInt(is);
+    }
+
+    /**
+     * Skips an array of VarInts prefixed with its length encoded as a VarInt
+     *
+     * @param buf The ByteBuffer to skip
+     *
+     * @throws IOException If an encoded value is invalid
+     */
+    public static void skipVarInts(ByteBuffer buf) throws IOException
+    {
+        for (int i = readVarInt(buf); i > 0; i--)
+            skipVarInt(buf);
+    }
+
+    /**
+     * Skips a variable length integer
+     *
+     * @param is The InputStream to skip
+     *
+     * @throws IOException If an I/O error occurs or the encoded value is too long
+     */
+    public static void skipVarInt(InputStream is) throws IOException
+    {
+        for (int len = 0; len < 5; len++)
+            if (readByte(is) >= 0) return;
+
+        throw new IOException("VarInt is too big");
     }
 
     /**
-     * Executes a function wrapping any thrown exceptions in a WrapperException
-     *
-     * @param <T> The return type of the function
-     * @param func The function to execute
+     * Skips a variable length integer
      *
-     * @return The value returned by the function
+     * @param buf The ByteBuffer to skip
      *
-     * @throws WrapperException If the function throws an exception
+     * @throws IOException If the encoded value is too long
      */
-    public static <T> T wrap(ExceptionSupplier<T> func) throws WrapperException
+    public static void skipVarInt(ByteBuffer buf) throws IOException
     {
-        try
-        {
-            return func.get();
-        }
-        catch (Exception e)
-        {
-            throw new WrapperException(e);
-        }
+        skipNBytes(buf, varIntLen(buf, buf.position()));
     }
 
     /**
-     * Reads a specified number of bytes from an InputStream
-     *
-     * @param is The InputStream from which to read
-     * @param len The number of bytes to read
+     * Skips a variable length long
      *
-     * @return The read bytes
+     * @param is The InputStream to skip
      *
-     * @throws IOException If an I/O error occurs
+     * @throws IOException If an I/O error occurs or the encoded value is too long
      */
-    public static byte[] readNBytes(InputStream is, int len) throws IOException
+    public static void skipVarLong(InputStream is) throws IOException
     {
-        byte[] buf = new byte[len];
-        int nBytesRead = 0;
+        for (int len = 0; len < 10; len++)
+            if (readByte(is) >= 0) return;
 
-        while (nBytesRead < len)
-            nBytesRead += is.read(buf, nBytesRead, len - nBytesRead);
+        throw new IOException("VarLong is too big");
+    }
 
-        return buf;
+    /**
+     * Skips a variable length long
+     *
+     * @param buf The ByteBuffer to skip
+     *
+     * @throws IOException If the encoded value is too long
+     */
+    public static void skipVarLong(ByteBuffer buf) throws IOException
+    {
+        skipNBytes(buf, varLongLen(buf, buf.position()));
     }
 
     // Credit: https://wiki.vg/index.php?title=Protocol&oldid=7368#With_compression
@@ -839,7 +1441,7 @@ public final class Utils
             if (bitOffset == 70) throw new IOException("VarLong is too big");
 
             currentByte = readByte(is);
-            value |= (currentByte & 0b01111111) << bitOffset;
+            value |= (long) (currentByte & 0b01111111) << bitOffset;
 
             bitOffset += 7;
         }
@@ -903,57 +1505,461 @@ public final class Utils
     }
 
     /**
-     * Calculates the encoded length of a variable length integer
+     * Reads a variable length integer from a ByteBuffer. Values encoded in three or fewer bytes take
+     * an unrolled fast path.
      *
-     * @param value The value to check
+     * @param buf The ByteBuffer from which to read
      *
-     * @return The length of the value encoded as a variable length integer in bytes
+     * @return The read integer value
+     *
+     * @throws IOException If the encoded value is too long
      */
-    public static int varIntLen(int value)
+    public static int readVarInt(ByteBuffer buf) throws IOException
     {
-        int len = 0;
-        while (true)
+        byte b = buf.get();
+        if (b >= 0) return b;
+
+        int value = b & 0x7F;
+        b = buf.get();
+        if (b >= 0) return value | b << 7;
+
+        value |= (b & 0x7F) << 7;
+        b = buf.get();
+        if (b >= 0) return value | b << 14;
+
+        value |= (b & 0x7F) << 14;
+        b = buf.get();
+        if (b >= 0) return value | b << 21;
+
+        value |= (b & 0x7F) << 21;
+        b = buf.get();
+        if (b < 0) throw new IOException("VarInt is too big");
+
+        return value | b << 28;
+    }
+
+    /**
+     * Reads a variable length integer from the specified index of a ByteBuffer without modifying
+     * its position
+     *
+     * @param buf The ByteBuffer from which to read
+     * @param index The index at which the value starts
+     *
+     * @return The read integer value
+     *
+     * @throws IOException If the encoded value is too long
+     */
+    public static int readVarInt(ByteBuffer buf, int index) throws IOException
+    {
+        byte b = buf.get(index);
+        if (b >= 0) return b;
+
+        int value = b & 0x7F;
+        b = buf.get(index + 1);
+        if (b >= 0) return value | b << 7;
+
+        value |= (b & 0x7F) << 7;
+        b = buf.get(index + 2);
+        if (b >= 0) return value | b << 14;
+
+        value |= (b & 0x7F) << 14;
+        b = buf.get(index + 3);
+        if (b >= 0) return value | b << 21;
+
+        value |= (b & 0x7F) << 21;
+        b = buf.get(index + 4);
+        if (b < 0) throw new IOException("VarInt is too big");
+
+        return value | b << 28;
+    }
+
+    /**
+     * Reads a variable length integer from a byte array. Values encoded in three or fewer bytes
+     * take an unrolled fast path.
+     *
+     * @param arr The array from which to read
+     * @param offset The index at which the value starts
+     *
+     * @return The read integer value
+     *
+     * @throws IOException If the encoded value is too long
+     * @throws ArrayIndexOutOfBoundsException If the array ends before the value does
+     *
+     * @see #varIntLen(byte[], int)
+     */
+    public static int readVarInt(byte[] arr, int offset)
+            throws IOException, ArrayIndexOutOfBoundsException
+    {
+        byte b = arr[offset];
+        if (b >= 0) return b;
+
+        int value = b & 0x7F;
+        b = arr[offset + 1];
+        if (b >= 0) return value | b << 7;
+
+        value |= (b & 0x7F) << 7;
+        b = arr[offset + 2];
+        if (b >= 0) return value | b << 14;
+
+        value |= (b & 0x7F) << 14;
+        b = arr[offset + 3];
+        if (b >= 0) return value | b << 21;
+
+        value |= (b & 0x7F) << 21;
+        b = arr[offset + 4];
+        if (b < 0) throw new IOException("VarInt is too big");
+
+        return value | b << 28;
+    }
+
+    /**
+     * Reads a variable length long from a ByteBuffer. Values encoded in three or fewer bytes take
+     * an unrolled fast path.
+     *
+     * @param buf The ByteBuffer from which to read
+     *
+     * @return The read long value
+     *
+     * @throws IOException If the encoded value is too long
+     */
+    public static long readVarLong(ByteBuffer buf) throws IOException
+    {
+        byte b = buf.get();
+        if (b >= 0) return b;
+
+        long value = b & 0x7F;
+        b = buf.get();
+        if (b >= 0) return value | (long) b << 7;
+
+        value |= (long) (b & 0x7F) << 7;
+        b = buf.get();
+        if (b >= 0) return value | (long) b << 14;
+
+        value |= (long) (b & 0x7F) << 14;
+
+        for (int bitOffset = 21;; bitOffset += 7)
         {
-            if ((value & 0xFFFFFF80) == 0)
-            {
-                len++;
+            if (bitOffset == 70) throw new IOException("VarLong is too big");
 
-                return len;
-            }
+            b = buf.get();
+            value |= (long) (b & 0x7F) << bitOffset;
 
-            len++;
-            // Note: >>> means that the sign bit is shifted with the rest of the number
-            // rather than being
-            // left alone
-            value >>>= 7;
+            if (b >= 0) return value;
         }
     }
 
     /**
-     * Calculates the encoded length of a variable length long
+     * Reads a variable length long from a byte array. Values encoded in three or fewer bytes take
+     * an unrolled fast path.
      *
-     * @param value The value to check
+     * @param arr The array from which to read
+     * @param offset The index at which the value starts
      *
-     * @return The length of the value encoded as a variable length long in bytes
+     * @return The read long value
+     *
+     * @throws IOException If the encoded value is too long
+     * @throws ArrayIndexOutOfBoundsException If the array ends before the value does
+     *
+     * @see #varLongLen(byte[], int)
      */
-    public static int varLongLen(long value)
+    public static long readVarLong(byte[] arr, int offset)
+            throws IOException, ArrayIndexOutOfBoundsException
     {
-        int len = 0;
-        while (true)
+        byte b = arr[offset];
+        if (b >= 0) return b;
+
+        long value = b & 0x7F;
+        b = arr[offset + 1];
+        if (b >= 0) return value | (long) b << 7;
+
+        value |= (long) (b & 0x7F) << 7;
+        b = arr[offset + 2];
+        if (b >= 0) return value | (long) b << 14;
+
+        value |= (long) (b & 0x7F) << 14;
+        offset += 3;
+
+        for (int bitOffset = 21;; bitOffset += 7)
         {
-            if ((value & 0xFFFFFFFFFFFFFF80L) == 0)
+            if (bitOffset == 70) throw new IOException("VarLong is too big");
+
+            b = arr[offset++];
+            value |= (long) (b & 0x7F) << bitOffset;
+
+            if (b >= 0) return value;
+        }
+    }
+
+    /**
+     * Writes a variable length integer to a ByteBuffer. Values which can be encoded in three or
+     * fewer bytes take an unrolled fast path.
+     *
+     * @param value The value to write
+     * @param buf The ByteBuffer to which to write
+     */
+    public static void writeVarInt(int value, ByteBuffer buf)
+    {
+        if ((value & 0xFFFFFF80) == 0) buf.put((byte) value);
+        else if ((value & 0xFFFFC000) == 0)
+        {
+            buf.put((byte) (value & 0x7F | 0x80));
+            buf.put((byte) (value >>> 7));
+        }
+        else if ((value & 0xFFE00000) == 0)
+        {
+            buf.put((byte) (value & 0x7F | 0x80));
+            buf.put((byte) (value >>> 7 & 0x7F | 0x80));
+            buf.put((byte) (value >>> 14));
+        }
+        else
+        {
+            while ((value & 0xFFFFFF80) != 0)
             {
-                len++;
+                buf.put((byte) (value & 0x7F | 0x80));
+                value >>>= 7;
+            }
 
-                return len;
+            buf.put((byte) value);
+        }
+    }
+
+    /**
+     * Writes a variable length integer to a byte array. Values which can be encoded in three or
+     * fewer bytes take an unrolled fast path.
+     *
+     * @param value The value to write
+     * @param arr The array to which to write
+     * @param offset The index at which to start writing
+     *
+     * @return The number of bytes written
+     *
+     * @throws ArrayIndexOutOfBoundsException If the array does not have enough space remaining
+     */
+    public static int writeVarInt(int value, byte[] arr, int offset)
+            throws ArrayIndexOutOfBoundsException
+    {
+        if ((value & 0xFFFFFF80) == 0)
+        {
+            arr[offset] = (byte) value;
+
+            return 1;
+        }
+
+        if ((value & 0xFFFFC000) == 0)
+        {
+            arr[offset] = (byte) (value & 0x7F | 0x80);
+            arr[offset + 1] = (byte) (value >>> 7);
+
+            return 2;
+        }
+
+        if ((value & 0xFFE00000) == 0)
+        {
+            arr[offset] = (byte) (value & 0x7F | 0x80);
+            arr[offset + 1] = (byte) (value >>> 7 & 0x7F | 0x80);
+            arr[offset + 2] = (byte) (value >>> 14);
+
+            return 3;
+        }
+
+        int start = offset;
+
+        while ((value & 0xFFFFFF80) != 0)
+        {
+            arr[offset++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+
+        arr[offset++] = (byte) value;
+
+        return offset - start;
+    }
+
+    /**
+     * Writes a variable length long to a ByteBuffer. Values which can be encoded in three or fewer
+     * bytes take an unrolled fast path.
+     *
+     * @param value The value to write
+     * @param buf The ByteBuffer to which to write
+     */
+    public static void writeVarLong(long value, ByteBuffer buf)
+    {
+        if ((value & 0xFFFFFFFFFFFFFF80L) == 0) buf.put((byte) value);
+        else if ((value & 0xFFFFFFFFFFFFC000L) == 0)
+        {
+            buf.put((byte) (value & 0x7F | 0x80));
+            buf.put((byte) (value >>> 7));
+        }
+        else if ((value & 0xFFFFFFFFFFE00000L) == 0)
+        {
+            buf.put((byte) (value & 0x7F | 0x80));
+            buf.put((byte) (value >>> 7 & 0x7F | 0x80));
+            buf.put((byte) (value >>> 14));
+        }
+        else
+        {
+            while ((value & 0xFFFFFFFFFFFFFF80L) != 0)
+            {
+                buf.put((byte) (value & 0x7F | 0x80));
+                value >>>= 7;
             }
 
-            len++;
-            // Note: >>> means that the sign bit is shifted with the rest of the number
-            // rather than being
-            // left alone
+            buf.put((byte) value);
+        }
+    }
+
+    /**
+     * Writes a variable length long to a byte array. Values which can be encoded in three or fewer
+     * bytes take an unrolled fast path.
+     *
+     * @param value The value to write
+     * @param arr The array to which to write
+     * @param offset The index at which to start writing
+     *
+     * @return The number of bytes written
+     *
+     * @throws ArrayIndexOutOfBoundsException If the array does not have enough space remaining
+     */
+    public static int writeVarLong(long value, byte[] arr, int offset)
+            throws ArrayIndexOutOfBoundsException
+    {
+        if ((value & 0xFFFFFFFFFFFFFF80L) == 0)
+        {
+            arr[offset] = (byte) value;
+
+            return 1;
+        }
+
+        if ((value & 0xFFFFFFFFFFFFC000L) == 0)
+        {
+            arr[offset] = (byte) (value & 0x7F | 0x80);
+            arr[offset + 1] = (byte) (value >>> 7);
+
+            return 2;
+        }
+
+        if ((value & 0xFFFFFFFFFFE00000L) == 0)
+        {
+            arr[offset] = (byte) (value & 0x7F | 0x80);
+            arr[offset + 1] = (byte) (value >>> 7 & 0x7F | 0x80);
+            arr[offset + 2] = (byte) (value >>> 14);
+
+            return 3;
+        }
+
+        int start = offset;
+
+        while ((value & 0xFFFFFFFFFFFFFF80L) != 0)
+        {
+            arr[offset++] = (byte) (value & 0x7F | 0x80);
             value >>>= 7;
         }
+
+        arr[offset++] = (byte) value;
+
+        return offset - start;
+    }
+
+    /**
+     * Calculates the number of bytes used by the variable length integer encoded at the specified
+     * index of a ByteBuffer
+     *
+     * @param buf The ByteBuffer to check
+     * @param index The index at which the value starts
+     *
+     * @return The length of the encoded value in bytes
+     *
+     * @throws IOException If the encoded value is too long
+     */
+    public static int varIntLen(ByteBuffer buf, int index) throws IOException
+    {
+        for (int len = 1; len <= 5; len++)
+            if (buf.get(index + len - 1) >= 0) return len;
+
+        throw new IOException("VarInt is too big");
+    }
+
+    /**
+     * Calculates the number of bytes used by the variable length integer encoded at the specified
+     * index of a byte array
+     *
+     * @param arr The array to check
+     * @param offset The index at which the value starts
+     *
+     * @return The length of the encoded value in bytes
+     *
+     * @throws IOException If the encoded value is too long
+     */
+    public static int varIntLen(byte[] arr, int offset) throws IOException
+    {
+        for (int len = 1; len <= 5; len++)
+            if (arr[offset + len - 1] >= 0) return len;
+
+        throw new IOException("VarInt is too big");
+    }
+
+    /**
+     * Calculates the number of bytes used by the variable length long encoded at the specified
+     * index of a ByteBuffer
+     *
+     * @param buf The ByteBuffer to check
+     * @param index The index at which the value starts
+     *
+     * @return The length of the encoded value in bytes
+     *
+     * @throws IOException If the encoded value is too long
+     */
+    public static int varLongLen(ByteBuffer buf, int index) throws IOException
+    {
+        for (int len = 1; len <= 10; len++)
+            if (buf.get(index + len - 1) >= 0) return len;
+
+        throw new IOException("VarLong is too big");
+    }
+
+    /**
+     * Calculates the number of bytes used by the variable length long encoded at the specified
+     * index of a byte array
+     *
+     * @param arr The array to check
+     * @param offset The index at which the value starts
+     *
+     * @return The length of the encoded value in bytes
+     *
+     * @throws IOException If the encoded value is too long
+     */
+    public static int varLongLen(byte[] arr, int offset) throws IOException
+    {
+        for (int len = 1; len <= 10; len++)
+            if (arr[offset + len - 1] >= 0) return len;
+
+        throw new IOException("VarLong is too big");
+    }
+
+    /**
+     * Calculates the encoded length of a variable length integer
+     *
+     * @param value The value to check
+     *
+     * @return The length of the value encoded as a variable length integer in bytes
+     */
+    public static int varIntLen(int value)
+    {
+        // Each byte holds 7 bits of the value, and at least one byte is always written
+        return (31 - Integer.numberOfLeadingZeros(value | 1)) / 7 + 1;
+    }
+
+    /**
+     * Calculates the encoded length of a variable length long
+     *
+     * @param value The value to check
+     *
+     * @return The length of the value encoded as a variable length long in bytes
+     */
+    public static int varLongLen(long value)
+    {
+        // Each byte holds 7 bits of the value, and at least one byte is always written
+        return (63 - Long.numberOfLeadingZeros(value | 1)) / 7 + 1;
     }
 
     private Utils()
@@ -0,0 +1,131 @@
+package com.coolspy3.csmodloader.network;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.Deflater;
+
+import org.junit.Test;
+
+public class OutboundQueueTest
+{
+
+    @Test
+    public void testPollOrder() throws IOException
+    {
+        OutboundQueue queue = new OutboundQueue();
+
+        queue.add(PacketPriority.LOW, packet(1));
+        queue.add(PacketPriority.NORMAL, packet(2));
+        queue.add(PacketPriority.HIGH, packet(3));
+        queue.add(PacketPriority.NORMAL, packet(4));
+        queue.add(PacketPriority.HIGH, packet(5));
+
+        // Highest priority first, then in insertion order
+        for (int id : new int[] {3, 5, 2, 4, 1})
+            assertArrayEquals(new byte[] {1, (byte) id}, write(queue.poll(), -1));
+
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testPacketsAreFramedWhenWritten() throws IOException
+    {
+        OutboundQueue queue = new OutboundQueue();
+
+        queue.add(PacketPriority.NORMAL, packet(7));
+
+        // The threshold is only applied once the entry is written
+        assertArrayEquals(new byte[] {2, 0, 7}, write(queue.poll(), 256));
+    }
+
+    @Test
+    public void testFramesAreWrittenAsIs() throws IOException
+    {
+        OutboundQueue queue = new OutboundQueue();
+        byte[] frame = {1, 9};
+
+        queue.add(PacketPriority.NORMAL, OutboundQueue.Entry.ofFrame(frame));
+
+        assertArrayEquals(frame, write(queue.poll(), 256));
+    }
+
+    @Test
+    public void testEntriesAreWrittenContiguously() throws IOException
+    {
+        OutboundQueue queue = new OutboundQueue();
+        CompletableFuture<Void> future = new CompletableFuture<>();
+
+        queue.add(PacketPriority.NORMAL,
+                OutboundQueue.Entry.ofPackets(new byte[][] {{4}, {5, 6}}, future));
+
+        OutboundQueue.Entry entry = queue.poll();
+
+        assertArrayEquals(new byte[] {1, 4, 2, 5, 6}, write(entry, -1));
+
+        entry.complete();
+
+        assertTrue(future.isDone());
+    }
+
+    @Test
+    public void testClearFailsFutures() throws InterruptedException
+    {
+        OutboundQueue queue = new OutboundQueue();
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        EOFException cause = new EOFException();
+
+        queue.add(PacketPriority.LOW,
+                OutboundQueue.Entry.ofPackets(new byte[][] {{1}}, future));
+        queue.add(PacketPriority.HIGH, packet(2));
+
+        queue.clear(cause);
+
+        assertTrue(queue.isEmpty());
+        assertTrue(future.isCompletedExceptionally());
+
+        try
+        {
+            future.get();
+            fail();
+        }
+        catch (ExecutionException e)
+        {
+            assertSame(cause, e.getCause());
+        }
+    }
+
+    private static OutboundQueue.Entry packet(int id)
+    {
+        return OutboundQueue.Entry.ofPackets(new byte[][] {{(byte) id}}, null);
+    }
+
+    private static byte[] write(OutboundQueue.Entry entry, int compressionThreshold)
+            throws IOException
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        Deflater compressor = new Deflater();
+
+        try
+        {
+            entry.writeTo(baos, compressionThreshold, compressor);
+        }
+        finally
+        {
+            compressor.end();
+        }
+
+        return baos.toByteArray();
+    }
+
+}
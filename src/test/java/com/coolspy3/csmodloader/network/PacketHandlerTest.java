@@ -0,0 +1,683 @@
+package com.coolspy3.csmodloader.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.coolspy3.csmodloader.network.packet.Packet;
+import com.coolspy3.csmodloader.network.packet.PacketFilter;
+import com.coolspy3.csmodloader.network.packet.PacketFilterTest;
+import com.coolspy3.csmodloader.network.packet.PacketParser;
+import com.coolspy3.csmodloader.network.packet.PacketPool;
+import com.coolspy3.csmodloader.network.packet.PacketSpec;
+import com.coolspy3.csmodloader.network.packet.PooledPacket;
+import com.coolspy3.csmodloader.network.stream.PacketPublisher;
+import com.coolspy3.csmodloader.network.stream.PacketSubscriber;
+import com.coolspy3.csmodloader.network.stream.PacketSubscription;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class PacketHandlerTest
+{
+
+    private static final int POOLED_PACKET_ID = 0x7D;
+    private static final int FILTERED_PACKET_ID = 0x7B;
+    private static final int SUBCLASS_PACKET_ID = 0x79;
+    private static final int UNREGISTERED_PACKET_ID = 0x70;
+
+    private static final List<LongPacket> created = new CopyOnWriteArrayList<>();
+    private static final AtomicInteger decodedStrings = new AtomicInteger();
+
+    @BeforeClass
+    public static void registerPackets()
+    {
+        PacketParser.registerPooledPacket(LongPacket.class, () -> {
+
+            LongPacket packet = new LongPacket();
+            created.add(packet);
+
+            return packet;
+
+        }, POOLED_PACKET_ID);
+        PacketParser.registerPacket(StringPacket.class, values -> {
+
+            decodedStrings.incrementAndGet();
+
+            return new StringPacket((Integer) values[0], (String) values[1]);
+
+        }, FILTERED_PACKET_ID);
+        PacketParser.registerPacket(SubStringPacket.class,
+                values -> new SubStringPacket((Integer) values[0], (String) values[1]),
+                SUBCLASS_PACKET_ID);
+    }
+
+    @Test
+    public void testPooledPacketIsReleasedWhenReadFails()
+    {
+        PacketHandler handler = new PacketHandler();
+        handler.register((LongPacket packet) -> {}, LongPacket.class);
+
+        // A long requires 8 bytes
+        for (int i = 0; i < 3; i++)
+            assertFalse(handler.handlePacket(PacketDirection.CLIENTBOUND, POOLED_PACKET_ID,
+                    ByteBuffer.wrap(new byte[] {1, 2, 3})));
+
+        // When assertions are enabled, released packets are discarded instead of being reused
+        PacketPool<? extends PooledPacket> pool = handler.getPacketPool(LongPacket.class);
+
+        assertEquals(3, pool.getCreatedCount() + pool.getReusedCount());
+        assertFalse(created.isEmpty());
+
+        for (LongPacket packet : created)
+            assertFalse(packet.isLive());
+    }
+
+    @Test
+    public void testPacketsAreAdmittedWhenFiltersFail() throws IOException
+    {
+        PacketHandler handler = new PacketHandler();
+        List<String> received = new ArrayList<>();
+
+        handler.register((StringPacket packet) -> {
+            received.add("failing");
+        }, new SubscriptionOptions().filter(PacketFilterTest.failing()), StringPacket.class);
+        handler.register((StringPacket packet) -> {
+            received.add("invalid");
+        }, new SubscriptionOptions().filter(PacketFilter.equalTo(2, 0)), StringPacket.class);
+        handler.register((StringPacket packet) -> {
+            received.add("rejecting");
+        }, new SubscriptionOptions().filter(PacketFilter.equalTo(0, 0)), StringPacket.class);
+
+        assertFalse(handler.handlePacket(PacketDirection.CLIENTBOUND, FILTERED_PACKET_ID,
+                ByteBuffer.wrap(encode(new StringPacket(1, "a")))));
+        assertEquals(Arrays.asList("failing", "invalid"), received);
+    }
+
+    @Test
+    public void testStreamPacketsAreFilteredWithoutViews() throws IOException
+    {
+        PacketHandler handler = new PacketHandler();
+        List<Object> received = new ArrayList<>();
+
+        handler.registerView(view -> {
+            received.add("view");
+        }, StringPacket.class);
+        handler.register((StringPacket packet) -> {
+            received.add(packet.id);
+        }, new SubscriptionOptions().filter(PacketFilter.startsWith(1, "caf\u00e9")),
+                StringPacket.class);
+
+        handler.handlePacket(PacketDirection.CLIENTBOUND, FILTERED_PACKET_ID,
+                new ByteArrayInputStream(encode(new StringPacket(1, "caf\u00e9!"))));
+        handler.handlePacket(PacketDirection.CLIENTBOUND, FILTERED_PACKET_ID,
+                new ByteArrayInputStream(encode(new StringPacket(2, "cafe"))));
+
+        // View subscribers only receive packets handled from a buffer
+        assertEquals(Arrays.asList(1), received);
+
+        handler.handlePacket(PacketDirection.CLIENTBOUND, FILTERED_PACKET_ID,
+                ByteBuffer.wrap(encode(new StringPacket(3, "caf\u00e9"))));
+
+        assertEquals(Arrays.asList(1, "view", 3), received);
+    }
+
+    @Test
+    public void testRawSubscribersReceiveUnregisteredPackets() throws IOException
+    {
+        PacketHandler handler = new PacketHandler();
+        List<String> received = new ArrayList<>();
+
+        handler.registerRaw((direction, packetId, payload) -> {
+
+            assertTrue(payload.isReadOnly());
+
+            byte[] data = new byte[payload.remaining()];
+            payload.get(data);
+            received.add(direction + " " + packetId + " " + Arrays.toString(data));
+
+            return false;
+
+        });
+
+        assertFalse(handler.handleRawPacket(PacketDirection.CLIENTBOUND,
+                new byte[] {UNREGISTERED_PACKET_ID, 1, 2, 3}));
+        assertFalse(handler.handleRawPacket(PacketDirection.SERVERBOUND,
+                ByteBuffer.wrap(new byte[] {UNREGISTERED_PACKET_ID})));
+
+        assertEquals(Arrays.asList("CLIENTBOUND 112 [1, 2, 3]", "SERVERBOUND 112 []"), received);
+    }
+
+    @Test
+    public void testRawSubscribersAreFilteredByDirectionAndId() throws IOException
+    {
+        PacketHandler handler = new PacketHandler();
+        List<String> received = new ArrayList<>();
+
+        handler.registerRaw((direction, packetId, payload) -> received.add("serverbound"),
+                PacketDirection.SERVERBOUND);
+        handler.registerRaw((direction, packetId, payload) -> received.add("id"), null,
+                UNREGISTERED_PACKET_ID);
+        handler.registerRaw((direction, packetId, payload) -> received.add("both"),
+                PacketDirection.CLIENTBOUND, UNREGISTERED_PACKET_ID, UNREGISTERED_PACKET_ID + 1);
+
+        handler.handleRawPacket(PacketDirection.CLIENTBOUND, new byte[] {UNREGISTERED_PACKET_ID});
+        received.add("|");
+        handler.handleRawPacket(PacketDirection.SERVERBOUND, new byte[] {UNREGISTERED_PACKET_ID});
+        received.add("|");
+        handler.handleRawPacket(PacketDirection.CLIENTBOUND,
+                new byte[] {UNREGISTERED_PACKET_ID + 1});
+        received.add("|");
+        handler.handleRawPacket(PacketDirection.SERVERBOUND,
+                new byte[] {UNREGISTERED_PACKET_ID + 2});
+
+        assertEquals(Arrays.asList("id", "both", "|", "serverbound", "id", "|", "both", "|",
+                "serverbound"), received);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRawSubscriberRejectsNegativeId()
+    {
+        new PacketHandler().registerRaw((direction, packetId, payload) -> false, null, 1, -1);
+    }
+
+    @Test
+    public void testRawPayloadIsResetForEachSubscriber() throws IOException
+    {
+        PacketHandler handler = new PacketHandler();
+        List<Object> received = new ArrayList<>();
+        RawPacketSubscriber consumer = (direction, packetId, payload) -> {
+
+            received.add(payload.position());
+            received.add(payload.remaining());
+
+            // Consume the payload and move its limit
+            payload.position(payload.limit());
+            payload.limit(1);
+
+            return false;
+
+        };
+
+        handler.registerRaw(consumer);
+        // Registering a subscriber twice has no effect
+        handler.registerRaw(consumer, PacketDirection.CLIENTBOUND);
+        handler.registerRaw((direction, packetId, payload) -> {
+
+            received.add(payload.position());
+            received.add(payload.remaining());
+
+            return false;
+
+        });
+        handler.register((StringPacket packet) -> {
+            received.add(packet.str);
+        }, StringPacket.class);
+
+        byte[] data = frame(new StringPacket(1, "a"));
+
+        handler.handleRawPacket(PacketDirection.CLIENTBOUND, data);
+
+        // The typed subscriber still decodes the packet after the raw subscribers consumed it
+        assertEquals(Arrays.asList(0, data.length - 1, 0, data.length - 1, "a"), received);
+    }
+
+    @Test
+    public void testBlockingIsCombined() throws IOException
+    {
+        PacketHandler handler = new PacketHandler();
+        List<Boolean> rawResult = new ArrayList<>(Arrays.asList(false));
+        List<Boolean> typedResult = new ArrayList<>(Arrays.asList(false));
+
+        handler.registerRaw((direction, packetId, payload) -> rawResult.get(0));
+        handler.registerRaw((direction, packetId, payload) -> false);
+        handler.register((StringPacket packet) -> typedResult.get(0), StringPacket.class);
+
+        byte[] data = frame(new StringPacket(1, "a"));
+
+        assertFalse(handler.handleRawPacket(PacketDirection.CLIENTBOUND, data));
+
+        rawResult.set(0, true);
+        assertTrue(handler.handleRawPacket(PacketDirection.CLIENTBOUND, data));
+        assertTrue(handler.handleRawPacket(PacketDirection.CLIENTBOUND,
+                new byte[] {UNREGISTERED_PACKET_ID}));
+
+        rawResult.set(0, false);
+        typedResult.set(0, true);
+        assertTrue(handler.handleRawPacket(PacketDirection.CLIENTBOUND, data));
+        assertFalse(handler.handleRawPacket(PacketDirection.CLIENTBOUND,
+                new byte[] {UNREGISTERED_PACKET_ID}));
+
+        // A subscriber which throws does not block the packet
+        handler.registerRaw((direction, packetId, payload) -> {
+            throw new IOException("Subscriber failed");
+        });
+        typedResult.set(0, false);
+        assertFalse(handler.handleRawPacket(PacketDirection.CLIENTBOUND, data));
+    }
+
+    @Test
+    public void testContextSubscribersReceiveTheConnection() throws IOException
+    {
+        ConnectionContext context = new ConnectionContext("localhost", null, null);
+        PacketHandler handler = new PacketHandler(context);
+        List<ConnectionContext> received = new ArrayList<>();
+
+        assertSame(context, handler.getConnection());
+        assertSame(handler, context.getPacketHandler());
+
+        handler.register((StringPacket packet, ConnectionContext connection) -> {
+            received.add(connection);
+        }, StringPacket.class);
+        handler.register((StringPacket packet, ConnectionContext connection) -> {
+            received.add(connection);
+        }, new SubscriptionOptions().filter(PacketFilter.equalTo(0, 2)), StringPacket.class);
+        handler.register((StringPacket packet, ConnectionContext connection) -> {
+
+            received.add(connection);
+
+            return packet.id == 3;
+
+        }, StringPacket.class);
+        handler.register((StringPacket packet, ConnectionContext connection) -> {
+
+            received.add(connection);
+
+            return false;
+
+        }, new SubscriptionOptions().fields(1), StringPacket.class);
+
+        assertFalse(handler.handlePacket(PacketDirection.CLIENTBOUND, FILTERED_PACKET_ID,
+                ByteBuffer.wrap(encode(new StringPacket(1, "a")))));
+        assertEquals(3, received.size());
+
+        assertTrue(handler.handlePacket(PacketDirection.CLIENTBOUND, FILTERED_PACKET_ID,
+                ByteBuffer.wrap(encode(new StringPacket(3, "a")))));
+        assertFalse(handler.handlePacket(PacketDirection.CLIENTBOUND, FILTERED_PACKET_ID,
+                ByteBuffer.wrap(encode(new StringPacket(2, "a")))));
+        assertEquals(10, received.size());
+
+        for (ConnectionContext connection : received)
+            assertSame(context, connection);
+    }
+
+    @Test
+    public void testContextSubscribersWithoutConnection() throws IOException
+    {
+        PacketHandler handler = new PacketHandler();
+        List<String> received = new ArrayList<>();
+
+        handler.register((StringPacket packet, ConnectionContext connection) -> {
+
+            assertNull(connection);
+            received.add(packet.str);
+
+        }, StringPacket.class);
+
+        handler.handlePacket(PacketDirection.CLIENTBOUND, FILTERED_PACKET_ID,
+                ByteBuffer.wrap(encode(new StringPacket(1, "a"))));
+
+        assertNull(handler.getConnection());
+        assertEquals(Arrays.asList("a"), received);
+    }
+
+    @Test
+    public void testBatchFailsWhenAPacketCannotBeEncoded() throws InterruptedException
+    {
+        // The connection has no handlers, so writing any packet would fail with a
+        // NullPointerException instead
+        PacketHandler handler =
+                new PacketHandler(new ConnectionContext("localhost", null, null));
+
+        assertEquals(NullPointerException.class,
+                failure(handler.sendPackets(Arrays.asList(new StringPacket(1, "a")))));
+        assertEquals(IllegalArgumentException.class, failure(handler.sendPackets(
+                Arrays.asList(new StringPacket(1, "a"), new UnregisteredPacket()))));
+    }
+
+    /**
+     * @param future A future which has been completed exceptionally
+     *
+     * @return The class of the exception with which the future was completed
+     */
+    private static Class<?> failure(CompletableFuture<Void> future) throws InterruptedException
+    {
+        assertTrue(future.isCompletedExceptionally());
+
+        try
+        {
+            future.get();
+        }
+        catch (ExecutionException e)
+        {
+            return e.getCause().getClass();
+        }
+
+        throw new AssertionError("Future was not completed exceptionally");
+    }
+
+    @Test
+    public void testPublisherOnlySubscribesWhileObserved() throws IOException
+    {
+        PacketHandler handler = new PacketHandler();
+        List<String> received = new ArrayList<>();
+
+        // Only the id is read by this subscriber, so the String is not decoded
+        handler.register((StringPacket packet) -> {
+            received.add(packet.id + packet.str);
+        }, new SubscriptionOptions().fields(0), StringPacket.class);
+
+        PacketPublisher<StringPacket> publisher = handler.getPublisher(StringPacket.class);
+        List<PacketSubscription> subscription = new ArrayList<>();
+
+        handler.handlePacket(PacketDirection.CLIENTBOUND, FILTERED_PACKET_ID,
+                ByteBuffer.wrap(encode(new StringPacket(1, "a"))));
+
+        publisher.subscribe(new PacketSubscriber<StringPacket>()
+        {
+            @Override
+            public void onSubscribe(PacketSubscription s)
+            {
+                subscription.add(s);
+                s.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(StringPacket packet)
+            {
+                received.add("published " + packet.id + packet.str);
+            }
+        }, Runnable::run);
+
+        // Published packets are decoded in full
+        handler.handlePacket(PacketDirection.CLIENTBOUND, FILTERED_PACKET_ID,
+                ByteBuffer.wrap(encode(new StringPacket(2, "b"))));
+
+        subscription.get(0).cancel();
+
+        handler.handlePacket(PacketDirection.CLIENTBOUND, FILTERED_PACKET_ID,
+                ByteBuffer.wrap(encode(new StringPacket(3, "c"))));
+
+        assertEquals(Arrays.asList("1null", "2b", "published 2b", "3null"), received);
+    }
+
+    @Test
+    public void testAwaitedPacketsAreDecodedInFull() throws Exception
+    {
+        PacketHandler handler = new PacketHandler();
+        List<String> received = new ArrayList<>();
+
+        handler.register((StringPacket packet) -> {
+            received.add(packet.str);
+        }, new SubscriptionOptions().fields(0), StringPacket.class);
+
+        CompletableFuture<StringPacket> future =
+                handler.awaitPacket(StringPacket.class, packet -> true, 5, TimeUnit.SECONDS);
+
+        assertFalse(handler.handlePacket(PacketDirection.CLIENTBOUND, FILTERED_PACKET_ID,
+                ByteBuffer.wrap(encode(new StringPacket(1, "a")))));
+
+        assertTrue(future.isDone());
+        assertEquals("a", future.get().str);
+        assertEquals("a", received.get(0));
+
+        // The projection applies again once the wait has been completed
+        handler.handlePacket(PacketDirection.CLIENTBOUND, FILTERED_PACKET_ID,
+                ByteBuffer.wrap(encode(new StringPacket(2, "b"))));
+
+        assertEquals(Arrays.asList("a", null), received);
+    }
+
+    @Test
+    public void testAwaitCompletedBySubclass() throws Exception
+    {
+        PacketHandler handler = new PacketHandler();
+        CompletableFuture<StringPacket> future =
+                handler.awaitPacket(StringPacket.class, packet -> true, 5, TimeUnit.SECONDS);
+        CompletableFuture<SubStringPacket> subclassFuture =
+                handler.awaitPacket(SubStringPacket.class, packet -> true, 5, TimeUnit.SECONDS);
+
+        handler.handlePacket(PacketDirection.CLIENTBOUND, SUBCLASS_PACKET_ID,
+                ByteBuffer.wrap(encode(new SubStringPacket(1, "a"))));
+
+        assertEquals(SubStringPacket.class, future.get().getClass());
+        assertEquals("a", future.get().str);
+        assertEquals(future.get(), subclassFuture.get());
+
+        // A wait for a subclass is not completed by its superclass
+        subclassFuture = handler.awaitPacket(SubStringPacket.class, packet -> true, 5,
+                TimeUnit.SECONDS);
+
+        handler.handlePacket(PacketDirection.CLIENTBOUND, FILTERED_PACKET_ID,
+                ByteBuffer.wrap(encode(new StringPacket(2, "b"))));
+
+        assertFalse(subclassFuture.isDone());
+
+        subclassFuture.cancel(false);
+    }
+
+    @Test
+    public void testAwaitPredicate() throws Exception
+    {
+        PacketHandler handler = new PacketHandler();
+        CompletableFuture<StringPacket> future = handler.awaitPacket(StringPacket.class,
+                packet -> packet.id == 2, 5, TimeUnit.SECONDS);
+        CompletableFuture<StringPacket> failing =
+                handler.awaitPacket(StringPacket.class, packet -> {
+                    throw new IllegalStateException("Predicate failed");
+                }, 5, TimeUnit.SECONDS);
+
+        handler.handlePacket(PacketDirection.CLIENTBOUND, FILTERED_PACKET_ID,
+                ByteBuffer.wrap(encode(new StringPacket(1, "a"))));
+
+        assertFalse(future.isDone());
+        assertTrue(failing.isCompletedExceptionally());
+
+        handler.handlePacket(PacketDirection.CLIENTBOUND, FILTERED_PACKET_ID,
+                ByteBuffer.wrap(encode(new StringPacket(2, "b"))));
+
+        assertEquals("b", future.get().str);
+    }
+
+    @Test
+    public void testAwaitTimeout() throws Exception
+    {
+        PacketHandler handler = new PacketHandler();
+        CompletableFuture<StringPacket> future =
+                handler.awaitPacket(StringPacket.class, packet -> true, 10, TimeUnit.MILLISECONDS);
+
+        try
+        {
+            future.get(5, TimeUnit.SECONDS);
+
+            throw new AssertionError("Wait did not time out");
+        }
+        catch (ExecutionException e)
+        {
+            assertEquals(TimeoutException.class, e.getCause().getClass());
+        }
+
+        // The wait is removed on the timer's thread, which may happen after get returns
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+        do
+        {
+            decodedStrings.set(0);
+            handler.handlePacket(PacketDirection.CLIENTBOUND, FILTERED_PACKET_ID,
+                    ByteBuffer.wrap(encode(new StringPacket(1, "a"))));
+
+            if (decodedStrings.get() == 0) break;
+
+            Thread.sleep(1);
+        }
+        while (System.nanoTime() < deadline);
+
+        assertNotDecoded(handler);
+    }
+
+    @Test
+    public void testCancelledWaitsAreRemoved() throws Exception
+    {
+        PacketHandler handler = new PacketHandler();
+        CompletableFuture<StringPacket> first =
+                handler.awaitPacket(StringPacket.class, packet -> true, 5, TimeUnit.SECONDS);
+        CompletableFuture<StringPacket> second =
+                handler.awaitPacket(StringPacket.class, packet -> true, 5, TimeUnit.SECONDS);
+
+        first.cancel(false);
+
+        decodedStrings.set(0);
+        handler.handlePacket(PacketDirection.CLIENTBOUND, FILTERED_PACKET_ID,
+                ByteBuffer.wrap(encode(new StringPacket(1, "a"))));
+
+        assertEquals(1, decodedStrings.get());
+        assertNotNull(second.get());
+
+        // Cancelling a completed wait has no effect on the count of pending waits
+        first.cancel(false);
+        second.cancel(false);
+
+        assertNotDecoded(handler);
+    }
+
+    @Test
+    public void testShutdownCancelsWaits() throws Exception
+    {
+        PacketHandler handler = new PacketHandler();
+        CompletableFuture<StringPacket> future =
+                handler.awaitPacket(StringPacket.class, packet -> true, 5, TimeUnit.SECONDS);
+
+        handler.shutdown();
+
+        assertTrue(future.isCancelled());
+        assertTrue(handler.awaitPacket(StringPacket.class, packet -> true, 5, TimeUnit.SECONDS)
+                .isCancelled());
+        assertNotDecoded(handler);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPooledPacketsCannotBeAwaited()
+    {
+        new PacketHandler().awaitPacket(LongPacket.class, packet -> true, 5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Checks that a packet without any subscribers or pending waits is not decoded
+     *
+     * @param handler The handler with which to handle the packet
+     */
+    private static void assertNotDecoded(PacketHandler handler) throws IOException
+    {
+        decodedStrings.set(0);
+
+        assertFalse(handler.handlePacket(PacketDirection.CLIENTBOUND, FILTERED_PACKET_ID,
+                ByteBuffer.wrap(encode(new StringPacket(1, "a")))));
+        assertEquals(0, decodedStrings.get());
+    }
+
+    /**
+     * @param packet The packet to encode
+     *
+     * @return The packet prefixed with its id
+     */
+    private static byte[] frame(StringPacket packet) throws IOException
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        baos.write(FILTERED_PACKET_ID);
+        PacketParser.write(packet, baos);
+
+        return baos.toByteArray();
+    }
+
+    private static byte[] encode(Packet packet) throws IOException
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        PacketParser.write(packet, baos);
+
+        return baos.toByteArray();
+    }
+
+    @PacketSpec(types = Long.class, direction = PacketDirection.CLIENTBOUND)
+    public static class LongPacket extends PooledPacket
+    {
+
+        public long value;
+
+        @Override
+        protected void load(Object[] values)
+        {
+            value = (Long) values[0];
+        }
+
+        @Override
+        public Object[] getValues()
+        {
+            return new Object[] {value};
+        }
+
+    }
+
+    @PacketSpec(types = {Packet.VarInt.class, String.class},
+            direction = PacketDirection.CLIENTBOUND)
+    public static class StringPacket extends Packet
+    {
+
+        public final int id;
+        public final String str;
+
+        public StringPacket(int id, String str)
+        {
+            this.id = id;
+            this.str = str;
+        }
+
+        @Override
+        public Object[] getValues()
+        {
+            return new Object[] {id, str};
+        }
+
+    }
+
+    @PacketSpec(types = {Packet.VarInt.class, String.class},
+            direction = PacketDirection.CLIENTBOUND)
+    public static class SubStringPacket extends StringPacket
+    {
+
+        public SubStringPacket(int id, String str)
+        {
+            super(id, str);
+        }
+
+    }
+
+    @PacketSpec(types = Integer.class, direction = PacketDirection.CLIENTBOUND)
+    public static class UnregisteredPacket extends Packet
+    {
+
+        @Override
+        public Object[] getValues()
+        {
+            return new Object[] {0};
+        }
+
+    }
+
+}
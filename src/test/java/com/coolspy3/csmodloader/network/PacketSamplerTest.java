@@ -0,0 +1,187 @@
+package com.coolspy3.csmodloader.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.coolspy3.csmodloader.network.packet.Packet;
+import com.coolspy3.csmodloader.network.packet.PacketParser;
+import com.coolspy3.csmodloader.network.packet.PacketSpec;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class PacketSamplerTest
+{
+
+    private static final int PACKET_ID = 0x7A;
+
+    private static final AtomicInteger decoded = new AtomicInteger();
+
+    @BeforeClass
+    public static void registerPackets()
+    {
+        PacketParser.registerPacket(SampledPacket.class, values -> {
+
+            decoded.incrementAndGet();
+
+            return new SampledPacket((Integer) values[0]);
+
+        }, PACKET_ID);
+    }
+
+    @Test
+    public void testEvery()
+    {
+        PacketSampler sampler = PacketSampler.every(3);
+        StringBuilder pattern = new StringBuilder();
+
+        for (int i = 0; i < 8; i++)
+            pattern.append(sampler.sample() ? 'x' : '.');
+
+        assertEquals("x..x..x.", pattern.toString());
+        assertEquals(8, sampler.getOffered());
+        assertEquals(3, sampler.getSampled());
+        assertEquals(3 / 8.0, sampler.getSampleRate(), 0);
+
+        PacketSampler all = PacketSampler.every(1);
+
+        for (int i = 0; i < 4; i++)
+            assertTrue(all.sample());
+    }
+
+    @Test
+    public void testAtMostPerSecond()
+    {
+        PacketSampler sampler = PacketSampler.atMostPerSecond(4);
+        long nanosPerToken = TimeUnit.MILLISECONDS.toNanos(250);
+        long now = System.nanoTime();
+
+        // The bucket starts full, so a burst of up to 4 packets is sampled
+        for (int i = 0; i < 4; i++)
+            assertTrue(sampler.accept(now));
+
+        assertFalse(sampler.accept(now));
+
+        // Tokens are refilled continuously
+        assertFalse(sampler.accept(now + nanosPerToken / 2));
+        assertTrue(sampler.accept(now + nanosPerToken));
+        assertFalse(sampler.accept(now + nanosPerToken));
+
+        // The bucket never holds more than 4 tokens, however long it is idle
+        now += TimeUnit.SECONDS.toNanos(10);
+
+        for (int i = 0; i < 4; i++)
+            assertTrue(sampler.accept(now));
+
+        assertFalse(sampler.accept(now));
+
+        // The long-term rate does not exceed the limit
+        int sampled = 0;
+
+        for (int i = 1; i <= 1000; i++)
+            if (sampler.accept(now + i * TimeUnit.MILLISECONDS.toNanos(10))) sampled++;
+
+        assertEquals(40, sampled);
+    }
+
+    @Test
+    public void testWithProbability()
+    {
+        PacketSampler never = PacketSampler.withProbability(0);
+        PacketSampler always = PacketSampler.withProbability(1);
+        PacketSampler half = PacketSampler.withProbability(0.5);
+
+        for (int i = 0; i < 10000; i++)
+        {
+            assertFalse(never.sample());
+            assertTrue(always.sample());
+            half.sample();
+        }
+
+        assertEquals(0, never.getSampleRate(), 0);
+        assertEquals(1, always.getSampleRate(), 0);
+        assertEquals(0.5, half.getSampleRate(), 0.05);
+    }
+
+    @Test
+    public void testInvalidArguments()
+    {
+        assertInvalid(() -> PacketSampler.every(0));
+        assertInvalid(() -> PacketSampler.every(-1));
+        assertInvalid(() -> PacketSampler.atMostPerSecond(0));
+        assertInvalid(() -> PacketSampler.withProbability(-0.01));
+        assertInvalid(() -> PacketSampler.withProbability(1.01));
+        assertInvalid(() -> PacketSampler.withProbability(Double.NaN));
+    }
+
+    @Test
+    public void testDeclinedPacketsAreNotDecoded()
+    {
+        PacketHandler handler = new PacketHandler();
+        List<String> received = new ArrayList<>();
+        PacketSampler never = PacketSampler.withProbability(0);
+        PacketSampler everyOther = PacketSampler.every(2);
+
+        handler.register((SampledPacket packet) -> {
+            received.add("never " + packet.value);
+        }, new SubscriptionOptions().sample(never), SampledPacket.class);
+        handler.register((SampledPacket packet) -> {
+            received.add("everyOther " + packet.value);
+        }, new SubscriptionOptions().sample(everyOther), SampledPacket.class);
+
+        decoded.set(0);
+
+        for (int i = 0; i < 4; i++)
+            handler.handlePacket(PacketDirection.CLIENTBOUND, PACKET_ID,
+                    ByteBuffer.wrap(new byte[] {0, 0, 0, (byte) i}));
+
+        // Packets are only decoded when at least one sampler accepts them
+        assertEquals(Arrays.asList("everyOther 0", "everyOther 2"), received);
+        assertEquals(2, decoded.get());
+        assertEquals(4, never.getOffered());
+        assertEquals(4, everyOther.getOffered());
+        assertEquals(2, everyOther.getSampled());
+    }
+
+    private static void assertInvalid(Runnable func)
+    {
+        try
+        {
+            func.run();
+        }
+        catch (IllegalArgumentException e)
+        {
+            return;
+        }
+
+        throw new AssertionError("Invalid argument was accepted");
+    }
+
+    @PacketSpec(types = Integer.class, direction = PacketDirection.CLIENTBOUND)
+    public static class SampledPacket extends Packet
+    {
+
+        public final int value;
+
+        public SampledPacket(int value)
+        {
+            this.value = value;
+        }
+
+        @Override
+        public Object[] getValues()
+        {
+            return new Object[] {value};
+        }
+
+    }
+
+}
@@ -0,0 +1,115 @@
+package com.coolspy3.csmodloader.network;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import com.coolspy3.csmodloader.network.packet.Packet;
+import com.coolspy3.csmodloader.network.packet.PacketParser;
+import com.coolspy3.csmodloader.network.packet.PacketSpec;
+import com.coolspy3.csmodloader.util.Utils;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class PacketTemplateTest
+{
+
+    private static final int PACKET_ID = 0x7E;
+
+    @BeforeClass
+    public static void registerPackets()
+    {
+        PacketParser.registerPacket(MessagePacket.class,
+                values -> new MessagePacket((String) values[0]), PACKET_ID);
+    }
+
+    @Test
+    public void testFrames() throws IOException, DataFormatException
+    {
+        char[] chars = new char[300];
+        Arrays.fill(chars, 'a');
+
+        MessagePacket packet = new MessagePacket(new String(chars));
+        PacketTemplate template = PacketTemplate.of(packet);
+
+        byte[] packetData = encode(packet);
+
+        assertEquals(PacketDirection.CLIENTBOUND, template.getDirection());
+        assertEquals(PacketPriority.HIGH, template.getPriority());
+        assertEquals(packetData.length, template.getLength());
+
+        // Compression disabled
+        ByteBuffer frame = ByteBuffer.wrap(template.getFrame(-1));
+        assertEquals(frame.remaining() - 2, Utils.readVarInt(frame));
+        assertArrayEquals(packetData, Utils.readNBytes(frame, frame.remaining()));
+
+        // Below the threshold
+        frame = ByteBuffer.wrap(template.getFrame(1024));
+        Utils.readVarInt(frame);
+        assertEquals(0, Utils.readVarInt(frame));
+        assertArrayEquals(packetData, Utils.readNBytes(frame, frame.remaining()));
+
+        // Above the threshold
+        frame = ByteBuffer.wrap(template.getFrame(64));
+        Utils.readVarInt(frame);
+        byte[] inflated = new byte[Utils.readVarInt(frame)];
+        Inflater inflater = new Inflater();
+        inflater.setInput(Utils.readNBytes(frame, frame.remaining()));
+        inflater.inflate(inflated);
+        inflater.end();
+
+        assertArrayEquals(packetData, inflated);
+        assertSame(template.getFrame(64), template.getFrame(64));
+    }
+
+    @Test
+    public void testChangesAfterCreationAreIgnored() throws IOException
+    {
+        MessagePacket packet = new MessagePacket("before");
+        PacketTemplate template = PacketTemplate.of(packet);
+        byte[] frame = template.getFrame(-1).clone();
+
+        packet.message = "after";
+
+        assertArrayEquals(frame, template.getFrame(-1));
+    }
+
+    private static byte[] encode(Packet packet) throws IOException
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        Utils.writeVarInt(PACKET_ID, baos);
+        PacketParser.write(packet, baos);
+
+        return baos.toByteArray();
+    }
+
+    @PacketSpec(types = String.class, direction = PacketDirection.CLIENTBOUND,
+            priority = PacketPriority.HIGH)
+    public static class MessagePacket extends Packet
+    {
+
+        public String message;
+
+        public MessagePacket(String message)
+        {
+            this.message = message;
+        }
+
+        @Override
+        public Object[] getValues()
+        {
+            return new Object[] {message};
+        }
+
+    }
+
+}
@@ -0,0 +1,100 @@
+package com.coolspy3.csmodloader.network.chat;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class AhoCorasickTest
+{
+
+    @Test
+    public void testOverlappingPatterns()
+    {
+        AhoCorasick automaton = new AhoCorasick(Arrays.asList("he", "she", "his", "hers", "x"));
+
+        assertEquals(5, automaton.size());
+        assertArrayEquals(new int[] {4, 4, 10, 6, -1}, automaton.findFirst("ushers his"));
+        assertArrayEquals(new int[] {-1, -1, -1, -1, -1}, automaton.findFirst(""));
+    }
+
+    @Test
+    public void testPatternsInsideOtherPatterns()
+    {
+        AhoCorasick automaton = new AhoCorasick(Arrays.asList("abcd", "bc", "c", "bcx"));
+
+        assertArrayEquals(new int[] {4, 3, 3, -1}, automaton.findFirst("abcd"));
+        assertArrayEquals(new int[] {-1, 3, 3, 4}, automaton.findFirst("abcx"));
+    }
+
+    @Test
+    public void testMatchesNaiveSearch()
+    {
+        Random random = new Random(0x5EED);
+
+        for (int round = 0; round < 200; round++)
+        {
+            // A small alphabet produces many partial matches and failure transitions
+            HashSet<String> unique = new HashSet<>();
+
+            for (int i = 0; i < 1 + random.nextInt(12); i++)
+                unique.add(randomString(random, 1 + random.nextInt(5)));
+
+            List<String> patterns = new ArrayList<>(unique);
+            AhoCorasick automaton = new AhoCorasick(patterns);
+
+            for (int i = 0; i < 20; i++)
+            {
+                String text = randomString(random, random.nextInt(40));
+                int[] expected = new int[patterns.size()];
+
+                for (int j = 0; j < expected.length; j++)
+                {
+                    int index = text.indexOf(patterns.get(j));
+
+                    expected[j] = index == -1 ? -1 : index + patterns.get(j).length();
+                }
+
+                assertArrayEquals(patterns + " in " + text, expected, automaton.findFirst(text));
+            }
+        }
+    }
+
+    @Test
+    public void testNoPatterns()
+    {
+        AhoCorasick automaton = new AhoCorasick(new ArrayList<>());
+
+        assertEquals(0, automaton.size());
+        assertEquals(0, automaton.findFirst("text").length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyPattern()
+    {
+        new AhoCorasick(Arrays.asList("a", ""));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicatePattern()
+    {
+        new AhoCorasick(Arrays.asList("ab", "b", "ab"));
+    }
+
+    private static String randomString(Random random, int length)
+    {
+        char[] chars = new char[length];
+
+        for (int i = 0; i < length; i++)
+            chars[i] = (char) ('a' + random.nextInt(3));
+
+        return new String(chars);
+    }
+
+}
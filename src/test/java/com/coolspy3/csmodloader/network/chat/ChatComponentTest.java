@@ -0,0 +1,70 @@
+package com.coolspy3.csmodloader.network.chat;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+public class ChatComponentTest
+{
+
+    @Test
+    public void testPlayerChatTranslation() throws IOException
+    {
+        ChatComponent message = ChatParser
+                .parse("{\"translate\":\"chat.type.text\",\"with\":[\"Bob\",{\"text\":\"hello\"}]}");
+
+        assertEquals("<Bob> hello", message.getPlainText());
+    }
+
+    @Test
+    public void testPlayerChatTriggers() throws IOException
+    {
+        ChatTriggers triggers = new ChatTriggers();
+        ArrayList<String> matched = new ArrayList<>();
+
+        triggers.register("hello", match -> {
+            matched.add(match.getMatched());
+        });
+
+        triggers.dispatch(ChatParser.parse(
+                "{\"translate\":\"chat.type.text\",\"with\":[\"Bob\",{\"text\":\"hello\"}]}"),
+                ChatWriter.CHAT);
+
+        assertEquals(1, matched.size());
+        assertEquals("hello", matched.get(0));
+    }
+
+    @Test
+    public void testKnownTranslations() throws IOException
+    {
+        assertEquals("Bob joined the game", ChatParser
+                .parse("{\"translate\":\"multiplayer.player.joined\",\"with\":[\"Bob\"]}")
+                .getPlainText());
+        assertEquals("Bob whispers to you: hi", ChatParser.parse(
+                "{\"translate\":\"commands.message.display.incoming\",\"with\":[\"Bob\",\"hi\"]}")
+                .getPlainText());
+    }
+
+    @Test
+    public void testUnknownKeyWithoutPlaceholders() throws IOException
+    {
+        ChatComponent message = ChatParser
+                .parse("{\"translate\":\"custom.key\",\"with\":[\"a\",{\"text\":\"b\"}]}");
+
+        assertEquals("custom.key a b", message.getPlainText());
+    }
+
+    @Test
+    public void testUnknownKeyWithPlaceholders() throws IOException
+    {
+        assertEquals("b then a 100%", ChatParser
+                .parse("{\"translate\":\"%2$s then %1$s 100%%\",\"with\":[\"a\",\"b\"]}")
+                .getPlainText());
+        assertEquals("x-y", ChatComponent.translate("%s-%s", null, ChatComponent.text("x"),
+                ChatComponent.text("y")).getPlainText());
+    }
+
+}
@@ -0,0 +1,139 @@
+package com.coolspy3.csmodloader.network.chat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class ChatParserTest
+{
+
+    @Test
+    public void testPlainString() throws IOException
+    {
+        assertEquals(ChatComponent.text("hi"), ChatParser.parse("\"hi\""));
+        assertEquals("hi", ChatParser.parse("\"hi\"").getPlainText());
+    }
+
+    @Test
+    public void testArrayForm() throws IOException
+    {
+        ChatComponent component = ChatParser.parse("[\"a\",{\"text\":\"b\"},\"c\"]");
+
+        assertEquals("a", component.getText());
+        assertEquals(2, component.getExtra().size());
+        assertEquals("abc", component.getPlainText());
+    }
+
+    @Test
+    public void testStyleAndEvents() throws IOException
+    {
+        ChatComponent component = ChatParser.parse("{\"text\":\"x\",\"color\":\"red\","
+                + "\"bold\":true,\"italic\":false,\"insertion\":\"ins\","
+                + "\"clickEvent\":{\"action\":\"run_command\",\"value\":\"/help\"},"
+                + "\"hoverEvent\":{\"action\":\"show_text\",\"value\":{\"text\":\"tip\"}},"
+                + "\"unknown\":[1,{\"a\":2}],\"underlined\":null}");
+
+        ChatStyle style = component.getStyle();
+
+        assertEquals("red", style.getColor());
+        assertEquals(Boolean.TRUE, style.getBold());
+        assertEquals(Boolean.FALSE, style.getItalic());
+        assertNull(style.getUnderlined());
+        assertEquals("ins", style.getInsertion());
+        assertEquals("run_command", style.getClickEvent().getAction());
+        assertEquals("/help", style.getClickEvent().getValueText());
+        assertEquals("tip", style.getHoverEvent().getValueText());
+    }
+
+    @Test
+    public void testSerializedComponentsRoundTrip() throws IOException
+    {
+        ChatStyle style = new ChatStyle("gold", true, null, false, null, null, "ins",
+                new ChatEvent("open_url", ChatComponent.text("https://example.com")),
+                new ChatEvent("show_text", ChatComponent.text("tip")));
+
+        ChatComponent component = ChatComponent.text("Hello \"world\"\n\u00e9", style,
+                ChatComponent.text(" child"), ChatComponent.translate("chat.type.text", null,
+                        ChatComponent.text("Bob"), ChatComponent.text("hi")));
+
+        ChatComponent parsed = ChatParser.parse(component.toJson());
+
+        assertEquals(component, parsed);
+        assertEquals(component.getPlainText(), parsed.getPlainText());
+    }
+
+    @Test
+    public void testParsedComponentsKeepTheirJson() throws IOException
+    {
+        String json = "{ \"text\" : \"spaced\" }";
+
+        assertEquals(json, ChatParser.parse(json).toJson());
+    }
+
+    @Test
+    public void testParseCached() throws IOException
+    {
+        String json = "{\"text\":\"cached\"}";
+
+        assertSame(ChatParser.parseCached(json), ChatParser.parseCached(json));
+    }
+
+    @Test
+    public void testScoreAndSelector() throws IOException
+    {
+        ChatComponent score = ChatParser
+                .parse("{\"score\":{\"name\":\"Bob\",\"objective\":\"kills\",\"value\":\"5\"}}");
+
+        assertEquals("Bob", score.getScoreName());
+        assertEquals("kills", score.getScoreObjective());
+        assertEquals("5", score.getScoreValue());
+
+        assertEquals("@p", ChatParser.parse("{\"selector\":\"@p\"}").getSelector());
+    }
+
+    @Test(expected = IOException.class)
+    public void testTrailingData() throws IOException
+    {
+        ChatParser.parse("{\"text\":\"a\"} {}");
+    }
+
+    @Test(expected = IOException.class)
+    public void testEmptyArray() throws IOException
+    {
+        ChatParser.parse("[]");
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnterminatedObject() throws IOException
+    {
+        ChatParser.parse("{\"text\":\"a\"");
+    }
+
+    @Test
+    public void testDepthLimit()
+    {
+        StringBuilder json = new StringBuilder();
+
+        for (int i = 0; i <= ChatParser.MAX_DEPTH + 1; i++)
+            json.append("{\"extra\":[");
+
+        try
+        {
+            ChatParser.parse(json.toString());
+        }
+        catch (IOException e)
+        {
+            assertTrue(e.getMessage(), e.getMessage().contains("nested too deeply"));
+
+            return;
+        }
+
+        throw new AssertionError("Deeply nested component was accepted");
+    }
+
+}
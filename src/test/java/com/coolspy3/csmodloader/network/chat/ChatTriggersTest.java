@@ -0,0 +1,208 @@
+package com.coolspy3.csmodloader.network.chat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.coolspy3.csmodloader.interfaces.ExceptionConsumer;
+import com.coolspy3.csmodloader.interfaces.ExceptionFunction;
+import com.coolspy3.csmodloader.util.Utils;
+
+import org.junit.Test;
+
+public class ChatTriggersTest
+{
+
+    private static final ChatComponent MESSAGE = ChatComponent.text("Player joined ",
+            null, ChatComponent.text("the lobby"), ChatComponent.text(" (3/16)"));
+
+    @Test
+    public void testLiteralTriggers()
+    {
+        ChatTriggers triggers = new ChatTriggers();
+        List<ChatMatch> matches = new ArrayList<>();
+
+        triggers.register("lobby", (ExceptionConsumer<ChatMatch>) matches::add);
+        triggers.register("joined the", (ExceptionConsumer<ChatMatch>) matches::add);
+        triggers.register("left", (ExceptionConsumer<ChatMatch>) matches::add);
+
+        assertFalse(triggers.dispatch(MESSAGE, ChatWriter.SYSTEM));
+        assertEquals(2, matches.size());
+
+        ChatMatch match = matches.get(0);
+
+        assertEquals("lobby", match.getTrigger());
+        assertEquals("lobby", match.getMatched());
+        assertEquals(MESSAGE.getPlainText().indexOf("lobby"), match.getStart());
+        assertEquals(ChatWriter.SYSTEM, match.getPosition());
+        assertEquals(MESSAGE, match.getMessage());
+        assertNull(match.getMatchResult());
+        assertEquals("joined the", matches.get(1).getMatched());
+    }
+
+    @Test
+    public void testRegexTriggers()
+    {
+        ChatTriggers triggers = new ChatTriggers();
+        List<ChatMatch> matches = new ArrayList<>();
+
+        triggers.register(Pattern.compile("\\((\\d+)/(\\d+)\\)"),
+                (ExceptionConsumer<ChatMatch>) matches::add);
+        triggers.register(Pattern.compile("lobby \\[\\d+\\]"),
+                (ExceptionConsumer<ChatMatch>) matches::add);
+        triggers.register(Pattern.compile("PLAYER", Pattern.CASE_INSENSITIVE),
+                (ExceptionConsumer<ChatMatch>) matches::add);
+
+        triggers.dispatch(MESSAGE, ChatWriter.CHAT);
+
+        assertEquals(2, matches.size());
+        assertEquals("(3/16)", matches.get(0).getMatched());
+        assertEquals("16", matches.get(0).getMatchResult().group(2));
+        assertEquals("Player", matches.get(1).getMatched());
+    }
+
+    @Test
+    public void testBlockingAndDeduplication()
+    {
+        ChatTriggers triggers = new ChatTriggers();
+        int[] calls = new int[2];
+        ExceptionFunction<ChatMatch, Boolean> blocker = match -> ++calls[0] > 0;
+        ExceptionConsumer<ChatMatch> listener = match -> calls[1]++;
+
+        assertTrue(triggers.isEmpty());
+
+        triggers.register("lobby", blocker);
+        triggers.register("lobby", blocker);
+        triggers.register("Player", listener);
+        triggers.register("Player", listener);
+
+        assertFalse(triggers.isEmpty());
+
+        // Every trigger fires even after one of them blocks the message
+        assertTrue(triggers.dispatch(MESSAGE, ChatWriter.CHAT));
+        assertEquals(1, calls[0]);
+        assertEquals(1, calls[1]);
+
+        assertFalse(triggers.dispatch(ChatComponent.text("lob by"), ChatWriter.CHAT));
+    }
+
+    @Test
+    public void testThrowingTriggerDoesNotBlock()
+    {
+        ChatTriggers triggers = new ChatTriggers();
+        int[] calls = new int[1];
+
+        triggers.register("lobby", (ExceptionConsumer<ChatMatch>) match -> {
+
+            throw new IOException("Expected");
+
+        });
+        triggers.register("lobby", (ExceptionConsumer<ChatMatch>) match -> calls[0]++);
+
+        assertFalse(triggers.dispatch(MESSAGE, ChatWriter.CHAT));
+        assertEquals(1, calls[0]);
+    }
+
+    @Test
+    public void testTriggersRegisteredAfterDispatch()
+    {
+        ChatTriggers triggers = new ChatTriggers();
+        List<ChatMatch> matches = new ArrayList<>();
+
+        triggers.register("lobby", (ExceptionConsumer<ChatMatch>) matches::add);
+        triggers.dispatch(MESSAGE, ChatWriter.CHAT);
+        triggers.register("Player", (ExceptionConsumer<ChatMatch>) matches::add);
+        triggers.dispatch(MESSAGE, ChatWriter.CHAT);
+
+        assertEquals(3, matches.size());
+    }
+
+    @Test
+    public void testDispatchPacket() throws IOException
+    {
+        ChatTriggers triggers = new ChatTriggers();
+        List<ChatMatch> matches = new ArrayList<>();
+
+        triggers.register("lobby", (ExceptionConsumer<ChatMatch>) matches::add);
+
+        ByteBuffer buf = ByteBuffer.allocate(256);
+        Utils.writeString(MESSAGE.toJson(), buf);
+        buf.put(ChatWriter.ACTION_BAR);
+        buf.flip();
+
+        triggers.dispatch(buf);
+
+        assertEquals(0, buf.position());
+        assertEquals(1, matches.size());
+        assertEquals(ChatWriter.ACTION_BAR, matches.get(0).getPosition());
+        assertEquals(MESSAGE.getPlainText(), matches.get(0).getText());
+    }
+
+    @Test
+    public void testRequiredLiteral()
+    {
+        assertEquals(" joined", literal("(\\w+) joined"));
+        assertEquals("lobby ", literal("\\Qlobby \\E\\d+"));
+        assertEquals("a.b", literal("a\\.b"));
+        assertEquals("[x]", literal("[a-z]+\\[x\\]"));
+        assertEquals("abc", literal("abcd?"));
+        assertEquals("bcd", literal("a?bcd"));
+        assertEquals("xyz", literal("ab{2}xyz"));
+        assertEquals("a+b", ChatTriggers.requiredLiteral(Pattern.compile("a+b", Pattern.LITERAL)));
+
+        assertNull(literal("cat|dog"));
+        assertNull(literal("\\x41bc"));
+        assertNull(literal("(?=abc)"));
+        assertNull(literal("[abc]"));
+        assertNull(ChatTriggers.requiredLiteral(Pattern.compile("abc", Pattern.CASE_INSENSITIVE)));
+    }
+
+    @Test
+    public void testRequiredLiteralIsContainedInMatches()
+    {
+        String[] patterns = {"ab+c", "a?bc*d", "(ab)+cd", "(?:ab)?cd", "a.b\\.c", "x[ab]yz",
+                "\\Qa.b\\E+c", "a\\d{1,2}bc", "ab(c|d)ef", "^abc$", "[^a]bc"};
+        Random random = new Random(0x5EED);
+
+        for (String src : patterns)
+        {
+            Pattern pattern = Pattern.compile(src);
+            String literal = ChatTriggers.requiredLiteral(pattern);
+
+            for (int i = 0; i < 2000; i++)
+            {
+                char[] chars = new char[random.nextInt(12)];
+
+                for (int j = 0; j < chars.length; j++)
+                    chars[j] = "abcdefxyz.1".charAt(random.nextInt(11));
+
+                Matcher matcher = pattern.matcher(new String(chars));
+
+                while (literal != null && matcher.find())
+                    assertTrue(src + " matched " + matcher.group() + " without " + literal,
+                            matcher.group().contains(literal));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyLiteral()
+    {
+        new ChatTriggers().register("", (ExceptionConsumer<ChatMatch>) match -> {});
+    }
+
+    private static String literal(String regex)
+    {
+        return ChatTriggers.requiredLiteral(Pattern.compile(regex));
+    }
+
+}
@@ -0,0 +1,158 @@
+package com.coolspy3.csmodloader.network.chat;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import com.coolspy3.csmodloader.util.Utils;
+
+import org.junit.Test;
+
+public class ChatWriterTest
+{
+
+    @Test
+    public void testWrittenMessagesParse() throws IOException
+    {
+        ChatWriter writer = new ChatWriter(4);
+
+        writer.begin().text("Hello ").color("gold").bold(true).italic(false).insertion("ins")
+                .clickEvent("run_command", "/help").hoverEvent("show_text", "tip")
+                .beginExtra().append("plain").begin().translate("chat.type.text").beginWith()
+                .append("Bob").begin().text("hi").end().endList().end().endList().end();
+
+        ChatStyle style = new ChatStyle("gold", true, false, null, null, null, "ins",
+                new ChatEvent("run_command", ChatComponent.text("/help")),
+                new ChatEvent("show_text", ChatComponent.text("tip")));
+        ChatComponent expected = ChatComponent.text("Hello ", style, ChatComponent.text("plain"),
+                ChatComponent.translate("chat.type.text", null, ChatComponent.text("Bob"),
+                        ChatComponent.text("hi")));
+
+        ChatComponent parsed = ChatParser.parse(writer.toString());
+
+        assertEquals(expected, parsed);
+        assertEquals("Hello plain<Bob> hi", parsed.getPlainText());
+    }
+
+    @Test
+    public void testEscaping() throws IOException
+    {
+        StringBuilder text = new StringBuilder("\"\\/\n\r\t\u2028\u2029\ud83d\ude00");
+
+        for (char c = 0; c < 0x800; c++)
+            text.append(c);
+
+        Random random = new Random(0x5EED);
+
+        for (int i = 0; i < 1000; i++)
+            text.append((char) (0x800 + random.nextInt(0xD800 - 0x800)));
+
+        String str = text.toString();
+        ChatWriter writer = new ChatWriter().begin().text(str).end();
+
+        assertEquals(str, ChatParser.parse(writer.toString()).getText());
+
+        writer.reset().begin().text(ChatWriter.escape(str)).end();
+
+        assertEquals(str, ChatParser.parse(writer.toString()).getText());
+    }
+
+    @Test
+    public void testLoneSurrogatesAreReplaced() throws IOException
+    {
+        ChatWriter writer = new ChatWriter().begin().text("a\ud83db").end();
+
+        assertEquals("a?b", ChatParser.parse(writer.toString()).getText());
+    }
+
+    @Test
+    public void testNumbers() throws IOException
+    {
+        long[] values = {0, 7, -7, 10, 1234567890123L, Long.MAX_VALUE, Long.MIN_VALUE};
+        ChatWriter writer = new ChatWriter();
+
+        for (long value : values)
+        {
+            writer.reset().begin().text(value).end();
+
+            assertEquals(Long.toString(value), ChatParser.parse(writer.toString()).getText());
+        }
+    }
+
+    @Test
+    public void testComponents() throws IOException
+    {
+        ChatComponent child = ChatComponent.text("child");
+        ChatWriter.Fragment fragment = ChatWriter.encode(child);
+
+        ChatWriter writer = new ChatWriter().begin().text("").beginExtra().component(child)
+                .component(fragment).endList().end();
+
+        assertEquals(ChatComponent.text("", null, child, child),
+                ChatParser.parse(writer.toString()));
+        assertEquals(child, ChatParser.parse(new ChatWriter().component(child).toString()));
+    }
+
+    @Test
+    public void testEncodings() throws IOException
+    {
+        ChatWriter writer = new ChatWriter().begin().text("\u00e9").end();
+        String json = writer.toString();
+
+        assertArrayEquals(json.getBytes(Utils.CHARSET), writer.toByteArray());
+        assertEquals(writer.toByteArray().length, writer.size());
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        Utils.writeString(json, expected);
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        writer.writeTo(os);
+        assertArrayEquals(expected.toByteArray(), os.toByteArray());
+
+        ByteBuffer buf = ByteBuffer.allocate(expected.size());
+        writer.writeTo(buf);
+        assertArrayEquals(expected.toByteArray(), buf.array());
+
+        ByteBuffer packet = ByteBuffer.wrap(writer.toPacket(ChatWriter.ACTION_BAR));
+        assertEquals(ChatWriter.CHAT_PACKET_ID, Utils.readVarInt(packet));
+        assertEquals(json, Utils.readString(packet));
+        assertEquals(ChatWriter.ACTION_BAR, packet.get());
+        assertFalse(packet.hasRemaining());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testIncompleteMessage()
+    {
+        new ChatWriter().begin().text("a").toByteArray();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSecondTopLevelComponent()
+    {
+        new ChatWriter().begin().end().begin();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testPropertyOutsideComponent()
+    {
+        new ChatWriter().begin().beginExtra().text("a");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAppendOutsideList()
+    {
+        new ChatWriter().begin().append("a");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTextFragmentAsComponent()
+    {
+        new ChatWriter().component(ChatWriter.escape("a"));
+    }
+
+}
@@ -0,0 +1,189 @@
+package com.coolspy3.csmodloader.network.command;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.coolspy3.csmodloader.util.Utils;
+
+import org.junit.Test;
+
+public class CommandRouterTest
+{
+
+    @Test
+    public void testArguments()
+    {
+        CommandRouter router = new CommandRouter();
+        List<CommandContext> calls = new ArrayList<>();
+
+        router.register("/mymod set <key> <value...>", calls::add);
+
+        assertTrue(router.dispatch("/MyMod  SET color  dark red "));
+        assertEquals(1, calls.size());
+
+        CommandContext ctx = calls.get(0);
+
+        assertEquals("MyMod  SET color  dark red ", ctx.getCommand());
+        assertEquals("/mymod set <key> <value...>", ctx.getUsage());
+        assertEquals("color", ctx.getArgument("key"));
+        assertEquals("dark red ", ctx.getArgument("value"));
+        assertNull(ctx.getArgument("missing"));
+        assertEquals(Arrays.asList("key", "value"), new ArrayList<>(ctx.getArguments().keySet()));
+    }
+
+    @Test
+    public void testPrecedence()
+    {
+        CommandRouter router = new CommandRouter();
+        List<String> usages = new ArrayList<>();
+
+        for (String usage : new String[] {"m <a> <b>", "m list <b>", "m <rest...>", "m list all",
+                "m list"})
+            router.register(usage, ctx -> usages.add(ctx.getUsage()));
+
+        router.dispatch("/m list all");
+        router.dispatch("/m list some");
+        router.dispatch("/m x y");
+        router.dispatch("/m x");
+        router.dispatch("/m x y z");
+        router.dispatch("/m list");
+
+        assertEquals(Arrays.asList("m list all", "m list <b>", "m <a> <b>", "m <rest...>",
+                "m <rest...>", "m list"), usages);
+    }
+
+    @Test
+    public void testBacktracking()
+    {
+        CommandRouter router = new CommandRouter();
+        List<CommandContext> calls = new ArrayList<>();
+
+        // The literal branch matches the second token but not the third
+        router.register("m add one", calls::add);
+        router.register("m <a> two", calls::add);
+
+        assertTrue(router.dispatch("/m add two"));
+        assertEquals("add", calls.get(0).getArgument("a"));
+        assertEquals(1, calls.get(0).getArguments().size());
+    }
+
+    @Test
+    public void testLongCommands()
+    {
+        CommandRouter router = new CommandRouter();
+        List<CommandContext> calls = new ArrayList<>();
+
+        router.register("m a b c d e <f> <g> <h> <i>", calls::add);
+
+        assertTrue(router.dispatch("/m a b c d e 1 2 3 4"));
+        assertEquals("4", calls.get(0).getArgument("i"));
+        assertFalse(router.dispatch("/m a b c d e 1 2 3 4 5"));
+    }
+
+    @Test
+    public void testUnmatchedMessages()
+    {
+        CommandRouter router = new CommandRouter();
+
+        assertTrue(router.isEmpty());
+        assertFalse(router.dispatch("/m"));
+
+        router.register("m sub", ctx -> {});
+
+        assertFalse(router.isEmpty());
+        assertFalse(router.dispatch("m sub"));
+        assertFalse(router.dispatch("/m"));
+        assertFalse(router.dispatch("/m other"));
+        assertFalse(router.dispatch("/m sub extra"));
+        assertFalse(router.dispatch("/"));
+        assertFalse(router.dispatch("/other sub"));
+        assertTrue(router.dispatch("/m sub"));
+    }
+
+    @Test
+    public void testThrowingHandlerBlocksMessage()
+    {
+        CommandRouter router = new CommandRouter();
+
+        router.register("m", ctx -> {
+
+            throw new IOException("Expected");
+
+        });
+
+        assertTrue(router.dispatch("/m"));
+    }
+
+    @Test
+    public void testDispatchPacket() throws IOException
+    {
+        CommandRouter router = new CommandRouter();
+        List<CommandContext> calls = new ArrayList<>();
+
+        router.register("m <a>", calls::add);
+
+        assertTrue(router.dispatch(packet("/m x")));
+        assertFalse(router.dispatch(packet("m x")));
+        assertFalse(router.dispatch(packet("")));
+        assertEquals(1, calls.size());
+
+        ByteBuffer buf = packet("/m y");
+        buf.position(0);
+
+        router.dispatch(buf);
+
+        assertEquals(0, buf.position());
+        assertEquals("y", calls.get(1).getArgument("a"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateUsage()
+    {
+        CommandRouter router = new CommandRouter();
+
+        router.register("m <a>", ctx -> {});
+        router.register("/M <b>", ctx -> {});
+    }
+
+    @Test
+    public void testInvalidUsages()
+    {
+        CommandRouter router = new CommandRouter();
+
+        for (String usage : new String[] {"", "/ ", "<a>", "m <a", "m <>", "m <...>",
+                "m <a...> b", "m <a> <a>", "m <a> <a...>"})
+        {
+            try
+            {
+                router.register(usage, ctx -> {});
+            }
+            catch (IllegalArgumentException e)
+            {
+                continue;
+            }
+
+            throw new AssertionError("Accepted usage: " + usage);
+        }
+
+        assertTrue(router.isEmpty());
+    }
+
+    private static ByteBuffer packet(String message)
+    {
+        ByteBuffer buf = ByteBuffer.allocate(64);
+
+        Utils.writeString(message, buf);
+        buf.flip();
+
+        return buf;
+    }
+
+}
@@ -0,0 +1,236 @@
+package com.coolspy3.csmodloader.network.packet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.coolspy3.csmodloader.network.PacketDirection;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class DecodeCacheTest
+{
+
+    @BeforeClass
+    public static void registerPackets()
+    {
+        PacketParser.addSpecification(TextPacket.class,
+                values -> new TextPacket((String) values[0]));
+    }
+
+    @Test
+    public void testCollidingPayloadsAreCachedSeparately()
+    {
+        DecodeCache cache = new DecodeCache(4);
+
+        // Both buffers hash to 992
+        ByteBuffer first = ByteBuffer.wrap(new byte[] {31, 0});
+        ByteBuffer second = ByteBuffer.wrap(new byte[] {0, 1});
+        assertEquals(first.hashCode(), second.hashCode());
+
+        Packet firstPacket = new TextPacket("first");
+        Packet secondPacket = new TextPacket("second");
+
+        cache.put(first, firstPacket);
+        cache.put(second, secondPacket);
+
+        assertEquals(2, cache.size());
+        assertSame(firstPacket, cache.get(ByteBuffer.wrap(new byte[] {31, 0})));
+        assertSame(secondPacket, cache.get(ByteBuffer.wrap(new byte[] {0, 1})));
+        assertNull(cache.get(ByteBuffer.wrap(new byte[] {0, 2})));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted()
+    {
+        DecodeCache cache = new DecodeCache(2);
+
+        Packet a = new TextPacket("a");
+
+        cache.put(ByteBuffer.wrap(new byte[] {1}), a);
+        cache.put(ByteBuffer.wrap(new byte[] {2}), new TextPacket("b"));
+        cache.get(ByteBuffer.wrap(new byte[] {1}));
+        cache.put(ByteBuffer.wrap(new byte[] {3}), new TextPacket("c"));
+
+        assertEquals(2, cache.size());
+        assertSame(a, cache.get(ByteBuffer.wrap(new byte[] {1})));
+        assertNull(cache.get(ByteBuffer.wrap(new byte[] {2})));
+    }
+
+    @Test
+    public void testPutCopiesPayload()
+    {
+        DecodeCache cache = new DecodeCache(1);
+        byte[] data = {1, 2, 3};
+        Packet packet = new TextPacket("a");
+
+        cache.put(ByteBuffer.wrap(data), packet);
+        data[0] = 9;
+
+        assertSame(packet, cache.get(ByteBuffer.wrap(new byte[] {1, 2, 3})));
+    }
+
+    @Test
+    public void testCachesAreIndependent() throws IOException
+    {
+        byte[] data = encode(new TextPacket("hello"));
+
+        DecodeCache first = new DecodeCache(4);
+        DecodeCache second = new DecodeCache(4);
+
+        TextPacket a = PacketParser.read(TextPacket.class, ByteBuffer.wrap(data), null, first);
+        TextPacket b = PacketParser.read(TextPacket.class, ByteBuffer.wrap(data), null, first);
+        TextPacket c = PacketParser.read(TextPacket.class, ByteBuffer.wrap(data), null, second);
+
+        assertSame(a, b);
+        assertNotSame(a, c);
+        assertEquals("hello", c.text);
+        assertEquals(1, first.getHits());
+        assertEquals(1, first.getMisses());
+        assertEquals(0, second.getHits());
+    }
+
+    @Test
+    public void testHitConsumesBuffer() throws IOException
+    {
+        byte[] data = encode(new TextPacket("hello"));
+        DecodeCache cache = new DecodeCache(4);
+
+        PacketParser.read(TextPacket.class, ByteBuffer.wrap(data), null, cache);
+
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        PacketParser.read(TextPacket.class, buf, null, cache);
+
+        assertFalse(buf.hasRemaining());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity()
+    {
+        new DecodeCache(0);
+    }
+
+    @Test
+    public void testOnlyImmutablePacketsAreCached()
+    {
+        assertTrue(PacketParser.isImmutable(TextPacket.class));
+        assertTrue(PacketParser.isImmutable(LazyPacketTest.LazyFieldsPacket.class));
+        assertFalse(PacketParser.isImmutable(MutablePacket.class));
+        assertFalse(PacketParser.isImmutable(ArrayPacket.class));
+        assertFalse(PacketParser.isImmutable(MutableSubclassPacket.class));
+        assertFalse(PacketParser.isImmutable(PacketParserTest.PooledPrimitivePacket.class));
+
+        PacketParser.enableDecodeCache(TextPacket.class, 4);
+
+        try
+        {
+            assertEquals(4, PacketParser.getDecodeCacheCapacity(TextPacket.class));
+        }
+        finally
+        {
+            PacketParser.disableDecodeCache(TextPacket.class);
+        }
+
+        for (Class<? extends Packet> cls : Arrays.<Class<? extends Packet>>asList(
+                MutablePacket.class, ArrayPacket.class, MutableSubclassPacket.class))
+        {
+            try
+            {
+                PacketParser.enableDecodeCache(cls, 4);
+            }
+            catch (IllegalArgumentException e)
+            {
+                assertEquals(0, PacketParser.getDecodeCacheCapacity(cls));
+
+                continue;
+            }
+
+            throw new AssertionError("Enabled caching for: " + cls.getName());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReadRejectsMutablePackets() throws IOException
+    {
+        PacketParser.read(MutablePacket.class, ByteBuffer.wrap(new byte[] {1, 0}), null,
+                new DecodeCache(4));
+    }
+
+    private static byte[] encode(Packet packet) throws IOException
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        PacketParser.write(packet, baos);
+
+        return baos.toByteArray();
+    }
+
+    @PacketSpec(types = String.class, direction = PacketDirection.CLIENTBOUND)
+    public static class TextPacket extends Packet
+    {
+
+        public final String text;
+
+        public TextPacket(String text)
+        {
+            this.text = text;
+        }
+
+        @Override
+        public Object[] getValues()
+        {
+            return new Object[] {text};
+        }
+
+    }
+
+    @PacketSpec(types = String.class, direction = PacketDirection.CLIENTBOUND)
+    public static class MutablePacket extends Packet
+    {
+
+        public String text;
+
+        @Override
+        public Object[] getValues()
+        {
+            return new Object[] {text};
+        }
+
+    }
+
+    @PacketSpec(types = int[].class, direction = PacketDirection.CLIENTBOUND)
+    public static class ArrayPacket extends Packet
+    {
+
+        public final int[] values = new int[0];
+
+        @Override
+        public Object[] getValues()
+        {
+            return new Object[] {values};
+        }
+
+    }
+
+    public static class MutableSubclassPacket extends TextPacket
+    {
+
+        public int counter;
+
+        public MutableSubclassPacket()
+        {
+            super("");
+        }
+
+    }
+
+}
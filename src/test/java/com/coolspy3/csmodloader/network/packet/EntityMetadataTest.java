@@ -0,0 +1,152 @@
+package com.coolspy3.csmodloader.network.packet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class EntityMetadataTest
+{
+
+    private static EntityMetadata sample()
+    {
+        return EntityMetadata.builder().put(0, EntityMetadata.BYTE, (byte) 0x21)
+                .put(1, EntityMetadata.SHORT, (short) 300).put(2, EntityMetadata.STRING, "Bob")
+                .put(6, EntityMetadata.FLOAT, 20f).put(8, EntityMetadata.INT, -5)
+                .put(10, EntityMetadata.SLOT, new Slot(276, 1, 0, null))
+                .put(12, EntityMetadata.POSITION, new Position(1, -2, 3))
+                .put(EntityMetadata.MAX_INDEX, EntityMetadata.ROTATION,
+                        new float[] {1f, 2f, 3f})
+                .build();
+    }
+
+    @Test
+    public void testGetters()
+    {
+        EntityMetadata metadata = sample();
+
+        assertEquals(0x21, metadata.getByte(0));
+        assertEquals(300, metadata.getShort(1));
+        assertEquals("Bob", metadata.getString(2));
+        assertEquals(20f, metadata.getFloat(6), 0);
+        assertEquals(-5, metadata.getInt(8));
+        assertEquals(new Slot(276, 1, 0, null), metadata.getSlot(10));
+        assertEquals(new Position(1, -2, 3), metadata.getPosition(12));
+        assertArrayEquals(new float[] {1f, 2f, 3f},
+                metadata.getRotation(EntityMetadata.MAX_INDEX), 0);
+
+        assertArrayEquals(new int[] {0, 1, 2, 6, 8, 10, 12, EntityMetadata.MAX_INDEX},
+                metadata.indices());
+        assertEquals(EntityMetadata.STRING, metadata.getType(2));
+    }
+
+    @Test
+    public void testMissingIndices()
+    {
+        EntityMetadata metadata = sample();
+
+        assertFalse(metadata.contains(3));
+        assertEquals(-1, metadata.getType(3));
+        assertEquals(0, metadata.getByte(3));
+        assertEquals(0, metadata.getInt(3));
+        assertNull(metadata.getString(3));
+        assertNull(metadata.get(3));
+    }
+
+    @Test(expected = ClassCastException.class)
+    public void testWrongType()
+    {
+        sample().getInt(0);
+    }
+
+    @Test
+    public void testRotationIsCopied()
+    {
+        EntityMetadata metadata = sample();
+
+        metadata.getRotation(EntityMetadata.MAX_INDEX)[0] = 9f;
+
+        assertEquals(1f, metadata.getRotation(EntityMetadata.MAX_INDEX)[0], 0);
+    }
+
+    @Test
+    public void testReadsAgree() throws IOException
+    {
+        EntityMetadata metadata = sample();
+        byte[] encoded = metadata.toByteArray();
+
+        assertEquals(0x7F, encoded[encoded.length - 1]);
+
+        // Surround the list with other bytes
+        ByteBuffer buf = ByteBuffer.allocate(encoded.length + 2);
+        buf.put((byte) 1).put(encoded).put((byte) 42);
+        buf.position(1);
+
+        EntityMetadata fromBuffer = EntityMetadata.read(buf);
+        assertEquals(42, buf.get());
+
+        InputStream is = new ByteArrayInputStream(buf.array(), 1, encoded.length + 1);
+        EntityMetadata fromStream = EntityMetadata.read(is);
+        assertEquals(42, is.read());
+
+        assertEquals(metadata, fromBuffer);
+        assertEquals(metadata, fromStream);
+        assertEquals(metadata, EntityMetadata.wrap(encoded));
+        assertEquals("Bob", fromBuffer.getString(2));
+        assertEquals(new Slot(276, 1, 0, null), fromStream.getSlot(10));
+    }
+
+    @Test
+    public void testSkip() throws IOException
+    {
+        byte[] encoded = sample().toByteArray();
+
+        ByteBuffer buf = ByteBuffer.allocate(encoded.length + 1);
+        buf.put(encoded).put((byte) 42).flip();
+
+        EntityMetadata.skip(buf);
+        assertEquals(42, buf.get());
+
+        InputStream is = new ByteArrayInputStream(buf.array());
+        EntityMetadata.skip(is);
+        assertEquals(42, is.read());
+    }
+
+    @Test(expected = EOFException.class)
+    public void testMissingTerminator() throws IOException
+    {
+        byte[] encoded = sample().toByteArray();
+
+        EntityMetadata.read(ByteBuffer.wrap(encoded, 0, encoded.length - 1));
+    }
+
+    @Test(expected = IOException.class)
+    public void testTrailingBytes() throws IOException
+    {
+        byte[] encoded = sample().toByteArray();
+        byte[] padded = new byte[encoded.length + 1];
+        System.arraycopy(encoded, 0, padded, 0, encoded.length);
+
+        EntityMetadata.wrap(padded);
+    }
+
+    @Test
+    public void testEmpty() throws IOException
+    {
+        EntityMetadata metadata = EntityMetadata.builder().build();
+
+        assertArrayEquals(new byte[] {0x7F}, metadata.toByteArray());
+        assertEquals(0, metadata.indices().length);
+        assertTrue(metadata.equals(EntityMetadata.wrap(new byte[] {0x7F})));
+    }
+
+}
@@ -0,0 +1,245 @@
+package com.coolspy3.csmodloader.network.packet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.coolspy3.csmodloader.network.PacketDirection;
+import com.coolspy3.csmodloader.util.WrapperException;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class LazyPacketTest
+{
+
+    private static final Object[] VALUES =
+            {300, "caf\u00e9 \ud83d\ude00", -9L, "minecraft:stone", 0.5};
+
+    @BeforeClass
+    public static void registerPackets()
+    {
+        PacketParser.addLazySpecification(LazyFieldsPacket.class, LazyFieldsPacket::new);
+        PacketParser.addSpecification(EagerFieldsPacket.class,
+                values -> new EagerFieldsPacket(values.clone()));
+    }
+
+    @Test
+    public void testFieldsDecodeOnAccess() throws IOException
+    {
+        byte[] data = encode();
+        ByteBuffer buf = ByteBuffer.wrap(data);
+
+        LazyFieldsPacket packet = PacketParser.read(LazyFieldsPacket.class, buf);
+        LazyValues values = packet.getLazyValues();
+
+        assertTrue(PacketParser.isLazy(LazyFieldsPacket.class));
+        assertFalse(buf.hasRemaining());
+        assertTrue(values.hasRawData());
+        assertEquals(VALUES.length, values.size());
+
+        for (int i = 0; i < VALUES.length; i++)
+            assertFalse(values.isDecoded(i));
+
+        // Later fields are located by skipping the earlier ones without decoding them
+        assertEquals(VALUES[3], packet.identifier());
+        assertFalse(values.isDecoded(0));
+        assertFalse(values.isDecoded(1));
+        assertFalse(values.isDecoded(2));
+        assertTrue(values.isDecoded(3));
+        assertFalse(values.isDecoded(4));
+
+        // Earlier fields use the cached offsets
+        assertEquals(VALUES[1], packet.name());
+        assertEquals(VALUES[4], packet.scale());
+        assertEquals(VALUES[0], packet.id());
+        assertFalse(values.isDecoded(2));
+    }
+
+    @Test
+    public void testValuesMatchFullRead() throws IOException
+    {
+        byte[] data = encode();
+        EagerFieldsPacket eager = PacketParser.read(EagerFieldsPacket.class, ByteBuffer.wrap(data));
+
+        for (int i = VALUES.length - 1; i >= 0; i--)
+        {
+            LazyFieldsPacket packet =
+                    PacketParser.read(LazyFieldsPacket.class, ByteBuffer.wrap(data));
+
+            assertEquals(eager.getValues()[i], packet.field(i));
+        }
+
+        LazyFieldsPacket fromStream =
+                PacketParser.read(LazyFieldsPacket.class, new ByteArrayInputStream(data));
+
+        assertArrayEquals(eager.getValues(), fromStream.getValues());
+        assertArrayEquals(VALUES, fromStream.getValues());
+    }
+
+    @Test
+    public void testPayloadIsCopied() throws IOException
+    {
+        byte[] data = encode();
+
+        LazyFieldsPacket packet = PacketParser.read(LazyFieldsPacket.class, ByteBuffer.wrap(data));
+
+        Arrays.fill(data, (byte) 0);
+
+        assertArrayEquals(VALUES, packet.getValues());
+    }
+
+    @Test
+    public void testWriteReusesPayload() throws IOException
+    {
+        byte[] data = encode();
+        LazyFieldsPacket packet = PacketParser.read(LazyFieldsPacket.class, ByteBuffer.wrap(data));
+
+        packet.name();
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        PacketParser.write(packet, baos);
+
+        ByteBuffer buf = ByteBuffer.allocate(data.length + 1);
+        buf.put((byte) 42);
+        PacketParser.write(packet, buf);
+
+        assertArrayEquals(data, baos.toByteArray());
+        assertArrayEquals(data, Arrays.copyOfRange(buf.array(), 1, buf.position()));
+
+        // Writing does not decode the remaining fields
+        for (int i = 0; i < VALUES.length; i++)
+            assertEquals(i == 1, packet.getLazyValues().isDecoded(i));
+    }
+
+    @Test
+    public void testConstructedPacketIsEncoded() throws IOException
+    {
+        LazyFieldsPacket packet = new LazyFieldsPacket(VALUES);
+
+        assertFalse(packet.getLazyValues().hasRawData());
+        assertTrue(packet.getLazyValues().isDecoded(0));
+        assertArrayEquals(encode(), encodePacket(packet));
+    }
+
+    @Test
+    public void testCorruptFieldThrowsOnAccess() throws IOException
+    {
+        byte[] data = encode();
+        // Truncate the payload in the middle of the identifier
+        LazyFieldsPacket packet = PacketParser.read(LazyFieldsPacket.class,
+                ByteBuffer.wrap(data, 0, data.length - 12));
+
+        assertEquals(VALUES[2], packet.field(2));
+
+        try
+        {
+            packet.identifier();
+        }
+        catch (WrapperException e)
+        {
+            // Fields before the corrupt one are still readable
+            assertEquals(VALUES[0], packet.id());
+
+            return;
+        }
+
+        throw new AssertionError("Truncated field was decoded");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongValueCount()
+    {
+        new LazyFieldsPacket(1, "a");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testWriteRawWithoutPayload() throws IOException
+    {
+        new LazyFieldsPacket(VALUES).getLazyValues().writeRaw(new ByteArrayOutputStream());
+    }
+
+    private static byte[] encode() throws IOException
+    {
+        return encodePacket(new EagerFieldsPacket(VALUES.clone()));
+    }
+
+    private static byte[] encodePacket(Packet packet) throws IOException
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        PacketParser.write(packet, baos);
+
+        return baos.toByteArray();
+    }
+
+    @PacketSpec(types = {Packet.VarInt.class, String.class, Long.class, Packet.Identifier.class,
+            Double.class}, direction = PacketDirection.CLIENTBOUND)
+    public static class LazyFieldsPacket extends LazyPacket
+    {
+
+        public LazyFieldsPacket(Object... values)
+        {
+            super(values);
+        }
+
+        public LazyFieldsPacket(LazyValues values)
+        {
+            super(values);
+        }
+
+        public int id()
+        {
+            return get(0);
+        }
+
+        public String name()
+        {
+            return get(1);
+        }
+
+        public String identifier()
+        {
+            return get(3);
+        }
+
+        public double scale()
+        {
+            return get(4);
+        }
+
+        public Object field(int index)
+        {
+            return get(index);
+        }
+
+    }
+
+    @PacketSpec(types = {Packet.VarInt.class, String.class, Long.class, Packet.Identifier.class,
+            Double.class}, direction = PacketDirection.CLIENTBOUND)
+    public static class EagerFieldsPacket extends Packet
+    {
+
+        private final Object[] values;
+
+        public EagerFieldsPacket(Object[] values)
+        {
+            this.values = values;
+        }
+
+        @Override
+        public Object[] getValues()
+        {
+            return values.clone();
+        }
+
+    }
+
+}
@@ -0,0 +1,320 @@
+package com.coolspy3.csmodloader.network.packet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import com.coolspy3.csmodloader.network.PacketDirection;
+import com.coolspy3.csmodloader.util.WrapperException;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class PacketFilterTest
+{
+
+    /**
+     * Contains 2-, 3- and 4-byte UTF-8 sequences
+     */
+    private static final String STR = "caf\u00e9 \u4e2d\ud83d\ude00!";
+
+    @BeforeClass
+    public static void registerPackets()
+    {
+        PacketParser.addSpecification(FilterPacket.class, FilterPacket::new);
+    }
+
+    @Test
+    public void testStringFilters() throws IOException
+    {
+        PacketView view = view(sample(300, STR));
+
+        assertTrue(PacketFilter.equalTo(4, STR).test(view));
+        assertFalse(PacketFilter.equalTo(4, "caf\u00e9 \u4e2d\ud83d\ude00").test(view));
+        assertFalse(PacketFilter.equalTo(4, STR + "!").test(view));
+        assertFalse(PacketFilter.equalTo(4, "cafe \u4e2d\ud83d\ude00!").test(view));
+        assertFalse(PacketFilter.equalTo(4, "").test(view));
+
+        assertTrue(PacketFilter.startsWith(4, "caf\u00e9").test(view));
+        assertTrue(PacketFilter.startsWith(4, STR).test(view));
+        assertTrue(PacketFilter.startsWith(4, "").test(view));
+        assertFalse(PacketFilter.startsWith(4, "cafe").test(view));
+        assertFalse(PacketFilter.startsWith(4, "\u00e9").test(view));
+        assertFalse(PacketFilter.startsWith(4, STR + "!").test(view));
+
+        assertTrue(PacketFilter.contains(4, "\u4e2d").test(view));
+        assertTrue(PacketFilter.contains(4, "\ud83d\ude00!").test(view));
+        assertTrue(PacketFilter.contains(4, "\u00e9 \u4e2d").test(view));
+        assertTrue(PacketFilter.contains(4, STR).test(view));
+        assertTrue(PacketFilter.contains(4, "").test(view));
+        assertFalse(PacketFilter.contains(4, "\u4e2e").test(view));
+        assertFalse(PacketFilter.contains(4, "\ud83d\ude01").test(view));
+        // An unpaired surrogate is encoded as '?', which does not occur in the field
+        assertFalse(PacketFilter.contains(4, "\ud83d").test(view));
+        assertFalse(PacketFilter.contains(4, STR + "!").test(view));
+
+        PacketView empty = view(sample(300, ""));
+
+        assertTrue(PacketFilter.equalTo(4, "").test(empty));
+        assertTrue(PacketFilter.contains(4, "").test(empty));
+        assertFalse(PacketFilter.contains(4, "c").test(empty));
+        assertFalse(PacketFilter.startsWith(4, "c").test(empty));
+    }
+
+    @Test
+    public void testBetween() throws IOException
+    {
+        PacketView view = view(sample(300, STR));
+
+        // VarInt
+        assertTrue(PacketFilter.equalTo(0, 300).test(view));
+        assertTrue(PacketFilter.between(0, 300, 400).test(view));
+        assertTrue(PacketFilter.between(0, 0, 300).test(view));
+        assertFalse(PacketFilter.between(0, 301, 400).test(view));
+        assertFalse(PacketFilter.between(0, -1, 299).test(view));
+        assertTrue(PacketFilter.between(0, 299.5, 300.5).test(view));
+
+        // VarLong
+        assertTrue(PacketFilter.equalTo(1, Long.MIN_VALUE).test(view));
+        assertTrue(PacketFilter.between(1, Long.MIN_VALUE, 0).test(view));
+        assertFalse(PacketFilter.between(1, Long.MIN_VALUE + 1, Long.MAX_VALUE).test(view));
+
+        // Float and double
+        assertTrue(PacketFilter.between(2, 1.5, 1.5).test(view));
+        assertTrue(PacketFilter.between(2, 1.0, 2.0).test(view));
+        assertFalse(PacketFilter.between(2, 1.6, 2.0).test(view));
+        assertFalse(PacketFilter.between(2, 0.0, 1.4).test(view));
+        assertTrue(PacketFilter.between(3, -0.25, 0.0).test(view));
+        assertFalse(PacketFilter.between(3, -0.2, 0.0).test(view));
+
+        // Fixed-width fields following the variable-length fields
+        assertTrue(PacketFilter.equalTo(5, 7).test(view));
+        assertTrue(PacketFilter.equalTo(6, true).test(view));
+        assertFalse(PacketFilter.equalTo(6, false).test(view));
+        assertTrue(PacketFilter.equalTo(7, new UUID(5, -6)).test(view));
+        assertFalse(PacketFilter.equalTo(7, new UUID(5, 6)).test(view));
+        assertTrue(PacketFilter.equalTo(8, -2).test(view));
+
+        // Negative VarInts use the maximum encoded length
+        PacketView negative = view(sample(-1, STR));
+
+        assertTrue(PacketFilter.between(0, Integer.MIN_VALUE, -1).test(negative));
+        assertFalse(PacketFilter.between(0, 0, Integer.MAX_VALUE).test(negative));
+        assertTrue(PacketFilter.equalTo(4, STR).test(negative));
+    }
+
+    @Test
+    public void testCombinatorsShortCircuit() throws IOException
+    {
+        PacketView view = view(sample(300, STR));
+        CountingFilter yes = new CountingFilter(true);
+        CountingFilter no = new CountingFilter(false);
+
+        assertFalse(no.and(yes).test(view));
+        assertEquals(1, no.count);
+        assertEquals(0, yes.count);
+
+        assertTrue(yes.or(no).test(view));
+        assertEquals(1, yes.count);
+        assertEquals(1, no.count);
+
+        assertTrue(yes.and(no.negate()).test(view));
+        assertTrue(no.or(yes).test(view));
+        assertFalse(yes.negate().test(view));
+        assertEquals(4, yes.count);
+        assertEquals(3, no.count);
+
+        // A short-circuited filter which would throw is never evaluated
+        assertFalse(no.and(new ThrowingFilter()).test(view));
+        assertTrue(yes.or(new ThrowingFilter()).test(view));
+    }
+
+    @Test
+    public void testValidate()
+    {
+        PacketFilter.equalTo(0, 300).and(PacketFilter.between(1, 0, 1))
+                .or(PacketFilter.between(2, 0.0, 1.0).negate())
+                .and(PacketFilter.between(0, 0.0, 1.0)).and(PacketFilter.contains(4, "a"))
+                .and(PacketFilter.equalTo(6, true)).and(PacketFilter.equalTo(7, new UUID(0, 0)))
+                .validate(FilterPacket.class);
+
+        assertInvalid(PacketFilter.equalTo(9, 0));
+        assertInvalid(PacketFilter.equalTo(Integer.MAX_VALUE, "a"));
+        assertInvalid(PacketFilter.equalTo(2, 1));
+        assertInvalid(PacketFilter.equalTo(4, 1));
+        assertInvalid(PacketFilter.between(6, 0.0, 1.0));
+        assertInvalid(PacketFilter.equalTo(0, "a"));
+        assertInvalid(PacketFilter.startsWith(7, "a"));
+        assertInvalid(PacketFilter.equalTo(0, true));
+        assertInvalid(PacketFilter.equalTo(4, new UUID(0, 0)));
+
+        // Invalid operands of combinators are found wherever they are
+        assertInvalid(PacketFilter.equalTo(0, 300).and(PacketFilter.equalTo(9, 0)));
+        assertInvalid(PacketFilter.equalTo(9, 0).or(PacketFilter.equalTo(0, 300)));
+        assertInvalid(PacketFilter.equalTo(4, 1).negate());
+
+        try
+        {
+            PacketFilter.equalTo(0, 300).validate(UnregisteredPacket.class);
+        }
+        catch (IllegalArgumentException e)
+        {
+            return;
+        }
+
+        throw new AssertionError("Filter was validated against an unregistered packet");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeFieldIndex()
+    {
+        PacketFilter.equalTo(-1, 0);
+    }
+
+    @Test(expected = WrapperException.class)
+    public void testCorruptStringThrows() throws IOException
+    {
+        byte[] data = encode(sample(300, STR));
+        // The length of the String follows the VarInt, VarLong, float and double
+        int lengthOffset = 2 + 10 + 4 + 8;
+
+        assertEquals(STR.getBytes(StandardCharsets.UTF_8).length, data[lengthOffset]);
+        data[lengthOffset] = 0x7F;
+
+        PacketView view = new PacketView();
+        view.bind(FilterPacket.class, ByteBuffer.wrap(data, 0, lengthOffset + 4).slice());
+
+        PacketFilter.contains(4, "a").test(view);
+    }
+
+    /**
+     * @return A filter which can be applied to any packet, but fails whenever it is evaluated
+     */
+    public static PacketFilter failing()
+    {
+        return new ThrowingFilter();
+    }
+
+    private static void assertInvalid(PacketFilter filter)
+    {
+        try
+        {
+            filter.validate(FilterPacket.class);
+        }
+        catch (IllegalArgumentException e)
+        {
+            return;
+        }
+
+        throw new AssertionError("Filter " + filter + " was validated");
+    }
+
+    private static Object[] sample(int varInt, String str)
+    {
+        return new Object[] {varInt, Long.MIN_VALUE, 1.5f, -0.25, str, 7, true, new UUID(5, -6),
+                (byte) -2};
+    }
+
+    private static byte[] encode(Object[] values) throws IOException
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        PacketParser.write(new FilterPacket(values), baos);
+
+        return baos.toByteArray();
+    }
+
+    private static PacketView view(Object[] values) throws IOException
+    {
+        PacketView view = new PacketView();
+
+        assertTrue(view.bind(FilterPacket.class, ByteBuffer.wrap(encode(values))));
+
+        return view;
+    }
+
+    /**
+     * A filter which counts its evaluations
+     */
+    private static final class CountingFilter extends PacketFilter
+    {
+
+        private final boolean result;
+        private int count = 0;
+
+        CountingFilter(boolean result)
+        {
+            this.result = result;
+        }
+
+        @Override
+        public boolean test(PacketView view)
+        {
+            count++;
+
+            return result;
+        }
+
+        @Override
+        void validate(Class<?>[] layout)
+        {}
+
+    }
+
+    /**
+     * A filter which fails whenever it is evaluated
+     */
+    private static final class ThrowingFilter extends PacketFilter
+    {
+
+        @Override
+        public boolean test(PacketView view)
+        {
+            throw new WrapperException(new IOException("Filter failed"));
+        }
+
+        @Override
+        void validate(Class<?>[] layout)
+        {}
+
+    }
+
+    @PacketSpec(types = {Packet.VarInt.class, Packet.VarLong.class, Float.class, Double.class,
+            String.class, Integer.class, Boolean.class, UUID.class, Byte.class},
+            direction = PacketDirection.CLIENTBOUND)
+    public static class FilterPacket extends Packet
+    {
+
+        private final Object[] values;
+
+        public FilterPacket(Object[] values)
+        {
+            this.values = values;
+        }
+
+        @Override
+        public Object[] getValues()
+        {
+            return values.clone();
+        }
+
+    }
+
+    @PacketSpec(types = {Integer.class}, direction = PacketDirection.CLIENTBOUND)
+    public static class UnregisteredPacket extends Packet
+    {
+
+        @Override
+        public Object[] getValues()
+        {
+            return new Object[] {0};
+        }
+
+    }
+
+}
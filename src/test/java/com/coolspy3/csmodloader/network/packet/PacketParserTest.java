@@ -0,0 +1,159 @@
+package com.coolspy3.csmodloader.network.packet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+
+import com.coolspy3.csmodloader.network.PacketDirection;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class PacketParserTest
+{
+
+    @BeforeClass
+    public static void registerPackets()
+    {
+        PacketParser.addSpecification(PrimitivePacket.class, values -> new PrimitivePacket(
+                (Integer) values[0], (String) values[1], (Boolean) values[2], (Long) values[3]));
+        PacketParser.addPooledSpecification(PooledPrimitivePacket.class,
+                PooledPrimitivePacket::new);
+    }
+
+    @Test
+    public void testFullRead() throws IOException
+    {
+        byte[] data = encode(new PrimitivePacket(7, "abc", true, 9L));
+
+        PrimitivePacket packet = PacketParser.read(PrimitivePacket.class, ByteBuffer.wrap(data));
+
+        assertEquals(7, packet.id);
+        assertEquals("abc", packet.name);
+        assertEquals(true, packet.flag);
+        assertEquals(9L, packet.time);
+    }
+
+    @Test
+    public void testProjectionSkipsPrimitivesFromBuffer() throws IOException
+    {
+        byte[] data = encode(new PrimitivePacket(7, "abc", true, 9L));
+
+        PrimitivePacket packet =
+                PacketParser.read(PrimitivePacket.class, ByteBuffer.wrap(data), fields(1));
+
+        assertEquals(0, packet.id);
+        assertEquals("abc", packet.name);
+        assertFalse(packet.flag);
+        assertEquals(0L, packet.time);
+    }
+
+    @Test
+    public void testProjectionSkipsPrimitivesFromStream() throws IOException
+    {
+        byte[] data = encode(new PrimitivePacket(7, "abc", true, 9L));
+
+        PrimitivePacket packet = PacketParser.read(PrimitivePacket.class,
+                new ByteArrayInputStream(data), fields(0));
+
+        assertEquals(7, packet.id);
+        assertNull(packet.name);
+        assertFalse(packet.flag);
+        assertEquals(0L, packet.time);
+    }
+
+    @Test
+    public void testProjectionSkipsPrimitivesIntoPooledPacket() throws IOException
+    {
+        byte[] data = encode(new PrimitivePacket(7, "abc", true, 9L));
+        PooledPrimitivePacket packet = new PooledPrimitivePacket();
+
+        assertSame(packet,
+                PacketParser.readInto(packet, ByteBuffer.wrap(data), fields(1, 3)));
+
+        assertEquals(0, packet.id);
+        assertEquals("abc", packet.name);
+        assertFalse(packet.flag);
+        assertEquals(9L, packet.time);
+    }
+
+    private static byte[] encode(Packet packet) throws IOException
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        PacketParser.write(packet, baos);
+
+        return baos.toByteArray();
+    }
+
+    private static BitSet fields(int... indices)
+    {
+        BitSet fields = new BitSet();
+
+        for (int index : indices)
+            fields.set(index);
+
+        return fields;
+    }
+
+    @PacketSpec(types = {Integer.class, String.class, Boolean.class, Long.class},
+            direction = PacketDirection.CLIENTBOUND)
+    public static class PrimitivePacket extends Packet
+    {
+
+        public final int id;
+        public final String name;
+        public final boolean flag;
+        public final long time;
+
+        public PrimitivePacket(int id, String name, boolean flag, long time)
+        {
+            this.id = id;
+            this.name = name;
+            this.flag = flag;
+            this.time = time;
+        }
+
+        @Override
+        public Object[] getValues()
+        {
+            return new Object[] {id, name, flag, time};
+        }
+
+    }
+
+    @PacketSpec(types = {Integer.class, String.class, Boolean.class, Long.class},
+            direction = PacketDirection.CLIENTBOUND)
+    public static class PooledPrimitivePacket extends PooledPacket
+    {
+
+        public int id;
+        public String name;
+        public boolean flag;
+        public long time;
+
+        @Override
+        protected void load(Object[] values)
+        {
+            id = (Integer) values[0];
+            name = (String) values[1];
+            flag = (Boolean) values[2];
+            time = (Long) values[3];
+        }
+
+        @Override
+        public Object[] getValues()
+        {
+            return new Object[] {id, name, flag, time};
+        }
+
+    }
+
+}
@@ -0,0 +1,204 @@
+package com.coolspy3.csmodloader.network.packet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+import com.coolspy3.csmodloader.network.PacketDirection;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class PacketViewTest
+{
+
+    @BeforeClass
+    public static void registerPackets()
+    {
+        PacketParser.addSpecification(AllTypesPacket.class,
+                values -> new AllTypesPacket(values.clone()));
+    }
+
+    @Test
+    public void testAccessorsMatchFullRead() throws IOException
+    {
+        ByteBuffer buf = frame(sample("first", -5L), 3);
+        Object[] expected = PacketParser.read(AllTypesPacket.class, buf.duplicate()).getValues();
+        PacketView view = new PacketView();
+
+        assertTrue(view.bind(AllTypesPacket.class, buf));
+        assertSame(AllTypesPacket.class, view.getPacketClass());
+        assertEquals(expected.length, view.size());
+
+        // Read in reverse so that every offset is located by skipping
+        assertArrayEquals((int[]) expected[12], (int[]) view.getObject(12));
+        assertEquals(Position.pack(1, 2, 3), view.getPackedPosition(11));
+        assertEquals(expected[10], view.getUUID(10));
+        assertEquals(expected[9], view.getString(9));
+        assertEquals(expected[8], view.getVarLong(8));
+        assertEquals(expected[7], view.getVarInt(7));
+        assertEquals(expected[6], view.getDouble(6));
+        assertEquals(expected[5], view.getFloat(5));
+        assertEquals(expected[4], view.getLong(4));
+        assertEquals(expected[3], view.getInt(3));
+        assertEquals(expected[2], view.getShort(2));
+        assertEquals(expected[1], view.getByte(1));
+        assertEquals(expected[0], view.getBoolean(0));
+
+        for (int i = 0; i < expected.length; i++)
+        {
+            Object value = view.getObject(i);
+
+            if (value instanceof int[]) assertArrayEquals((int[]) expected[i], (int[]) value);
+            else assertEquals(expected[i], value);
+        }
+
+        assertEquals(Packet.VarInt.class, view.getType(7));
+        assertEquals(3, buf.position());
+    }
+
+    @Test
+    public void testAccessorsRestorePosition() throws IOException
+    {
+        ByteBuffer buf = frame(sample("abc", 1L << 40), 0);
+        PacketView view = new PacketView();
+
+        view.bind(AllTypesPacket.class, buf);
+
+        view.getString(9);
+        assertEquals(0, buf.position());
+        view.getVarLong(8);
+        assertEquals(0, buf.position());
+        view.getObject(12);
+        assertEquals(0, buf.position());
+        view.fieldOffset(12);
+        assertEquals(0, buf.position());
+        assertSame(buf, view.getBuffer());
+    }
+
+    @Test
+    public void testRebindResetsOffsets() throws IOException
+    {
+        PacketView view = new PacketView();
+
+        view.bind(AllTypesPacket.class, frame(sample("a", 1L), 0));
+
+        assertEquals(1L, view.getVarLong(8));
+        assertEquals("a", view.getString(9));
+
+        // Different string and VarLong lengths move the following fields
+        ByteBuffer buf = frame(sample("a much longer string", Long.MIN_VALUE), 7);
+        Object[] expected = PacketParser.read(AllTypesPacket.class, buf.duplicate()).getValues();
+
+        view.bind(AllTypesPacket.class, buf);
+
+        assertEquals(Long.MIN_VALUE, view.getVarLong(8));
+        assertEquals("a much longer string", view.getString(9));
+        assertEquals(expected[10], view.getUUID(10));
+        assertEquals(Position.pack(1, 2, 3), view.getPackedPosition(11));
+    }
+
+    @Test
+    public void testRelease() throws IOException
+    {
+        PacketView view = new PacketView();
+
+        view.bind(AllTypesPacket.class, frame(sample("a", 1L), 0));
+        view.release();
+
+        assertFalse(view.isBound());
+
+        try
+        {
+            view.getInt(3);
+        }
+        catch (IllegalStateException e)
+        {
+            return;
+        }
+
+        throw new AssertionError("Released view was readable");
+    }
+
+    @Test
+    public void testBindRequiresDefaultSerialization()
+    {
+        assertFalse(new PacketView().bind(UnregisteredPacket.class, ByteBuffer.allocate(4)));
+    }
+
+    @Test(expected = ClassCastException.class)
+    public void testWrongType() throws IOException
+    {
+        PacketView view = new PacketView();
+
+        view.bind(AllTypesPacket.class, frame(sample("a", 1L), 0));
+        view.getLong(3);
+    }
+
+    private static Object[] sample(String str, long varLong)
+    {
+        return new Object[] {true, (byte) -2, (short) 300, -70000, Long.MAX_VALUE, 1.5f, -0.25,
+                1 << 21, varLong, str, new UUID(5, -6), new Position(1, 2, 3),
+                new int[] {1, -1}};
+    }
+
+    /**
+     * @param values The values of the packet
+     * @param offset The number of bytes to insert before the packet
+     *
+     * @return A buffer positioned at the start of the encoded packet
+     */
+    private static ByteBuffer frame(Object[] values, int offset) throws IOException
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        baos.write(new byte[offset]);
+        PacketParser.write(new AllTypesPacket(values), baos);
+
+        ByteBuffer buf = ByteBuffer.wrap(baos.toByteArray());
+        buf.position(offset);
+
+        return buf;
+    }
+
+    @PacketSpec(types = {Boolean.class, Byte.class, Short.class, Integer.class, Long.class,
+            Float.class, Double.class, Packet.VarInt.class, Packet.VarLong.class, String.class,
+            UUID.class, Position.class, int[].class}, direction = PacketDirection.CLIENTBOUND)
+    public static class AllTypesPacket extends Packet
+    {
+
+        private final Object[] values;
+
+        public AllTypesPacket(Object[] values)
+        {
+            this.values = values;
+        }
+
+        @Override
+        public Object[] getValues()
+        {
+            return values.clone();
+        }
+
+    }
+
+    @PacketSpec(types = {Integer.class}, direction = PacketDirection.CLIENTBOUND)
+    public static class UnregisteredPacket extends Packet
+    {
+
+        @Override
+        public Object[] getValues()
+        {
+            return new Object[] {0};
+        }
+
+    }
+
+}
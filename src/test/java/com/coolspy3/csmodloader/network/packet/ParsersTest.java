@@ -0,0 +1,231 @@
+package com.coolspy3.csmodloader.network.packet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Objects;
+import java.util.UUID;
+
+import com.coolspy3.csmodloader.network.PacketDirection;
+import com.coolspy3.csmodloader.util.Utils;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class ParsersTest
+{
+
+    private static final int SERIALIZED_PACKET_ID = 0x7C;
+
+    @BeforeClass
+    public static void registerPackets()
+    {
+        PacketParser.addSpecification(FieldsPacket.class,
+                values -> new FieldsPacket((Integer) values[0], (String) values[1],
+                        (Integer) values[2], (Byte[]) values[3], (Double) values[4]));
+        PacketParser.registerPacket(SerializedPacket.class, new StreamSerializer(),
+                SERIALIZED_PACKET_ID);
+    }
+
+    @Test
+    public void testNumbers() throws IOException
+    {
+        assertCodecsAgree(Boolean.class, true, false);
+        assertCodecsAgree(Byte.class, (byte) 0, (byte) -1, Byte.MAX_VALUE);
+        assertCodecsAgree(Short.class, (short) 0, (short) -2, Short.MIN_VALUE);
+        assertCodecsAgree(Integer.class, 0, -3, Integer.MAX_VALUE, Integer.MIN_VALUE);
+        assertCodecsAgree(Long.class, 0L, -4L, Long.MAX_VALUE, Long.MIN_VALUE);
+        assertCodecsAgree(Float.class, 0f, -1.5f, Float.MAX_VALUE, Float.NaN);
+        assertCodecsAgree(Double.class, 0d, -2.5, Double.MIN_VALUE, Double.NEGATIVE_INFINITY);
+    }
+
+    @Test
+    public void testVariableLength() throws IOException
+    {
+        assertCodecsAgree(Packet.VarInt.class, 0, 300, -1, Integer.MAX_VALUE);
+        assertCodecsAgree(Packet.VarLong.class, 0L, 1L << 40, -1L, Long.MIN_VALUE);
+        assertCodecsAgree(String.class, "", "abc", "\u00e9\u4e2d\ud83d\ude00");
+        assertCodecsAgree(Packet.Identifier.class, "minecraft:stone", "MC|Brand");
+        assertCodecsAgree(UUID.class, new UUID(0, 0), UUID.randomUUID());
+        assertCodecsAgree(byte[].class, new byte[0], new byte[] {1, -2, 3});
+        assertCodecsAgree(Byte[].class, new Byte[0], new Byte[] {1, -2, 3});
+    }
+
+    @Test
+    public void testArraysAndPositions() throws IOException
+    {
+        assertCodecsAgree(int[].class, new int[0], new int[] {1, -1, Integer.MIN_VALUE});
+        assertCodecsAgree(long[].class, new long[0], new long[] {1, -1, Long.MAX_VALUE});
+        assertCodecsAgree(Packet.VarIntArray.class, new int[0], new int[] {0, 128, -1});
+        assertCodecsAgree(Position.class, new Position(0, 0, 0), new Position(-30000, 255, 12));
+        assertCodecsAgree(BitSet.class, new BitSet(), BitSet.valueOf(new long[] {5, 0, -1}));
+    }
+
+    @Test
+    public void testPacketBufferRoundTrip() throws IOException
+    {
+        FieldsPacket packet = new FieldsPacket(-7, "abc", 1 << 20, new Byte[] {4, 5}, 0.25);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        PacketParser.write(packet, baos);
+
+        ByteBuffer buf = ByteBuffer.allocate(baos.size() + 4);
+        PacketParser.write(packet, buf);
+
+        assertEquals(baos.size(), buf.position());
+        assertArrayEquals(baos.toByteArray(), Arrays.copyOf(buf.array(), buf.position()));
+
+        buf.flip();
+        FieldsPacket read = PacketParser.read(FieldsPacket.class, buf);
+
+        assertFalse(buf.hasRemaining());
+        assertArrayEquals(packet.getValues(), read.getValues());
+    }
+
+    @Test
+    public void testSerializerDefaultsToStreams() throws IOException
+    {
+        SerializedPacket packet = new SerializedPacket(0x0102030405060708L);
+
+        ByteBuffer buf = ByteBuffer.allocate(16);
+        PacketParser.write(packet, buf);
+
+        assertEquals(8, buf.position());
+
+        buf.put((byte) 42);
+        buf.flip();
+
+        assertEquals(packet.value, PacketParser.read(SerializedPacket.class, buf).value);
+        assertEquals(42, buf.get());
+    }
+
+    /**
+     * Checks that encoding, decoding and skipping each value produce the same results through
+     * streams and buffers
+     *
+     * @param <T> The type of the values
+     * @param type The type whose parser to test
+     * @param values The values to test
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    @SafeVarargs
+    @SuppressWarnings("unchecked")
+    static <T> void assertCodecsAgree(Class<?> type, T... values) throws IOException
+    {
+        ObjectParser<T> parser = (ObjectParser<T>) PacketParser.getObjectParser(type);
+
+        assertNotNull(type.getName(), parser);
+        assertTrue(type.getName(), parser.supportsBuffers());
+
+        for (T value : values)
+        {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            parser.encode(value, baos);
+            byte[] expected = baos.toByteArray();
+
+            // Trailing bytes ensure that nothing reads past the value
+            ByteBuffer buf = ByteBuffer.allocate(expected.length + 1);
+            parser.encode(value, buf);
+
+            assertEquals(expected.length, buf.position());
+            assertArrayEquals(expected, Arrays.copyOf(buf.array(), expected.length));
+
+            buf.put((byte) 42);
+            buf.flip();
+
+            assertTrue(Objects.deepEquals(value, parser.decode(buf)));
+            assertEquals(42, buf.get(buf.position()));
+
+            buf.rewind();
+            parser.skip(buf);
+            assertEquals(expected.length, buf.position());
+
+            InputStream is = new ByteArrayInputStream(buf.array());
+            assertTrue(Objects.deepEquals(value, parser.decode(is)));
+            assertEquals(42, is.read());
+
+            is = new ByteArrayInputStream(buf.array());
+            parser.skip(is);
+            assertEquals(42, is.read());
+        }
+    }
+
+    @PacketSpec(types = {Integer.class, String.class, Packet.VarInt.class, Byte[].class,
+            Double.class}, direction = PacketDirection.CLIENTBOUND)
+    public static class FieldsPacket extends Packet
+    {
+
+        private final Object[] values;
+
+        public FieldsPacket(Integer a, String b, Integer c, Byte[] d, Double e)
+        {
+            this.values = new Object[] {a, b, c, d, e};
+        }
+
+        @Override
+        public Object[] getValues()
+        {
+            return values;
+        }
+
+    }
+
+    @PacketSpec(types = {}, direction = PacketDirection.CLIENTBOUND)
+    public static class SerializedPacket extends Packet
+    {
+
+        public final long value;
+
+        public SerializedPacket(long value)
+        {
+            this.value = value;
+        }
+
+        @Override
+        public Object[] getValues()
+        {
+            return null;
+        }
+
+    }
+
+    /**
+     * A serializer which only implements the stream methods
+     */
+    private static class StreamSerializer implements PacketSerializer<SerializedPacket>
+    {
+
+        @Override
+        public Class<SerializedPacket> getType()
+        {
+            return SerializedPacket.class;
+        }
+
+        @Override
+        public SerializedPacket read(InputStream is) throws IOException
+        {
+            return new SerializedPacket(
+                    Utils.fromBytes(Utils.readNBytes(is, 8), ByteBuffer::getLong));
+        }
+
+        @Override
+        public void write(SerializedPacket packet, OutputStream os) throws IOException
+        {
+            os.write(Utils.getBytes(packet.value, 8, ByteBuffer::putLong));
+        }
+
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.coolspy3.csmodloader.network.packet;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class PositionTest
+{
+
+    @Test
+    public void testLayout()
+    {
+        assertEquals(1L << 38 | 2L << 26 | 3L, Position.pack(1, 2, 3));
+        assertEquals(-1L, Position.pack(-1, -1, -1));
+    }
+
+    @Test
+    public void testRoundTrip()
+    {
+        int[] xz = {0, 1, -1, 33554431, -33554432, 12345, -54321};
+        int[] ys = {0, 1, -1, 255, 2047, -2048};
+
+        for (int x : xz)
+            for (int y : ys)
+                for (int z : xz)
+                {
+                    Position position = new Position(x, y, z);
+                    long packed = position.pack();
+
+                    assertEquals(x, Position.unpackX(packed));
+                    assertEquals(y, Position.unpackY(packed));
+                    assertEquals(z, Position.unpackZ(packed));
+                    assertEquals(position, Position.unpack(packed));
+                }
+    }
+
+    @Test
+    public void testOnlyLowerBitsAreEncoded()
+    {
+        assertEquals(Position.pack(0, 0, 0), Position.pack(1 << 26, 1 << 12, 1 << 26));
+    }
+
+}
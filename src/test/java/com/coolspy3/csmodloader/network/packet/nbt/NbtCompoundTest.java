@@ -0,0 +1,188 @@
+package com.coolspy3.csmodloader.network.packet.nbt;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.coolspy3.csmodloader.network.packet.nbt.NbtTest.TagWriter;
+
+import org.junit.Test;
+
+public class NbtCompoundTest
+{
+
+    @Test
+    public void testGetters() throws IOException
+    {
+        NbtCompound compound = NbtCompound.wrap(NbtTest.sample());
+
+        assertEquals(1, compound.getByte("b"));
+        assertEquals(-2, compound.getShort("s"));
+        assertEquals(3, compound.getInt("i"));
+        assertEquals(4, compound.getLong("l"));
+        assertEquals(1.5f, compound.getFloat("f"), 0);
+        assertEquals(-2.5, compound.getDouble("d"), 0);
+        assertEquals("plain", compound.getString("str"));
+        assertArrayEquals(new byte[] {1, 2, 3}, compound.getByteArray("ba"));
+        assertArrayEquals(new int[] {1, -1}, compound.getIntArray("ia"));
+        assertArrayEquals(new long[] {Long.MAX_VALUE}, compound.getLongArray("la"));
+        assertEquals(Nbt.LIST, compound.getType("ints"));
+        assertEquals(Integer.valueOf(3), compound.get("i"));
+
+        assertEquals(0, compound.getInt("missing"));
+        assertEquals(0, compound.getDouble("missing"), 0);
+        assertNull(compound.getString("missing"));
+        assertNull(compound.getCompound("missing"));
+        assertNull(compound.get("missing"));
+        assertEquals(Nbt.END, compound.getType("missing"));
+    }
+
+    @Test(expected = ClassCastException.class)
+    public void testWrongType() throws IOException
+    {
+        NbtCompound.wrap(NbtTest.sample()).getLong("i");
+    }
+
+    @Test
+    public void testNonAsciiNames() throws IOException
+    {
+        NbtCompound compound = NbtCompound.wrap(NbtTest.sample());
+
+        assertTrue(compound.contains(NbtTest.NON_ASCII));
+        assertEquals("\u4e2d\u0000\ud83d\ude00", compound.getString(NbtTest.NON_ASCII));
+        assertEquals("nul", compound.getString("a\u0000b"));
+        assertEquals("emoji", compound.getString("\ud83d\ude00"));
+
+        // Names which only share a prefix or differ in encoding are not matched
+        assertFalse(compound.contains("\u00e9t\u00e9!"));
+        assertFalse(compound.contains("ete"));
+        assertFalse(compound.contains("a"));
+        assertFalse(compound.contains("\ud83d"));
+    }
+
+    @Test
+    public void testKeys() throws IOException
+    {
+        NbtCompound compound = NbtCompound.wrap(NbtTest.sample());
+
+        assertEquals(Arrays.asList("b", "s", "i", "l", "f", "d", "str", NbtTest.NON_ASCII, "ba",
+                "ia", "la", "ints", "names", "items", "nested", "a\u0000b", "\ud83d\ude00"),
+                Arrays.asList(compound.keySet().toArray()));
+        assertEquals(17, compound.size());
+    }
+
+    @Test
+    public void testNestedListsOfCompounds() throws IOException
+    {
+        NbtCompound compound = NbtCompound.wrap(NbtTest.sample());
+        NbtList items = compound.getList("items");
+
+        assertEquals(Nbt.COMPOUND, items.getElementType());
+        assertEquals(2, items.size());
+
+        // Access the second element first so that its offset is located by skipping
+        NbtList tags = items.getCompound(1).getList("tags");
+
+        assertEquals("dirt", items.getCompound(1).getString("id"));
+        assertEquals("stone", items.getCompound(0).getString("id"));
+        assertEquals(1, items.getCompound(0).getByte("count"));
+        assertEquals(Nbt.LIST, tags.getElementType());
+        assertEquals(3, tags.getList(1).getInt(1));
+        assertEquals(1, tags.getList(0).getInt(0));
+        assertEquals(2, tags.getList(1).size());
+
+        NbtList names = compound.getList("names");
+
+        assertEquals("c", names.getString(2));
+        assertEquals("\u00fc", names.getString(1));
+        assertEquals("a", names.get(0));
+
+        NbtList ints = compound.getList("ints");
+
+        assertEquals(7, ints.getInt(2));
+        assertEquals(Integer.valueOf(5), ints.get(0));
+        assertEquals("[5, 6, 7]", ints.toString());
+        assertEquals("[[1], [2, 3]]", tags.toString());
+
+        assertEquals(9, compound.get("nested", "inner", "x"));
+        assertNull(compound.get("nested", "missing", "x"));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testListIndexOutOfRange() throws IOException
+    {
+        NbtCompound.wrap(NbtTest.sample()).getList("names").getString(3);
+    }
+
+    @Test(expected = ClassCastException.class)
+    public void testListWrongType() throws IOException
+    {
+        NbtCompound.wrap(NbtTest.sample()).getList("ints").getLong(0);
+    }
+
+    @Test
+    public void testNestedCompoundsAreGivenAnEmptyName() throws IOException
+    {
+        NbtCompound root = NbtCompound.wrap(NbtTest.sample());
+        NbtCompound inner = root.getCompound("nested").getCompound("inner");
+        byte[] expected = new TagWriter("").entry(Nbt.INT, "x").i(9).end().toByteArray();
+
+        assertNull(inner.getName());
+        assertArrayEquals(expected, inner.toByteArray());
+        assertArrayEquals(expected, written(inner));
+
+        NbtCompound nested = root.getCompound("nested");
+        byte[] encoded = nested.toByteArray();
+
+        assertArrayEquals(encoded, written(nested));
+        assertEquals(nested, NbtCompound.wrap(encoded));
+        assertEquals(inner, NbtCompound.wrap(encoded).getCompound("inner"));
+        assertEquals("{x: 9}", inner.toString());
+
+        assertArrayEquals(NbtTest.sample(), root.toByteArray());
+        assertArrayEquals(NbtTest.sample(), written(root));
+    }
+
+    @Test
+    public void testEquality() throws IOException
+    {
+        NbtCompound a = NbtCompound.wrap(NbtTest.sample());
+        NbtCompound b = Nbt.read(ByteBuffer.wrap(NbtTest.sample()));
+        NbtCompound inner = a.getCompound("nested").getCompound("inner");
+        NbtCompound unnamed = NbtCompound.wrap(inner.toByteArray());
+        NbtCompound renamed = NbtCompound
+                .wrap(new TagWriter("inner").entry(Nbt.INT, "x").i(9).end().toByteArray());
+        NbtCompound changed = NbtCompound
+                .wrap(new TagWriter("").entry(Nbt.INT, "x").i(8).end().toByteArray());
+
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertEquals(inner, unnamed);
+        assertEquals(inner.hashCode(), unnamed.hashCode());
+        assertNotEquals(inner, renamed);
+        assertNotEquals(inner, changed);
+        assertNotEquals(a, inner);
+
+        for (NbtCompound compound : new NbtCompound[] {a, inner, renamed, a.getCompound("nested")})
+            assertEquals(Arrays.hashCode(compound.toByteArray()), compound.hashCode());
+    }
+
+    private static byte[] written(NbtCompound compound)
+    {
+        ByteBuffer buf = ByteBuffer.allocate(compound.toByteArray().length);
+
+        compound.writeTo(buf);
+
+        assertFalse(buf.hasRemaining());
+
+        return buf.array();
+    }
+
+}
@@ -0,0 +1,381 @@
+package com.coolspy3.csmodloader.network.packet.nbt;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.coolspy3.csmodloader.network.packet.PacketParser;
+
+import org.junit.Test;
+
+public class NbtTest
+{
+
+    static final String NON_ASCII = "\u00e9t\u00e9";
+
+    @Test
+    public void testStreamAndBufferReadsAgree() throws IOException
+    {
+        byte[] tag = sample();
+        byte[] data = Arrays.copyOf(tag, tag.length + 1);
+        data[tag.length] = 42;
+
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        NbtCompound fromBuffer = Nbt.read(buf);
+
+        assertEquals(tag.length, buf.position());
+
+        ByteArrayInputStream is = new ByteArrayInputStream(data);
+        NbtCompound fromStream = Nbt.read(is);
+
+        assertEquals(42, is.read());
+        assertEquals(fromBuffer, fromStream);
+        assertArrayEquals(tag, fromBuffer.toByteArray());
+        assertArrayEquals(tag, fromStream.toByteArray());
+        assertEquals("root", fromStream.getName());
+
+        buf.position(0);
+        Nbt.skipTag(buf);
+        assertEquals(tag.length, buf.position());
+
+        is = new ByteArrayInputStream(data);
+        Nbt.skipTag(is);
+        assertEquals(42, is.read());
+
+        // The registered parser agrees with the direct functions
+        assertEquals(fromBuffer,
+                PacketParser.readObject(NbtCompound.class, ByteBuffer.wrap(data)));
+        assertEquals(fromBuffer,
+                PacketParser.readObject(NbtCompound.class, new ByteArrayInputStream(data)));
+    }
+
+    @Test
+    public void testWrite() throws IOException
+    {
+        NbtCompound compound = NbtCompound.wrap(sample());
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        Nbt.write(compound, baos);
+        Nbt.write(null, baos);
+
+        ByteBuffer buf = ByteBuffer.allocate(baos.size());
+        Nbt.write(compound, buf);
+        Nbt.write(null, buf);
+
+        byte[] expected = Arrays.copyOf(sample(), sample().length + 1);
+
+        assertArrayEquals(expected, baos.toByteArray());
+        assertArrayEquals(expected, buf.array());
+    }
+
+    @Test
+    public void testLoneEndReadsAsNull() throws IOException
+    {
+        byte[] data = {Nbt.END, 42};
+        ByteBuffer buf = ByteBuffer.wrap(data);
+
+        assertNull(Nbt.read(buf));
+        assertEquals(1, buf.position());
+
+        ByteArrayInputStream is = new ByteArrayInputStream(data);
+
+        assertNull(Nbt.read(is));
+        assertEquals(42, is.read());
+        assertEquals(1, Nbt.skipTag(ByteBuffer.wrap(data), 0));
+    }
+
+    @Test
+    public void testTruncatedInputThrows() throws IOException
+    {
+        byte[] tag = sample();
+
+        // The final END tag means that every proper prefix is incomplete
+        for (int len = 0; len < tag.length; len++)
+        {
+            byte[] prefix = Arrays.copyOf(tag, len);
+
+            assertRejected(prefix);
+            assertThrows(() -> Nbt.skipTag(new ByteArrayInputStream(prefix)));
+            assertThrows(() -> Nbt.skipTag(ByteBuffer.wrap(prefix)));
+        }
+    }
+
+    @Test
+    public void testNegativeLengthsThrow() throws IOException
+    {
+        for (int type : new int[] {Nbt.BYTE_ARRAY, Nbt.INT_ARRAY, Nbt.LONG_ARRAY})
+            assertRejected(new TagWriter("").entry(type, "a").i(-1).end().toByteArray());
+
+        assertRejected(
+                new TagWriter("").entry(Nbt.LIST, "a").list(Nbt.STRING, -1).end().toByteArray());
+        assertRejected(new TagWriter("").entry(Nbt.LIST, "a").list(Nbt.INT, Integer.MIN_VALUE)
+                .end().toByteArray());
+        // 2^30 ints overflow an int when converted to a length in bytes
+        assertRejected(
+                new TagWriter("").entry(Nbt.INT_ARRAY, "a").i(1 << 30).end().toByteArray());
+    }
+
+    @Test
+    public void testInvalidTagsThrow() throws IOException
+    {
+        assertRejected(new TagWriter("").entry(13, "a").end().toByteArray());
+        assertRejected(new byte[] {Nbt.INT, 0, 0, 0, 0, 0, 1});
+        assertThrows(() -> NbtCompound.wrap(Arrays.copyOf(sample(), sample().length + 1)));
+    }
+
+    @Test
+    public void testMaxDepth() throws IOException
+    {
+        NbtCompound compound = Nbt.read(ByteBuffer.wrap(nestedCompounds(Nbt.MAX_DEPTH)));
+        Nbt.read(new ByteArrayInputStream(nestedCompounds(Nbt.MAX_DEPTH)));
+
+        for (int i = 0; i < Nbt.MAX_DEPTH; i++)
+            compound = compound.getCompound("c");
+
+        assertEquals(0, compound.size());
+
+        assertRejected(nestedCompounds(Nbt.MAX_DEPTH + 1));
+
+        NbtList list = Nbt.read(ByteBuffer.wrap(nestedLists(Nbt.MAX_DEPTH))).getList("l");
+        Nbt.read(new ByteArrayInputStream(nestedLists(Nbt.MAX_DEPTH)));
+
+        for (int i = 1; i < Nbt.MAX_DEPTH; i++)
+            list = list.getList(0);
+
+        assertEquals(Nbt.END, list.getElementType());
+
+        assertRejected(nestedLists(Nbt.MAX_DEPTH + 1));
+    }
+
+    @Test
+    public void testModifiedUtf8() throws IOException
+    {
+        String[] strings = {"", "ascii", "\u0000", "a\u0000b", NON_ASCII, "\u4e2d\u6587",
+                "\ud83d\ude00", "\ud83d", "x\ude00y", "\u07ff\u0800\uffff"};
+
+        for (String str : strings)
+        {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            new DataOutputStream(baos).writeUTF(str);
+            byte[] expected = baos.toByteArray();
+
+            assertArrayEquals(Arrays.copyOfRange(expected, 2, expected.length),
+                    Nbt.encodeUTF(str));
+
+            // Offset the string to check that absolute indices are used
+            ByteBuffer buf = ByteBuffer.allocate(expected.length + 3);
+            buf.position(3);
+            buf.put(expected);
+
+            assertEquals(str, Nbt.readUTF(buf, 3));
+            assertEquals(str, new DataInputStream(new ByteArrayInputStream(expected)).readUTF());
+        }
+    }
+
+    /**
+     * @return A root compound containing every type of tag, including nested lists of compounds
+     *         and non-ASCII names and values
+     */
+    static byte[] sample() throws IOException
+    {
+        return new TagWriter("root")
+                .entry(Nbt.BYTE, "b").b(1)
+                .entry(Nbt.SHORT, "s").s(-2)
+                .entry(Nbt.INT, "i").i(3)
+                .entry(Nbt.LONG, "l").l(4)
+                .entry(Nbt.FLOAT, "f").f(1.5f)
+                .entry(Nbt.DOUBLE, "d").d(-2.5)
+                .entry(Nbt.STRING, "str").utf("plain")
+                .entry(Nbt.STRING, NON_ASCII).utf("\u4e2d\u0000\ud83d\ude00")
+                .entry(Nbt.BYTE_ARRAY, "ba").i(3).b(1).b(2).b(3)
+                .entry(Nbt.INT_ARRAY, "ia").i(2).i(1).i(-1)
+                .entry(Nbt.LONG_ARRAY, "la").i(1).l(Long.MAX_VALUE)
+                .entry(Nbt.LIST, "ints").list(Nbt.INT, 3).i(5).i(6).i(7)
+                .entry(Nbt.LIST, "names").list(Nbt.STRING, 3).utf("a").utf("\u00fc").utf("c")
+                .entry(Nbt.LIST, "items").list(Nbt.COMPOUND, 2)
+                    .entry(Nbt.STRING, "id").utf("stone")
+                    .entry(Nbt.BYTE, "count").b(1)
+                    .end()
+                    .entry(Nbt.STRING, "id").utf("dirt")
+                    .entry(Nbt.LIST, "tags").list(Nbt.LIST, 2)
+                        .list(Nbt.INT, 1).i(1)
+                        .list(Nbt.INT, 2).i(2).i(3)
+                    .end()
+                .entry(Nbt.COMPOUND, "nested")
+                    .entry(Nbt.COMPOUND, "inner").entry(Nbt.INT, "x").i(9).end()
+                    .entry(Nbt.COMPOUND, "empty").end()
+                    .end()
+                .entry(Nbt.STRING, "a\u0000b").utf("nul")
+                .entry(Nbt.STRING, "\ud83d\ude00").utf("emoji")
+                .end().toByteArray();
+    }
+
+    /**
+     * @param depth The number of compounds to nest within the root compound
+     *
+     * @return The encoded root compound
+     */
+    private static byte[] nestedCompounds(int depth) throws IOException
+    {
+        TagWriter writer = new TagWriter("");
+
+        for (int i = 0; i < depth; i++)
+            writer.entry(Nbt.COMPOUND, "c");
+
+        for (int i = 0; i <= depth; i++)
+            writer.end();
+
+        return writer.toByteArray();
+    }
+
+    /**
+     * @param depth The number of lists to nest within the root compound
+     *
+     * @return The encoded root compound
+     */
+    private static byte[] nestedLists(int depth) throws IOException
+    {
+        TagWriter writer = new TagWriter("").entry(Nbt.LIST, "l");
+
+        for (int i = 1; i < depth; i++)
+            writer.list(Nbt.LIST, 1);
+
+        return writer.list(Nbt.END, 0).end().toByteArray();
+    }
+
+    private static void assertRejected(byte[] data)
+    {
+        assertThrows(() -> Nbt.read(ByteBuffer.wrap(data)));
+        assertThrows(() -> Nbt.read(new ByteArrayInputStream(data)));
+    }
+
+    private static void assertThrows(IOCall call)
+    {
+        try
+        {
+            call.run();
+        }
+        catch (IOException e)
+        {
+            return;
+        }
+
+        throw new AssertionError("Invalid NBT data was accepted");
+    }
+
+    @FunctionalInterface
+    private static interface IOCall
+    {
+
+        public void run() throws IOException;
+
+    }
+
+    /**
+     * Encodes NBT data with a DataOutputStream, independently of the code under test
+     */
+    static final class TagWriter
+    {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        /**
+         * Starts a root compound
+         *
+         * @param name The name of the compound
+         */
+        TagWriter(String name) throws IOException
+        {
+            out.writeByte(Nbt.COMPOUND);
+            out.writeUTF(name);
+        }
+
+        TagWriter entry(int type, String name) throws IOException
+        {
+            out.writeByte(type);
+            out.writeUTF(name);
+
+            return this;
+        }
+
+        TagWriter end() throws IOException
+        {
+            out.writeByte(Nbt.END);
+
+            return this;
+        }
+
+        TagWriter list(int elementType, int length) throws IOException
+        {
+            out.writeByte(elementType);
+            out.writeInt(length);
+
+            return this;
+        }
+
+        TagWriter b(int value) throws IOException
+        {
+            out.writeByte(value);
+
+            return this;
+        }
+
+        TagWriter s(int value) throws IOException
+        {
+            out.writeShort(value);
+
+            return this;
+        }
+
+        TagWriter i(int value) throws IOException
+        {
+            out.writeInt(value);
+
+            return this;
+        }
+
+        TagWriter l(long value) throws IOException
+        {
+            out.writeLong(value);
+
+            return this;
+        }
+
+        TagWriter f(float value) throws IOException
+        {
+            out.writeFloat(value);
+
+            return this;
+        }
+
+        TagWriter d(double value) throws IOException
+        {
+            out.writeDouble(value);
+
+            return this;
+        }
+
+        TagWriter utf(String value) throws IOException
+        {
+            out.writeUTF(value);
+
+            return this;
+        }
+
+        byte[] toByteArray()
+        {
+            return bytes.toByteArray();
+        }
+
+    }
+
+}
@@ -0,0 +1,372 @@
+package com.coolspy3.csmodloader.network.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import com.coolspy3.csmodloader.network.packet.Packet;
+
+import org.junit.Test;
+
+public class BufferedSubscriptionTest
+{
+
+    @Test
+    public void testInOrderDelivery()
+    {
+        PacketPublisher<IntPacket> publisher = new PacketPublisher<>();
+        ManualExecutor executor = new ManualExecutor();
+        RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+
+        publisher.subscribe(subscriber, executor);
+
+        for (int i = 0; i < 100; i++)
+            publisher.publish(new IntPacket(i));
+
+        // Only one drain is scheduled, however many packets are published
+        assertEquals(1, executor.size());
+
+        executor.runAll();
+
+        assertEquals(100, subscriber.received.size());
+
+        for (int i = 0; i < 100; i++)
+            assertEquals("" + i, subscriber.received.get(i));
+
+        assertEquals(0, subscriber.subscription.getDropped());
+    }
+
+    @Test
+    public void testDemandLimitsDelivery()
+    {
+        PacketPublisher<IntPacket> publisher = new PacketPublisher<>();
+        ManualExecutor executor = new ManualExecutor();
+        RecordingSubscriber subscriber = new RecordingSubscriber(2);
+
+        publisher.subscribe(subscriber, executor);
+
+        for (int i = 0; i < 5; i++)
+            publisher.publish(new IntPacket(i));
+
+        executor.runAll();
+
+        assertEquals(Arrays.asList("0", "1"), subscriber.received);
+
+        subscriber.subscription.request(2);
+        executor.runAll();
+
+        assertEquals(Arrays.asList("0", "1", "2", "3"), subscriber.received);
+    }
+
+    @Test
+    public void testDropOldest()
+    {
+        assertEquals(Arrays.asList("2", "3", "4"), overflow(OverflowPolicy.DROP_OLDEST));
+    }
+
+    @Test
+    public void testDropNewest()
+    {
+        assertEquals(Arrays.asList("0", "1", "2"), overflow(OverflowPolicy.DROP_NEWEST));
+    }
+
+    @Test
+    public void testConflate()
+    {
+        PacketPublisher<IntPacket> publisher = new PacketPublisher<>();
+        ManualExecutor executor = new ManualExecutor();
+        RecordingSubscriber subscriber = new RecordingSubscriber(0);
+
+        // The capacity is ignored by the CONFLATE policy
+        publisher.subscribe(subscriber, executor, 3, OverflowPolicy.CONFLATE);
+        executor.runAll();
+
+        for (int i = 0; i < 5; i++)
+            publisher.publish(new IntPacket(i));
+
+        subscriber.subscription.request(10);
+        executor.runAll();
+
+        assertEquals(Arrays.asList("4"), subscriber.received);
+        assertEquals(4, subscriber.subscription.getDropped());
+
+        publisher.publish(new IntPacket(5));
+        executor.runAll();
+
+        assertEquals(Arrays.asList("4", "5"), subscriber.received);
+    }
+
+    @Test
+    public void testNonPositiveRequestIsAnError()
+    {
+        PacketPublisher<IntPacket> publisher = new PacketPublisher<>();
+        ManualExecutor executor = new ManualExecutor();
+        RecordingSubscriber subscriber = new RecordingSubscriber(0);
+
+        publisher.subscribe(subscriber, executor);
+        executor.runAll();
+        publisher.publish(new IntPacket(0));
+
+        subscriber.subscription.request(0);
+        executor.runAll();
+
+        // Queued packets are discarded
+        assertEquals(Arrays.asList("error IllegalArgumentException"), subscriber.received);
+        assertFalse(publisher.hasSubscribers());
+
+        publisher.publish(new IntPacket(1));
+        subscriber.subscription.request(1);
+        executor.runAll();
+
+        assertEquals(1, subscriber.received.size());
+    }
+
+    @Test
+    public void testCloseCompletesAfterQueuedPackets()
+    {
+        PacketPublisher<IntPacket> publisher = new PacketPublisher<>();
+        ManualExecutor executor = new ManualExecutor();
+        RecordingSubscriber subscriber = new RecordingSubscriber(0);
+
+        publisher.subscribe(subscriber, executor);
+        executor.runAll();
+
+        publisher.publish(new IntPacket(0));
+        publisher.publish(new IntPacket(1));
+        publisher.close();
+        // Packets published after the publisher is closed are discarded
+        publisher.publish(new IntPacket(2));
+        executor.runAll();
+
+        assertTrue(publisher.isClosed());
+        assertTrue(subscriber.received.isEmpty());
+        assertTrue(publisher.hasSubscribers());
+
+        subscriber.subscription.request(5);
+        executor.runAll();
+
+        assertEquals(Arrays.asList("0", "1", "complete"), subscriber.received);
+        assertFalse(publisher.hasSubscribers());
+
+        // Subscribers which subscribe after the publisher is closed are completed immediately
+        RecordingSubscriber late = new RecordingSubscriber(0);
+
+        publisher.subscribe(late, executor);
+        executor.runAll();
+
+        assertEquals(Arrays.asList("complete"), late.received);
+    }
+
+    @Test
+    public void testCancel()
+    {
+        PacketPublisher<IntPacket> publisher = new PacketPublisher<>();
+        ManualExecutor executor = new ManualExecutor();
+        RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+
+        publisher.subscribe(subscriber, executor);
+        publisher.publish(new IntPacket(0));
+        executor.runAll();
+
+        subscriber.subscription.cancel();
+        publisher.publish(new IntPacket(1));
+        publisher.close();
+        executor.runAll();
+
+        assertEquals(Arrays.asList("0"), subscriber.received);
+        assertEquals(0, publisher.getSubscriberCount());
+    }
+
+    @Test
+    public void testThrowingSubscriberIsCancelled()
+    {
+        PacketPublisher<IntPacket> publisher = new PacketPublisher<>();
+        ManualExecutor executor = new ManualExecutor();
+        List<Integer> received = new ArrayList<>();
+
+        publisher.subscribe(new PacketSubscriber<IntPacket>()
+        {
+            @Override
+            public void onSubscribe(PacketSubscription subscription)
+            {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(IntPacket packet)
+            {
+                received.add(packet.value);
+
+                throw new IllegalStateException("Subscriber failed");
+            }
+        }, executor);
+
+        publisher.publish(new IntPacket(0));
+        publisher.publish(new IntPacket(1));
+        executor.runAll();
+
+        assertEquals(Arrays.asList(0), received);
+        assertFalse(publisher.hasSubscribers());
+    }
+
+    @Test
+    public void testActivityListener()
+    {
+        List<Boolean> events = new ArrayList<>();
+        PacketPublisher<IntPacket> publisher = new PacketPublisher<>(events::add);
+        ManualExecutor executor = new ManualExecutor();
+        RecordingSubscriber first = new RecordingSubscriber(0);
+        RecordingSubscriber second = new RecordingSubscriber(0);
+
+        publisher.subscribe(first, executor);
+        publisher.subscribe(second, executor);
+        executor.runAll();
+
+        assertEquals(Arrays.asList(true), events);
+
+        first.subscription.cancel();
+        // Cancelling a subscription twice only removes it once
+        first.subscription.cancel();
+
+        assertEquals(Arrays.asList(true), events);
+
+        second.subscription.cancel();
+
+        assertEquals(Arrays.asList(true, false), events);
+
+        publisher.subscribe(first, executor);
+
+        assertEquals(Arrays.asList(true, false, true), events);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity()
+    {
+        new PacketPublisher<IntPacket>().subscribe(new RecordingSubscriber(0),
+                new ManualExecutor(), 0, OverflowPolicy.DROP_OLDEST);
+    }
+
+    /**
+     * Publishes 5 packets to a subscription with a capacity of 3 before requesting any
+     *
+     * @param policy The overflow policy of the subscription
+     *
+     * @return The packets which were delivered
+     */
+    private static List<String> overflow(OverflowPolicy policy)
+    {
+        PacketPublisher<IntPacket> publisher = new PacketPublisher<>();
+        ManualExecutor executor = new ManualExecutor();
+        RecordingSubscriber subscriber = new RecordingSubscriber(0);
+
+        publisher.subscribe(subscriber, executor, 3, policy);
+        executor.runAll();
+
+        for (int i = 0; i < 5; i++)
+            publisher.publish(new IntPacket(i));
+
+        assertEquals(2, subscriber.subscription.getDropped());
+
+        subscriber.subscription.request(10);
+        executor.runAll();
+
+        return subscriber.received;
+    }
+
+    /**
+     * An executor which queues tasks until they are explicitly run
+     */
+    private static final class ManualExecutor implements Executor
+    {
+
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable command)
+        {
+            tasks.add(command);
+        }
+
+        int size()
+        {
+            return tasks.size();
+        }
+
+        void runAll()
+        {
+            Runnable task;
+
+            while ((task = tasks.poll()) != null)
+                task.run();
+        }
+
+    }
+
+    /**
+     * A subscriber which records every call it receives
+     */
+    private static final class RecordingSubscriber implements PacketSubscriber<IntPacket>
+    {
+
+        private final long initialDemand;
+        private final List<String> received = new ArrayList<>();
+        private PacketSubscription subscription;
+
+        RecordingSubscriber(long initialDemand)
+        {
+            this.initialDemand = initialDemand;
+        }
+
+        @Override
+        public void onSubscribe(PacketSubscription subscription)
+        {
+            this.subscription = subscription;
+
+            if (initialDemand > 0) subscription.request(initialDemand);
+        }
+
+        @Override
+        public void onNext(IntPacket packet)
+        {
+            received.add("" + packet.value);
+        }
+
+        @Override
+        public void onError(Throwable throwable)
+        {
+            received.add("error " + throwable.getClass().getSimpleName());
+        }
+
+        @Override
+        public void onComplete()
+        {
+            received.add("complete");
+        }
+
+    }
+
+    private static final class IntPacket extends Packet
+    {
+
+        private final int value;
+
+        IntPacket(int value)
+        {
+            this.value = value;
+        }
+
+        @Override
+        public Object[] getValues()
+        {
+            return new Object[] {value};
+        }
+
+    }
+
+}
@@ -0,0 +1,129 @@
+package com.coolspy3.csmodloader.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class HashedWheelTimerTest
+{
+
+    @Test
+    public void testOneShotTasksNeverRunEarly() throws InterruptedException
+    {
+        HashedWheelTimer timer = new HashedWheelTimer(5, TimeUnit.MILLISECONDS, 8, "Test Timer");
+
+        int numTasks = 200;
+        CountDownLatch latch = new CountDownLatch(numTasks);
+        AtomicInteger early = new AtomicInteger();
+
+        for (int i = 0; i < numTasks; i++)
+        {
+            // Delays span several rotations of the wheel
+            long delay = (i * 7) % 150;
+            long due = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+
+            timer.schedule(() -> {
+                if (System.nanoTime() < due) early.incrementAndGet();
+
+                latch.countDown();
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(0, early.get());
+    }
+
+    @Test
+    public void testPeriodShorterThanTick() throws InterruptedException
+    {
+        HashedWheelTimer timer =
+                new HashedWheelTimer(10, TimeUnit.MILLISECONDS, 512, "Test Timer");
+        AtomicInteger runs = new AtomicInteger();
+
+        HashedWheelTimer.Timeout timeout =
+                timer.scheduleAtFixedRate(runs::incrementAndGet, 0, 3, TimeUnit.MILLISECONDS);
+
+        Thread.sleep(600);
+        timeout.cancel();
+
+        // 200 runs are expected. Allow for a slow start and one tick of lateness.
+        assertTrue("Only " + runs.get() + " runs", runs.get() >= 150);
+    }
+
+    @Test
+    public void testPeriodSpanningRotations() throws InterruptedException
+    {
+        HashedWheelTimer timer = new HashedWheelTimer(1, TimeUnit.MILLISECONDS, 4, "Test Timer");
+        AtomicInteger runs = new AtomicInteger();
+        AtomicLong lastRun = new AtomicLong();
+
+        long start = System.nanoTime();
+
+        // Each period is exactly two rotations, so the task is always placed in the same bucket
+        HashedWheelTimer.Timeout timeout = timer.scheduleAtFixedRate(() -> {
+            runs.incrementAndGet();
+            lastRun.set(System.nanoTime());
+        }, 8, 8, TimeUnit.MILLISECONDS);
+
+        Thread.sleep(400);
+        timeout.cancel();
+
+        assertTrue("Only " + runs.get() + " runs", runs.get() >= 30);
+        assertTrue(lastRun.get() - start > TimeUnit.MILLISECONDS.toNanos(300));
+    }
+
+    @Test
+    public void testCancel() throws InterruptedException
+    {
+        HashedWheelTimer timer = new HashedWheelTimer(1, TimeUnit.MILLISECONDS, 16, "Test Timer");
+        AtomicInteger runs = new AtomicInteger();
+
+        HashedWheelTimer.Timeout timeout =
+                timer.schedule(runs::incrementAndGet, 20, TimeUnit.MILLISECONDS);
+
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        assertTrue(timeout.isCancelled());
+
+        Thread.sleep(100);
+
+        assertEquals(0, runs.get());
+        assertFalse(timeout.isExpired());
+    }
+
+    @Test
+    public void testScopeClose() throws InterruptedException
+    {
+        HashedWheelTimer timer = new HashedWheelTimer(1, TimeUnit.MILLISECONDS, 16, "Test Timer");
+        HashedWheelTimer.Scope scope = timer.newScope();
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch ran = new CountDownLatch(1);
+
+        HashedWheelTimer.Timeout done = scope.schedule(ran::countDown, 0, TimeUnit.MILLISECONDS);
+
+        scope.schedule(runs::incrementAndGet, 50, TimeUnit.MILLISECONDS);
+        scope.scheduleAtFixedRate(runs::incrementAndGet, 50, 5, TimeUnit.MILLISECONDS);
+
+        assertTrue(ran.await(1, TimeUnit.SECONDS));
+        assertTrue(done.isExpired());
+        assertEquals(2, scope.getPendingCount());
+
+        scope.close();
+
+        assertTrue(scope.isClosed());
+        assertEquals(0, scope.getPendingCount());
+        assertTrue(scope.schedule(runs::incrementAndGet, 0, TimeUnit.MILLISECONDS).isCancelled());
+
+        Thread.sleep(150);
+
+        assertEquals(0, runs.get());
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.coolspy3.csmodloader.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class LruCacheTest
+{
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted()
+    {
+        LruCache<String, Integer> cache = new LruCache<>(2);
+
+        cache.put("a", 1);
+        cache.put("b", 2);
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+        cache.put("c", 3);
+
+        assertEquals(2, cache.size());
+        assertEquals(2, cache.getCapacity());
+        assertNull(cache.get("b"));
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+        assertEquals(Integer.valueOf(3), cache.get("c"));
+    }
+
+    @Test
+    public void testStatistics()
+    {
+        LruCache<String, Integer> cache = new LruCache<>(4);
+
+        assertEquals(0, cache.getHitRate(), 0);
+
+        cache.put("a", 1);
+        cache.get("a");
+        cache.get("b");
+        cache.recordMiss();
+        cache.get("a");
+
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(0.5, cache.getHitRate(), 0);
+        assertEquals("LruCache[size=1, hits=2, misses=2, hitRate=0.500]", cache.toString());
+
+        cache.clear();
+
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.getHits());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity()
+    {
+        new LruCache<String, Integer>(0);
+    }
+
+}
@@ -0,0 +1,160 @@
+package com.coolspy3.csmodloader.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class StringInternerTest
+{
+
+    @Test
+    public void testRepeatsReturnTheSameInstance() throws IOException
+    {
+        StringInterner interner = new StringInterner(16, 32);
+        String first = interner.read(encoded("minecraft:stone"));
+
+        assertEquals("minecraft:stone", first);
+        assertSame(first, interner.read(encoded("minecraft:stone")));
+        assertSame(first, interner.read(new ByteArrayInputStream(streamed("minecraft:stone"))));
+        assertSame(first, interner.intern(new String("minecraft:stone")));
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(32);
+        direct.put(encoded("minecraft:stone"));
+        direct.flip();
+
+        assertSame(first, interner.read(direct));
+        assertFalse(direct.hasRemaining());
+
+        // Strings added through intern(String) are returned by the decoding methods
+        String added = new String("minecraft:dirt");
+
+        assertSame(added, interner.intern(added));
+        assertSame(added, interner.read(encoded("minecraft:dirt")));
+    }
+
+    @Test
+    public void testNonAsciiStringsBypassTheTable() throws IOException
+    {
+        StringInterner interner = new StringInterner(16, 32);
+        String str = "caf\u00e9 \ud83d\ude00";
+        String first = interner.read(encoded(str));
+
+        assertEquals(str, first);
+        assertNotSame(first, interner.read(encoded(str)));
+        assertEquals(str, interner.read(new ByteArrayInputStream(streamed(str))));
+
+        String copy = new String(str);
+
+        assertSame(copy, interner.intern(copy));
+        assertNotSame(copy, interner.intern(new String(str)));
+    }
+
+    @Test
+    public void testLongStringsBypassTheTable() throws IOException
+    {
+        StringInterner interner = new StringInterner(16, 8);
+        String first = interner.read(encoded("123456789"));
+
+        assertEquals("123456789", first);
+        assertNotSame(first, interner.read(encoded("123456789")));
+
+        String copy = new String("123456789");
+
+        assertSame(copy, interner.intern(copy));
+        assertNotSame(copy, interner.intern(new String("123456789")));
+
+        // The limit is inclusive
+        String limit = interner.read(encoded("12345678"));
+
+        assertSame(limit, interner.read(encoded("12345678")));
+    }
+
+    @Test
+    public void testCollisionsReplaceTheSlot() throws IOException
+    {
+        StringInterner interner = new StringInterner(1, 32);
+        String a = interner.read(encoded("a"));
+
+        assertEquals("b", interner.read(encoded("b")));
+
+        String again = interner.read(encoded("a"));
+
+        assertEquals("a", again);
+        assertNotSame(a, again);
+    }
+
+    @Test
+    public void testClear() throws IOException
+    {
+        StringInterner interner = new StringInterner(16, 32);
+        String first = interner.read(encoded("stone"));
+
+        interner.clear();
+
+        assertNotSame(first, interner.read(encoded("stone")));
+    }
+
+    @Test
+    public void testCapacityIsRoundedUp()
+    {
+        assertEquals(1, new StringInterner(1, 1).capacity());
+        assertEquals(16, new StringInterner(16, 1).capacity());
+        assertEquals(32, new StringInterner(17, 1).capacity());
+        assertEquals(1024, StringInterner.IDENTIFIERS.capacity());
+        assertEquals(64, StringInterner.IDENTIFIERS.getMaxLength());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity()
+    {
+        new StringInterner(0, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxLength()
+    {
+        new StringInterner(1, 0);
+    }
+
+    @Test(expected = EOFException.class)
+    public void testReadRejectsLengthPastEnd() throws IOException
+    {
+        new StringInterner(16, 32).read(UtilsTest.withLength(17, 16));
+    }
+
+    /**
+     * @param str The String to encode
+     *
+     * @return A heap buffer containing the String prefixed with its length
+     */
+    private static ByteBuffer encoded(String str) throws IOException
+    {
+        return ByteBuffer.wrap(streamed(str));
+    }
+
+    /**
+     * @param str The String to encode
+     *
+     * @return The String prefixed with its length, encoded independently of the code under test
+     */
+    private static byte[] streamed(String str) throws IOException
+    {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        Utils.writeVarInt(bytes.length, baos);
+        baos.write(bytes);
+
+        return baos.toByteArray();
+    }
+
+}
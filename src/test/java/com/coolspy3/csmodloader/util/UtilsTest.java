@@ -0,0 +1,393 @@
+package com.coolspy3.csmodloader.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class UtilsTest
+{
+
+    private static final int[] VAR_INT_EDGES = {0, 1, 127, 128, 16383, 16384, 2097151, 2097152,
+            268435455, 268435456, Integer.MAX_VALUE, -1, Integer.MIN_VALUE};
+
+    private static final long[] VAR_LONG_EDGES = {0, 1, 127, 128, 16383, 16384, 2097151, 2097152,
+            Integer.MAX_VALUE, 1L << 32, 1L << 35, 1L << 42, 1L << 49, 1L << 56, 1L << 63,
+            Long.MAX_VALUE, -1};
+
+    /**
+     * A VarInt with one more byte than the maximum of five
+     */
+    private static final byte[] TOO_LONG = {-1, -1, -1, -1, -1, 1};
+
+    @Test
+    public void testVarIntCodecsAgree() throws IOException
+    {
+        Random random = new Random(0x5EED);
+
+        for (int i = 0; i < 10000; i++)
+        {
+            // Spread the values over every encoded length
+            int value = i < 64 ? VAR_INT_EDGES[i % VAR_INT_EDGES.length]
+                    : random.nextInt() >>> random.nextInt(32);
+
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            Utils.writeVarInt(value, baos);
+            byte[] expected = baos.toByteArray();
+
+            byte[] arr = new byte[8];
+            assertEquals(expected.length, Utils.writeVarInt(value, arr, 1));
+            assertArrayEquals(expected, Arrays.copyOfRange(arr, 1, 1 + expected.length));
+
+            ByteBuffer buf = ByteBuffer.allocate(8);
+            Utils.writeVarInt(value, buf);
+            assertArrayEquals(expected, Arrays.copyOf(buf.array(), buf.position()));
+            buf.flip();
+
+            assertEquals(expected.length, Utils.varIntLen(value));
+            assertEquals(expected.length, Utils.varIntLen(arr, 1));
+            assertEquals(expected.length, Utils.varIntLen(buf, 0));
+
+            assertEquals(value, Utils.readVarInt(new ByteArrayInputStream(expected)));
+            assertEquals(value, Utils.readVarInt(arr, 1));
+            assertEquals(value, Utils.readVarInt(buf, 0));
+            assertEquals(0, buf.position());
+            assertEquals(value, Utils.readVarInt(buf));
+            assertFalse(buf.hasRemaining());
+        }
+    }
+
+    @Test
+    public void testVarLongCodecsAgree() throws IOException
+    {
+        Random random = new Random(0x5EED);
+
+        for (int i = 0; i < 10000; i++)
+        {
+            // Spread the values over every encoded length
+            long value = i < 64 ? VAR_LONG_EDGES[i % VAR_LONG_EDGES.length]
+                    : random.nextLong() >>> random.nextInt(64);
+
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            Utils.writeVarLong(value, baos);
+            byte[] expected = baos.toByteArray();
+
+            byte[] arr = new byte[12];
+            assertEquals(expected.length, Utils.writeVarLong(value, arr, 1));
+            assertArrayEquals(expected, Arrays.copyOfRange(arr, 1, 1 + expected.length));
+
+            ByteBuffer buf = ByteBuffer.allocate(12);
+            Utils.writeVarLong(value, buf);
+            assertArrayEquals(expected, Arrays.copyOf(buf.array(), buf.position()));
+            buf.flip();
+
+            assertEquals(expected.length, Utils.varLongLen(value));
+            assertEquals(expected.length, Utils.varLongLen(arr, 1));
+            assertEquals(expected.length, Utils.varLongLen(buf, 0));
+
+            assertEquals(value, Utils.readVarLong(new ByteArrayInputStream(expected)));
+            assertEquals(value, Utils.readVarLong(arr, 1));
+            assertEquals(value, Utils.readVarLong(buf));
+            assertFalse(buf.hasRemaining());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testArrayVarIntRejectsLongEncoding() throws IOException
+    {
+        Utils.readVarInt(TOO_LONG, 0);
+    }
+
+    @Test(expected = IOException.class)
+    public void testBufferVarIntRejectsLongEncoding() throws IOException
+    {
+        Utils.readVarInt(ByteBuffer.wrap(TOO_LONG));
+    }
+
+    @Test(expected = IOException.class)
+    public void testStreamVarIntRejectsLongEncoding() throws IOException
+    {
+        Utils.readVarInt(new ByteArrayInputStream(TOO_LONG));
+    }
+
+    @Test
+    public void testIntArrayRoundTrip() throws IOException
+    {
+        int[] ints = {0, 1, -1, Integer.MIN_VALUE, Integer.MAX_VALUE, 0x12345678};
+
+        ByteBuffer buf = ByteBuffer.allocate(64);
+        Utils.writeInts(ints, buf);
+        buf.flip();
+
+        assertArrayEquals(ints, Utils.readInts(buf));
+        assertFalse(buf.hasRemaining());
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        Utils.writeInts(ints, baos);
+
+        assertArrayEquals(ints, Utils.readInts(new ByteArrayInputStream(baos.toByteArray())));
+    }
+
+    @Test
+    public void testLongArrayRoundTrip() throws IOException
+    {
+        long[] longs = {0, 1, -1, Long.MIN_VALUE, Long.MAX_VALUE, 0x123456789abcdefL};
+
+        ByteBuffer buf = ByteBuffer.allocate(64);
+        Utils.writeLongs(longs, buf);
+        buf.flip();
+
+        assertArrayEquals(longs, Utils.readLongs(buf));
+        assertFalse(buf.hasRemaining());
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        Utils.writeLongs(longs, baos);
+
+        assertArrayEquals(longs, Utils.readLongs(new ByteArrayInputStream(baos.toByteArray())));
+    }
+
+    @Test
+    public void testVarIntArrayRoundTrip() throws IOException
+    {
+        int[] ints = {0, 1, 127, 128, 16383, 16384, -1, Integer.MIN_VALUE, Integer.MAX_VALUE};
+
+        ByteBuffer buf = ByteBuffer.allocate(64);
+        Utils.writeVarInts(ints, buf);
+        buf.flip();
+
+        int len = buf.remaining();
+
+        assertArrayEquals(ints, Utils.readVarInts(buf));
+        assertFalse(buf.hasRemaining());
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        Utils.writeVarInts(ints, baos);
+
+        assertEquals(len, baos.size());
+        assertArrayEquals(ints, Utils.readVarInts(new ByteArrayInputStream(baos.toByteArray())));
+    }
+
+    @Test
+    public void testSkipArray() throws IOException
+    {
+        ByteBuffer buf = ByteBuffer.allocate(64);
+        Utils.writeLongs(new long[] {1, 2, 3}, buf);
+        buf.put((byte) 42);
+        buf.flip();
+
+        Utils.skipArray(buf, 8);
+
+        assertEquals(42, buf.get());
+    }
+
+    @Test
+    public void testByteArrayRoundTrip() throws IOException
+    {
+        byte[] bytes = {0, 1, -1, 127, -128};
+
+        ByteBuffer buf = ByteBuffer.allocate(16);
+        Utils.writeBytes(bytes, buf);
+        buf.flip();
+
+        assertArrayEquals(bytes, Utils.readBytes(buf));
+        assertFalse(buf.hasRemaining());
+    }
+
+    @Test(expected = EOFException.class)
+    public void testReadBytesRejectsLengthPastEnd() throws IOException
+    {
+        Utils.readBytes(withLength(Integer.MAX_VALUE, 16));
+    }
+
+    @Test(expected = EOFException.class)
+    public void testReadBytesRejectsNegativeLength() throws IOException
+    {
+        Utils.readBytes(withLength(-5, 16));
+    }
+
+    @Test(expected = EOFException.class)
+    public void testReadIntsRejectsLengthPastEnd() throws IOException
+    {
+        Utils.readInts(withLength(Integer.MAX_VALUE, 16));
+    }
+
+    @Test(expected = EOFException.class)
+    public void testReadIntsRejectsNegativeLength() throws IOException
+    {
+        Utils.readInts(withLength(-1, 16));
+    }
+
+    @Test(expected = EOFException.class)
+    public void testReadLongsRejectsLengthPastEnd() throws IOException
+    {
+        // Three longs do not fit in the 16 remaining bytes
+        Utils.readLongs(withLength(3, 16));
+    }
+
+    @Test(expected = EOFException.class)
+    public void testReadVarIntsRejectsLengthPastEnd() throws IOException
+    {
+        Utils.readVarInts(withLength(1 << 30, 16));
+    }
+
+    @Test(expected = EOFException.class)
+    public void testSkipArrayRejectsOverflowingLength() throws IOException
+    {
+        // 2^29 * 8 overflows an int to 0
+        Utils.skipArray(withLength(1 << 29, 16), 8);
+    }
+
+    @Test(expected = EOFException.class)
+    public void testSkipNBytesRejectsLengthPastEnd() throws IOException
+    {
+        Utils.skipNBytes(ByteBuffer.allocate(4), 5);
+    }
+
+    @Test(expected = EOFException.class)
+    public void testSkipNBytesRejectsNegativeLength() throws IOException
+    {
+        ByteBuffer buf = ByteBuffer.allocate(4);
+        buf.position(2);
+
+        Utils.skipNBytes(buf, -1);
+    }
+
+    @Test(expected = EOFException.class)
+    public void testSkipNBytesRejectsOverflowingLength() throws IOException
+    {
+        ByteBuffer buf = withLength(Integer.MAX_VALUE, 16);
+        buf.position(1);
+
+        // Position + length overflows an int
+        Utils.skipNBytes(buf, Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void testStringCodecsMatchJdk() throws IOException
+    {
+        ArrayList<String> strings = new ArrayList<>(Arrays.asList("", "ascii only, 16+!",
+                "\u00e9\u07ff", "\u0800\u4e2d\uffff", "\ud83d\ude00\udbff\udfff",
+                "lone \ud83d high", "lone \ude00 low", "\ude00\ud83d", "end \ud83d"));
+        Random random = new Random(0x5EED);
+
+        for (int i = 0; i < 500; i++)
+        {
+            char[] chars = new char[random.nextInt(40)];
+
+            // Favour the boundaries between encoded lengths and the surrogate ranges
+            for (int j = 0; j < chars.length; j++)
+                chars[j] = (char) (random.nextBoolean() ? random.nextInt(0x10000)
+                        : "\u0000\u007f\u0080\u07ff\u0800\ud7ff\ud800\udbff\udc00\udfff\ue000\uffff"
+                                .charAt(random.nextInt(12)));
+
+            strings.add(new String(chars));
+        }
+
+        for (String str : strings)
+        {
+            byte[] expected = str.getBytes(StandardCharsets.UTF_8);
+            String decoded = new String(expected, StandardCharsets.UTF_8);
+
+            assertEquals(str, expected.length, Utils.utf8Length(str));
+
+            for (ByteBuffer buf : buffers(expected.length + 8))
+            {
+                buf.put((byte) 1);
+                Utils.encodeString(str, buf);
+
+                assertEquals(str, 1 + expected.length, buf.position());
+
+                for (int i = 0; i < expected.length; i++)
+                    assertEquals(str, expected[i], buf.get(1 + i));
+
+                assertEquals(decoded, Utils.decodeString(buf, 1, expected.length));
+                assertEquals(1 + expected.length, buf.position());
+
+                buf.clear();
+                Utils.writeString(str, buf);
+                buf.flip();
+
+                assertEquals(decoded, Utils.readString(buf));
+                assertFalse(buf.hasRemaining());
+            }
+
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            Utils.writeString(str, baos);
+            ByteBuffer buf = ByteBuffer.allocate(baos.size());
+            Utils.writeString(str, buf);
+
+            assertArrayEquals(baos.toByteArray(), buf.array());
+            assertEquals(decoded,
+                    Utils.readString(new ByteArrayInputStream(baos.toByteArray())));
+        }
+    }
+
+    @Test
+    public void testDecodeMalformedStringMatchesJdk()
+    {
+        Random random = new Random(0x5EED);
+
+        for (int i = 0; i < 500; i++)
+        {
+            byte[] bytes = new byte[random.nextInt(24)];
+            random.nextBytes(bytes);
+
+            for (ByteBuffer buf : buffers(bytes.length))
+            {
+                buf.put(bytes);
+
+                assertEquals(new String(bytes, StandardCharsets.UTF_8),
+                        Utils.decodeString(buf, 0, bytes.length));
+            }
+        }
+    }
+
+    @Test(expected = EOFException.class)
+    public void testReadStringRejectsLengthPastEnd() throws IOException
+    {
+        Utils.readString(withLength(17, 16));
+    }
+
+    /**
+     * @param capacity The capacity of the buffers
+     *
+     * @return A heap buffer, a heap buffer with a non-zero array offset and a direct buffer
+     */
+    private static ByteBuffer[] buffers(int capacity)
+    {
+        ByteBuffer offset = ByteBuffer.allocate(capacity + 3);
+        offset.position(3);
+
+        return new ByteBuffer[] {ByteBuffer.allocate(capacity), offset.slice(),
+                ByteBuffer.allocateDirect(capacity)};
+    }
+
+    /**
+     * @param length The length prefix
+     * @param remaining The number of bytes to follow the prefix
+     *
+     * @return A buffer containing a length prefix followed by zeros
+     */
+    static ByteBuffer withLength(int length, int remaining)
+    {
+        ByteBuffer buf = ByteBuffer.allocate(5 + remaining);
+
+        Utils.writeVarInt(length, buf);
+        buf.position(buf.position() + remaining);
+        buf.flip();
+
+        return buf;
+    }
+
+}